@@ -0,0 +1,84 @@
+package com.lostkingdoms.db.benchmarks;
+
+import java.util.UUID;
+
+import com.lostkingdoms.db.organization.annotations.Identifier;
+import com.lostkingdoms.db.organization.annotations.OrganizedEntity;
+import com.lostkingdoms.db.organization.annotations.OrganizedObject;
+import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.objects.OrganizedDoubleDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedListDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedLongDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedMapDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedSetDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedSingleDataObject;
+
+/**
+ * A typical {@link OrganizedEntity} with fields of all common data object types.
+ * Creating it does not access redis or MongoDB.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+@OrganizedEntity(entityKey = "benchmark_entity")
+public class BenchmarkEntity {
+
+	@Identifier
+	private UUID identifier;
+	
+	@OrganizedObject(objectKey = "name", singleClass = String.class)
+	private OrganizedSingleDataObject<String> name;
+	
+	@OrganizedObject(objectKey = "level", singleClass = Integer.class, organizationType = OrganizationType.SYNC)
+	private OrganizedSingleDataObject<Integer> level;
+	
+	@OrganizedObject(objectKey = "gold")
+	private OrganizedLongDataObject gold;
+	
+	@OrganizedObject(objectKey = "xp")
+	private OrganizedDoubleDataObject xp;
+	
+	@OrganizedObject(objectKey = "friends", listClass = BenchmarkEntity.class)
+	private OrganizedListDataObject<BenchmarkEntity> friends;
+	
+	@OrganizedObject(objectKey = "titles", setClass = String.class)
+	private OrganizedSetDataObject<String> titles;
+	
+	@OrganizedObject(objectKey = "inventory", mapKeyClass = String.class, mapValClass = Integer.class)
+	private OrganizedMapDataObject<String, Integer> inventory;
+	
+	public BenchmarkEntity() {}
+	
+	public UUID getIdentifier() {
+		return identifier;
+	}
+	
+	public OrganizedSingleDataObject<String> getName() {
+		return name;
+	}
+	
+	public OrganizedSingleDataObject<Integer> getLevel() {
+		return level;
+	}
+	
+	public OrganizedLongDataObject getGold() {
+		return gold;
+	}
+	
+	public OrganizedDoubleDataObject getXp() {
+		return xp;
+	}
+	
+	public OrganizedListDataObject<BenchmarkEntity> getFriends() {
+		return friends;
+	}
+	
+	public OrganizedSetDataObject<String> getTitles() {
+		return titles;
+	}
+	
+	public OrganizedMapDataObject<String, Integer> getInventory() {
+		return inventory;
+	}
+	
+}
@@ -0,0 +1,44 @@
+package com.lostkingdoms.db.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.Runner;
+
+/**
+ * Runs all benchmarks and writes the results as JSON, so they can be compared across commits.
+ * The first argument may be the result file (default target/jmh-result.json), all other
+ * arguments are passed to JMH (e.g. a benchmark regex or -p size=1000).
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class BenchmarkRunner {
+
+	/** The default result file */
+	private static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+	
+	private BenchmarkRunner() {}
+	
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		String resultFile = DEFAULT_RESULT_FILE;
+		if(args.length > 0 && args[0].endsWith(".json")) {
+			resultFile = args[0];
+			String[] jmhArgs = new String[args.length - 1];
+			System.arraycopy(args, 1, jmhArgs, 0, jmhArgs.length);
+			args = jmhArgs;
+		}
+		
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.resultFormat(ResultFormatType.JSON)
+				.result(resultFile)
+				.build();
+		
+		new Runner(options).run();
+	}
+	
+}
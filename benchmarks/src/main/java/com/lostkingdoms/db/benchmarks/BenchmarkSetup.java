@@ -0,0 +1,48 @@
+package com.lostkingdoms.db.benchmarks;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+
+import com.lostkingdoms.db.DataAccessManager;
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.BackendType;
+import com.lostkingdoms.db.converters.impl.OrganizedEntityConverter;
+
+/**
+ * Utility methods shared by all benchmarks
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+final class BenchmarkSetup {
+
+	private BenchmarkSetup() {}
+	
+	/**
+	 * Starts the {@link DataOrganizationManager} with the in-memory backends, so no redis or MongoDB
+	 * server is needed, and registers the {@link BenchmarkEntity}
+	 */
+	static synchronized void registerEntities() {
+		if(DataOrganizationManager.backendType == null) DataOrganizationManager.backendType = BackendType.IN_MEMORY;
+		DataOrganizationManager manager = DataOrganizationManager.getInstance();
+		if(!manager.hasDataConverter(BenchmarkEntity.class)) {
+			manager.registerOrganizedEntity(BenchmarkEntity.class, new OrganizedEntityConverter<>(BenchmarkEntity.class));
+		}
+	}
+	
+	/**
+	 * Clears the local entity cache of the {@link DataAccessManager}, so entities get created again
+	 * without removing them from redis and MongoDB
+	 */
+	@SuppressWarnings("unchecked")
+	static void clearEntityCache() {
+		try {
+			Field f = DataAccessManager.class.getDeclaredField("managedEntities");
+			f.setAccessible(true);
+			((Map<Class<?>, Map<Object, Object>>) f.get(DataAccessManager.getInstance())).clear();
+		} catch (NoSuchFieldException | IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+}
@@ -0,0 +1,139 @@
+package com.lostkingdoms.db.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lostkingdoms.db.DataAccessManager;
+import com.lostkingdoms.db.converters.impl.DefaultDataConverter;
+import com.lostkingdoms.db.converters.impl.DefaultListDataConverter;
+import com.lostkingdoms.db.converters.impl.DefaultMapDataConverter;
+
+/**
+ * Benchmarks the serialization and deserialization of the default converters
+ * with small fields and lists and maps of different sizes
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+
+	/** The number of elements in lists and maps */
+	@Param({"10", "1000", "10000"})
+	public int size;
+	
+	private DefaultDataConverter<String> stringConverter;
+	private DefaultDataConverter<Integer> integerConverter;
+	private DefaultListDataConverter<Integer> listConverter;
+	private DefaultListDataConverter<BenchmarkEntity> entityListConverter;
+	private DefaultMapDataConverter<String, Integer> mapConverter;
+	
+	private String stringValue;
+	private String stringData;
+	private String integerData;
+	
+	private List<Integer> list;
+	private String listData;
+	
+	private List<BenchmarkEntity> entityList;
+	private String entityListData;
+	
+	private HashMap<String, Integer> map;
+	private String mapData;
+	
+	@Setup
+	public void setup() {
+		BenchmarkSetup.registerEntities();
+		Random random = new Random(42);
+		
+		stringConverter = new DefaultDataConverter<>(String.class);
+		integerConverter = new DefaultDataConverter<>(Integer.class);
+		listConverter = new DefaultListDataConverter<>(Integer.class);
+		entityListConverter = new DefaultListDataConverter<>(BenchmarkEntity.class);
+		mapConverter = new DefaultMapDataConverter<>(String.class, Integer.class);
+		
+		stringValue = "Sir Lancelot of the Lost Kingdoms";
+		stringData = stringConverter.convertToDatabase(stringValue);
+		integerData = integerConverter.convertToDatabase(random.nextInt());
+		
+		list = new ArrayList<>();
+		entityList = new ArrayList<>();
+		map = new HashMap<>();
+		for(int i = 0; i < size; i++) {
+			list.add(random.nextInt());
+			entityList.add(DataAccessManager.getInstance().getEntity(BenchmarkEntity.class, UUID.randomUUID()));
+			map.put("item_" + i, random.nextInt(64));
+		}
+		
+		listData = listConverter.convertToDatabase(list);
+		entityListData = entityListConverter.convertToDatabase(entityList);
+		mapData = mapConverter.convertToDatabase(map);
+	}
+	
+	@Benchmark
+	public String stringToDatabase() {
+		return stringConverter.convertToDatabase(stringValue);
+	}
+	
+	@Benchmark
+	public String stringFromDatabase() {
+		return stringConverter.convertFromDatabase(stringData);
+	}
+	
+	@Benchmark
+	public Integer integerFromDatabase() {
+		return integerConverter.convertFromDatabase(integerData);
+	}
+	
+	@Benchmark
+	public String listToDatabase() {
+		return listConverter.convertToDatabase(list);
+	}
+	
+	@Benchmark
+	public List<Integer> listFromDatabase() {
+		return listConverter.convertFromDatabase(listData);
+	}
+	
+	@Benchmark
+	public String entityListToDatabase() {
+		return entityListConverter.convertToDatabase(entityList);
+	}
+	
+	@Benchmark
+	public List<BenchmarkEntity> entityListFromDatabase() {
+		return entityListConverter.convertFromDatabase(entityListData);
+	}
+	
+	@Benchmark
+	public String mapToDatabase() {
+		return mapConverter.convertToDatabase(map);
+	}
+	
+	@Benchmark
+	public HashMap<String, Integer> mapFromDatabase() {
+		return mapConverter.convertFromDatabase(mapData);
+	}
+	
+}
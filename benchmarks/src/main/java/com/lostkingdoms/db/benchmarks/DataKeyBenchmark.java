@@ -0,0 +1,63 @@
+package com.lostkingdoms.db.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+import com.lostkingdoms.db.sync.HashSlotCalculator;
+
+/**
+ * Benchmarks the construction of {@link DataKey}s (key concatenation and CRC16 hashslot)
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataKeyBenchmark {
+
+	private UUID identifier;
+	private DataKey dataKey;
+	
+	@Setup
+	public void setup() {
+		identifier = UUID.randomUUID();
+		dataKey = new DataKey("benchmark_entity", "inventory", identifier);
+	}
+	
+	@Benchmark
+	public DataKey construct() {
+		return new DataKey("benchmark_entity", "inventory", identifier);
+	}
+	
+	@Benchmark
+	public String redisKey() {
+		return dataKey.getRedisKey();
+	}
+	
+	@Benchmark
+	public String mongoDBIdentifier() {
+		return dataKey.getMongoDBIdentifier();
+	}
+	
+	@Benchmark
+	public int hashslot() {
+		return HashSlotCalculator.calculateHashSlot(dataKey.getRedisKey());
+	}
+	
+}
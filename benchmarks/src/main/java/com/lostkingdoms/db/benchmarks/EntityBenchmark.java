@@ -0,0 +1,59 @@
+package com.lostkingdoms.db.benchmarks;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lostkingdoms.db.DataAccessManager;
+
+/**
+ * Benchmarks {@link DataAccessManager#getEntity(Class, Object)} for entities in the local
+ * cache and for entities which have to be materialised with all their data objects
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBenchmark {
+
+	private UUID cachedIdentifier;
+	
+	@Setup(Level.Trial)
+	public void setup() {
+		BenchmarkSetup.registerEntities();
+		cachedIdentifier = UUID.randomUUID();
+	}
+	
+	@Setup(Level.Iteration)
+	public void clearCache() {
+		BenchmarkSetup.clearEntityCache();
+		DataAccessManager.getInstance().getEntity(BenchmarkEntity.class, cachedIdentifier);
+	}
+	
+	@Benchmark
+	public BenchmarkEntity getCachedEntity() {
+		return DataAccessManager.getInstance().getEntity(BenchmarkEntity.class, cachedIdentifier);
+	}
+	
+	@Benchmark
+	public BenchmarkEntity createEntity() {
+		return DataAccessManager.getInstance().getEntity(BenchmarkEntity.class, UUID.randomUUID());
+	}
+	
+}
@@ -0,0 +1,78 @@
+package com.lostkingdoms.db.benchmarks;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lostkingdoms.db.exceptions.NoOrganizedEntityException;
+import com.lostkingdoms.db.exceptions.WrongIdentifierException;
+import com.lostkingdoms.db.organization.miscellaneous.OrganizedEntityInformation;
+import com.lostkingdoms.db.organization.miscellaneous.OrganizedObjectInformation;
+
+/**
+ * Benchmarks the reflective metadata lookups of {@link OrganizedEntityInformation}
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityInformationBenchmark {
+
+	private OrganizedEntityInformation info;
+	private UUID identifier;
+	private String identifierString;
+	
+	@Setup
+	public void setup() throws NoOrganizedEntityException {
+		info = new OrganizedEntityInformation(BenchmarkEntity.class);
+		identifier = UUID.randomUUID();
+		identifierString = identifier.toString();
+	}
+	
+	@Benchmark
+	public OrganizedEntityInformation construct() throws NoOrganizedEntityException {
+		return new OrganizedEntityInformation(BenchmarkEntity.class);
+	}
+	
+	@Benchmark
+	public List<OrganizedObjectInformation> organizedObjectFields() {
+		return info.getOrganizedObjectFields();
+	}
+	
+	@Benchmark
+	public String entityKey() {
+		return info.getEntityKey();
+	}
+	
+	@Benchmark
+	public Class<?> identifierClass() {
+		return info.getIdentifierClass();
+	}
+	
+	@Benchmark
+	public String identifierToString() throws WrongIdentifierException {
+		return info.identifierToString(identifier);
+	}
+	
+	@Benchmark
+	public Object stringToIdentifier() {
+		return info.stringToIdentifier(identifierString);
+	}
+	
+}
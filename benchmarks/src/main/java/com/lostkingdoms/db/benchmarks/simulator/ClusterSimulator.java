@@ -0,0 +1,236 @@
+package com.lostkingdoms.db.benchmarks.simulator;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.lostkingdoms.db.DataAccessManager;
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.CacheBackend;
+import com.lostkingdoms.db.backend.DocumentBackend;
+import com.lostkingdoms.db.backend.SyncTransport;
+import com.lostkingdoms.db.backend.fault.FaultInjector;
+import com.lostkingdoms.db.backend.fault.FaultProfile;
+import com.lostkingdoms.db.backend.impl.InMemoryCacheBackend;
+import com.lostkingdoms.db.backend.impl.InMemoryDocumentBackend;
+import com.lostkingdoms.db.backend.impl.InMemorySyncTransport;
+import com.lostkingdoms.db.benchmarks.BenchmarkEntity;
+import com.lostkingdoms.db.converters.impl.OrganizedEntityConverter;
+import com.lostkingdoms.db.exceptions.NoOrganizedEntityException;
+import com.lostkingdoms.db.metrics.DataMetrics;
+import com.lostkingdoms.db.metrics.EntityMetrics;
+import com.lostkingdoms.db.metrics.LatencyHistogram;
+import com.lostkingdoms.db.organization.miscellaneous.OrganizedEntityInformation;
+
+/**
+ * Load generator which simulates a cluster of servers in one JVM. Every server has its own
+ * {@link DataOrganizationManager} (local cache, hashslot timestamps, instance id) and all of them
+ * share one in-memory redis, MongoDB and sync transport. The servers run a configurable read/write
+ * mix against {@link BenchmarkEntity}s and the report shows throughput, tail latencies,
+ * sync messages and how many reads had to refetch because of invalidations.
+ * Latencies and faults can be injected into the shared backends with a {@link FaultInjector}
+ * to measure the tail latencies under degraded backends.
+ * 
+ * Usage: java -cp benchmarks.jar com.lostkingdoms.db.benchmarks.simulator.ClusterSimulator [key=value ...]
+ * (see {@link SimulatorConfig} for the keys)
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class ClusterSimulator {
+
+	/** The settings of the run */
+	private final SimulatorConfig config;
+	
+	/** The identifiers of all entities. The first ones are the hot entities */
+	private final UUID[] identifiers;
+	
+	/** The latency of every operation over all servers */
+	private final Map<SimulatorOperation, LatencyHistogram> latencies;
+	
+	/** Number of operations which threw an exception */
+	private final LongAdder errors;
+	
+	/** All simulated servers */
+	private final List<SimulatedInstance> instances;
+	
+	/** The injectors of redis, MongoDB and the sync transport */
+	private final FaultInjector cacheInjector;
+	private final FaultInjector documentInjector;
+	private final FaultInjector syncInjector;
+	
+	public ClusterSimulator(SimulatorConfig config) {
+		this.config = config;
+		this.identifiers = new UUID[config.getEntities()];
+		this.latencies = new EnumMap<>(SimulatorOperation.class);
+		this.errors = new LongAdder();
+		this.instances = new ArrayList<>();
+		this.cacheInjector = new FaultInjector(FaultProfile.NONE);
+		this.documentInjector = new FaultInjector(FaultProfile.NONE);
+		this.syncInjector = new FaultInjector(FaultProfile.NONE);
+		
+		Random random = new Random(config.getSeed());
+		for(int i = 0; i < identifiers.length; i++) {
+			identifiers[i] = new UUID(random.nextLong(), random.nextLong());
+		}
+		for(SimulatorOperation operation : SimulatorOperation.values()) {
+			latencies.put(operation, new LatencyHistogram());
+		}
+	}
+	
+	public static void main(String[] args) throws InterruptedException {
+		SimulatorConfig config = SimulatorConfig.parse(args);
+		new ClusterSimulator(config).run();
+	}
+	
+	/**
+	 * Sets up the servers, seeds the entities, runs the warmup and the measurement and prints the report
+	 * 
+	 * @throws InterruptedException if interrupted while waiting for the servers
+	 */
+	public void run() throws InterruptedException {
+		System.out.println("Cluster simulator: " + config);
+		
+		CacheBackend cacheBackend = cacheInjector.wrap(new InMemoryCacheBackend());
+		DocumentBackend documentBackend = documentInjector.wrap(new InMemoryDocumentBackend());
+		SyncTransport syncTransport = syncInjector.wrap(new InMemorySyncTransport());
+		
+		DataOrganizationManager.refreshAhead = config.isRefreshAhead();
+		for(int i = 0; i < config.getInstances(); i++) {
+			DataOrganizationManager manager = DataOrganizationManager.createInstance(cacheBackend, documentBackend, syncTransport);
+			manager.registerOrganizedEntity(BenchmarkEntity.class, new OrganizedEntityConverter<>(BenchmarkEntity.class));
+			instances.add(new SimulatedInstance(i, manager, config, identifiers, latencies, errors));
+		}
+		
+		seed(instances.get(0).getManager());
+		
+		//Degrade the backends only after seeding, so every entity exists
+		cacheInjector.setProfile(config.getCacheFaults());
+		documentInjector.setProfile(config.getDocumentFaults());
+		syncInjector.setProfile(config.getSyncFaults());
+		
+		for(SimulatedInstance instance : instances) {
+			instance.start();
+		}
+		
+		TimeUnit.SECONDS.sleep(config.getWarmup());
+		DataMetrics.getInstance().reset();
+		for(SimulatorOperation operation : SimulatorOperation.values()) {
+			latencies.get(operation).reset();
+		}
+		errors.reset();
+		cacheInjector.reset();
+		documentInjector.reset();
+		syncInjector.reset();
+		
+		long start = System.nanoTime();
+		for(SimulatedInstance instance : instances) {
+			instance.setRecording(true);
+		}
+		TimeUnit.SECONDS.sleep(config.getDuration());
+		for(SimulatedInstance instance : instances) {
+			instance.setRecording(false);
+		}
+		long elapsed = System.nanoTime() - start;
+		
+		for(SimulatedInstance instance : instances) {
+			instance.stop();
+		}
+		
+		printReport(elapsed);
+	}
+	
+	/**
+	 * Writes the initial values of all entities from one server
+	 * 
+	 * @param manager the manager of the server
+	 */
+	private void seed(DataOrganizationManager manager) {
+		manager.bindToCurrentThread();
+		try {
+			Random random = new Random(config.getSeed());
+			DataAccessManager dataAccessManager = DataAccessManager.getInstance();
+			
+			for(UUID identifier : identifiers) {
+				BenchmarkEntity entity = dataAccessManager.getEntity(BenchmarkEntity.class, identifier);
+				entity.getName().set("player_" + random.nextInt(1000000));
+				entity.getLevel().set(random.nextInt(100));
+				entity.getGold().set(random.nextInt(10000));
+				entity.getXp().set(random.nextDouble() * 10000);
+				entity.getTitles().add(SimulatorOperation.title(random));
+				entity.getInventory().put(SimulatorOperation.item(random), random.nextInt(64));
+				
+				for(int i = 0; i < config.getFriends(); i++) {
+					entity.getFriends().add(dataAccessManager.getEntity(BenchmarkEntity.class, identifiers[random.nextInt(identifiers.length)]));
+				}
+			}
+		} finally {
+			DataOrganizationManager.unbindCurrentThread();
+		}
+	}
+	
+	/**
+	 * Prints throughput, latencies, sync messages and refetches of the measurement
+	 * 
+	 * @param elapsed the duration of the measurement in nanoseconds
+	 */
+	private void printReport(long elapsed) {
+		double seconds = elapsed / 1_000_000_000D;
+		
+		long reads = 0;
+		long writes = 0;
+		StringBuilder table = new StringBuilder();
+		table.append(String.format("%-12s %10s %10s %10s %10s %10s %10s%n", "operation", "count", "mean(us)", "p50(us)", "p99(us)", "p99.9(us)", "max(us)"));
+		for(Entry<SimulatorOperation, LatencyHistogram> entry : latencies.entrySet()) {
+			LatencyHistogram histogram = entry.getValue();
+			if(histogram.getCount() == 0) continue;
+			
+			if(entry.getKey().isRead()) reads += histogram.getCount();
+			else writes += histogram.getCount();
+			table.append(String.format("%-12s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", entry.getKey(), histogram.getCount(),
+					histogram.getMean() / 1000, histogram.getPercentile(50) / 1000D, histogram.getPercentile(99) / 1000D,
+					histogram.getPercentile(99.9) / 1000D, histogram.getMax() / 1000D));
+		}
+		
+		DataMetrics metrics = DataMetrics.getInstance();
+		EntityMetrics entityMetrics;
+		try {
+			entityMetrics = metrics.getEntityMetrics(new OrganizedEntityInformation(BenchmarkEntity.class).getEntityKey());
+		} catch (NoOrganizedEntityException e) {
+			throw new IllegalStateException(e);
+		}
+		long refetches = entityMetrics.getReadLatency().getCount();
+		
+		System.out.println();
+		System.out.println(String.format("Throughput: %.0f ops/s (%.0f reads/s, %.0f writes/s, %d errors)",
+				(reads + writes) / seconds, reads / seconds, writes / seconds, errors.sum()));
+		System.out.print(table);
+		System.out.println(String.format("Sync messages: %d sent (%.0f/s), %d received from other servers, %d ignored as self sent",
+				metrics.getSyncMessagesSent(), metrics.getSyncMessagesSent() / seconds,
+				metrics.getSyncMessagesReceived(), metrics.getSyncMessagesIgnored()));
+		System.out.println("Sync lag and invalidations: " + metrics.getSyncMetrics());
+		System.out.println(String.format("Refetches: %d (%.3f per read), local hits: %d, redis hits: %d, redis misses: %d, MongoDB fallbacks: %d",
+				refetches, reads == 0 ? 0 : (double) refetches / reads, entityMetrics.getLocalHits(), entityMetrics.getRedisHits(),
+				entityMetrics.getRedisMisses(), entityMetrics.getMongoDBFallbacks() + entityMetrics.getMongoDBMisses()));
+		System.out.println("Refetches per field: " + entityMetrics.getFieldRefetches());
+		if(config.isRefreshAhead()) {
+			long refreshed = 0;
+			long batches = 0;
+			for(SimulatedInstance instance : instances) {
+				refreshed += instance.getManager().getRefreshAhead().getRefreshed();
+				batches += instance.getManager().getRefreshAhead().getBatches();
+			}
+			System.out.println(String.format("Refresh ahead: %d objects refreshed, %d MGET round trips", refreshed, batches));
+		}
+		if(config.getCacheFaults() != FaultProfile.NONE) System.out.println("Injected into redis: " + cacheInjector);
+		if(config.getDocumentFaults() != FaultProfile.NONE) System.out.println("Injected into MongoDB: " + documentInjector);
+		if(config.getSyncFaults() != FaultProfile.NONE) System.out.println("Injected into sync transport: " + syncInjector);
+	}
+	
+}
@@ -0,0 +1,165 @@
+package com.lostkingdoms.db.benchmarks.simulator;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.lostkingdoms.db.DataAccessManager;
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.benchmarks.BenchmarkEntity;
+import com.lostkingdoms.db.metrics.LatencyHistogram;
+
+/**
+ * One simulated server. Runs the workload on its own thread (like the main thread of a game server),
+ * which is bound to its own {@link DataOrganizationManager}.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+final class SimulatedInstance implements Runnable {
+
+	/** The number of this server */
+	private final int number;
+	
+	/** The manager of this server */
+	private final DataOrganizationManager manager;
+	
+	/** The settings of the run */
+	private final SimulatorConfig config;
+	
+	/** The identifiers of all entities. The first ones are the hot entities */
+	private final UUID[] identifiers;
+	
+	/** The latency of every operation, shared by all servers */
+	private final Map<SimulatorOperation, LatencyHistogram> latencies;
+	
+	/** Number of operations which threw an exception while recording */
+	private final LongAdder errors;
+	
+	/** The operations which only read */
+	private final SimulatorOperation[] readOperations;
+	
+	/** The operations which change the entity */
+	private final SimulatorOperation[] writeOperations;
+	
+	/** The thread of this server */
+	private Thread thread;
+	
+	/** False if the thread should stop */
+	private volatile boolean running;
+	
+	/** True if latencies are recorded */
+	private volatile boolean recording;
+	
+	SimulatedInstance(int number, DataOrganizationManager manager, SimulatorConfig config, UUID[] identifiers,
+			Map<SimulatorOperation, LatencyHistogram> latencies, LongAdder errors) {
+		this.number = number;
+		this.manager = manager;
+		this.config = config;
+		this.identifiers = identifiers;
+		this.latencies = latencies;
+		this.errors = errors;
+		
+		int reads = 0;
+		for(SimulatorOperation operation : SimulatorOperation.values()) {
+			if(operation.isRead()) reads++;
+		}
+		readOperations = new SimulatorOperation[reads];
+		writeOperations = new SimulatorOperation[SimulatorOperation.values().length - reads];
+		int r = 0;
+		int w = 0;
+		for(SimulatorOperation operation : SimulatorOperation.values()) {
+			if(operation.isRead()) readOperations[r++] = operation;
+			else writeOperations[w++] = operation;
+		}
+	}
+	
+	/**
+	 * Get the manager of this server
+	 * 
+	 * @return the {@link DataOrganizationManager}
+	 */
+	DataOrganizationManager getManager() {
+		return manager;
+	}
+	
+	/**
+	 * Starts the thread of this server
+	 */
+	void start() {
+		running = true;
+		thread = new Thread(this, "simulator_Instance-" + number);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Starts or stops recording latencies
+	 * 
+	 * @param recording true if latencies should be recorded
+	 */
+	void setRecording(boolean recording) {
+		this.recording = recording;
+	}
+	
+	/**
+	 * Stops the thread of this server and waits for it
+	 * 
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	void stop() throws InterruptedException {
+		running = false;
+		if(thread != null) thread.join();
+	}
+	
+	@Override
+	public void run() {
+		manager.bindToCurrentThread();
+		Random random = new Random(config.getSeed() + number);
+		DataAccessManager dataAccessManager = DataAccessManager.getInstance();
+		
+		long interval = config.getRate() > 0 ? 1_000_000_000L / config.getRate() : 0;
+		long next = System.nanoTime();
+		
+		while(running) {
+			SimulatorOperation operation = random.nextDouble() < config.getReads()
+					? readOperations[random.nextInt(readOperations.length)]
+					: writeOperations[random.nextInt(writeOperations.length)];
+			
+			long start = System.nanoTime();
+			try {
+				BenchmarkEntity entity = dataAccessManager.getEntity(BenchmarkEntity.class, nextIdentifier(random));
+				operation.execute(entity, random);
+			} catch(RuntimeException e) {
+				//E.g. injected backend faults. Failed operations count towards the tail latency as well
+				if(recording) errors.increment();
+			}
+			if(recording) latencies.get(operation).record(System.nanoTime() - start);
+			
+			if(interval > 0) {
+				next += interval;
+				long wait = next - System.nanoTime();
+				if(wait > 0) LockSupport.parkNanos(wait);
+			}
+		}
+		
+		DataOrganizationManager.unbindCurrentThread();
+	}
+	
+	/**
+	 * Picks the entity of the next operation. Hot entities get the configured share of the traffic
+	 * 
+	 * @param random the random of this thread
+	 * @return the identifier
+	 */
+	private UUID nextIdentifier(Random random) {
+		int hot = (int) (identifiers.length * config.getHotEntities());
+		if(hot <= 0 || hot >= identifiers.length) return identifiers[random.nextInt(identifiers.length)];
+		
+		if(random.nextDouble() < config.getHotTraffic()) return identifiers[random.nextInt(hot)];
+		return identifiers[hot + random.nextInt(identifiers.length - hot)];
+	}
+	
+}
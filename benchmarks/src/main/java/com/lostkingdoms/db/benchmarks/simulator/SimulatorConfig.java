@@ -0,0 +1,160 @@
+package com.lostkingdoms.db.benchmarks.simulator;
+
+import com.lostkingdoms.db.backend.fault.FaultProfile;
+
+/**
+ * The settings of a {@link ClusterSimulator} run. Parsed from key=value arguments,
+ * e.g. instances=8 reads=0.95 duration=60 cacheFaults=latency=lognormal:300:1.0,spike=0.001:50
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class SimulatorConfig {
+
+	/** Number of simulated servers */
+	private int instances = 4;
+	
+	/** Number of entities */
+	private int entities = 1000;
+	
+	/** Number of friends every entity gets when the entities are seeded */
+	private int friends = 5;
+	
+	/** Fraction of operations which only read */
+	private double reads = 0.9;
+	
+	/** Fraction of the entities which are hot */
+	private double hotEntities = 0.1;
+	
+	/** Fraction of the operations which go to the hot entities */
+	private double hotTraffic = 0.9;
+	
+	/** Operations per second of every server or 0 for as many as possible */
+	private int rate;
+	
+	/** Warmup in seconds, which is not part of the report */
+	private int warmup = 5;
+	
+	/** Measured duration in seconds */
+	private int duration = 20;
+	
+	/** Seed of all random numbers */
+	private long seed = 42;
+	
+	/** Refresh recently read objects in the background after invalidations */
+	private boolean refreshAhead;
+	
+	/** The faults injected into redis after the entities are seeded */
+	private FaultProfile cacheFaults = FaultProfile.NONE;
+	
+	/** The faults injected into MongoDB after the entities are seeded */
+	private FaultProfile documentFaults = FaultProfile.NONE;
+	
+	/** The faults injected into the sync transport after the entities are seeded */
+	private FaultProfile syncFaults = FaultProfile.NONE;
+	
+	/**
+	 * Parses the arguments of the simulator
+	 * 
+	 * @param args key=value arguments
+	 * @return the config
+	 * @throws IllegalArgumentException if an argument is unknown or malformed
+	 */
+	public static SimulatorConfig parse(String[] args) {
+		SimulatorConfig config = new SimulatorConfig();
+		
+		for(String arg : args) {
+			int separator = arg.indexOf('=');
+			if(separator <= 0) throw new IllegalArgumentException("Argument is not key=value: " + arg);
+			
+			String key = arg.substring(0, separator);
+			String value = arg.substring(separator + 1);
+			switch(key) {
+			case "instances": config.instances = Integer.parseInt(value); break;
+			case "entities": config.entities = Integer.parseInt(value); break;
+			case "friends": config.friends = Integer.parseInt(value); break;
+			case "reads": config.reads = Double.parseDouble(value); break;
+			case "hotEntities": config.hotEntities = Double.parseDouble(value); break;
+			case "hotTraffic": config.hotTraffic = Double.parseDouble(value); break;
+			case "rate": config.rate = Integer.parseInt(value); break;
+			case "warmup": config.warmup = Integer.parseInt(value); break;
+			case "duration": config.duration = Integer.parseInt(value); break;
+			case "seed": config.seed = Long.parseLong(value); break;
+			case "refreshAhead": config.refreshAhead = Boolean.parseBoolean(value); break;
+			case "cacheFaults": config.cacheFaults = FaultProfile.parse(value); break;
+			case "documentFaults": config.documentFaults = FaultProfile.parse(value); break;
+			case "syncFaults": config.syncFaults = FaultProfile.parse(value); break;
+			default: throw new IllegalArgumentException("Unknown argument: " + key);
+			}
+		}
+		
+		if(config.instances < 1 || config.entities < 1) throw new IllegalArgumentException("instances and entities have to be positive");
+		if(config.reads < 0 || config.reads > 1) throw new IllegalArgumentException("reads has to be between 0 and 1");
+		return config;
+	}
+
+	public int getInstances() {
+		return instances;
+	}
+
+	public int getEntities() {
+		return entities;
+	}
+
+	public int getFriends() {
+		return friends;
+	}
+
+	public double getReads() {
+		return reads;
+	}
+
+	public double getHotEntities() {
+		return hotEntities;
+	}
+
+	public double getHotTraffic() {
+		return hotTraffic;
+	}
+
+	public int getRate() {
+		return rate;
+	}
+
+	public int getWarmup() {
+		return warmup;
+	}
+
+	public int getDuration() {
+		return duration;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public boolean isRefreshAhead() {
+		return refreshAhead;
+	}
+
+	public FaultProfile getCacheFaults() {
+		return cacheFaults;
+	}
+
+	public FaultProfile getDocumentFaults() {
+		return documentFaults;
+	}
+
+	public FaultProfile getSyncFaults() {
+		return syncFaults;
+	}
+	
+	@Override
+	public String toString() {
+		return "instances=" + instances + " entities=" + entities + " friends=" + friends + " reads=" + reads
+				+ " hotEntities=" + hotEntities + " hotTraffic=" + hotTraffic + " rate=" + rate
+				+ " warmup=" + warmup + " duration=" + duration + " seed=" + seed + " refreshAhead=" + refreshAhead
+				+ " cacheFaults=" + cacheFaults + " documentFaults=" + documentFaults + " syncFaults=" + syncFaults;
+	}
+	
+}
@@ -0,0 +1,146 @@
+package com.lostkingdoms.db.benchmarks.simulator;
+
+import java.util.Random;
+
+import com.lostkingdoms.db.benchmarks.BenchmarkEntity;
+
+/**
+ * The operations a simulated server executes on a {@link BenchmarkEntity}.
+ * Reads use the typical accessor of each field type, writes are bounded,
+ * so sets and maps do not grow during long runs.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public enum SimulatorOperation {
+
+	GET_NAME(true) {
+		@Override
+		void execute(BenchmarkEntity entity, Random random) {
+			entity.getName().get();
+		}
+	},
+	GET_LEVEL(true) {
+		@Override
+		void execute(BenchmarkEntity entity, Random random) {
+			entity.getLevel().get();
+		}
+	},
+	GET_GOLD(true) {
+		@Override
+		void execute(BenchmarkEntity entity, Random random) {
+			entity.getGold().get();
+		}
+	},
+	GET_XP(true) {
+		@Override
+		void execute(BenchmarkEntity entity, Random random) {
+			entity.getXp().get();
+		}
+	},
+	GET_FRIENDS(true) {
+		@Override
+		void execute(BenchmarkEntity entity, Random random) {
+			entity.getFriends().getList();
+		}
+	},
+	HAS_TITLE(true) {
+		@Override
+		void execute(BenchmarkEntity entity, Random random) {
+			entity.getTitles().contains(title(random));
+		}
+	},
+	GET_ITEM(true) {
+		@Override
+		void execute(BenchmarkEntity entity, Random random) {
+			entity.getInventory().get(item(random));
+		}
+	},
+	SET_NAME(false) {
+		@Override
+		void execute(BenchmarkEntity entity, Random random) {
+			entity.getName().set("player_" + random.nextInt(1000000));
+		}
+	},
+	SET_LEVEL(false) {
+		@Override
+		void execute(BenchmarkEntity entity, Random random) {
+			entity.getLevel().set(random.nextInt(100));
+		}
+	},
+	ADD_GOLD(false) {
+		@Override
+		void execute(BenchmarkEntity entity, Random random) {
+			entity.getGold().addAndGet(random.nextInt(100));
+		}
+	},
+	ADD_XP(false) {
+		@Override
+		void execute(BenchmarkEntity entity, Random random) {
+			entity.getXp().addAndGet(random.nextDouble());
+		}
+	},
+	ADD_TITLE(false) {
+		@Override
+		void execute(BenchmarkEntity entity, Random random) {
+			entity.getTitles().add(title(random));
+		}
+	},
+	PUT_ITEM(false) {
+		@Override
+		void execute(BenchmarkEntity entity, Random random) {
+			entity.getInventory().put(item(random), random.nextInt(64));
+		}
+	};
+	
+	/** Number of different titles */
+	static final int TITLE_COUNT = 16;
+	
+	/** Number of different inventory items */
+	static final int ITEM_COUNT = 32;
+	
+	/** True if this operation does not change the entity */
+	private final boolean read;
+	
+	SimulatorOperation(boolean read) {
+		this.read = read;
+	}
+	
+	/**
+	 * Executes this operation
+	 * 
+	 * @param entity the entity
+	 * @param random the random of the executing thread
+	 */
+	abstract void execute(BenchmarkEntity entity, Random random);
+	
+	/**
+	 * Check if this operation only reads
+	 * 
+	 * @return true if this operation does not change the entity
+	 */
+	public boolean isRead() {
+		return read;
+	}
+	
+	/**
+	 * Get a random title
+	 * 
+	 * @param random the random of the executing thread
+	 * @return the title
+	 */
+	static String title(Random random) {
+		return "title_" + random.nextInt(TITLE_COUNT);
+	}
+	
+	/**
+	 * Get a random inventory item
+	 * 
+	 * @param random the random of the executing thread
+	 * @return the item
+	 */
+	static String item(Random random) {
+		return "item_" + random.nextInt(ITEM_COUNT);
+	}
+	
+}
@@ -0,0 +1,14 @@
+package com.lostkingdoms.db.benchmarks.trace;
+
+/**
+ * The eviction policies a {@link LocalCacheSimulator} can simulate.
+ * LRU: evicts the least recently used entry
+ * LFU: evicts the least frequently used entry (ties by least recent use)
+ * FIFO: evicts the oldest inserted entry
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public enum EvictionPolicy {
+	LRU, LFU, FIFO;
+}
@@ -0,0 +1,206 @@
+package com.lostkingdoms.db.benchmarks.trace;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Simulates a bounded local cache with an {@link EvictionPolicy}.
+ * The local copies of the data objects are unbounded, so a read which was served locally in the
+ * trace is a hit if the simulated cache still contains the entry. A read which had to refetch in
+ * the trace (because of an invalidation) is a miss for every cache size.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class LocalCacheSimulator {
+
+	/** The policy */
+	private final EvictionPolicy policy;
+	
+	/** The maximum total weight of all entries */
+	private final long capacity;
+	
+	/** The entries mapped to their weight. Ordered by use for LRU and by insertion for FIFO and LFU */
+	private final LinkedHashMap<String, Long> entries;
+	
+	/** The entries ordered by frequency and last use, only used for LFU */
+	private final TreeSet<Entry> frequencyOrder;
+	
+	/** The LFU entry of each key */
+	private final Map<String, Entry> frequencyEntries;
+	
+	/** The total weight of all entries */
+	private long weight;
+	
+	/** Counter for the last use of LFU entries */
+	private long tick;
+	
+	private long hits;
+	private long misses;
+	private long evictions;
+	
+	/**
+	 * Constructor of {@link LocalCacheSimulator}
+	 * 
+	 * @param policy the eviction policy
+	 * @param capacity the maximum total weight of all entries
+	 */
+	public LocalCacheSimulator(EvictionPolicy policy, long capacity) {
+		this.policy = policy;
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<>(16, 0.75f, policy == EvictionPolicy.LRU);
+		this.frequencyOrder = new TreeSet<>();
+		this.frequencyEntries = new HashMap<>();
+	}
+	
+	/**
+	 * Simulates a read
+	 * 
+	 * @param key the key of the data object
+	 * @param entryWeight the weight of the entry
+	 * @param servedLocally true if the read was served by the local copy in the trace
+	 * @return true if the read is a hit
+	 */
+	public boolean read(String key, long entryWeight, boolean servedLocally) {
+		boolean hit = servedLocally && entries.get(key) != null;
+		if(hit) {
+			hits++;
+			touch(key);
+		} else {
+			misses++;
+			put(key, entryWeight);
+		}
+		return hit;
+	}
+	
+	/**
+	 * Simulates a write. Writes update the local copy
+	 * 
+	 * @param key the key of the data object
+	 * @param entryWeight the weight of the entry
+	 */
+	public void write(String key, long entryWeight) {
+		put(key, entryWeight);
+	}
+	
+	public EvictionPolicy getPolicy() {
+		return policy;
+	}
+	
+	public long getCapacity() {
+		return capacity;
+	}
+	
+	public long getHits() {
+		return hits;
+	}
+	
+	public long getMisses() {
+		return misses;
+	}
+	
+	public long getEvictions() {
+		return evictions;
+	}
+	
+	/**
+	 * Get the ratio of reads which were hits
+	 * 
+	 * @return the hit ratio or 0 if there were no reads
+	 */
+	public double getHitRatio() {
+		long reads = hits + misses;
+		return reads == 0 ? 0 : (double) hits / reads;
+	}
+	
+	/**
+	 * Inserts or updates an entry and evicts entries until the capacity is not exceeded
+	 * 
+	 * @param key the key
+	 * @param entryWeight the weight of the entry
+	 */
+	private void put(String key, long entryWeight) {
+		if(entryWeight > capacity) {
+			remove(key);
+			return;
+		}
+		
+		Long old = entries.put(key, entryWeight);
+		weight += entryWeight - (old == null ? 0 : old);
+		touch(key);
+		
+		while(weight > capacity) {
+			evict();
+		}
+	}
+	
+	/**
+	 * Updates the use of an entry
+	 * 
+	 * @param key the key
+	 */
+	private void touch(String key) {
+		if(policy != EvictionPolicy.LFU) return;
+		
+		Entry entry = frequencyEntries.get(key);
+		if(entry != null) frequencyOrder.remove(entry);
+		entry = new Entry(key, entry == null ? 1 : entry.frequency + 1, tick++);
+		frequencyEntries.put(key, entry);
+		frequencyOrder.add(entry);
+	}
+	
+	/**
+	 * Evicts one entry according to the policy
+	 */
+	private void evict() {
+		String key;
+		if(policy == EvictionPolicy.LFU) {
+			key = frequencyOrder.first().key;
+		} else {
+			Iterator<String> iterator = entries.keySet().iterator();
+			key = iterator.next();
+		}
+		remove(key);
+		evictions++;
+	}
+	
+	/**
+	 * Removes an entry
+	 * 
+	 * @param key the key
+	 */
+	private void remove(String key) {
+		Long old = entries.remove(key);
+		if(old != null) weight -= old;
+		
+		Entry entry = frequencyEntries.remove(key);
+		if(entry != null) frequencyOrder.remove(entry);
+	}
+	
+	/**
+	 * An entry of the LFU order
+	 */
+	private static final class Entry implements Comparable<Entry> {
+		
+		private final String key;
+		private final long frequency;
+		private final long lastUse;
+		
+		private Entry(String key, long frequency, long lastUse) {
+			this.key = key;
+			this.frequency = frequency;
+			this.lastUse = lastUse;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			if(frequency != other.frequency) return Long.compare(frequency, other.frequency);
+			return Long.compare(lastUse, other.lastUse);
+		}
+		
+	}
+	
+}
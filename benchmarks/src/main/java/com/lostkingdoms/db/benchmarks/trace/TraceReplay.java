@@ -0,0 +1,292 @@
+package com.lostkingdoms.db.benchmarks.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.backend.impl.InMemoryCacheBackend;
+import com.lostkingdoms.db.backend.impl.InMemoryDocumentBackend;
+import com.lostkingdoms.db.backend.impl.InMemorySyncTransport;
+import com.lostkingdoms.db.converters.impl.DefaultDataConverter;
+import com.lostkingdoms.db.metrics.DataOperation;
+import com.lostkingdoms.db.metrics.LatencyHistogram;
+import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+import com.lostkingdoms.db.organization.objects.OrganizedSingleDataObject;
+import com.lostkingdoms.db.trace.TraceEvent;
+import com.lostkingdoms.db.trace.TraceReader;
+import com.lostkingdoms.db.trace.TraceTier;
+
+/**
+ * Offline tool for access traces recorded by the AccessTraceRecorder.
+ * Prints a summary of the trace, simulates bounded local caches with different sizes and eviction
+ * policies and replays the trace against the in-memory backends.
+ * 
+ * The replay uses one single data object per traced key with a payload of the traced size.
+ * Reads which had to refetch in the trace invalidate the hashslot first (and reads served by MongoDB
+ * also delete the redis key), so the replay accesses the same tiers as the recorded server.
+ * 
+ * Usage: java -cp benchmarks.jar com.lostkingdoms.db.benchmarks.trace.TraceReplay trace-file [key=value ...]
+ * sizes=100,1000,10000 policies=LRU,LFU,FIFO unit=entries|bytes replay=true speed=0
+ * (speed 0 replays as fast as possible, 1 in recorded time)
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class TraceReplay {
+
+	/** The trace file */
+	private final File file;
+	
+	/** The simulated cache sizes */
+	private long[] sizes = {100, 1000, 10000, 100000};
+	
+	/** The simulated eviction policies */
+	private EvictionPolicy[] policies = EvictionPolicy.values();
+	
+	/** True if the cache sizes are in characters instead of entries */
+	private boolean weighBytes;
+	
+	/** True if the trace should be replayed */
+	private boolean replay = true;
+	
+	/** Speed of the replay relative to the recorded time or 0 for as fast as possible */
+	private double speed;
+	
+	public TraceReplay(File file) {
+		this.file = file;
+	}
+	
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0) {
+			System.out.println("Usage: TraceReplay trace-file [sizes=100,1000] [policies=LRU,LFU,FIFO] [unit=entries|bytes] [replay=true] [speed=0]");
+			return;
+		}
+		
+		TraceReplay traceReplay = new TraceReplay(new File(args[0]));
+		for(int i = 1; i < args.length; i++) {
+			int separator = args[i].indexOf('=');
+			if(separator <= 0) throw new IllegalArgumentException("Argument is not key=value: " + args[i]);
+			
+			String key = args[i].substring(0, separator);
+			String value = args[i].substring(separator + 1);
+			switch(key) {
+			case "sizes": traceReplay.sizes = Arrays.stream(value.split(",")).mapToLong(Long::parseLong).toArray(); break;
+			case "policies": traceReplay.policies = Arrays.stream(value.split(",")).map(EvictionPolicy::valueOf).toArray(EvictionPolicy[]::new); break;
+			case "unit": traceReplay.weighBytes = value.equals("bytes"); break;
+			case "replay": traceReplay.replay = Boolean.parseBoolean(value); break;
+			case "speed": traceReplay.speed = Double.parseDouble(value); break;
+			default: throw new IllegalArgumentException("Unknown argument: " + key);
+			}
+		}
+		
+		traceReplay.analyze();
+		if(traceReplay.replay) traceReplay.replay();
+	}
+	
+	/**
+	 * Prints the summary of the trace and the results of the cache simulations
+	 * 
+	 * @throws IOException if the trace could not be read
+	 */
+	public void analyze() throws IOException {
+		List<LocalCacheSimulator> simulators = new ArrayList<>();
+		for(EvictionPolicy policy : policies) {
+			for(long size : sizes) {
+				simulators.add(new LocalCacheSimulator(policy, size));
+			}
+		}
+		
+		Map<TraceTier, LatencyHistogram> readLatencies = createHistograms();
+		Map<TraceTier, Long> reads = new EnumMap<>(TraceTier.class);
+		Map<DataOperation, Long> writes = new EnumMap<>(DataOperation.class);
+		Map<String, Integer> payloadSizes = new HashMap<>();
+		long events = 0;
+		long duration = 0;
+		
+		try (TraceReader reader = new TraceReader(file)) {
+			TraceEvent event;
+			while((event = reader.next()) != null) {
+				events++;
+				duration = event.getTime();
+				
+				String key = key(event);
+				if(event.getPayloadSize() > 0) payloadSizes.put(key, event.getPayloadSize());
+				else payloadSizes.putIfAbsent(key, 0);
+				long weight = weighBytes ? Math.max(1, payloadSizes.get(key)) : 1;
+				
+				if(event.isRead()) {
+					reads.merge(event.getTier(), 1L, Long::sum);
+					if(event.getLatency() > 0) readLatencies.get(event.getTier()).record(event.getLatency());
+					for(LocalCacheSimulator simulator : simulators) {
+						simulator.read(key, weight, event.getTier() == TraceTier.LOCAL);
+					}
+				} else {
+					writes.merge(event.getOperation(), 1L, Long::sum);
+					for(LocalCacheSimulator simulator : simulators) {
+						simulator.write(key, weight);
+					}
+				}
+			}
+		}
+		
+		System.out.println(String.format("Trace %s: %d events over %.1f s, %d keys", file, events, duration / 1_000_000_000D, payloadSizes.size()));
+		System.out.println("Recorded reads: " + reads + ", latencies of the measured reads:");
+		printLatencies(readLatencies);
+		System.out.println("Recorded writes: " + writes);
+		
+		System.out.println();
+		System.out.println("Simulated local cache (" + (weighBytes ? "characters" : "entries") + "):");
+		System.out.println(String.format("%-6s %12s %10s %12s %12s", "policy", "size", "hit ratio", "misses", "evictions"));
+		for(LocalCacheSimulator simulator : simulators) {
+			System.out.println(String.format("%-6s %12d %10.4f %12d %12d", simulator.getPolicy(), simulator.getCapacity(),
+					simulator.getHitRatio(), simulator.getMisses(), simulator.getEvictions()));
+		}
+	}
+	
+	/**
+	 * Replays the trace against the in-memory backends and prints the latencies
+	 * 
+	 * @throws IOException if the trace could not be read
+	 */
+	public void replay() throws IOException {
+		DataOrganizationManager manager = DataOrganizationManager.createInstance(new InMemoryCacheBackend(),
+				new InMemoryDocumentBackend(), new InMemorySyncTransport());
+		manager.bindToCurrentThread();
+		
+		Map<String, ReplayObject> objects = new HashMap<>();
+		Map<Integer, String> payloads = new HashMap<>();
+		Map<TraceTier, LatencyHistogram> readLatencies = createHistograms();
+		LatencyHistogram writeLatency = new LatencyHistogram();
+		long events = 0;
+		
+		long start = System.nanoTime();
+		try (TraceReader reader = new TraceReader(file)) {
+			TraceEvent event;
+			while((event = reader.next()) != null) {
+				if(speed > 0) {
+					long wait = start + (long) (event.getTime() / speed) - System.nanoTime();
+					if(wait > 0) LockSupport.parkNanos(wait);
+				}
+				
+				ReplayObject object = objects.get(key(event));
+				if(object == null) {
+					object = new ReplayObject(event);
+					objects.put(key(event), object);
+				}
+				long operationStart = System.nanoTime();
+				if(event.isRead()) {
+					if(event.getTier() != TraceTier.LOCAL) {
+						manager.invalidateHashSlot(object.dataKey.getHashslot());
+						if(event.getTier() == TraceTier.MONGODB) {
+							try (CacheConnection cache = manager.getCacheBackend().getConnection()) {
+								cache.del(object.dataKey.getRedisKey(), object.dataKey.getRedisVersionKey());
+							}
+						}
+						operationStart = System.nanoTime();
+					}
+					object.dataObject.get();
+					readLatencies.get(event.getTier()).record(System.nanoTime() - operationStart);
+				} else {
+					int size = Math.max(1, event.getPayloadSize());
+					object.dataObject.set(payloads.computeIfAbsent(size, TraceReplay::payload));
+					writeLatency.record(System.nanoTime() - operationStart);
+				}
+				events++;
+			}
+		} finally {
+			DataOrganizationManager.unbindCurrentThread();
+		}
+		double seconds = (System.nanoTime() - start) / 1_000_000_000D;
+		
+		System.out.println();
+		System.out.println(String.format("Replay: %d events in %.1f s (%.0f events/s)", events, seconds, events / seconds));
+		System.out.println("Replayed reads:");
+		printLatencies(readLatencies);
+		System.out.println(String.format("Replayed writes: %d, p50 %.1f us, p99 %.1f us", writeLatency.getCount(),
+				writeLatency.getPercentile(50) / 1000D, writeLatency.getPercentile(99) / 1000D));
+	}
+	
+	/**
+	 * Creates a latency histogram for every tier
+	 * 
+	 * @return the histograms
+	 */
+	private static Map<TraceTier, LatencyHistogram> createHistograms() {
+		Map<TraceTier, LatencyHistogram> histograms = new EnumMap<>(TraceTier.class);
+		for(TraceTier tier : TraceTier.values()) {
+			histograms.put(tier, new LatencyHistogram());
+		}
+		return histograms;
+	}
+	
+	/**
+	 * Prints the count and latency percentiles of every tier
+	 * 
+	 * @param latencies the histograms
+	 */
+	private static void printLatencies(Map<TraceTier, LatencyHistogram> latencies) {
+		for(Map.Entry<TraceTier, LatencyHistogram> entry : latencies.entrySet()) {
+			LatencyHistogram histogram = entry.getValue();
+			if(histogram.getCount() == 0) continue;
+			
+			System.out.println(String.format("  %-8s %12d  p50 %10.1f us  p99 %10.1f us  p99.9 %10.1f us", entry.getKey(), histogram.getCount(),
+					histogram.getPercentile(50) / 1000D, histogram.getPercentile(99) / 1000D, histogram.getPercentile(99.9) / 1000D));
+		}
+	}
+	
+	/**
+	 * Get the key of the data object of an event
+	 * 
+	 * @param event the event
+	 * @return the key
+	 */
+	private static String key(TraceEvent event) {
+		return event.getEntityKey() + "." + event.getFieldKey() + "." + Integer.toHexString(event.getIdentifierHash());
+	}
+	
+	/**
+	 * Creates a payload of the given size
+	 * 
+	 * @param size the size in characters
+	 * @return the payload
+	 */
+	private static String payload(int size) {
+		char[] chars = new char[size];
+		Arrays.fill(chars, 'x');
+		return new String(chars);
+	}
+	
+	/**
+	 * The data object which replays the events of one traced key
+	 */
+	private static final class ReplayObject {
+		
+		private final DataKey dataKey;
+		private final OrganizedSingleDataObject<String> dataObject;
+		
+		/**
+		 * Creates the data object. The {@link OrganizationType} is guessed from the first event
+		 * 
+		 * @param event the first event of the key
+		 */
+		private ReplayObject(TraceEvent event) {
+			OrganizationType organizationType = OrganizationType.BOTH;
+			if(!event.isRead() && event.getTier() == TraceTier.LOCAL) organizationType = OrganizationType.NONE;
+			if(!event.isRead() && event.getTier() == TraceTier.MONGODB) organizationType = OrganizationType.SAVE_TO_DB;
+			
+			this.dataKey = new DataKey(event.getEntityKey(), event.getFieldKey(), Integer.toHexString(event.getIdentifierHash()));
+			this.dataObject = new OrganizedSingleDataObject<>(dataKey, organizationType, new DefaultDataConverter<>(String.class));
+		}
+		
+	}
+	
+}
@@ -7,16 +7,21 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.lostkingdoms.db.backend.CacheConnection;
 import com.lostkingdoms.db.converters.impl.DefaultDataConverter;
 import com.lostkingdoms.db.converters.impl.DefaultListDataConverter;
 import com.lostkingdoms.db.converters.impl.DefaultMapDataConverter;
 import com.lostkingdoms.db.exceptions.NoOrganizedEntityException;
 import com.lostkingdoms.db.exceptions.WrongIdentifierException;
 import com.lostkingdoms.db.exceptions.WrongMethodUseException;
-import com.lostkingdoms.db.factories.JedisFactory;
-import com.lostkingdoms.db.factories.MongoDBFactory;
+import com.lostkingdoms.db.metrics.DataMetrics;
+import com.lostkingdoms.db.metrics.OperationPhase;
+import com.lostkingdoms.db.metrics.SlowOperationLog;
 import com.lostkingdoms.db.organization.annotations.OrganizedEntity;
+import com.lostkingdoms.db.organization.annotations.OrganizedIndex;
 import com.lostkingdoms.db.organization.annotations.OrganizedObject;
 import com.lostkingdoms.db.organization.annotations.OrganizedSuperentity;
 import com.lostkingdoms.db.organization.enums.OrganizationType;
@@ -24,17 +29,16 @@ import com.lostkingdoms.db.organization.miscellaneous.DataKey;
 import com.lostkingdoms.db.organization.miscellaneous.NullObj;
 import com.lostkingdoms.db.organization.miscellaneous.OrganizedEntityInformation;
 import com.lostkingdoms.db.organization.miscellaneous.OrganizedObjectInformation;
+import com.lostkingdoms.db.organization.objects.OrganizedCounterDataObject;
 import com.lostkingdoms.db.organization.objects.OrganizedDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedDoubleDataObject;
 import com.lostkingdoms.db.organization.objects.OrganizedListDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedLongDataObject;
 import com.lostkingdoms.db.organization.objects.OrganizedMapDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedSetDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedSortedSetDataObject;
 import com.lostkingdoms.db.organization.objects.OrganizedSingleDataObject;
-import com.mongodb.BasicDBObject;
-import com.mongodb.DB;
-import com.mongodb.DBCollection;
-import com.mongodb.DBCursor;
-import com.mongodb.DBObject;
-
-import redis.clients.jedis.Jedis;
+import com.lostkingdoms.db.trace.OperationTracer;
 
 /**
  * Manager that handles the creation, destruction and query of all organized data types and entities
@@ -44,27 +48,30 @@ import redis.clients.jedis.Jedis;
  */
 public final class DataAccessManager {
 	
-	/** The singletons instance */
-	private static DataAccessManager instance;
-	
 	/** A map containing all created entities mapped by it's class */
 	private final Map<Class<?>, Map<Object, Object>> managedEntities;
 	
-	/** String that represents the identifier field */
-	private static final String IDENTIFIER = "identifier";
+	/** A map containing all ranked indexes mapped by their redis key */
+	private final Map<String, OrganizedSortedSetDataObject<String>> indexes;
+	
+	/** Suffix of the main key of ranked indexes */
+	private static final String INDEX_SUFFIX = "_index";
+	
+	/** Number of entities which are added to a rebuilt index at once */
+	private static final int INDEX_REBUILD_BATCH_SIZE = 1000;
 	
-	private DataAccessManager() {
+	DataAccessManager() {
 		managedEntities = new HashMap<>();
+		indexes = new ConcurrentHashMap<>();
 	}
 	
 	/**
-	 * Get the instance of this manager
+	 * Get the instance of this manager which belongs to {@link DataOrganizationManager#getInstance()}
 	 * 
 	 * @return The instance
 	 */
 	public static DataAccessManager getInstance() {
-		if(instance == null) instance = new DataAccessManager();
-		return instance;
+		return DataOrganizationManager.getInstance().getDataAccessManager();
 	}
 	
 	
@@ -96,12 +103,7 @@ public final class DataAccessManager {
 		try {
 			OrganizedEntityInformation info = new OrganizedEntityInformation(clazz);
 			
-			DB db = MongoDBFactory.getInstance().getMongoDatabase();
-			DBCollection collection = db.getCollection(info.getEntityKey());
-			
-			BasicDBObject obj = new BasicDBObject();
-			obj.put(IDENTIFIER, info.identifierToString(identifier));
-			return collection.find(obj).count() != 0;
+			return DataOrganizationManager.getInstance().getDocumentBackend().exists(info.getEntityKey(), info.identifierToString(identifier));
 		} catch (NoOrganizedEntityException | WrongIdentifierException e) {
 			e.printStackTrace();
 		}
@@ -118,29 +120,58 @@ public final class DataAccessManager {
 	 * @param identifier
 	 */
 	public void removeEntity(Class<?> clazz, Object identifier) {
-		try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+		try (CacheConnection cache = DataOrganizationManager.getInstance().getCacheBackend().getConnection()) {
 			OrganizedEntityInformation info = new OrganizedEntityInformation(clazz);
 
 			//Local cache
 			if (managedEntities.containsKey(clazz)) {
-				managedEntities.get(clazz).remove(identifier);
+				Object entity = managedEntities.get(clazz).remove(identifier);
+				if (entity != null) closeCounters(info, entity);
 			}
 
 			//Redis
 			for (OrganizedObjectInformation i : info.getOrganizedObjectFields()) {
-				jedis.del(info.getEntityKey() + "." + i.getObjectKey() + "." + info.identifierToString(identifier));
+				DataKey dataKey = new DataKey(info.getEntityKey(), i.getObjectKey(), identifier);
+				cache.del(dataKey.getRedisKey(), dataKey.getRedisVersionKey());
 			}
 
 			//MongoDB
-			DBCollection collection = MongoDBFactory.getInstance().getMongoDatabase().getCollection(info.getEntityKey());
-			BasicDBObject query = new BasicDBObject();
-			query.put(IDENTIFIER, info.identifierToString(identifier));
-			collection.remove(query);
+			DataOrganizationManager.getInstance().getDocumentBackend().remove(info.getEntityKey(), info.identifierToString(identifier));
+			
+			//Ranked indexes
+			for (OrganizedObjectInformation i : info.getOrganizedObjectFields()) {
+				if (i.getIndexKey() == null || i.getOrganizationType() == OrganizationType.NONE) continue;
+				getIndex(info, i.getIndexKey()).remove(info.identifierToString(identifier));
+			}
 		} catch (WrongIdentifierException | NoOrganizedEntityException e) {
 			e.printStackTrace();
 		}
 	}
 	
+	/**
+	 * Closes the counters of an entity which is released. Flushes their last increments
+	 * and stops their periodic flush
+	 * 
+	 * @param info the information of the entity
+	 * @param entity the entity
+	 */
+	private void closeCounters(OrganizedEntityInformation info, Object entity) {
+		for (OrganizedObjectInformation i : info.getOrganizedObjectFields()) {
+			if (i.getDataObjectClass() != OrganizedCounterDataObject.class) continue;
+			
+			Field f = i.getField();
+			try {
+				f.setAccessible(true);
+				OrganizedCounterDataObject counter = (OrganizedCounterDataObject) f.get(entity);
+				if (counter != null) counter.close();
+			} catch (IllegalAccessException e) {
+				e.printStackTrace();
+			} finally {
+				f.setAccessible(false);
+			}
+		}
+	}
+	
 	
 	
 	/**
@@ -155,12 +186,11 @@ public final class DataAccessManager {
 		try {
 			OrganizedEntityInformation info = new OrganizedEntityInformation(clazz);
 			
-			DB mongodb = MongoDBFactory.getInstance().getMongoDatabase();
-			DBCursor cur = mongodb.getCollection(info.getEntityKey()).find();
+			List<String> identifiers = DataOrganizationManager.getInstance().getDocumentBackend().findIdentifiers(info.getEntityKey());
 
 			List<T> entityList = new ArrayList<>();
-			for(DBObject obj : cur) {
-				entityList.add((T) getEntity(clazz, info.stringToIdentifier((String) obj.get(IDENTIFIER))));
+			for(String identifier : identifiers) {
+				entityList.add((T) getEntity(clazz, info.stringToIdentifier(identifier)));
 			}
 			
 			return entityList;
@@ -173,6 +203,144 @@ public final class DataAccessManager {
 	
 	
 	
+	/**
+	 * Get the entities of class T with the highest values in a ranked index
+	 * 
+	 * @param <T>
+	 * @param clazz
+	 * @param indexKey the key of the {@link OrganizedIndex}
+	 * @param count the maximum number of entities
+	 * @return the entities ordered by their value (highest first)
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> getTopEntities(Class<T> clazz, String indexKey, int count) {
+		try {
+			OrganizedEntityInformation info = new OrganizedEntityInformation(clazz);
+			
+			List<T> entityList = new ArrayList<>();
+			for(String member : getIndex(info, indexKey).getTop(count).keySet()) {
+				entityList.add((T) getEntity(clazz, info.stringToIdentifier(member)));
+			}
+			
+			return entityList;
+		} catch (NoOrganizedEntityException e) {
+			e.printStackTrace();
+		}
+		
+		return new ArrayList<>();
+	}
+	
+	
+	
+	/**
+	 * Get the rank of an entity in a ranked index
+	 * 
+	 * @param clazz
+	 * @param indexKey the key of the {@link OrganizedIndex}
+	 * @param identifier
+	 * @return the zero based rank (highest value first) or null if the entity is not in the index
+	 */
+	public Long getEntityRank(Class<?> clazz, String indexKey, Object identifier) {
+		try {
+			OrganizedEntityInformation info = new OrganizedEntityInformation(clazz);
+			return getIndex(info, indexKey).getRank(info.identifierToString(identifier));
+		} catch (NoOrganizedEntityException | WrongIdentifierException e) {
+			e.printStackTrace();
+		}
+		
+		return null;
+	}
+	
+	
+	
+	/**
+	 * Get the ranked index of a {@link OrganizedIndex} field. Members of the index are 
+	 * the entities identifiers. Can be used for score range queries
+	 * 
+	 * @param clazz
+	 * @param indexKey the key of the {@link OrganizedIndex}
+	 * @return the index or null if clazz is no {@link OrganizedEntity}
+	 */
+	public OrganizedSortedSetDataObject<String> getIndex(Class<?> clazz, String indexKey) {
+		try {
+			return getIndex(new OrganizedEntityInformation(clazz), indexKey);
+		} catch (NoOrganizedEntityException e) {
+			e.printStackTrace();
+		}
+		
+		return null;
+	}
+	
+	
+	
+	/**
+	 * Gets the ranked index of a {@link OrganizedIndex} field.
+	 * If it does not exist in redis it is rebuilt from MongoDB on the async executor,
+	 * so the returned index may be incomplete until the rebuild finished
+	 * 
+	 * @param info
+	 * @param indexKey
+	 * @return the index
+	 */
+	private OrganizedSortedSetDataObject<String> getIndex(OrganizedEntityInformation info, String indexKey) {
+		DataKey dataKey = new DataKey(info.getEntityKey() + INDEX_SUFFIX, indexKey, info.getEntityKey());
+		
+		String key = dataKey.getRedisKey();
+		
+		boolean[] created = new boolean[1];
+		OrganizedSortedSetDataObject<String> index = indexes.computeIfAbsent(key, k -> {
+			created[0] = true;
+			return new OrganizedSortedSetDataObject<>(dataKey, OrganizationType.SYNC, new DefaultDataConverter<>(String.class));
+		});
+		if(!created[0]) return index;
+		
+		//Only the thread which created the index schedules the rebuild
+		DataOrganizationManager.getInstance().getAsyncExecutor().submit(key, () -> {
+			if(index.size() == 0) rebuildIndex(info, indexKey, index);
+			return null;
+		}).exceptionally(e -> {
+			//Forget the index so the next access retries the rebuild
+			indexes.remove(key, index);
+			return null;
+		});
+		
+		return index;
+	}
+	
+	
+	
+	/**
+	 * Adds the values of all entities in MongoDB to an index
+	 * 
+	 * @param info
+	 * @param indexKey
+	 * @param index
+	 */
+	private void rebuildIndex(OrganizedEntityInformation info, String indexKey, OrganizedSortedSetDataObject<String> index) {
+		for(OrganizedObjectInformation i : info.getOrganizedObjectFields()) {
+			if(!indexKey.equals(i.getIndexKey())) continue;
+			if(i.getOrganizationType() != OrganizationType.SAVE_TO_DB && i.getOrganizationType() != OrganizationType.BOTH) return;
+			
+			String valueKey = new DataKey(info.getEntityKey(), i.getObjectKey(), info.getEntityKey()).getMongoDBValue();
+			Map<String, Object> values = DataOrganizationManager.getInstance().getDocumentBackend().findField(info.getEntityKey(), valueKey);
+			
+			Map<String, Double> batch = new HashMap<>();
+			for(Map.Entry<String, Object> entry : values.entrySet()) {
+				if(!(entry.getValue() instanceof Number)) continue;
+				
+				batch.put(entry.getKey(), ((Number) entry.getValue()).doubleValue());
+				if(batch.size() >= INDEX_REBUILD_BATCH_SIZE) {
+					index.addAll(batch);
+					batch.clear();
+				}
+			}
+			index.addAll(batch);
+			return;
+		}
+	}
+	
+	
+	
 	/**
 	 * Gets all locally cached entities by class
 	 * 
@@ -199,6 +367,7 @@ public final class DataAccessManager {
 	 */
 	@SuppressWarnings("unchecked")
 	public <T> T getEntity(Class<?> clazz, Object identifier) {
+		long start = OperationTracer.begin();
 		try {
 			//Test if clazz is a correct OrganizedEntity
 			OrganizedEntityInformation info = new OrganizedEntityInformation(clazz);
@@ -225,6 +394,9 @@ public final class DataAccessManager {
 			return (T) orgEntity;
 		} catch (NoOrganizedEntityException | WrongIdentifierException e) {
 			e.printStackTrace();
+		} finally {
+			SlowOperationLog.end("getEntity", clazz, identifier, start);
+			OperationTracer.end("getEntity", clazz, identifier, start);
 		}
 		
 		return null;
@@ -232,6 +404,48 @@ public final class DataAccessManager {
 	
 	
 	
+	/**
+	 * Gets a organized entity by it's class and identifier and loads all of its fields
+	 * on the {@link com.lostkingdoms.db.async.OrderedExecutor} of this instance, so the calling 
+	 * thread does not block on redis or MongoDB. The entity is created on the calling thread.
+	 * 
+	 * @param <T>
+	 * @param clazz
+	 * @param identifier
+	 * @return the future of the entity, which completes when all fields are loaded
+	 */
+	public <T> CompletableFuture<T> getEntityAsync(Class<?> clazz, Object identifier) {
+		// The loads are traced with this operation
+		long start = OperationTracer.begin();
+		T entity = getEntity(clazz, identifier);
+		if(entity == null) {
+			OperationTracer.end("getEntityAsync", clazz, identifier, start);
+			return CompletableFuture.completedFuture(null);
+		}
+		
+		try {
+			List<CompletableFuture<Void>> loads = new ArrayList<>();
+			for(OrganizedObjectInformation i : new OrganizedEntityInformation(clazz).getOrganizedObjectFields()) {
+				Field f = i.getField();
+				f.setAccessible(true);
+				Object orgObj = f.get(entity);
+				f.setAccessible(false);
+				
+				if(orgObj instanceof OrganizedDataObject) loads.add(((OrganizedDataObject<?>) orgObj).loadAsync());
+			}
+			
+			return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0])).thenApply(v -> entity);
+		} catch (NoOrganizedEntityException | IllegalAccessException e) {
+			CompletableFuture<T> future = new CompletableFuture<>();
+			future.completeExceptionally(e);
+			return future;
+		} finally {
+			OperationTracer.end("getEntityAsync", clazz, identifier, start);
+		}
+	}
+	
+	
+	
 	/**
 	 * Gets a organized entity from local cache by it's class and identifier
 	 * 
@@ -299,6 +513,7 @@ public final class DataAccessManager {
 	 * @param identifier
 	 */
 	public void initializeEntityFields(Object obj, Object identifier) {		
+		long start = OperationTracer.begin();
 		try {
 			OrganizedEntityInformation info = new OrganizedEntityInformation(obj.getClass());
 			
@@ -321,6 +536,9 @@ public final class DataAccessManager {
 		} catch (NoOrganizedEntityException | NoSuchMethodException | SecurityException | IllegalArgumentException 
 				| IllegalAccessException | InstantiationException | InvocationTargetException | WrongMethodUseException e) {
 			e.printStackTrace();
+		} finally {
+			SlowOperationLog.end("initializeEntityFields", obj.getClass(), identifier, start);
+			OperationTracer.end("initializeEntityFields", obj.getClass(), identifier, start);
 		}
 	}
 	
@@ -334,6 +552,7 @@ public final class DataAccessManager {
 	 * @param none true, if you want to not save this object in any way
 	 */
 	public void initializeEntityFields(Object obj, Object identifier, boolean none) {
+		long start = OperationTracer.begin();
 		try {
 			OrganizedEntityInformation info = new OrganizedEntityInformation(obj.getClass());
 			
@@ -356,6 +575,9 @@ public final class DataAccessManager {
 		} catch (NoOrganizedEntityException | NoSuchMethodException | SecurityException | IllegalArgumentException 
 				| IllegalAccessException | InstantiationException | InvocationTargetException | WrongMethodUseException e) {
 			e.printStackTrace();
+		} finally {
+			SlowOperationLog.end("initializeEntityFields", obj.getClass(), identifier, start);
+			OperationTracer.end("initializeEntityFields", obj.getClass(), identifier, start);
 		}
 	}
 	
@@ -377,6 +599,7 @@ public final class DataAccessManager {
 	 */
 	private void initializeField(OrganizedEntityInformation eInfo, OrganizedObjectInformation oInfo, Object obj, Object identifier, boolean none) 
 			throws NoSuchMethodException, IllegalAccessException, InstantiationException, InvocationTargetException, WrongMethodUseException {
+		long start = DataMetrics.start();
 		Field f = oInfo.getField();
 		
 		f.setAccessible(true);
@@ -409,9 +632,44 @@ public final class DataAccessManager {
 			
 			orgObj = (OrganizedDataObject<?>) fConstr.newInstance(dataKey, orgType, conv);
 		}
+		else if(oInfo.getDataObjectClass() == OrganizedSetDataObject.class) {
+			fConstr = OrganizedSetDataObject.class.getConstructor(DataKey.class, OrganizationType.class, DefaultDataConverter.class);
+			DefaultDataConverter<?> conv = new DefaultDataConverter<>(oInfo.getSetClass());
+			
+			orgObj = (OrganizedDataObject<?>) fConstr.newInstance(dataKey, orgType, conv);
+		}
+		else if(oInfo.getDataObjectClass() == OrganizedSortedSetDataObject.class) {
+			fConstr = OrganizedSortedSetDataObject.class.getConstructor(DataKey.class, OrganizationType.class, DefaultDataConverter.class);
+			DefaultDataConverter<?> conv = new DefaultDataConverter<>(oInfo.getSortedSetClass());
+			
+			orgObj = (OrganizedDataObject<?>) fConstr.newInstance(dataKey, orgType, conv);
+		}
+		else if(oInfo.getDataObjectClass() == OrganizedLongDataObject.class) {
+			fConstr = OrganizedLongDataObject.class.getConstructor(DataKey.class, OrganizationType.class);
+			
+			orgObj = (OrganizedDataObject<?>) fConstr.newInstance(dataKey, orgType);
+			if(oInfo.getIndexKey() != null && orgType != OrganizationType.NONE) 
+				((OrganizedLongDataObject) orgObj).setIndex(getIndex(eInfo, oInfo.getIndexKey()), dataKey.getMongoDBIdentifier());
+		}
+		else if(oInfo.getDataObjectClass() == OrganizedDoubleDataObject.class) {
+			fConstr = OrganizedDoubleDataObject.class.getConstructor(DataKey.class, OrganizationType.class);
+			
+			orgObj = (OrganizedDataObject<?>) fConstr.newInstance(dataKey, orgType);
+			if(oInfo.getIndexKey() != null && orgType != OrganizationType.NONE) 
+				((OrganizedDoubleDataObject) orgObj).setIndex(getIndex(eInfo, oInfo.getIndexKey()), dataKey.getMongoDBIdentifier());
+		}
+		else if(oInfo.getDataObjectClass() == OrganizedCounterDataObject.class) {
+			fConstr = OrganizedCounterDataObject.class.getConstructor(DataKey.class, OrganizationType.class, long.class);
+			
+			orgObj = (OrganizedDataObject<?>) fConstr.newInstance(dataKey, orgType, oInfo.getFlushInterval());
+		}
+
+		if(orgObj != null && orgType != OrganizationType.NONE) orgObj.setMaxStaleness(oInfo.getMaxStaleness());
 
 		f.set(obj, orgObj);
 		f.setAccessible(false);
+		SlowOperationLog.phase(OperationPhase.REFLECTION, start);
+		OperationTracer.span(OperationPhase.REFLECTION, "initializeField " + f.getName(), start);
 	}
 
 }
@@ -1,25 +1,51 @@
 package com.lostkingdoms.db;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.lostkingdoms.db.async.OrderedExecutor;
+import com.lostkingdoms.db.backend.BackendType;
+import com.lostkingdoms.db.backend.CacheBackend;
+import com.lostkingdoms.db.backend.DocumentBackend;
+import com.lostkingdoms.db.backend.SyncTransport;
+import com.lostkingdoms.db.backend.breaker.CircuitBreaker;
+import com.lostkingdoms.db.backend.impl.InMemoryCacheBackend;
+import com.lostkingdoms.db.backend.impl.InMemoryDocumentBackend;
+import com.lostkingdoms.db.backend.impl.InMemorySyncTransport;
+import com.lostkingdoms.db.backend.impl.JedisCacheBackend;
+import com.lostkingdoms.db.backend.impl.JedisClusterCacheBackend;
+import com.lostkingdoms.db.backend.impl.JedisClusterSyncTransport;
+import com.lostkingdoms.db.backend.impl.JedisSyncTransport;
+import com.lostkingdoms.db.backend.impl.MongoDocumentBackend;
+import com.lostkingdoms.db.backend.resp.RespCacheBackend;
+import com.lostkingdoms.db.backend.resp.RespClient;
+import com.lostkingdoms.db.backend.resp.RespSyncTransport;
 import com.lostkingdoms.db.converters.AbstractDataConverter;
 import com.lostkingdoms.db.converters.impl.DefaultDataConverter;
 import com.lostkingdoms.db.converters.impl.OrganizedEntityConverter;
 import com.lostkingdoms.db.errors.ConverterAlreadyRegisteredError;
-import com.lostkingdoms.db.factories.JedisFactory;
-import com.lostkingdoms.db.factories.MongoDBFactory;
 import com.lostkingdoms.db.logger.LKLogger;
 import com.lostkingdoms.db.logger.LogLevel;
 import com.lostkingdoms.db.logger.LogType;
+import com.lostkingdoms.db.metrics.SlowOperationLog;
+import com.lostkingdoms.db.metrics.TimedBackends;
 import com.lostkingdoms.db.organization.annotations.OrganizedEntity;
+import com.lostkingdoms.db.organization.buffer.WriteBuffer;
+import com.lostkingdoms.db.organization.buffer.WriteJournal;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+import com.lostkingdoms.db.organization.objects.RefreshAhead;
 import com.lostkingdoms.db.sync.DataSyncListener;
-
-import redis.clients.jedis.Jedis;
+import com.lostkingdoms.db.sync.DataSyncMessage;
+import com.lostkingdoms.db.trace.AccessTraceRecorder;
+import com.lostkingdoms.db.trace.OperationTracer;
 
 /**
  * The core class of this API. Manages some constants, sets up synchronization on
@@ -36,10 +62,15 @@ public final class DataOrganizationManager {
 	 */
 	private static DataOrganizationManager instance;
 	
+	/**
+	 * The instance bound to the current thread, which is returned by {@link #getInstance()} instead of the singleton
+	 */
+	private static final ThreadLocal<DataOrganizationManager> boundInstance = new ThreadLocal<>();
+	
 	/**
 	 * number of redis hashslots
 	 */
-	private static final int HASH_SLOT_COUNT = 16384;
+	public static final int HASH_SLOT_COUNT = 16384;
 
 	/**
 	 * Name of the redis syncing channel
@@ -50,11 +81,203 @@ public final class DataOrganizationManager {
 	 * The name of the mongodb
 	 */
 	public static String mongoDBName;
+	
+	/**
+	 * The host of the mongodb
+	 */
+	public static String mongoDBHost = "127.0.0.1";
+	
+	/**
+	 * The port of the mongodb
+	 */
+	public static int mongoDBPort = 27017;
+	
+	/**
+	 * The maximal number of connections to the mongodb
+	 */
+	public static int mongoDBConnections = 100;
+	
+	/**
+	 * The connect timeout of the mongodb in milliseconds
+	 */
+	public static int mongoDBConnectTimeout = 10000;
+	
+	/**
+	 * The socket timeout of the mongodb in milliseconds. 0 waits forever
+	 */
+	public static int mongoDBSocketTimeout = 0;
+	
+	/**
+	 * The maximal time in milliseconds to wait for a free mongodb connection
+	 */
+	public static int mongoDBMaxWait = 120000;
 
 	/**
 	 * The number of the redis database
 	 */
 	public static int redisDBNumber;
+	
+	/**
+	 * The host of the redis master
+	 */
+	public static String redisHost = "127.0.0.1";
+	
+	/**
+	 * The port of the redis master
+	 */
+	public static int redisPort = 6379;
+	
+	/**
+	 * The password of redis. Empty if there is none
+	 */
+	public static String redisPassword = "";
+	
+	/**
+	 * The connect and read timeout of redis in milliseconds
+	 */
+	public static int redisTimeout = 2000;
+	
+	/**
+	 * The maximal number of connections of every redis pool
+	 */
+	public static int redisPoolMaxTotal = 32;
+	
+	/**
+	 * The maximal number of idle connections of every redis pool
+	 */
+	public static int redisPoolMaxIdle = 32;
+	
+	/**
+	 * The number of idle connections every redis pool keeps open
+	 */
+	public static int redisPoolMinIdle = 4;
+	
+	/**
+	 * The maximal time in milliseconds to wait for a free redis connection
+	 */
+	public static long redisPoolMaxWait = 2000;
+	
+	/**
+	 * The redis client of the data objects and sync messages: jedis (pooled) or resp (multiplexed)
+	 */
+	public static String redisClient = "jedis";
+	
+	/**
+	 * The number of connections of the multiplexed redis client
+	 */
+	public static int redisRespConnections = 2;
+	
+	/**
+	 * The comma separated host:port list of the redis cluster nodes. Used with {@link BackendType#REDIS_CLUSTER_MONGODB}
+	 */
+	public static String redisClusterNodes = "127.0.0.1:7000";
+	
+	/**
+	 * If true, the identifier in redis keys is a hashtag, so all keys of an entity are in one hashslot.
+	 * Always true with {@link BackendType#REDIS_CLUSTER_MONGODB}. Has to be the same on all servers
+	 */
+	public static boolean redisHashtags;
+	
+	/**
+	 * The comma separated host:port list of the redis read replicas. Empty if all reads go to the master
+	 */
+	public static String redisReplicas = "";
+	
+	/**
+	 * The selection of the replica of a read: round_robin or least_loaded
+	 */
+	public static String redisReplicaRouting = "round_robin";
+	
+	/**
+	 * The maximal replication lag in milliseconds. Lagging replicas and hashslots which were updated
+	 * more recently are read from the master
+	 */
+	public static long redisReplicaMaxLag = 1000;
+	
+	/**
+	 * The backends to use. If set before the first call of {@link #getInstance()}
+	 * the value from the config is ignored
+	 */
+	public static BackendType backendType;
+	
+	/**
+	 * The executor of the asynchronous operations: bounded or virtual
+	 */
+	public static String asyncExecutorType = "bounded";
+	
+	/**
+	 * The number of threads (or lanes of the virtual executor) of the asynchronous operations
+	 */
+	public static int asyncThreads = 4;
+	
+	/**
+	 * The maximal number of pending asynchronous operations
+	 */
+	public static int asyncMaxPending = 100000;
+	
+	/**
+	 * If true, data objects of invalidated hashslots which were read recently are refreshed in the background
+	 */
+	public static boolean refreshAhead;
+	
+	/**
+	 * Data objects which were not read within this window in milliseconds are not refreshed ahead
+	 */
+	public static long refreshAheadWindow = 10000;
+	
+	/**
+	 * If true, redis and MongoDB calls fail fast while the backend is down. Reads are then served 
+	 * by the local data and writes are buffered until the backend is available again.
+	 * Disabled by default, because every backend call then goes through a reflective proxy
+	 */
+	public static boolean circuitBreaker = false;
+	
+	/**
+	 * The number of consecutive failed calls after which a backend is considered down
+	 */
+	public static int circuitBreakerThreshold = 5;
+	
+	/**
+	 * The time in milliseconds calls fail fast before a backend is probed again
+	 */
+	public static long circuitBreakerOpenTime = 5000;
+	
+	/**
+	 * The file of the journal which keeps the buffered writes over a crash or shutdown, e.g. write_journal.dat.
+	 * Empty to disable it (default), because it forces the file to the disk in the sync interval.
+	 * Only used if the {@link #circuitBreaker} is enabled
+	 */
+	public static String writeJournal = "";
+	
+	/**
+	 * The size of the write journal in bytes
+	 */
+	public static int writeJournalSize = 16 * 1024 * 1024;
+	
+	/**
+	 * The interval in milliseconds in which the write journal is forced to the disk
+	 */
+	public static long writeJournalSyncInterval = 10;
+	
+	/**
+	 * Operations which take longer than this time in milliseconds are logged with the time of each phase. 0 to disable it
+	 */
+	public static long slowOperationThreshold;
+	
+	/**
+	 * The maximal number of slow operations which are logged per second
+	 */
+	public static int slowOperationLogRate = 10;
+	
+	/**
+	 * The share of operations which are traced as spans (0 to 1). 0 to disable tracing
+	 */
+	public static double traceSampleRate;
+	
+	/**
+	 * The number of spans each thread keeps for the trace export
+	 */
+	public static int traceBufferSize = 16384;
 
 	/**
 	 * Array of timestamps for all hashslots
@@ -71,6 +294,61 @@ public final class DataOrganizationManager {
 	 */
 	private UUID instanceID;
 	
+	/**
+	 * The global cache tier
+	 */
+	private CacheBackend cacheBackend;
+	
+	/**
+	 * The database tier
+	 */
+	private DocumentBackend documentBackend;
+	
+	/**
+	 * The transport of the sync messages
+	 */
+	private SyncTransport syncTransport;
+	
+	/**
+	 * The manager of the entities of this instance
+	 */
+	private DataAccessManager dataAccessManager;
+	
+	/**
+	 * The executor of the asynchronous operations. Is created on first use
+	 */
+	private OrderedExecutor asyncExecutor;
+	
+	/**
+	 * The background refresh of invalidated data objects or null if it is disabled
+	 */
+	private RefreshAhead refreshAheadManager;
+	
+	/**
+	 * The circuit breaker of redis and the sync transport or null if it is disabled
+	 */
+	private CircuitBreaker cacheBreaker;
+	
+	/**
+	 * The circuit breaker of MongoDB or null if it is disabled
+	 */
+	private CircuitBreaker documentBreaker;
+	
+	/**
+	 * The writes which wait for an unavailable backend or null if the circuit breakers are disabled
+	 */
+	private WriteBuffer writeBuffer;
+	
+	/**
+	 * The file of the write journal or null if this instance has none
+	 */
+	private File writeJournalFile;
+	
+	/**
+	 * The sequence number of the last sync message this instance sent
+	 */
+	private final AtomicLong syncSequence = new AtomicLong();
+	
 	/**
 	 * Constructor of the {@link DataOrganizationManager}
 	 */
@@ -78,22 +356,100 @@ public final class DataOrganizationManager {
 		LKLogger.getInstance().setLevel(LogLevel.INFO);
 		LKLogger.getInstance().setLogType(LogType.ALL);
 
+		String accessTrace = null;
 		try {
 			Properties properties = new Properties();
 			properties.loadFromXML(new FileInputStream("database_config.xml"));
 			mongoDBName = properties.getProperty("mongodb_name");
+			mongoDBHost = properties.getProperty("mongodb_host", mongoDBHost);
+			mongoDBPort = Integer.parseInt(properties.getProperty("mongodb_port", String.valueOf(mongoDBPort)));
+			mongoDBConnections = Integer.parseInt(properties.getProperty("mongodb_connections", String.valueOf(mongoDBConnections)));
+			mongoDBConnectTimeout = Integer.parseInt(properties.getProperty("mongodb_connect_timeout", String.valueOf(mongoDBConnectTimeout)));
+			mongoDBSocketTimeout = Integer.parseInt(properties.getProperty("mongodb_socket_timeout", String.valueOf(mongoDBSocketTimeout)));
+			mongoDBMaxWait = Integer.parseInt(properties.getProperty("mongodb_max_wait", String.valueOf(mongoDBMaxWait)));
 			redisDBNumber = Integer.parseInt(properties.getProperty("redis_database_number"));
+			redisHost = properties.getProperty("redis_host", redisHost);
+			redisPort = Integer.parseInt(properties.getProperty("redis_port", String.valueOf(redisPort)));
+			redisPassword = properties.getProperty("redis_password", redisPassword);
+			redisTimeout = Integer.parseInt(properties.getProperty("redis_timeout", String.valueOf(redisTimeout)));
+			redisPoolMaxTotal = Integer.parseInt(properties.getProperty("redis_pool_max_total", String.valueOf(redisPoolMaxTotal)));
+			redisPoolMaxIdle = Integer.parseInt(properties.getProperty("redis_pool_max_idle", String.valueOf(redisPoolMaxIdle)));
+			redisPoolMinIdle = Integer.parseInt(properties.getProperty("redis_pool_min_idle", String.valueOf(redisPoolMinIdle)));
+			redisPoolMaxWait = Long.parseLong(properties.getProperty("redis_pool_max_wait", String.valueOf(redisPoolMaxWait)));
+			redisClient = properties.getProperty("redis_client", redisClient);
+			redisRespConnections = Integer.parseInt(properties.getProperty("redis_resp_connections", String.valueOf(redisRespConnections)));
 			syncMessageChannel = properties.getProperty("sync_message_channel_name");
+			if(backendType == null) backendType = BackendType.valueOf(properties.getProperty("backend", BackendType.REDIS_MONGODB.name()).toUpperCase());
+			redisClusterNodes = properties.getProperty("redis_cluster_nodes", redisClusterNodes);
+			redisHashtags = Boolean.parseBoolean(properties.getProperty("redis_hashtags", String.valueOf(redisHashtags)));
+			redisReplicas = properties.getProperty("redis_replicas", redisReplicas);
+			redisReplicaRouting = properties.getProperty("redis_replica_routing", redisReplicaRouting);
+			redisReplicaMaxLag = Long.parseLong(properties.getProperty("redis_replica_max_lag", String.valueOf(redisReplicaMaxLag)));
+			accessTrace = properties.getProperty("access_trace", "");
+			asyncExecutorType = properties.getProperty("async_executor", asyncExecutorType);
+			asyncThreads = Integer.parseInt(properties.getProperty("async_threads", String.valueOf(asyncThreads)));
+			asyncMaxPending = Integer.parseInt(properties.getProperty("async_max_pending", String.valueOf(asyncMaxPending)));
+			refreshAhead = Boolean.parseBoolean(properties.getProperty("refresh_ahead", String.valueOf(refreshAhead)));
+			refreshAheadWindow = Long.parseLong(properties.getProperty("refresh_ahead_window", String.valueOf(refreshAheadWindow)));
+			circuitBreaker = Boolean.parseBoolean(properties.getProperty("circuit_breaker", String.valueOf(circuitBreaker)));
+			circuitBreakerThreshold = Integer.parseInt(properties.getProperty("circuit_breaker_threshold", String.valueOf(circuitBreakerThreshold)));
+			circuitBreakerOpenTime = Long.parseLong(properties.getProperty("circuit_breaker_open_time", String.valueOf(circuitBreakerOpenTime)));
+			writeJournal = properties.getProperty("write_journal", writeJournal);
+			writeJournalSize = Integer.parseInt(properties.getProperty("write_journal_size", String.valueOf(writeJournalSize)));
+			writeJournalSyncInterval = Long.parseLong(properties.getProperty("write_journal_sync_interval", String.valueOf(writeJournalSyncInterval)));
+			slowOperationThreshold = Long.parseLong(properties.getProperty("slow_operation_threshold", String.valueOf(slowOperationThreshold)));
+			slowOperationLogRate = Integer.parseInt(properties.getProperty("slow_operation_log_rate", String.valueOf(slowOperationLogRate)));
+			traceSampleRate = Double.parseDouble(properties.getProperty("trace_sample_rate", String.valueOf(traceSampleRate)));
+			traceBufferSize = Integer.parseInt(properties.getProperty("trace_buffer_size", String.valueOf(traceBufferSize)));
 			LKLogger.getInstance().info("Database config loaded", LogType.STARTUP);
 		} catch (Exception e) {
 			try {
 				Properties properties = new Properties();
 				properties.setProperty("mongodb_name", "lostkingdoms");
 				mongoDBName = "lostkingdoms";
+				properties.setProperty("mongodb_host", mongoDBHost);
+				properties.setProperty("mongodb_port", String.valueOf(mongoDBPort));
+				properties.setProperty("mongodb_connections", String.valueOf(mongoDBConnections));
+				properties.setProperty("mongodb_connect_timeout", String.valueOf(mongoDBConnectTimeout));
+				properties.setProperty("mongodb_socket_timeout", String.valueOf(mongoDBSocketTimeout));
+				properties.setProperty("mongodb_max_wait", String.valueOf(mongoDBMaxWait));
 				properties.setProperty("redis_database_number", "0");
 				redisDBNumber = 15;
+				properties.setProperty("redis_host", redisHost);
+				properties.setProperty("redis_port", String.valueOf(redisPort));
+				properties.setProperty("redis_password", redisPassword);
+				properties.setProperty("redis_timeout", String.valueOf(redisTimeout));
+				properties.setProperty("redis_pool_max_total", String.valueOf(redisPoolMaxTotal));
+				properties.setProperty("redis_pool_max_idle", String.valueOf(redisPoolMaxIdle));
+				properties.setProperty("redis_pool_min_idle", String.valueOf(redisPoolMinIdle));
+				properties.setProperty("redis_pool_max_wait", String.valueOf(redisPoolMaxWait));
+				properties.setProperty("redis_client", redisClient);
+				properties.setProperty("redis_resp_connections", String.valueOf(redisRespConnections));
 				properties.setProperty("sync_message_channel_name", "lostkingdoms_sync");
 				syncMessageChannel = "lostkingdoms_sync";
+				properties.setProperty("backend", BackendType.REDIS_MONGODB.name());
+				if(backendType == null) backendType = BackendType.REDIS_MONGODB;
+				properties.setProperty("redis_cluster_nodes", redisClusterNodes);
+				properties.setProperty("redis_hashtags", String.valueOf(redisHashtags));
+				properties.setProperty("redis_replicas", redisReplicas);
+				properties.setProperty("redis_replica_routing", redisReplicaRouting);
+				properties.setProperty("redis_replica_max_lag", String.valueOf(redisReplicaMaxLag));
+				properties.setProperty("access_trace", "");
+				properties.setProperty("async_executor", asyncExecutorType);
+				properties.setProperty("async_threads", String.valueOf(asyncThreads));
+				properties.setProperty("async_max_pending", String.valueOf(asyncMaxPending));
+				properties.setProperty("refresh_ahead", String.valueOf(refreshAhead));
+				properties.setProperty("refresh_ahead_window", String.valueOf(refreshAheadWindow));
+				properties.setProperty("circuit_breaker", String.valueOf(circuitBreaker));
+				properties.setProperty("circuit_breaker_threshold", String.valueOf(circuitBreakerThreshold));
+				properties.setProperty("circuit_breaker_open_time", String.valueOf(circuitBreakerOpenTime));
+				properties.setProperty("write_journal", writeJournal);
+				properties.setProperty("write_journal_size", String.valueOf(writeJournalSize));
+				properties.setProperty("write_journal_sync_interval", String.valueOf(writeJournalSyncInterval));
+				properties.setProperty("slow_operation_threshold", String.valueOf(slowOperationThreshold));
+				properties.setProperty("slow_operation_log_rate", String.valueOf(slowOperationLogRate));
+				properties.setProperty("trace_sample_rate", String.valueOf(traceSampleRate));
+				properties.setProperty("trace_buffer_size", String.valueOf(traceBufferSize));
 				properties.storeToXML(new FileOutputStream("database_config.xml"), "");
 				LKLogger.getInstance().info("Default database config created", LogType.STARTUP);
 			} catch (Exception e2) {
@@ -102,28 +458,100 @@ public final class DataOrganizationManager {
 		}
 
 		LKLogger.getInstance().info("Lost-Kingdoms-DataSync Starting", LogType.STARTUP);
-		LKLogger.getInstance().info("MongoDB starting up", LogType.STARTUP);
-		MongoDBFactory.getInstance();
-		LKLogger.getInstance().info("MongoDB succesfully started", LogType.STARTUP);
+		if(backendType == BackendType.IN_MEMORY) {
+			LKLogger.getInstance().info("Using in-memory backends", LogType.STARTUP);
+			cacheBackend = new InMemoryCacheBackend();
+			documentBackend = new InMemoryDocumentBackend();
+			syncTransport = new InMemorySyncTransport();
+		} else if(backendType == BackendType.REDIS_CLUSTER_MONGODB) {
+			redisHashtags = true;
+			LKLogger.getInstance().info("MongoDB starting up", LogType.STARTUP);
+			documentBackend = new MongoDocumentBackend();
+			LKLogger.getInstance().info("MongoDB succesfully started", LogType.STARTUP);
+			cacheBackend = new JedisClusterCacheBackend();
+			syncTransport = new JedisClusterSyncTransport();
+		} else {
+			LKLogger.getInstance().info("MongoDB starting up", LogType.STARTUP);
+			documentBackend = new MongoDocumentBackend();
+			LKLogger.getInstance().info("MongoDB succesfully started", LogType.STARTUP);
+			if("resp".equalsIgnoreCase(redisClient)) {
+				try {
+					RespClient client = new RespClient(redisHost, redisPort, redisRespConnections, redisTimeout, redisPassword, redisDBNumber);
+					cacheBackend = new RespCacheBackend(client, redisTimeout);
+					syncTransport = new RespSyncTransport(client, redisTimeout, new JedisSyncTransport());
+				} catch (IOException e) {
+					LKLogger.getInstance().error("Multiplexed redis client could not be started, using jedis: ", e, LogType.STARTUP);
+				}
+			}
+			if(cacheBackend == null) {
+				cacheBackend = new JedisCacheBackend();
+				syncTransport = new JedisSyncTransport();
+			}
+		}
 		
+		if(accessTrace != null && !accessTrace.isEmpty()) {
+			try {
+				AccessTraceRecorder.start(new File(accessTrace));
+			} catch (IOException e) {
+				LKLogger.getInstance().error("Access trace could not be started: ", e, LogType.STARTUP);
+			}
+		}
+		
+		if(writeJournal != null && !writeJournal.isEmpty()) writeJournalFile = new File(writeJournal);
+		
+		initialize();
+	}
+	
+	/**
+	 * Constructor of an additional {@link DataOrganizationManager} which uses the given backends.
+	 * The config is not loaded again
+	 * 
+	 * @param cacheBackend the global cache tier
+	 * @param documentBackend the database tier
+	 * @param syncTransport the transport of the sync messages
+	 */
+	private DataOrganizationManager(CacheBackend cacheBackend, DocumentBackend documentBackend, SyncTransport syncTransport) {
+		if(syncMessageChannel == null) syncMessageChannel = "lostkingdoms_sync";
+		
+		this.cacheBackend = cacheBackend;
+		this.documentBackend = documentBackend;
+		this.syncTransport = syncTransport;
+		initialize();
+	}
+	
+	/**
+	 * Sets up the local state of this instance and subscribes to the sync channel
+	 */
+	private void initialize() {
 		try {
 			converters = new HashMap<>();
 			instanceID = UUID.randomUUID();
-			LKLogger.getInstance().debug("Session id is" + instanceID.toString(), LogType.STARTUP);
+			LKLogger.getInstance().debug(() -> "Session id is" + instanceID.toString(), LogType.STARTUP);
 			lastUpdated = new long[HASH_SLOT_COUNT];
+			if(refreshAhead) refreshAheadManager = new RefreshAhead(this, HASH_SLOT_COUNT, refreshAheadWindow);
+			SlowOperationLog.configure(slowOperationThreshold, slowOperationLogRate);
+			OperationTracer.configure(traceSampleRate, traceBufferSize);
+			if(SlowOperationLog.isEnabled() || OperationTracer.isEnabled()) {
+				// Inside the breakers, so only calls which reach the backend are timed
+				cacheBackend = TimedBackends.wrap(cacheBackend);
+				syncTransport = TimedBackends.wrap(syncTransport);
+				documentBackend = TimedBackends.wrap(documentBackend);
+			}
+			if(circuitBreaker) {
+				cacheBreaker = new CircuitBreaker("redis", circuitBreakerThreshold, circuitBreakerOpenTime);
+				documentBreaker = new CircuitBreaker("MongoDB", circuitBreakerThreshold, circuitBreakerOpenTime);
+				cacheBackend = cacheBreaker.wrap(cacheBackend);
+				syncTransport = cacheBreaker.wrap(syncTransport);
+				documentBackend = documentBreaker.wrap(documentBackend);
+				
+				// Replays the writes recovered from the journal right away, so the backends have to be wrapped before
+				writeBuffer = new WriteBuffer(this, openWriteJournal());
+				cacheBreaker.setListener(writeBuffer::onStateChange);
+				documentBreaker.setListener(writeBuffer::onStateChange);
+			}
+			dataAccessManager = new DataAccessManager();
 			
-			new Thread(() -> {
-				LKLogger.getInstance().info("Jedis starting up", LogType.STARTUP);
-				Jedis jedis = JedisFactory.getInstance().getJedis();
-				LKLogger.getInstance().info("Jedis succesfully started", LogType.STARTUP);
-
-				LKLogger.getInstance().debug("Sync Listener subscribed", LogType.STARTUP);
-				jedis.subscribe(new DataSyncListener(), syncMessageChannel);
-
-				LKLogger.getInstance().warn("Sync Listener closed!", LogType.STARTUP);
-				jedis.quit();
-			}, "sync_Listener").start();
-			
+			syncTransport.subscribe(syncMessageChannel, new DataSyncListener(this));
 		} catch(Exception e) {
 			e.printStackTrace();
 		}
@@ -131,20 +559,76 @@ public final class DataOrganizationManager {
 		LKLogger.getInstance().info("Lost-Kingdoms-DataSync succesfully started", LogType.STARTUP);
 	}
 	
+	/**
+	 * Opens the write journal of this instance
+	 * 
+	 * @return the {@link WriteJournal} or null if this instance has none or it could not be opened
+	 */
+	private WriteJournal openWriteJournal() {
+		if(writeJournalFile == null) return null;
+		
+		try {
+			return new WriteJournal(writeJournalFile, writeJournalSize, writeJournalSyncInterval);
+		} catch (IOException e) {
+			LKLogger.getInstance().error("Write journal could not be opened, buffered writes are lost on a crash: ", e, LogType.STARTUP);
+			return null;
+		}
+	}
+	
 	/**
 	 * Get the singletons instance
 	 * 
 	 * @return instance
 	 */
 	public static DataOrganizationManager getInstance() {
+		DataOrganizationManager bound = boundInstance.get();
+		if(bound != null) return bound;
+		
 		if(instance == null) instance = new DataOrganizationManager();
 		return instance;
 	}
 	
+	/**
+	 * Creates an additional instance which does not replace the singleton (e.g. to simulate
+	 * multiple servers in one JVM). It has its own local cache, hashslot timestamps, converters
+	 * and instance id and only sees the changes of other instances through the sync transport.
+	 * Use {@link #bindToCurrentThread()} to make {@link #getInstance()} return it
+	 * 
+	 * @param cacheBackend the global cache tier
+	 * @param documentBackend the database tier
+	 * @param syncTransport the transport of the sync messages
+	 * @return the new instance
+	 */
+	public static DataOrganizationManager createInstance(CacheBackend cacheBackend, DocumentBackend documentBackend, SyncTransport syncTransport) {
+		return new DataOrganizationManager(cacheBackend, documentBackend, syncTransport);
+	}
+	
+	/**
+	 * Makes {@link #getInstance()} return this instance on the current thread.
+	 * Data objects keep the instance they were created by
+	 */
+	public void bindToCurrentThread() {
+		boundInstance.set(this);
+	}
+	
+	/**
+	 * Makes {@link #getInstance()} return the singleton on the current thread again
+	 */
+	public static void unbindCurrentThread() {
+		boundInstance.remove();
+	}
+	
 	public void invalidateHashSlot(int slot) {
 		lastUpdated[slot] = System.currentTimeMillis();
 	}
 	
+	/**
+	 * Invalidates the local data of all hashslots, e.g. after sync messages may have been missed
+	 */
+	public void invalidateAll() {
+		Arrays.fill(lastUpdated, System.currentTimeMillis());
+	}
+	
 	/**
 	 * Get the timestamp when a hashslot was last updated
 	 * 
@@ -173,7 +657,7 @@ public final class DataOrganizationManager {
 	public <T> void registerDataConverter(Class<T> clazz, AbstractDataConverter<T> converter) {
 		if(hasDataConverter(clazz)) throw new ConverterAlreadyRegisteredError(clazz);
 		converters.put(clazz, converter);
-		LKLogger.getInstance().debug("Data Converter registered: " + clazz.getSimpleName(), LogType.STARTUP);
+		LKLogger.getInstance().debug(() -> "Data Converter registered: " + clazz.getSimpleName(), LogType.STARTUP);
 	}
 	
 	/**
@@ -205,4 +689,114 @@ public final class DataOrganizationManager {
 	public UUID getInstanceID() {
 		return instanceID;
 	}
+	
+	/**
+	 * Creates the sync message which invalidates the hashslot of a key on the other instances.
+	 * Every message gets the next sequence number of this instance
+	 * 
+	 * @param dataKey the updated {@link DataKey}
+	 * @return the serialized {@link DataSyncMessage}
+	 */
+	public String createSyncMessage(DataKey dataKey) {
+		return new DataSyncMessage(instanceID, dataKey.getHashslot(), dataKey.getMainKey(), 
+				syncSequence.incrementAndGet(), DataSyncMessage.currentTimeMicros()).serialize();
+	}
+	
+	/**
+	 * Get the global cache tier
+	 * 
+	 * @return the {@link CacheBackend}
+	 */
+	public CacheBackend getCacheBackend() {
+		return cacheBackend;
+	}
+	
+	/**
+	 * Get the database tier
+	 * 
+	 * @return the {@link DocumentBackend}
+	 */
+	public DocumentBackend getDocumentBackend() {
+		return documentBackend;
+	}
+	
+	/**
+	 * Get the transport of the sync messages
+	 * 
+	 * @return the {@link SyncTransport}
+	 */
+	public SyncTransport getSyncTransport() {
+		return syncTransport;
+	}
+	
+	/**
+	 * Get the manager of the entities of this instance
+	 * 
+	 * @return the {@link DataAccessManager}
+	 */
+	public DataAccessManager getDataAccessManager() {
+		return dataAccessManager;
+	}
+	
+	/**
+	 * Get the background refresh of invalidated data objects of this instance
+	 * 
+	 * @return the {@link RefreshAhead} or null if it is disabled
+	 */
+	public RefreshAhead getRefreshAhead() {
+		return refreshAheadManager;
+	}
+	
+	/**
+	 * Get the writes which wait for an unavailable backend
+	 * 
+	 * @return the {@link WriteBuffer} or null if the circuit breakers are disabled
+	 */
+	public WriteBuffer getWriteBuffer() {
+		return writeBuffer;
+	}
+	
+	/**
+	 * Get the circuit breaker of redis and the sync transport
+	 * 
+	 * @return the {@link CircuitBreaker} or null if it is disabled
+	 */
+	public CircuitBreaker getCacheBreaker() {
+		return cacheBreaker;
+	}
+	
+	/**
+	 * Get the circuit breaker of MongoDB
+	 * 
+	 * @return the {@link CircuitBreaker} or null if it is disabled
+	 */
+	public CircuitBreaker getDocumentBreaker() {
+		return documentBreaker;
+	}
+	
+	/**
+	 * Get the executor of the asynchronous operations of this instance. 
+	 * Creates it from the config on first use
+	 * 
+	 * @return the {@link OrderedExecutor}
+	 */
+	public synchronized OrderedExecutor getAsyncExecutor() {
+		if(asyncExecutor == null) {
+			asyncExecutor = asyncExecutorType.equalsIgnoreCase("virtual") 
+					? OrderedExecutor.virtual(asyncThreads, asyncMaxPending) 
+					: OrderedExecutor.bounded(asyncThreads, asyncMaxPending);
+		}
+		return asyncExecutor;
+	}
+	
+	/**
+	 * Replaces the executor of the asynchronous operations of this instance.
+	 * The old executor is shut down, so it should be idle when it is replaced
+	 * 
+	 * @param asyncExecutor the new {@link OrderedExecutor}
+	 */
+	public synchronized void setAsyncExecutor(OrderedExecutor asyncExecutor) {
+		if(this.asyncExecutor != null) this.asyncExecutor.shutdown();
+		this.asyncExecutor = asyncExecutor;
+	}
 }
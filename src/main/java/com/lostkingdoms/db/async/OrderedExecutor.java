@@ -0,0 +1,244 @@
+package com.lostkingdoms.db.async;
+
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.lostkingdoms.db.logger.LKLogger;
+import com.lostkingdoms.db.logger.LogType;
+
+/**
+ * Runs the asynchronous operations of the data objects on an {@link Executor}.
+ * Every key is mapped to one of a fixed number of lanes and the tasks of a lane run one
+ * after another in submission order, so operations on the same key are never reordered
+ * while different keys run in parallel. The number of pending tasks is bounded, further
+ * tasks are rejected instead of blocking the submitting thread.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class OrderedExecutor {
+
+	/** Maximal number of tasks a lane runs before it gives its thread back to the executor */
+	private static final int LANE_BATCH_SIZE = 64;
+	
+	/** The executor which runs the lanes */
+	private final Executor executor;
+	
+	/** The lanes */
+	private final Lane[] lanes;
+	
+	/** Maximal number of pending tasks */
+	private final int maxPending;
+	
+	/** Number of submitted tasks which did not finish yet */
+	private final AtomicInteger pending = new AtomicInteger();
+	
+	/**
+	 * Creates an ordered executor on top of any executor
+	 * 
+	 * @param executor the executor which runs the tasks
+	 * @param lanes the number of lanes, which bounds the number of tasks running at once
+	 * @param maxPending the maximal number of pending tasks
+	 */
+	public OrderedExecutor(Executor executor, int lanes, int maxPending) {
+		if(lanes < 1 || maxPending < 1) throw new IllegalArgumentException("lanes and maxPending have to be positive");
+		
+		this.executor = executor;
+		this.lanes = new Lane[lanes];
+		this.maxPending = maxPending;
+		for(int i = 0; i < lanes; i++) {
+			this.lanes[i] = new Lane();
+		}
+	}
+	
+	/**
+	 * Creates an ordered executor with a fixed number of daemon threads
+	 * 
+	 * @param threads the number of threads
+	 * @param maxPending the maximal number of pending tasks
+	 * @return the executor
+	 */
+	public static OrderedExecutor bounded(int threads, int maxPending) {
+		AtomicInteger count = new AtomicInteger();
+		ExecutorService service = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "data_Async_" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		return new OrderedExecutor(service, threads * 4, maxPending);
+	}
+	
+	/**
+	 * Creates an ordered executor which runs every lane on a virtual thread. Virtual threads need
+	 * Java 21, on older runtimes a bounded executor with the given number of threads is used instead
+	 * 
+	 * @param lanes the number of lanes
+	 * @param maxPending the maximal number of pending tasks
+	 * @return the executor
+	 */
+	public static OrderedExecutor virtual(int lanes, int maxPending) {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return new OrderedExecutor((ExecutorService) factory.invoke(null), lanes, maxPending);
+		} catch (ReflectiveOperationException e) {
+			LKLogger.getInstance().warn("Virtual threads are not supported by this runtime, using " + lanes + " platform threads", LogType.STARTUP);
+			return bounded(lanes, maxPending);
+		}
+	}
+	
+	/**
+	 * Submits a task. It runs after all tasks submitted before with the same key
+	 * 
+	 * @param key the key, e.g. the redis key of the data object
+	 * @param task the task
+	 * @return the future of the result, completed exceptionally if the task threw or was rejected
+	 */
+	public <T> CompletableFuture<T> submit(Object key, Supplier<T> task) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		
+		if(pending.incrementAndGet() > maxPending) {
+			pending.decrementAndGet();
+			future.completeExceptionally(new RejectedExecutionException("More than " + maxPending + " data operations are pending"));
+			return future;
+		}
+		
+		lanes[spread(key.hashCode()) % lanes.length].add(new Task<>(task, future));
+		return future;
+	}
+	
+	/**
+	 * Get the number of submitted tasks which did not finish yet
+	 * 
+	 * @return the number of tasks
+	 */
+	public int getPending() {
+		return pending.get();
+	}
+	
+	/**
+	 * Shuts the underlying executor down if it is an {@link ExecutorService}.
+	 * Already submitted tasks are still run
+	 */
+	public void shutdown() {
+		if(executor instanceof ExecutorService) ((ExecutorService) executor).shutdown();
+	}
+	
+	/**
+	 * Spreads the bits of a hash code, so keys with similar hashes end up in different lanes
+	 * 
+	 * @param hash the hash code
+	 * @return a positive number
+	 */
+	private static int spread(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		return hash & 0x7fffffff;
+	}
+	
+	/**
+	 * A submitted task and the future of its result
+	 */
+	private final class Task<T> {
+		
+		/** The task */
+		private final Supplier<T> task;
+		
+		/** The future of the result */
+		private final CompletableFuture<T> future;
+		
+		private Task(Supplier<T> task, CompletableFuture<T> future) {
+			this.task = task;
+			this.future = future;
+		}
+		
+		/**
+		 * Runs the task and completes the future
+		 */
+		private void run() {
+			try {
+				future.complete(task.get());
+			} catch (Throwable t) {
+				future.completeExceptionally(t);
+			} finally {
+				pending.decrementAndGet();
+			}
+		}
+		
+		/**
+		 * Completes the future exceptionally without running the task
+		 * 
+		 * @param e the reason
+		 */
+		private void reject(RejectedExecutionException e) {
+			pending.decrementAndGet();
+			future.completeExceptionally(e);
+		}
+		
+	}
+	
+	/**
+	 * A queue of tasks which run one after another. The lane is scheduled on the
+	 * executor only while it has tasks
+	 */
+	private final class Lane implements Runnable {
+		
+		/** The tasks of this lane */
+		private final Queue<Task<?>> tasks = new ConcurrentLinkedQueue<>();
+		
+		/** True while the lane is scheduled or running */
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		
+		/**
+		 * Adds a task and schedules the lane if it is idle
+		 * 
+		 * @param task the task
+		 */
+		private void add(Task<?> task) {
+			tasks.add(task);
+			schedule();
+		}
+		
+		/**
+		 * Schedules the lane on the executor if it is not already scheduled
+		 */
+		private void schedule() {
+			if(!scheduled.compareAndSet(false, true)) return;
+			
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				scheduled.set(false);
+				
+				//Fail all tasks of this lane, nothing would run them anymore
+				Task<?> task;
+				while((task = tasks.poll()) != null) {
+					task.reject(e);
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			for(int i = 0; i < LANE_BATCH_SIZE; i++) {
+				Task<?> task = tasks.poll();
+				if(task == null) break;
+				task.run();
+			}
+			
+			scheduled.set(false);
+			if(!tasks.isEmpty()) schedule();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,55 @@
+package com.lostkingdoms.db.backend;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import com.lostkingdoms.db.backend.fault.FaultType;
+import com.lostkingdoms.db.exceptions.BackendUnavailableException;
+import com.lostkingdoms.db.exceptions.InjectedFaultException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+
+import redis.clients.jedis.exceptions.JedisClusterMaxAttemptsException;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisExhaustedPoolException;
+
+/**
+ * Tells failures of an unavailable backend apart from errors of the call itself.
+ * Only the first mean that the call may succeed later, so only they open circuit breakers 
+ * and are buffered. Errors like WRONGTYPE replies or failed conversions are not
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class BackendFailures {
+
+	private BackendFailures() {}
+	
+	/**
+	 * Check if an exception or one of its causes is a connection or timeout failure
+	 * 
+	 * @param failure the exception
+	 * @return true if the backend was unavailable
+	 */
+	public static boolean isUnavailable(Throwable failure) {
+		for(Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if(cause instanceof BackendUnavailableException
+					|| cause instanceof JedisConnectionException
+					|| cause instanceof JedisClusterMaxAttemptsException
+					|| cause instanceof JedisExhaustedPoolException
+					|| cause instanceof MongoSocketException
+					|| cause instanceof MongoTimeoutException
+					|| cause instanceof IOException
+					|| cause instanceof TimeoutException) return true;
+			
+			if(cause instanceof InjectedFaultException) {
+				FaultType type = ((InjectedFaultException) cause).getType();
+				return type == FaultType.TIMEOUT || type == FaultType.CONNECTION_RESET;
+			}
+			
+			if(cause.getCause() == cause) return false;
+		}
+		return false;
+	}
+	
+}
@@ -0,0 +1,16 @@
+package com.lostkingdoms.db.backend;
+
+/**
+ * Defines the backends which are used by the DataOrganizationManager.
+ * REDIS_MONGODB: redis global cache and sync messages, MongoDB database
+ * REDIS_CLUSTER_MONGODB: redis cluster global cache and sync messages with hashtag keys, MongoDB database
+ * IN_MEMORY: in-process stand-ins for redis and MongoDB (tests, benchmarks and simulations)
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public enum BackendType {
+
+	REDIS_MONGODB, REDIS_CLUSTER_MONGODB, IN_MEMORY;
+	
+}
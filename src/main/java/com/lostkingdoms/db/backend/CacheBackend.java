@@ -0,0 +1,34 @@
+package com.lostkingdoms.db.backend;
+
+/**
+ * The global cache tier (redis by default). Hands out {@link CacheConnection}s 
+ * which have to be closed after use.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public interface CacheBackend {
+
+	/**
+	 * Get a connection to the cache. Has to be closed after use
+	 * 
+	 * @return the {@link CacheConnection}
+	 */
+	CacheConnection getConnection();
+	
+	/**
+	 * Get a connection whose read commands may be served by a read replica.
+	 * Writes still go to the primary. Has to be closed after use
+	 * 
+	 * @return the {@link CacheConnection}
+	 */
+	default CacheConnection getReadConnection() {
+		return getConnection();
+	}
+	
+	/**
+	 * Closes the backend and all its resources
+	 */
+	void close();
+	
+}
@@ -0,0 +1,295 @@
+package com.lostkingdoms.db.backend;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A connection to the global cache tier. The methods follow the redis commands 
+ * with the same name.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public interface CacheConnection extends AutoCloseable {
+
+	/**
+	 * Get the value of a key
+	 * 
+	 * @param key the key
+	 * @return the value or null if the key does not exist
+	 */
+	String get(String key);
+	
+	/**
+	 * Get the values of several keys in one round trip
+	 * 
+	 * @param keys the keys
+	 * @return the values in the order of the keys. null for keys which do not exist or hold no string
+	 */
+	List<String> mget(String... keys);
+	
+	/**
+	 * Set the value of a key
+	 * 
+	 * @param key the key
+	 * @param value the value
+	 */
+	void set(String key, String value);
+	
+	/**
+	 * Set the values of several keys atomically in one round trip
+	 * 
+	 * @param keysAndValues alternating keys and values
+	 */
+	void mset(String... keysAndValues);
+	
+	/**
+	 * Set the value of a key if it does not exist
+	 * 
+	 * @param key the key
+	 * @param value the value
+	 * @return 1 if the key was set, 0 otherwise
+	 */
+	long setnx(String key, String value);
+	
+	/**
+	 * Delete keys
+	 * 
+	 * @param keys the keys
+	 * @return the number of deleted keys
+	 */
+	long del(String... keys);
+	
+	/**
+	 * Check if a key exists
+	 * 
+	 * @param key the key
+	 * @return true if the key exists
+	 */
+	boolean exists(String key);
+	
+	/**
+	 * Increment the integer value of a key
+	 * 
+	 * @param key the key
+	 * @param delta the increment
+	 * @return the new value
+	 */
+	long incrBy(String key, long delta);
+	
+	/**
+	 * Increment the float value of a key
+	 * 
+	 * @param key the key
+	 * @param delta the increment
+	 * @return the new value
+	 */
+	double incrByFloat(String key, double delta);
+	
+	/**
+	 * Increment the integer value of a key which is seeded from another tier.
+	 * A missing key is set to the seed and incremented atomically
+	 * 
+	 * @param key the key
+	 * @param delta the increment
+	 * @param seed the value of a missing key or null if a missing key should not be incremented
+	 * @return the new value or null if the key is missing and there is no seed
+	 */
+	Long incrBySeeded(String key, long delta, String seed);
+	
+	/**
+	 * Increment the float value of a key which is seeded from another tier
+	 * (see {@link #incrBySeeded(String, long, String)})
+	 * 
+	 * @param key the key
+	 * @param delta the increment
+	 * @param seed the value of a missing key or null if a missing key should not be incremented
+	 * @return the new value or null if the key is missing and there is no seed
+	 */
+	Double incrByFloatSeeded(String key, double delta, String seed);
+	
+	/**
+	 * Increment the integer value of a hash field
+	 * 
+	 * @param key the key of the hash
+	 * @param field the field
+	 * @param delta the increment
+	 * @return the new value
+	 */
+	long hincrBy(String key, String field, long delta);
+	
+	/**
+	 * Increment the integer value of a hash field. If the seed field of the hash is missing,
+	 * it is set to the seed in the same atomic step
+	 * 
+	 * @param key the key of the hash
+	 * @param field the field
+	 * @param delta the increment
+	 * @param seedField the field which holds the value seeded from another tier
+	 * @param seed the value of a missing seed field or null if nothing should be incremented without it
+	 * @return the new value of the field or null if the seed field is missing and there is no seed
+	 */
+	Long hincrBySeeded(String key, String field, long delta, String seedField, String seed);
+	
+	/**
+	 * Set a hash field if it does not exist
+	 * 
+	 * @param key the key of the hash
+	 * @param field the field
+	 * @param value the value
+	 * @return 1 if the field was set, 0 otherwise
+	 */
+	long hsetnx(String key, String field, String value);
+	
+	/**
+	 * Get all values of a hash
+	 * 
+	 * @param key the key of the hash
+	 * @return the values
+	 */
+	List<String> hvals(String key);
+	
+	/**
+	 * Atomically replaces all fields of an integer hash by a single field holding their sum
+	 * 
+	 * @param key the key of the hash
+	 * @param field the field which holds the sum afterwards
+	 * @return the sum
+	 */
+	long hmerge(String key, String field);
+	
+	/**
+	 * Add members to a set
+	 * 
+	 * @param key the key of the set
+	 * @param members the members
+	 * @return the number of added members
+	 */
+	long sadd(String key, String... members);
+	
+	/**
+	 * Remove members from a set
+	 * 
+	 * @param key the key of the set
+	 * @param members the members
+	 * @return the number of removed members
+	 */
+	long srem(String key, String... members);
+	
+	/**
+	 * Get all members of a set
+	 * 
+	 * @param key the key of the set
+	 * @return the members
+	 */
+	Set<String> smembers(String key);
+	
+	/**
+	 * Check if a set contains a member
+	 * 
+	 * @param key the key of the set
+	 * @param member the member
+	 * @return true if the set contains the member
+	 */
+	boolean sismember(String key, String member);
+	
+	/**
+	 * Get the size of a set
+	 * 
+	 * @param key the key of the set
+	 * @return the size
+	 */
+	long scard(String key);
+	
+	/**
+	 * Add a member to a sorted set or update its score
+	 * 
+	 * @param key the key of the sorted set
+	 * @param score the score
+	 * @param member the member
+	 * @return 1 if the member was added, 0 if it was updated
+	 */
+	long zadd(String key, double score, String member);
+	
+	/**
+	 * Add members to a sorted set or update their scores
+	 * 
+	 * @param key the key of the sorted set
+	 * @param scores the members mapped to their scores
+	 * @return the number of added members
+	 */
+	long zadd(String key, Map<String, Double> scores);
+	
+	/**
+	 * Increment the score of a member of a sorted set
+	 * 
+	 * @param key the key of the sorted set
+	 * @param delta the increment
+	 * @param member the member
+	 * @return the new score
+	 */
+	double zincrby(String key, double delta, String member);
+	
+	/**
+	 * Remove members from a sorted set
+	 * 
+	 * @param key the key of the sorted set
+	 * @param members the members
+	 * @return the number of removed members
+	 */
+	long zrem(String key, String... members);
+	
+	/**
+	 * Get the score of a member of a sorted set
+	 * 
+	 * @param key the key of the sorted set
+	 * @param member the member
+	 * @return the score or null if the member does not exist
+	 */
+	Double zscore(String key, String member);
+	
+	/**
+	 * Get the rank of a member of a sorted set (highest score first)
+	 * 
+	 * @param key the key of the sorted set
+	 * @param member the member
+	 * @return the zero based rank or null if the member does not exist
+	 */
+	Long zrevrank(String key, String member);
+	
+	/**
+	 * Get the size of a sorted set
+	 * 
+	 * @param key the key of the sorted set
+	 * @return the size
+	 */
+	long zcard(String key);
+	
+	/**
+	 * Get a range of members of a sorted set by rank (highest score first)
+	 * 
+	 * @param key the key of the sorted set
+	 * @param start the first rank
+	 * @param end the last rank (inclusive, may be negative)
+	 * @return the members mapped to their scores in rank order
+	 */
+	Map<String, Double> zrevrangeWithScores(String key, long start, long end);
+	
+	/**
+	 * Get the members of a sorted set within a score range (highest score first)
+	 * 
+	 * @param key the key of the sorted set
+	 * @param max the maximum score
+	 * @param min the minimum score
+	 * @return the members mapped to their scores in rank order
+	 */
+	Map<String, Double> zrevrangeByScoreWithScores(String key, double max, double min);
+	
+	/**
+	 * Returns the connection
+	 */
+	@Override
+	void close();
+	
+}
@@ -0,0 +1,160 @@
+package com.lostkingdoms.db.backend;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The persistent document tier (MongoDB by default). Documents are identified by their 
+ * collection and the identifier of the entity. Field names may be dotted paths into 
+ * embedded documents. Writes which may create a document set the identifier fields.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public interface DocumentBackend {
+
+	/**
+	 * Get a document
+	 * 
+	 * @param collection the collection
+	 * @param identifier the identifier
+	 * @return the document or null if it does not exist
+	 */
+	Map<String, Object> find(String collection, String identifier);
+	
+	/**
+	 * Check if a document exists
+	 * 
+	 * @param collection the collection
+	 * @param identifier the identifier
+	 * @return true if the document exists
+	 */
+	boolean exists(String collection, String identifier);
+	
+	/**
+	 * Get the identifiers of all documents in a collection
+	 * 
+	 * @param collection the collection
+	 * @return the identifiers
+	 */
+	List<String> findIdentifiers(String collection);
+	
+	/**
+	 * Get the values of a field of all documents in a collection which have this field
+	 * 
+	 * @param collection the collection
+	 * @param field the field
+	 * @return the values mapped by the documents identifiers
+	 */
+	Map<String, Object> findField(String collection, String field);
+	
+	/**
+	 * Set fields of a document. Creates the document if it does not exist
+	 * 
+	 * @param collection the collection
+	 * @param identifier the identifier
+	 * @param fields the values mapped by their fields
+	 */
+	void set(String collection, String identifier, Map<String, Object> fields);
+	
+	/**
+	 * Set a field of a document. Creates the document if it does not exist
+	 * 
+	 * @param collection the collection
+	 * @param identifier the identifier
+	 * @param field the field
+	 * @param value the value
+	 */
+	default void set(String collection, String identifier, String field, Object value) {
+		set(collection, identifier, Collections.singletonMap(field, value));
+	}
+	
+	/**
+	 * Set a field of a document if it still holds the expected value
+	 * 
+	 * @param collection the collection
+	 * @param identifier the identifier
+	 * @param field the field
+	 * @param expected the expected value
+	 * @param value the new value
+	 * @return true if the field was set
+	 */
+	boolean replace(String collection, String identifier, String field, Object expected, Object value);
+	
+	/**
+	 * Remove a field of a document
+	 * 
+	 * @param collection the collection
+	 * @param identifier the identifier
+	 * @param field the field
+	 */
+	void unset(String collection, String identifier, String field);
+	
+	/**
+	 * Increment a number field of a document. Creates the document if it does not exist
+	 * 
+	 * @param collection the collection
+	 * @param identifier the identifier
+	 * @param field the field
+	 * @param delta the increment
+	 */
+	void increment(String collection, String identifier, String field, Number delta);
+	
+	/**
+	 * Increment a number field of a document and return the new value. 
+	 * Creates the document if it does not exist
+	 * 
+	 * @param collection the collection
+	 * @param identifier the identifier
+	 * @param field the field
+	 * @param delta the increment
+	 * @return the new value
+	 */
+	Number incrementAndGet(String collection, String identifier, String field, Number delta);
+	
+	/**
+	 * Add a value to an array field if it is not contained yet. Creates the document if it does not exist
+	 * 
+	 * @param collection the collection
+	 * @param identifier the identifier
+	 * @param field the field
+	 * @param value the value
+	 */
+	void addToSet(String collection, String identifier, String field, Object value);
+	
+	/**
+	 * Remove a value from an array field
+	 * 
+	 * @param collection the collection
+	 * @param identifier the identifier
+	 * @param field the field
+	 * @param value the value
+	 */
+	void pull(String collection, String identifier, String field, Object value);
+	
+	/**
+	 * Check if an array field contains a value
+	 * 
+	 * @param collection the collection
+	 * @param identifier the identifier
+	 * @param field the field
+	 * @param value the value
+	 * @return true if the array contains the value
+	 */
+	boolean contains(String collection, String identifier, String field, Object value);
+	
+	/**
+	 * Remove a document
+	 * 
+	 * @param collection the collection
+	 * @param identifier the identifier
+	 */
+	void remove(String collection, String identifier);
+	
+	/**
+	 * Closes the backend and all its resources
+	 */
+	void close();
+	
+}
@@ -0,0 +1,19 @@
+package com.lostkingdoms.db.backend;
+
+/**
+ * A listener for messages of a {@link SyncTransport}
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public interface SyncListener {
+
+	/**
+	 * Is called for every message published on a subscribed channel
+	 * 
+	 * @param channel the channel
+	 * @param message the message
+	 */
+	void onMessage(String channel, String message);
+	
+}
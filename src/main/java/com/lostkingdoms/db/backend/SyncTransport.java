@@ -0,0 +1,32 @@
+package com.lostkingdoms.db.backend;
+
+/**
+ * The publish/subscribe transport of the sync messages (redis pub/sub by default)
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public interface SyncTransport {
+
+	/**
+	 * Publish a message to all subscribers of a channel
+	 * 
+	 * @param channel the channel
+	 * @param message the message
+	 */
+	void publish(String channel, String message);
+	
+	/**
+	 * Subscribe to a channel. Does not block
+	 * 
+	 * @param channel the channel
+	 * @param listener the listener which receives the messages
+	 */
+	void subscribe(String channel, SyncListener listener);
+	
+	/**
+	 * Closes the transport and all its subscriptions
+	 */
+	void close();
+	
+}
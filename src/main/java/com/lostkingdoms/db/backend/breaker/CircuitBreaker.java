@@ -0,0 +1,359 @@
+package com.lostkingdoms.db.backend.breaker;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.lostkingdoms.db.backend.BackendFailures;
+import com.lostkingdoms.db.backend.CacheBackend;
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.backend.DocumentBackend;
+import com.lostkingdoms.db.backend.SyncListener;
+import com.lostkingdoms.db.backend.SyncTransport;
+import com.lostkingdoms.db.exceptions.BackendUnavailableException;
+import com.lostkingdoms.db.logger.LKLogger;
+import com.lostkingdoms.db.logger.LogType;
+
+/**
+ * Protects the callers of a backend from waiting on its timeouts while it is down.
+ * After a number of consecutive connection or timeout failures the breaker opens and all calls fail fast with
+ * a {@link BackendUnavailableException}. After the open duration one probe call is let through.
+ * If it succeeds the breaker closes, otherwise it opens again.
+ * The wrap methods decorate the redis, MongoDB and sync backends like the FaultInjector does.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class CircuitBreaker {
+
+	/** The name of the protected backend */
+	private final String name;
+	
+	/** The number of consecutive failures which open the breaker */
+	private final int failureThreshold;
+	
+	/** The time in milliseconds the breaker stays open before a probe */
+	private final long openDuration;
+	
+	/** The current state */
+	private volatile CircuitState state = CircuitState.CLOSED;
+	
+	/** The number of consecutive failures */
+	private final AtomicInteger failures = new AtomicInteger();
+	
+	/** The time the breaker opened */
+	private volatile long openedAt;
+	
+	/** True while a probe call is running */
+	private final AtomicBoolean probing = new AtomicBoolean();
+	
+	/** Is called on every state change */
+	private volatile Consumer<CircuitState> listener;
+	
+	/** Calls which failed fast */
+	private final LongAdder rejected = new LongAdder();
+	
+	/** Number of times the breaker opened */
+	private final LongAdder trips = new LongAdder();
+	
+	
+	
+	/**
+	 * Constructor of the {@link CircuitBreaker}
+	 * 
+	 * @param name the name of the protected backend
+	 * @param failureThreshold the number of consecutive failures which open the breaker
+	 * @param openDuration the time in milliseconds the breaker stays open before a probe
+	 */
+	public CircuitBreaker(String name, int failureThreshold, long openDuration) {
+		this.name = name;
+		this.failureThreshold = Math.max(1, failureThreshold);
+		this.openDuration = openDuration;
+	}
+	
+	/**
+	 * Decorates a cache backend. Every command goes through the breaker. Getting a connection 
+	 * fails fast while the breaker is open, but only its failures are recorded
+	 * 
+	 * @param backend the backend
+	 * @return the decorated backend
+	 */
+	public CacheBackend wrap(CacheBackend backend) {
+		CircuitBreaker breaker = this;
+		return new CacheBackend() {
+			@Override
+			public CacheConnection getConnection() {
+				return breaker.proxy(CacheConnection.class, breaker.connect("getConnection", backend::getConnection));
+			}
+
+			@Override
+			public CacheConnection getReadConnection() {
+				return breaker.proxy(CacheConnection.class, breaker.connect("getReadConnection", backend::getReadConnection));
+			}
+
+			@Override
+			public void close() {
+				backend.close();
+			}
+		};
+	}
+	
+	/**
+	 * Decorates a document backend. Every call except close goes through the breaker
+	 * 
+	 * @param backend the backend
+	 * @return the decorated backend
+	 */
+	public DocumentBackend wrap(DocumentBackend backend) {
+		return proxy(DocumentBackend.class, backend);
+	}
+	
+	/**
+	 * Decorates a sync transport. Publishes go through the breaker, subscriptions do not
+	 * 
+	 * @param transport the transport
+	 * @return the decorated transport
+	 */
+	public SyncTransport wrap(SyncTransport transport) {
+		CircuitBreaker breaker = this;
+		return new SyncTransport() {
+			@Override
+			public void publish(String channel, String message) {
+				breaker.call("publish", () -> {
+					transport.publish(channel, message);
+					return null;
+				});
+			}
+
+			@Override
+			public void subscribe(String channel, SyncListener listener) {
+				transport.subscribe(channel, listener);
+			}
+
+			@Override
+			public void close() {
+				transport.close();
+			}
+		};
+	}
+	
+	/**
+	 * Creates a proxy which sends every call except close through the breaker
+	 * 
+	 * @param type the interface
+	 * @param delegate the object which does the work
+	 * @return the proxy
+	 */
+	private <T> T proxy(Class<T> type, T delegate) {
+		InvocationHandler handler = (proxy, method, args) -> {
+			if(method.getDeclaringClass() == Object.class || method.getName().equals("close")) {
+				return invoke(method, delegate, args);
+			}
+			return call(method.getName(), () -> invoke(method, delegate, args));
+		};
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+	
+	/**
+	 * Invokes a method and unwraps the exceptions it throws
+	 * 
+	 * @param method the method
+	 * @param target the target
+	 * @param args the arguments
+	 * @return the result
+	 */
+	private static Object invoke(Method method, Object target, Object[] args) {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			if(e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Runs a backend call through the breaker
+	 * 
+	 * @param operation the name of the backend operation
+	 * @param call the call
+	 * @return the result of the call
+	 * @throws BackendUnavailableException if the breaker is open
+	 */
+	public <R> R call(String operation, BackendCall<R> call) {
+		boolean probe = acquire(operation);
+		try {
+			R result = call.call();
+			success(probe);
+			return result;
+		} catch (RuntimeException | Error e) {
+			failure(e, probe);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Gets a connection unless the breaker is open. Only failures are recorded, because a 
+	 * pooled connection does not prove that the backend is available. Does not take the probe 
+	 * of a half open breaker, so the first command on the connection can be the probe
+	 * 
+	 * @param operation the name of the backend operation
+	 * @param call gets the connection
+	 * @return the connection
+	 * @throws BackendUnavailableException if the breaker is open
+	 */
+	private <R> R connect(String operation, BackendCall<R> call) {
+		if(state == CircuitState.OPEN && System.currentTimeMillis() - openedAt < openDuration) {
+			rejected.increment();
+			throw new BackendUnavailableException(name, operation);
+		}
+		
+		try {
+			return call.call();
+		} catch (RuntimeException | Error e) {
+			failure(e, false);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Lets a call through or fails it fast
+	 * 
+	 * @param operation the name of the backend operation
+	 * @return true if the call is the probe of a half open breaker
+	 * @throws BackendUnavailableException if the breaker is open
+	 */
+	private boolean acquire(String operation) {
+		CircuitState current = state;
+		if(current == CircuitState.CLOSED) return false;
+		
+		if(current == CircuitState.OPEN && System.currentTimeMillis() - openedAt >= openDuration 
+				&& probing.compareAndSet(false, true)) {
+			transition(CircuitState.HALF_OPEN);
+			return true;
+		}
+		
+		rejected.increment();
+		throw new BackendUnavailableException(name, operation);
+	}
+	
+	/**
+	 * Records a successful call. Closes the breaker after a successful probe
+	 * 
+	 * @param probe true if the call was the probe
+	 */
+	private void success(boolean probe) {
+		if(failures.get() != 0) failures.set(0);
+		if(probe && state == CircuitState.HALF_OPEN) {
+			probing.set(false);
+			transition(CircuitState.CLOSED);
+		}
+	}
+	
+	/**
+	 * Records a failed call. Opens the breaker after a failed probe or too many failures.
+	 * Errors which are no connection or timeout failures prove the backend is available
+	 * 
+	 * @param cause the cause
+	 * @param probe true if the call was the probe
+	 */
+	private void failure(Throwable cause, boolean probe) {
+		if(!BackendFailures.isUnavailable(cause)) {
+			success(probe);
+			return;
+		}
+		
+		if(probe) {
+			openedAt = System.currentTimeMillis();
+			probing.set(false);
+			transition(CircuitState.OPEN);
+			return;
+		}
+		
+		if(failures.incrementAndGet() >= failureThreshold && state == CircuitState.CLOSED) {
+			synchronized (this) {
+				if(state != CircuitState.CLOSED) return;
+				openedAt = System.currentTimeMillis();
+				trips.increment();
+				transition(CircuitState.OPEN);
+			}
+			LKLogger.getInstance().warn(name + " is unavailable, failing fast for " + openDuration + "ms: ", cause, LogType.SYNC);
+		}
+	}
+	
+	/**
+	 * Changes the state and notifies the listener
+	 * 
+	 * @param newState the new state
+	 */
+	private void transition(CircuitState newState) {
+		CircuitState oldState = state;
+		state = newState;
+		if(oldState == newState) return;
+		
+		if(newState == CircuitState.CLOSED) LKLogger.getInstance().info(name + " is available again", LogType.SYNC);
+		Consumer<CircuitState> current = listener;
+		if(current != null) current.accept(newState);
+	}
+	
+	/**
+	 * Set the listener which is called on every state change.
+	 * It is called on the thread of the call which caused the change
+	 * 
+	 * @param listener the listener
+	 */
+	public void setListener(Consumer<CircuitState> listener) {
+		this.listener = listener;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public CircuitState getState() {
+		return state;
+	}
+	
+	/**
+	 * Get the number of calls which failed fast
+	 * 
+	 * @return the number of rejected calls
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+	
+	/**
+	 * Get the number of times the breaker opened
+	 * 
+	 * @return the number of trips
+	 */
+	public long getTrips() {
+		return trips.sum();
+	}
+	
+	@Override
+	public String toString() {
+		return name + " state=" + state + " trips=" + getTrips() + " rejected=" + getRejected();
+	}
+	
+	/**
+	 * A call to a backend
+	 *
+	 * @param <R> the result
+	 */
+	@FunctionalInterface
+	public interface BackendCall<R> {
+		
+		R call();
+		
+	}
+	
+}
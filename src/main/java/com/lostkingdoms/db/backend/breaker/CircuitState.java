@@ -0,0 +1,16 @@
+package com.lostkingdoms.db.backend.breaker;
+
+/**
+ * The states of a {@link CircuitBreaker}.
+ * CLOSED: calls go to the backend
+ * OPEN: calls fail fast without reaching the backend
+ * HALF_OPEN: one probe call goes to the backend, all others fail fast
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public enum CircuitState {
+
+	CLOSED, OPEN, HALF_OPEN;
+	
+}
@@ -0,0 +1,46 @@
+package com.lostkingdoms.db.backend.fault;
+
+import com.lostkingdoms.db.backend.SyncListener;
+import com.lostkingdoms.db.backend.SyncTransport;
+
+/**
+ * A {@link SyncTransport} which injects the faults of a {@link FaultInjector} into publish
+ * and drops messages before they reach a subscriber, like a subscriber whose connection was
+ * interrupted would miss them
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+final class FaultInjectingSyncTransport implements SyncTransport {
+
+	/** The transport which does the work */
+	private final SyncTransport transport;
+	
+	/** The injector */
+	private final FaultInjector injector;
+	
+	FaultInjectingSyncTransport(SyncTransport transport, FaultInjector injector) {
+		this.transport = transport;
+		this.injector = injector;
+	}
+	
+	@Override
+	public void publish(String channel, String message) {
+		injector.inject("publish");
+		transport.publish(channel, message);
+	}
+
+	@Override
+	public void subscribe(String channel, SyncListener listener) {
+		transport.subscribe(channel, (messageChannel, message) -> {
+			if(injector.dropMessage()) return;
+			listener.onMessage(messageChannel, message);
+		});
+	}
+
+	@Override
+	public void close() {
+		transport.close();
+	}
+
+}
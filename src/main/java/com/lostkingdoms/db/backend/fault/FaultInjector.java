@@ -0,0 +1,250 @@
+package com.lostkingdoms.db.backend.fault;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.lostkingdoms.db.backend.CacheBackend;
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.backend.DocumentBackend;
+import com.lostkingdoms.db.backend.SyncTransport;
+import com.lostkingdoms.db.exceptions.InjectedFaultException;
+
+/**
+ * Injects latencies, timeouts, connection resets and dropped sync messages into a backend
+ * according to a {@link FaultProfile}. The wrap methods decorate the redis, MongoDB and sync
+ * backends, so degraded backends can be simulated in tests and benchmarks, e.g.
+ * DataOrganizationManager.createInstance(injector.wrap(cache), injector.wrap(documents), injector.wrap(sync))
+ * The profile can be changed at any time and applies to the next call.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class FaultInjector {
+
+	/** The current profile */
+	private volatile FaultProfile profile;
+	
+	/** Number of calls which went through this injector */
+	private final LongAdder calls = new LongAdder();
+	
+	/** Total added latency in nanoseconds */
+	private final LongAdder injectedLatency = new LongAdder();
+	
+	/** Number of latency spikes */
+	private final LongAdder spikes = new LongAdder();
+	
+	/** Number of injected faults mapped by their type */
+	private final Map<FaultType, LongAdder> faults = new EnumMap<>(FaultType.class);
+	
+	public FaultInjector(FaultProfile profile) {
+		this.profile = profile;
+		for(FaultType type : FaultType.values()) {
+			faults.put(type, new LongAdder());
+		}
+	}
+	
+	/**
+	 * Decorates a cache backend. The connections it hands out inject into every command
+	 * 
+	 * @param backend the backend
+	 * @return the decorated backend
+	 */
+	public CacheBackend wrap(CacheBackend backend) {
+		FaultInjector injector = this;
+		return new CacheBackend() {
+			@Override
+			public CacheConnection getConnection() {
+				return injector.proxy(CacheConnection.class, backend.getConnection());
+			}
+
+			@Override
+			public CacheConnection getReadConnection() {
+				return injector.proxy(CacheConnection.class, backend.getReadConnection());
+			}
+
+			@Override
+			public void close() {
+				backend.close();
+			}
+		};
+	}
+	
+	/**
+	 * Decorates a document backend. Injects into every call except close
+	 * 
+	 * @param backend the backend
+	 * @return the decorated backend
+	 */
+	public DocumentBackend wrap(DocumentBackend backend) {
+		return proxy(DocumentBackend.class, backend);
+	}
+	
+	/**
+	 * Decorates a sync transport. Injects into every publish and drops messages before
+	 * they reach a subscriber
+	 * 
+	 * @param transport the transport
+	 * @return the decorated transport
+	 */
+	public SyncTransport wrap(SyncTransport transport) {
+		return new FaultInjectingSyncTransport(transport, this);
+	}
+	
+	/**
+	 * Creates a proxy which calls {@link #inject(String)} before every call except close
+	 * 
+	 * @param type the interface
+	 * @param delegate the object which does the work
+	 * @return the proxy
+	 */
+	private <T> T proxy(Class<T> type, T delegate) {
+		InvocationHandler handler = (proxy, method, args) -> {
+			if(method.getDeclaringClass() != Object.class && !method.getName().equals("close")) {
+				inject(method.getName());
+			}
+			
+			try {
+				return method.invoke(delegate, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		};
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+	
+	/**
+	 * Adds the latency of the current profile to the calling thread and fails the call
+	 * if a timeout or connection reset is drawn
+	 * 
+	 * @param operation the name of the backend operation
+	 * @throws InjectedFaultException if a fault is injected
+	 */
+	public void inject(String operation) {
+		FaultProfile current = profile;
+		calls.increment();
+		if(current == FaultProfile.NONE) return;
+		
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long latency = current.getLatency().sample(random);
+		if(current.getSpikeProbability() > 0 && random.nextDouble() < current.getSpikeProbability()) {
+			latency += current.getSpikeMillis() * 1_000_000;
+			spikes.increment();
+		}
+		
+		if(current.getTimeoutProbability() > 0 && random.nextDouble() < current.getTimeoutProbability()) {
+			pause(current.getTimeoutMillis() * 1_000_000);
+			faults.get(FaultType.TIMEOUT).increment();
+			throw new InjectedFaultException(FaultType.TIMEOUT, operation);
+		}
+		
+		if(current.getResetProbability() > 0 && random.nextDouble() < current.getResetProbability()) {
+			faults.get(FaultType.CONNECTION_RESET).increment();
+			throw new InjectedFaultException(FaultType.CONNECTION_RESET, operation);
+		}
+		
+		pause(latency);
+	}
+	
+	/**
+	 * Decides if a sync message should be dropped
+	 * 
+	 * @return true if the message should not be delivered
+	 */
+	boolean dropMessage() {
+		double probability = profile.getDropProbability();
+		if(probability > 0 && ThreadLocalRandom.current().nextDouble() < probability) {
+			faults.get(FaultType.DROPPED_MESSAGE).increment();
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Blocks the calling thread like a slow backend would
+	 * 
+	 * @param nanos the time to block in nanoseconds
+	 */
+	private void pause(long nanos) {
+		if(nanos <= 0) return;
+		injectedLatency.add(nanos);
+		
+		long deadline = System.nanoTime() + nanos;
+		long remaining = nanos;
+		while(remaining > 0) {
+			LockSupport.parkNanos(remaining);
+			remaining = deadline - System.nanoTime();
+		}
+	}
+	
+	public FaultProfile getProfile() {
+		return profile;
+	}
+	
+	public void setProfile(FaultProfile profile) {
+		this.profile = profile;
+	}
+	
+	/**
+	 * Get the number of calls which went through this injector
+	 * 
+	 * @return the number of calls
+	 */
+	public long getCalls() {
+		return calls.sum();
+	}
+	
+	/**
+	 * Get the total latency this injector added
+	 * 
+	 * @return the latency in nanoseconds
+	 */
+	public long getInjectedLatency() {
+		return injectedLatency.sum();
+	}
+	
+	/**
+	 * Get the number of latency spikes
+	 * 
+	 * @return the number of spikes
+	 */
+	public long getSpikes() {
+		return spikes.sum();
+	}
+	
+	/**
+	 * Get the number of injected faults of a type
+	 * 
+	 * @param type the type
+	 * @return the number of faults
+	 */
+	public long getFaults(FaultType type) {
+		return faults.get(type).sum();
+	}
+	
+	/**
+	 * Resets all counters
+	 */
+	public void reset() {
+		calls.reset();
+		injectedLatency.reset();
+		spikes.reset();
+		for(LongAdder adder : faults.values()) {
+			adder.reset();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return getCalls() + " calls, " + (getInjectedLatency() / 1_000_000) + " ms injected latency, " + getSpikes() + " spikes, "
+				+ getFaults(FaultType.TIMEOUT) + " timeouts, " + getFaults(FaultType.CONNECTION_RESET) + " resets, "
+				+ getFaults(FaultType.DROPPED_MESSAGE) + " dropped messages";
+	}
+	
+}
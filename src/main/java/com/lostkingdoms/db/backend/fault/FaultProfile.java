@@ -0,0 +1,193 @@
+package com.lostkingdoms.db.backend.fault;
+
+/**
+ * The latencies and faults a {@link FaultInjector} injects into a backend.
+ * Profiles are immutable, the with methods return a modified copy.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class FaultProfile {
+
+	/** A profile which does not change the behaviour of the backend */
+	public static final FaultProfile NONE = new FaultProfile(LatencyDistribution.none(), "none", 0, 0, 0, 0, 0, 0);
+	
+	/** The latency added to every call */
+	private final LatencyDistribution latency;
+	
+	/** The specification of the latency for toString */
+	private final String latencySpec;
+	
+	/** Probability of a latency spike per call */
+	private final double spikeProbability;
+	
+	/** The latency of a spike in milliseconds */
+	private final long spikeMillis;
+	
+	/** Probability of a timeout per call */
+	private final double timeoutProbability;
+	
+	/** The time in milliseconds a timed out call waits before it fails */
+	private final long timeoutMillis;
+	
+	/** Probability of a connection reset per call */
+	private final double resetProbability;
+	
+	/** Probability that a sync message is not delivered to a subscriber */
+	private final double dropProbability;
+	
+	private FaultProfile(LatencyDistribution latency, String latencySpec, double spikeProbability, long spikeMillis,
+			double timeoutProbability, long timeoutMillis, double resetProbability, double dropProbability) {
+		this.latency = latency;
+		this.latencySpec = latencySpec;
+		this.spikeProbability = spikeProbability;
+		this.spikeMillis = spikeMillis;
+		this.timeoutProbability = timeoutProbability;
+		this.timeoutMillis = timeoutMillis;
+		this.resetProbability = resetProbability;
+		this.dropProbability = dropProbability;
+	}
+	
+	/**
+	 * Parses a profile from comma separated entries, e.g.
+	 * latency=lognormal:200:0.8,spike=0.001:50,timeout=0.0001:500,reset=0.0001,drop=0.01
+	 * <ul>
+	 * <li>latency: the {@link LatencyDistribution} of every call (see {@link LatencyDistribution#parse(String)})</li>
+	 * <li>spike: probability:milliseconds of an additional latency spike</li>
+	 * <li>timeout: probability:milliseconds after which the call fails</li>
+	 * <li>reset: probability of a connection reset</li>
+	 * <li>drop: probability that a sync message is dropped</li>
+	 * </ul>
+	 * 
+	 * @param spec the specification or none
+	 * @return the profile
+	 * @throws IllegalArgumentException if the specification is malformed
+	 */
+	public static FaultProfile parse(String spec) {
+		FaultProfile profile = NONE;
+		if(spec == null || spec.isEmpty() || spec.equals("none")) return profile;
+		
+		for(String entry : spec.split(",")) {
+			int separator = entry.indexOf('=');
+			if(separator <= 0) throw new IllegalArgumentException("Fault entry is not key=value: " + entry);
+			
+			String key = entry.substring(0, separator);
+			String value = entry.substring(separator + 1);
+			String[] parts = value.split(":");
+			try {
+				switch(key) {
+				case "latency": profile = profile.withLatency(LatencyDistribution.parse(value), value); break;
+				case "spike": profile = profile.withSpikes(Double.parseDouble(parts[0]), Long.parseLong(parts[1])); break;
+				case "timeout": profile = profile.withTimeouts(Double.parseDouble(parts[0]), Long.parseLong(parts[1])); break;
+				case "reset": profile = profile.withResets(Double.parseDouble(value)); break;
+				case "drop": profile = profile.withDrops(Double.parseDouble(value)); break;
+				default: throw new IllegalArgumentException("Unknown fault: " + key);
+				}
+			} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+				throw new IllegalArgumentException("Malformed fault entry: " + entry, e);
+			}
+		}
+		
+		return profile;
+	}
+	
+	/**
+	 * Copy of this profile with another latency
+	 * 
+	 * @param latency the latency added to every call
+	 * @param description the description of the latency for toString
+	 * @return the new profile
+	 */
+	public FaultProfile withLatency(LatencyDistribution latency, String description) {
+		return new FaultProfile(latency, description, spikeProbability, spikeMillis, timeoutProbability, timeoutMillis, resetProbability, dropProbability);
+	}
+	
+	/**
+	 * Copy of this profile with latency spikes
+	 * 
+	 * @param probability the probability of a spike per call
+	 * @param millis the latency of a spike in milliseconds
+	 * @return the new profile
+	 */
+	public FaultProfile withSpikes(double probability, long millis) {
+		return new FaultProfile(latency, latencySpec, checkProbability(probability), millis, timeoutProbability, timeoutMillis, resetProbability, dropProbability);
+	}
+	
+	/**
+	 * Copy of this profile with timeouts
+	 * 
+	 * @param probability the probability of a timeout per call
+	 * @param millis the time a timed out call waits before it fails
+	 * @return the new profile
+	 */
+	public FaultProfile withTimeouts(double probability, long millis) {
+		return new FaultProfile(latency, latencySpec, spikeProbability, spikeMillis, checkProbability(probability), millis, resetProbability, dropProbability);
+	}
+	
+	/**
+	 * Copy of this profile with connection resets
+	 * 
+	 * @param probability the probability of a reset per call
+	 * @return the new profile
+	 */
+	public FaultProfile withResets(double probability) {
+		return new FaultProfile(latency, latencySpec, spikeProbability, spikeMillis, timeoutProbability, timeoutMillis, checkProbability(probability), dropProbability);
+	}
+	
+	/**
+	 * Copy of this profile with dropped sync messages
+	 * 
+	 * @param probability the probability that a message is not delivered to a subscriber
+	 * @return the new profile
+	 */
+	public FaultProfile withDrops(double probability) {
+		return new FaultProfile(latency, latencySpec, spikeProbability, spikeMillis, timeoutProbability, timeoutMillis, resetProbability, checkProbability(probability));
+	}
+	
+	/**
+	 * Checks that a value is a probability
+	 * 
+	 * @param probability the value
+	 * @return the value
+	 */
+	private static double checkProbability(double probability) {
+		if(probability < 0 || probability > 1) throw new IllegalArgumentException("Probability has to be between 0 and 1: " + probability);
+		return probability;
+	}
+
+	public LatencyDistribution getLatency() {
+		return latency;
+	}
+
+	public double getSpikeProbability() {
+		return spikeProbability;
+	}
+
+	public long getSpikeMillis() {
+		return spikeMillis;
+	}
+
+	public double getTimeoutProbability() {
+		return timeoutProbability;
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	public double getResetProbability() {
+		return resetProbability;
+	}
+
+	public double getDropProbability() {
+		return dropProbability;
+	}
+	
+	@Override
+	public String toString() {
+		if(this == NONE) return "none";
+		return "latency=" + latencySpec + ",spike=" + spikeProbability + ":" + spikeMillis + ",timeout=" + timeoutProbability + ":" + timeoutMillis
+				+ ",reset=" + resetProbability + ",drop=" + dropProbability;
+	}
+	
+}
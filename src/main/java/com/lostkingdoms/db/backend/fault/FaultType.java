@@ -0,0 +1,20 @@
+package com.lostkingdoms.db.backend.fault;
+
+/**
+ * The faults a {@link FaultInjector} can inject into a backend
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public enum FaultType {
+
+	/** The call waits for the timeout and then fails */
+	TIMEOUT,
+	
+	/** The call fails immediately as if the connection was reset */
+	CONNECTION_RESET,
+	
+	/** A sync message is not delivered to a subscriber */
+	DROPPED_MESSAGE;
+	
+}
@@ -0,0 +1,89 @@
+package com.lostkingdoms.db.backend.fault;
+
+import java.util.Random;
+
+/**
+ * A distribution of the latency a {@link FaultInjector} adds to every backend call
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public interface LatencyDistribution {
+
+	/**
+	 * Samples the latency of one call
+	 * 
+	 * @param random the random to use
+	 * @return the latency in nanoseconds
+	 */
+	long sample(Random random);
+	
+	/**
+	 * No additional latency
+	 * 
+	 * @return the distribution
+	 */
+	static LatencyDistribution none() {
+		return random -> 0;
+	}
+	
+	/**
+	 * The same latency for every call
+	 * 
+	 * @param micros the latency in microseconds
+	 * @return the distribution
+	 */
+	static LatencyDistribution fixed(long micros) {
+		long nanos = micros * 1000;
+		return random -> nanos;
+	}
+	
+	/**
+	 * A latency uniformly distributed between min and max
+	 * 
+	 * @param minMicros the minimal latency in microseconds
+	 * @param maxMicros the maximal latency in microseconds
+	 * @return the distribution
+	 */
+	static LatencyDistribution uniform(long minMicros, long maxMicros) {
+		if(maxMicros < minMicros) throw new IllegalArgumentException("max has to be greater than min");
+		long min = minMicros * 1000;
+		long range = (maxMicros - minMicros) * 1000;
+		return random -> min + (long) (random.nextDouble() * range);
+	}
+	
+	/**
+	 * A log-normal distributed latency, which has a long tail like real network latencies
+	 * 
+	 * @param medianMicros the median latency in microseconds
+	 * @param sigma the standard deviation of the logarithm. 0.5 is a moderate, 1.5 a very long tail
+	 * @return the distribution
+	 */
+	static LatencyDistribution lognormal(long medianMicros, double sigma) {
+		double mu = Math.log(medianMicros * 1000D);
+		return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+	}
+	
+	/**
+	 * Parses a distribution: none, fixed:micros, uniform:minMicros:maxMicros or lognormal:medianMicros:sigma
+	 * 
+	 * @param spec the specification
+	 * @return the distribution
+	 * @throws IllegalArgumentException if the specification is malformed
+	 */
+	static LatencyDistribution parse(String spec) {
+		String[] parts = spec.split(":");
+		try {
+			switch(parts[0]) {
+			case "none": return none();
+			case "fixed": return fixed(Long.parseLong(parts[1]));
+			case "uniform": return uniform(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+			case "lognormal": return lognormal(Long.parseLong(parts[1]), Double.parseDouble(parts[2]));
+			default: throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+			}
+		} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed latency distribution: " + spec, e);
+		}
+	}
+	
+}
@@ -0,0 +1,451 @@
+package com.lostkingdoms.db.backend.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import com.lostkingdoms.db.backend.CacheBackend;
+import com.lostkingdoms.db.backend.CacheConnection;
+
+/**
+ * An in-process stand-in for redis. Supports strings, hashes, sets and sorted sets 
+ * with the semantics of the corresponding redis commands.
+ * Can be shared by several simulated instances in one JVM.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class InMemoryCacheBackend implements CacheBackend {
+
+	/** All keys mapped to their values (String, hash, set or sorted set) */
+	private final Map<String, Object> store = new HashMap<>();
+	
+	/** The connection. All connections share the store, so there is only one */
+	private final CacheConnection connection = new InMemoryCacheConnection();
+	
+	@Override
+	public CacheConnection getConnection() {
+		return connection;
+	}
+
+	@Override
+	public void close() {
+		synchronized (store) {
+			store.clear();
+		}
+	}
+	
+	/**
+	 * Get the number of keys
+	 * 
+	 * @return the number of keys
+	 */
+	public int size() {
+		synchronized (store) {
+			return store.size();
+		}
+	}
+	
+	
+	
+	/**
+	 * The {@link CacheConnection} to the store. Every command is atomic
+	 */
+	private final class InMemoryCacheConnection implements CacheConnection {
+
+		@Override
+		public String get(String key) {
+			synchronized (store) {
+				return getValue(key, String.class);
+			}
+		}
+
+		@Override
+		public List<String> mget(String... keys) {
+			List<String> values = new ArrayList<>(keys.length);
+			synchronized (store) {
+				for(String key : keys) {
+					Object value = store.get(key);
+					values.add(value instanceof String ? (String) value : null);
+				}
+			}
+			return values;
+		}
+
+		@Override
+		public void set(String key, String value) {
+			synchronized (store) {
+				store.put(key, value);
+			}
+		}
+
+		@Override
+		public void mset(String... keysAndValues) {
+			if(keysAndValues.length % 2 != 0) throw new IllegalArgumentException("ERR wrong number of arguments for MSET");
+			synchronized (store) {
+				for(int i = 0; i < keysAndValues.length; i += 2) {
+					store.put(keysAndValues[i], keysAndValues[i + 1]);
+				}
+			}
+		}
+
+		@Override
+		public long setnx(String key, String value) {
+			synchronized (store) {
+				return store.putIfAbsent(key, value) == null ? 1 : 0;
+			}
+		}
+
+		@Override
+		public long del(String... keys) {
+			synchronized (store) {
+				long deleted = 0;
+				for(String key : keys) {
+					if(store.remove(key) != null) deleted++;
+				}
+				return deleted;
+			}
+		}
+
+		@Override
+		public boolean exists(String key) {
+			synchronized (store) {
+				return store.containsKey(key);
+			}
+		}
+
+		@Override
+		public long incrBy(String key, long delta) {
+			synchronized (store) {
+				String value = getValue(key, String.class);
+				long newValue = (value == null ? 0 : Long.parseLong(value)) + delta;
+				store.put(key, String.valueOf(newValue));
+				return newValue;
+			}
+		}
+
+		@Override
+		public double incrByFloat(String key, double delta) {
+			synchronized (store) {
+				String value = getValue(key, String.class);
+				double newValue = (value == null ? 0 : Double.parseDouble(value)) + delta;
+				store.put(key, String.valueOf(newValue));
+				return newValue;
+			}
+		}
+
+		@Override
+		public Long incrBySeeded(String key, long delta, String seed) {
+			synchronized (store) {
+				String value = getValue(key, String.class);
+				if(value == null && seed == null) return null;
+				long newValue = Long.parseLong(value == null ? seed : value) + delta;
+				store.put(key, String.valueOf(newValue));
+				return newValue;
+			}
+		}
+
+		@Override
+		public Double incrByFloatSeeded(String key, double delta, String seed) {
+			synchronized (store) {
+				String value = getValue(key, String.class);
+				if(value == null && seed == null) return null;
+				double newValue = Double.parseDouble(value == null ? seed : value) + delta;
+				store.put(key, String.valueOf(newValue));
+				return newValue;
+			}
+		}
+
+		@Override
+		public long hincrBy(String key, String field, long delta) {
+			synchronized (store) {
+				Map<String, String> hash = getOrCreate(key, HashMap.class, HashMap::new);
+				String value = hash.get(field);
+				long newValue = (value == null ? 0 : Long.parseLong(value)) + delta;
+				hash.put(field, String.valueOf(newValue));
+				return newValue;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Long hincrBySeeded(String key, String field, long delta, String seedField, String seed) {
+			synchronized (store) {
+				Map<String, String> hash = getValue(key, HashMap.class);
+				if(hash == null || !hash.containsKey(seedField)) {
+					if(seed == null) return null;
+					hsetnx(key, seedField, seed);
+				}
+				return hincrBy(key, field, delta);
+			}
+		}
+
+		@Override
+		public long hsetnx(String key, String field, String value) {
+			synchronized (store) {
+				Map<String, String> hash = getOrCreate(key, HashMap.class, HashMap::new);
+				return hash.putIfAbsent(field, value) == null ? 1 : 0;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public List<String> hvals(String key) {
+			synchronized (store) {
+				Map<String, String> hash = getValue(key, HashMap.class);
+				if(hash == null) return new ArrayList<>();
+				return new ArrayList<>(hash.values());
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public long hmerge(String key, String field) {
+			synchronized (store) {
+				Map<String, String> hash = getValue(key, HashMap.class);
+				long sum = 0;
+				if(hash != null) {
+					for(String value : hash.values()) {
+						sum += Long.parseLong(value);
+					}
+				}
+				
+				Map<String, String> merged = new HashMap<>();
+				merged.put(field, String.valueOf(sum));
+				store.put(key, merged);
+				return sum;
+			}
+		}
+
+		@Override
+		public long sadd(String key, String... members) {
+			synchronized (store) {
+				Set<String> set = getOrCreate(key, HashSet.class, HashSet::new);
+				long added = 0;
+				for(String member : members) {
+					if(set.add(member)) added++;
+				}
+				return added;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public long srem(String key, String... members) {
+			synchronized (store) {
+				Set<String> set = getValue(key, HashSet.class);
+				if(set == null) return 0;
+				
+				long removed = 0;
+				for(String member : members) {
+					if(set.remove(member)) removed++;
+				}
+				if(set.isEmpty()) store.remove(key);
+				return removed;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Set<String> smembers(String key) {
+			synchronized (store) {
+				Set<String> set = getValue(key, HashSet.class);
+				if(set == null) return new HashSet<>();
+				return new HashSet<>(set);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public boolean sismember(String key, String member) {
+			synchronized (store) {
+				Set<String> set = getValue(key, HashSet.class);
+				return set != null && set.contains(member);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public long scard(String key) {
+			synchronized (store) {
+				Set<String> set = getValue(key, HashSet.class);
+				return set == null ? 0 : set.size();
+			}
+		}
+
+		@Override
+		public long zadd(String key, double score, String member) {
+			synchronized (store) {
+				Map<String, Double> zset = getOrCreate(key, SortedSetValue.class, SortedSetValue::new);
+				return zset.put(member, score) == null ? 1 : 0;
+			}
+		}
+
+		@Override
+		public long zadd(String key, Map<String, Double> scores) {
+			synchronized (store) {
+				Map<String, Double> zset = getOrCreate(key, SortedSetValue.class, SortedSetValue::new);
+				long added = 0;
+				for(Entry<String, Double> entry : scores.entrySet()) {
+					if(zset.put(entry.getKey(), entry.getValue()) == null) added++;
+				}
+				return added;
+			}
+		}
+
+		@Override
+		public double zincrby(String key, double delta, String member) {
+			synchronized (store) {
+				Map<String, Double> zset = getOrCreate(key, SortedSetValue.class, SortedSetValue::new);
+				return zset.merge(member, delta, Double::sum);
+			}
+		}
+
+		@Override
+		public long zrem(String key, String... members) {
+			synchronized (store) {
+				SortedSetValue zset = getValue(key, SortedSetValue.class);
+				if(zset == null) return 0;
+				
+				long removed = 0;
+				for(String member : members) {
+					if(zset.remove(member) != null) removed++;
+				}
+				if(zset.isEmpty()) store.remove(key);
+				return removed;
+			}
+		}
+
+		@Override
+		public Double zscore(String key, String member) {
+			synchronized (store) {
+				SortedSetValue zset = getValue(key, SortedSetValue.class);
+				return zset == null ? null : zset.get(member);
+			}
+		}
+
+		@Override
+		public Long zrevrank(String key, String member) {
+			synchronized (store) {
+				SortedSetValue zset = getValue(key, SortedSetValue.class);
+				if(zset == null || !zset.containsKey(member)) return null;
+				
+				long rank = 0;
+				for(Entry<String, Double> entry : zset.ranked()) {
+					if(entry.getKey().equals(member)) return rank;
+					rank++;
+				}
+				return null;
+			}
+		}
+
+		@Override
+		public long zcard(String key) {
+			synchronized (store) {
+				SortedSetValue zset = getValue(key, SortedSetValue.class);
+				return zset == null ? 0 : zset.size();
+			}
+		}
+
+		@Override
+		public Map<String, Double> zrevrangeWithScores(String key, long start, long end) {
+			synchronized (store) {
+				Map<String, Double> range = new LinkedHashMap<>();
+				SortedSetValue zset = getValue(key, SortedSetValue.class);
+				if(zset == null) return range;
+				
+				List<Entry<String, Double>> ranked = zset.ranked();
+				int size = ranked.size();
+				long from = start < 0 ? Math.max(0, size + start) : start;
+				long to = end < 0 ? size + end : Math.min(end, size - 1);
+				for(long i = from; i <= to; i++) {
+					Entry<String, Double> entry = ranked.get((int) i);
+					range.put(entry.getKey(), entry.getValue());
+				}
+				return range;
+			}
+		}
+
+		@Override
+		public Map<String, Double> zrevrangeByScoreWithScores(String key, double max, double min) {
+			synchronized (store) {
+				Map<String, Double> range = new LinkedHashMap<>();
+				SortedSetValue zset = getValue(key, SortedSetValue.class);
+				if(zset == null) return range;
+				
+				for(Entry<String, Double> entry : zset.ranked()) {
+					if(entry.getValue() <= max && entry.getValue() >= min) range.put(entry.getKey(), entry.getValue());
+				}
+				return range;
+			}
+		}
+
+		@Override
+		public void close() {
+			//Connections share the store and hold no resources
+		}
+		
+		/**
+		 * Get the value of a key. Has to be called while holding the lock of the store
+		 * 
+		 * @param key the key
+		 * @param type the expected type of the value
+		 * @return the value or null if the key does not exist
+		 */
+		@SuppressWarnings("unchecked")
+		private <V> V getValue(String key, Class<V> type) {
+			Object value = store.get(key);
+			if(value == null) return null;
+			if(value.getClass() != type) throw new IllegalStateException("WRONGTYPE Operation against a key holding the wrong kind of value: " + key);
+			return (V) value;
+		}
+		
+		/**
+		 * Get the value of a key or creates an empty one. Has to be called while holding the lock of the store
+		 * 
+		 * @param key the key
+		 * @param type the type of the value
+		 * @param constructor creates an empty value
+		 * @return the value
+		 */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private <V> V getOrCreate(String key, Class<? super V> type, Supplier<? extends V> constructor) {
+			Object value = getValue(key, (Class) type);
+			if(value == null) {
+				value = constructor.get();
+				store.put(key, value);
+			}
+			return (V) value;
+		}
+		
+	}
+	
+	/**
+	 * The value of a sorted set key
+	 */
+	private static final class SortedSetValue extends HashMap<String, Double> {
+		
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Get the members in rank order (highest score first, then reverse lexicographical)
+		 * 
+		 * @return the ranked members
+		 */
+		List<Entry<String, Double>> ranked() {
+			List<Entry<String, Double>> ranked = new ArrayList<>(entrySet());
+			ranked.sort(Collections.reverseOrder(Entry.<String, Double>comparingByValue()
+					.thenComparing(Entry.comparingByKey())));
+			return ranked;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,279 @@
+package com.lostkingdoms.db.backend.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.lostkingdoms.db.backend.DocumentBackend;
+
+/**
+ * An in-process stand-in for MongoDB. Documents are nested maps, arrays are lists.
+ * Can be shared by several simulated instances in one JVM.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class InMemoryDocumentBackend implements DocumentBackend {
+
+	/** The String used in MongoDB for the identifier*/
+	private static final String MONGO_IDENTIFIER = "_id";
+	private static final String IDENTIFIER = "identifier";
+	
+	/** All documents mapped by their identifier mapped by their collection */
+	private final Map<String, Map<String, Map<String, Object>>> collections = new HashMap<>();
+	
+	@Override
+	public synchronized Map<String, Object> find(String collection, String identifier) {
+		Map<String, Object> document = getCollection(collection).get(identifier);
+		if(document == null) return null;
+		return copy(document);
+	}
+
+	@Override
+	public synchronized boolean exists(String collection, String identifier) {
+		return getCollection(collection).containsKey(identifier);
+	}
+
+	@Override
+	public synchronized List<String> findIdentifiers(String collection) {
+		return new ArrayList<>(getCollection(collection).keySet());
+	}
+
+	@Override
+	public synchronized Map<String, Object> findField(String collection, String field) {
+		Map<String, Object> values = new HashMap<>();
+		for(Entry<String, Map<String, Object>> document : getCollection(collection).entrySet()) {
+			Object value = getPath(document.getValue(), field);
+			if(value != null) values.put(document.getKey(), copyValue(value));
+		}
+		return values;
+	}
+
+	@Override
+	public synchronized void set(String collection, String identifier, Map<String, Object> fields) {
+		if(fields.isEmpty()) return;
+		
+		Map<String, Object> document = getOrCreate(collection, identifier);
+		for(Entry<String, Object> entry : fields.entrySet()) {
+			setPath(document, entry.getKey(), copyValue(entry.getValue()));
+		}
+	}
+
+	@Override
+	public synchronized boolean replace(String collection, String identifier, String field, Object expected, Object value) {
+		Map<String, Object> document = getCollection(collection).get(identifier);
+		if(document == null || !expected.equals(getPath(document, field))) return false;
+		
+		setPath(document, field, copyValue(value));
+		return true;
+	}
+
+	@Override
+	public synchronized void unset(String collection, String identifier, String field) {
+		Map<String, Object> document = getCollection(collection).get(identifier);
+		if(document == null) return;
+		
+		int index = field.lastIndexOf('.');
+		Object parent = index == -1 ? document : getPath(document, field.substring(0, index));
+		if(parent instanceof Map) ((Map<?, ?>) parent).remove(field.substring(index + 1));
+	}
+
+	@Override
+	public synchronized void increment(String collection, String identifier, String field, Number delta) {
+		incrementAndGet(collection, identifier, field, delta);
+	}
+
+	@Override
+	public synchronized Number incrementAndGet(String collection, String identifier, String field, Number delta) {
+		Map<String, Object> document = getOrCreate(collection, identifier);
+		
+		Object value = getPath(document, field);
+		if(value != null && !(value instanceof Number)) 
+			throw new IllegalStateException("Cannot apply $inc to a value of non-numeric type: " + field);
+		
+		Number newValue = add((Number) value, delta);
+		setPath(document, field, newValue);
+		return newValue;
+	}
+
+	@Override
+	public synchronized void addToSet(String collection, String identifier, String field, Object value) {
+		List<Object> array = getArray(getOrCreate(collection, identifier), field, true);
+		if(!array.contains(value)) array.add(copyValue(value));
+	}
+
+	@Override
+	public synchronized void pull(String collection, String identifier, String field, Object value) {
+		Map<String, Object> document = getCollection(collection).get(identifier);
+		if(document == null) return;
+		
+		List<Object> array = getArray(document, field, false);
+		if(array != null) array.removeIf(value::equals);
+	}
+
+	@Override
+	public synchronized boolean contains(String collection, String identifier, String field, Object value) {
+		Map<String, Object> document = getCollection(collection).get(identifier);
+		if(document == null) return false;
+		
+		Object fieldValue = getPath(document, field);
+		if(fieldValue instanceof List) return ((List<?>) fieldValue).contains(value);
+		return value.equals(fieldValue);
+	}
+
+	@Override
+	public synchronized void remove(String collection, String identifier) {
+		getCollection(collection).remove(identifier);
+	}
+
+	@Override
+	public synchronized void close() {
+		collections.clear();
+	}
+	
+	/**
+	 * Get the number of documents in a collection
+	 * 
+	 * @param collection the collection
+	 * @return the number of documents
+	 */
+	public synchronized int size(String collection) {
+		return getCollection(collection).size();
+	}
+	
+	/**
+	 * Get a collection. Creates it on first use
+	 * 
+	 * @param collection the name of the collection
+	 * @return the documents mapped by their identifier
+	 */
+	private Map<String, Map<String, Object>> getCollection(String collection) {
+		return collections.computeIfAbsent(collection, c -> new HashMap<>());
+	}
+	
+	/**
+	 * Get a document. Creates it with the identifier fields if it does not exist
+	 * 
+	 * @param collection the collection
+	 * @param identifier the identifier
+	 * @return the document
+	 */
+	private Map<String, Object> getOrCreate(String collection, String identifier) {
+		return getCollection(collection).computeIfAbsent(identifier, id -> {
+			Map<String, Object> document = new LinkedHashMap<>();
+			document.put(MONGO_IDENTIFIER, id);
+			document.put(IDENTIFIER, id);
+			return document;
+		});
+	}
+	
+	/**
+	 * Get an array field
+	 * 
+	 * @param document the document
+	 * @param field the field path
+	 * @param create true if a missing array should be created
+	 * @return the array or null
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<Object> getArray(Map<String, Object> document, String field, boolean create) {
+		Object value = getPath(document, field);
+		if(value == null && create) {
+			value = new ArrayList<>();
+			setPath(document, field, value);
+		}
+		if(value != null && !(value instanceof List)) 
+			throw new IllegalStateException("Cannot apply array operator to a non-array field: " + field);
+		return (List<Object>) value;
+	}
+	
+	/**
+	 * Get the value of a dotted field path
+	 * 
+	 * @param document the document
+	 * @param path the field path
+	 * @return the value or null
+	 */
+	private static Object getPath(Map<String, Object> document, String path) {
+		Object value = document;
+		for(String field : path.split("\\.")) {
+			if(!(value instanceof Map)) return null;
+			value = ((Map<?, ?>) value).get(field);
+		}
+		return value;
+	}
+	
+	/**
+	 * Set the value of a dotted field path. Creates missing embedded documents
+	 * 
+	 * @param document the document
+	 * @param path the field path
+	 * @param value the value
+	 */
+	@SuppressWarnings("unchecked")
+	private static void setPath(Map<String, Object> document, String path, Object value) {
+		String[] fields = path.split("\\.");
+		Map<String, Object> current = document;
+		for(int i = 0; i < fields.length - 1; i++) {
+			Object next = current.get(fields[i]);
+			if(!(next instanceof Map)) {
+				next = new LinkedHashMap<>();
+				current.put(fields[i], next);
+			}
+			current = (Map<String, Object>) next;
+		}
+		current.put(fields[fields.length - 1], value);
+	}
+	
+	/**
+	 * Adds two numbers like $inc (floating point if one of them is)
+	 * 
+	 * @param value the current value or null
+	 * @param delta the increment
+	 * @return the sum
+	 */
+	private static Number add(Number value, Number delta) {
+		if(value == null) return delta;
+		if(value instanceof Double || value instanceof Float || delta instanceof Double || delta instanceof Float) 
+			return value.doubleValue() + delta.doubleValue();
+		if(value instanceof Integer && delta instanceof Integer) 
+			return value.intValue() + delta.intValue();
+		return value.longValue() + delta.longValue();
+	}
+	
+	/**
+	 * Deep copies a document, so it can not be changed from outside
+	 * 
+	 * @param document the document
+	 * @return the copy
+	 */
+	private static Map<String, Object> copy(Map<?, ?> document) {
+		Map<String, Object> copy = new LinkedHashMap<>();
+		for(Entry<?, ?> entry : document.entrySet()) {
+			copy.put((String) entry.getKey(), copyValue(entry.getValue()));
+		}
+		return copy;
+	}
+	
+	/**
+	 * Deep copies a value
+	 * 
+	 * @param value the value
+	 * @return the copy
+	 */
+	private static Object copyValue(Object value) {
+		if(value instanceof Map) return copy((Map<?, ?>) value);
+		if(value instanceof List) {
+			List<Object> copy = new ArrayList<>();
+			for(Object element : (List<?>) value) {
+				copy.add(copyValue(element));
+			}
+			return copy;
+		}
+		return value;
+	}
+	
+}
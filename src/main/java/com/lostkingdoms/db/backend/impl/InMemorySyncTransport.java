@@ -0,0 +1,51 @@
+package com.lostkingdoms.db.backend.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.lostkingdoms.db.backend.SyncListener;
+import com.lostkingdoms.db.backend.SyncTransport;
+import com.lostkingdoms.db.logger.LKLogger;
+import com.lostkingdoms.db.logger.LogType;
+
+/**
+ * An in-process stand-in for redis pub/sub. Messages are delivered to all subscribers 
+ * synchronously on the publishing thread.
+ * Can be shared by several simulated instances in one JVM.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class InMemorySyncTransport implements SyncTransport {
+
+	/** All listeners mapped by their channel */
+	private final Map<String, List<SyncListener>> listeners = new ConcurrentHashMap<>();
+	
+	@Override
+	public void publish(String channel, String message) {
+		List<SyncListener> channelListeners = listeners.get(channel);
+		if(channelListeners == null) return;
+		
+		for(SyncListener listener : channelListeners) {
+			try {
+				listener.onMessage(channel, message);
+			} catch (Exception e) {
+				LKLogger.getInstance().warn("Sync message could not be delivered: ", e, LogType.SYNC);
+			}
+		}
+	}
+
+	@Override
+	public void subscribe(String channel, SyncListener listener) {
+		listeners.computeIfAbsent(channel, c -> new CopyOnWriteArrayList<>()).add(listener);
+		LKLogger.getInstance().debug("Sync Listener subscribed", LogType.STARTUP);
+	}
+
+	@Override
+	public void close() {
+		listeners.clear();
+	}
+	
+}
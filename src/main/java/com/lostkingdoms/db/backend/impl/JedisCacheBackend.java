@@ -0,0 +1,36 @@
+package com.lostkingdoms.db.backend.impl;
+
+import com.lostkingdoms.db.backend.CacheBackend;
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.factories.JedisFactory;
+
+/**
+ * The redis {@link CacheBackend}. Connections are taken from the pool of the {@link JedisFactory}.
+ * Read connections use the {@link RedisReplicaRouter} if replicas are configured
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class JedisCacheBackend implements CacheBackend {
+
+	/** The router of the read connections or null if no replicas are configured */
+	private final RedisReplicaRouter router = JedisFactory.getInstance().getReplicaRouter();
+	
+	@Override
+	public CacheConnection getConnection() {
+		return new JedisCacheConnection(JedisFactory.getInstance().getJedis());
+	}
+
+	@Override
+	public CacheConnection getReadConnection() {
+		if(router == null) return getConnection();
+		return new JedisCacheConnection(JedisFactory.getInstance()::getJedis, router);
+	}
+
+	@Override
+	public void close() {
+		if(router != null) router.close();
+		JedisFactory.getInstance().getJedisPool().close();
+	}
+	
+}
@@ -0,0 +1,316 @@
+package com.lostkingdoms.db.backend.impl;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.lostkingdoms.db.backend.CacheConnection;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * A {@link CacheConnection} to redis. Returns the {@link Jedis} to its pool when closed.
+ * Connections with a {@link RedisReplicaRouter} send their read commands to a replica until
+ * their first write and fall back to the master if the replica fails
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class JedisCacheConnection implements CacheConnection {
+
+	/**
+	 * Lua script which merges all fields of a hash into one field atomically
+	 */
+	private static final String MERGE_SCRIPT = 
+			"local vals = redis.call('HVALS', KEYS[1]) "
+			+ "local sum = 0 "
+			+ "for i, v in ipairs(vals) do sum = sum + tonumber(v) end "
+			+ "redis.call('DEL', KEYS[1]) "
+			+ "redis.call('HSET', KEYS[1], ARGV[1], string.format('%d', sum)) "
+			+ "return sum";
+	
+	/**
+	 * Lua script which increments a hash field and sets the seed field first if it is missing.
+	 * Returns nil if the seed field is missing and there is no seed
+	 */
+	private static final String SEEDED_HINCR_SCRIPT = 
+			"if redis.call('HEXISTS', KEYS[1], ARGV[3]) == 0 then "
+			+ "if ARGV[4] == nil then return false end "
+			+ "redis.call('HSET', KEYS[1], ARGV[3], ARGV[4]) "
+			+ "end "
+			+ "return redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])";
+	
+	/**
+	 * Lua script which increments a key and sets it to a seed first if it is missing.
+	 * Returns nil if the key is missing and there is no seed
+	 */
+	private static final String SEEDED_INCR_SCRIPT = 
+			"if redis.call('EXISTS', KEYS[1]) == 0 then "
+			+ "if ARGV[3] == nil then return false end "
+			+ "redis.call('SET', KEYS[1], ARGV[3]) "
+			+ "end "
+			+ "return redis.call(ARGV[1], KEYS[1], ARGV[2])";
+	
+	/** Borrows the jedis instance of the master */
+	private final Supplier<Jedis> masterSupplier;
+	
+	/** The jedis instance of the master. Is borrowed on the first command which needs the master */
+	private Jedis jedis;
+	
+	/** The router of the read commands or null if all commands go to the master */
+	private RedisReplicaRouter router;
+	
+	/** The replica of the read commands. Is selected on the first read */
+	private RedisReplicaRouter.Replica replica;
+	
+	/** The jedis instance of the replica */
+	private Jedis replicaJedis;
+	
+	public JedisCacheConnection(Jedis jedis) {
+		this.masterSupplier = () -> jedis;
+		this.jedis = jedis;
+	}
+	
+	public JedisCacheConnection(Supplier<Jedis> masterSupplier, RedisReplicaRouter router) {
+		this.masterSupplier = masterSupplier;
+		this.router = router;
+	}
+	
+	/**
+	 * Get the underlying {@link Jedis} instance
+	 * 
+	 * @return the {@link Jedis}
+	 */
+	public Jedis getJedis() {
+		return master();
+	}
+
+	@Override
+	public String get(String key) {
+		return read(j -> j.get(key));
+	}
+
+	@Override
+	public List<String> mget(String... keys) {
+		return read(j -> j.mget(keys));
+	}
+
+	@Override
+	public void set(String key, String value) {
+		master().set(key, value);
+	}
+
+	@Override
+	public void mset(String... keysAndValues) {
+		master().mset(keysAndValues);
+	}
+
+	@Override
+	public long setnx(String key, String value) {
+		return master().setnx(key, value);
+	}
+
+	@Override
+	public long del(String... keys) {
+		return master().del(keys);
+	}
+
+	@Override
+	public boolean exists(String key) {
+		return read(j -> j.exists(key));
+	}
+
+	@Override
+	public long incrBy(String key, long delta) {
+		return master().incrBy(key, delta);
+	}
+
+	@Override
+	public double incrByFloat(String key, double delta) {
+		return master().incrByFloat(key, delta);
+	}
+
+	@Override
+	public Long incrBySeeded(String key, long delta, String seed) {
+		if(seed == null) return (Long) master().eval(SEEDED_INCR_SCRIPT, 1, key, "INCRBY", String.valueOf(delta));
+		return (Long) master().eval(SEEDED_INCR_SCRIPT, 1, key, "INCRBY", String.valueOf(delta), seed);
+	}
+
+	@Override
+	public Double incrByFloatSeeded(String key, double delta, String seed) {
+		Object value = seed == null ? master().eval(SEEDED_INCR_SCRIPT, 1, key, "INCRBYFLOAT", String.valueOf(delta))
+				: master().eval(SEEDED_INCR_SCRIPT, 1, key, "INCRBYFLOAT", String.valueOf(delta), seed);
+		return value == null ? null : Double.valueOf((String) value);
+	}
+
+	@Override
+	public long hincrBy(String key, String field, long delta) {
+		return master().hincrBy(key, field, delta);
+	}
+
+	@Override
+	public Long hincrBySeeded(String key, String field, long delta, String seedField, String seed) {
+		if(seed == null) return (Long) master().eval(SEEDED_HINCR_SCRIPT, 1, key, field, String.valueOf(delta), seedField);
+		return (Long) master().eval(SEEDED_HINCR_SCRIPT, 1, key, field, String.valueOf(delta), seedField, seed);
+	}
+
+	@Override
+	public long hsetnx(String key, String field, String value) {
+		return master().hsetnx(key, field, value);
+	}
+
+	@Override
+	public List<String> hvals(String key) {
+		return read(j -> j.hvals(key));
+	}
+
+	@Override
+	public long hmerge(String key, String field) {
+		return (Long) master().eval(MERGE_SCRIPT, 1, key, field);
+	}
+
+	@Override
+	public long sadd(String key, String... members) {
+		return master().sadd(key, members);
+	}
+
+	@Override
+	public long srem(String key, String... members) {
+		return master().srem(key, members);
+	}
+
+	@Override
+	public Set<String> smembers(String key) {
+		return read(j -> j.smembers(key));
+	}
+
+	@Override
+	public boolean sismember(String key, String member) {
+		return read(j -> j.sismember(key, member));
+	}
+
+	@Override
+	public long scard(String key) {
+		return read(j -> j.scard(key));
+	}
+
+	@Override
+	public long zadd(String key, double score, String member) {
+		return master().zadd(key, score, member);
+	}
+
+	@Override
+	public long zadd(String key, Map<String, Double> scores) {
+		return master().zadd(key, scores);
+	}
+
+	@Override
+	public double zincrby(String key, double delta, String member) {
+		return master().zincrby(key, delta, member);
+	}
+
+	@Override
+	public long zrem(String key, String... members) {
+		return master().zrem(key, members);
+	}
+
+	@Override
+	public Double zscore(String key, String member) {
+		return read(j -> j.zscore(key, member));
+	}
+
+	@Override
+	public Long zrevrank(String key, String member) {
+		return read(j -> j.zrevrank(key, member));
+	}
+
+	@Override
+	public long zcard(String key) {
+		return read(j -> j.zcard(key));
+	}
+
+	@Override
+	public Map<String, Double> zrevrangeWithScores(String key, long start, long end) {
+		return toMap(read(j -> j.zrevrangeWithScores(key, start, end)));
+	}
+
+	@Override
+	public Map<String, Double> zrevrangeByScoreWithScores(String key, double max, double min) {
+		return toMap(read(j -> j.zrevrangeByScoreWithScores(key, max, min)));
+	}
+
+	@Override
+	public void close() {
+		if(replicaJedis != null) replicaJedis.close();
+		if(jedis != null) jedis.close();
+	}
+	
+	/**
+	 * Get the master for a write command. The following reads of this connection go
+	 * to the master as well, so they see the write
+	 * 
+	 * @return the {@link Jedis} of the master
+	 */
+	private Jedis master() {
+		router = null;
+		if(jedis == null) jedis = masterSupplier.get();
+		return jedis;
+	}
+	
+	/**
+	 * Runs a read command on the replica of this connection.
+	 * Uses the master if there is no healthy replica or the replica fails
+	 * 
+	 * @param command the command
+	 * @return the result of the command
+	 */
+	private <R> R read(Function<Jedis, R> command) {
+		if(router != null && replicaJedis == null) {
+			replica = router.select();
+			if(replica == null) {
+				router = null;
+			} else {
+				try {
+					replicaJedis = replica.getResource();
+				} catch (JedisException e) {
+					router.failed(replica, e);
+					router = null;
+				}
+			}
+		}
+		if(router == null) return command.apply(master());
+		
+		try {
+			R result = command.apply(replicaJedis);
+			router.replicaRead();
+			return result;
+		} catch (JedisConnectionException e) {
+			router.failed(replica, e);
+			replicaJedis.close();
+			replicaJedis = null;
+			router = null;
+			return command.apply(master());
+		}
+	}
+	
+	/**
+	 * Converts the result of a redis range query
+	 * 
+	 * @param tuples the result
+	 * @return the members mapped to their scores in rank order
+	 */
+	private static Map<String, Double> toMap(Set<Tuple> tuples) {
+		Map<String, Double> map = new LinkedHashMap<>();
+		for(Tuple tuple : tuples) {
+			map.put(tuple.getElement(), tuple.getScore());
+		}
+		return map;
+	}
+	
+}
@@ -0,0 +1,26 @@
+package com.lostkingdoms.db.backend.impl;
+
+import com.lostkingdoms.db.backend.CacheBackend;
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.factories.JedisFactory;
+
+/**
+ * The redis cluster {@link CacheBackend}. All connections share the {@link redis.clients.jedis.JedisCluster}
+ * of the {@link JedisFactory}, which keeps a pool per cluster node
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class JedisClusterCacheBackend implements CacheBackend {
+
+	@Override
+	public CacheConnection getConnection() {
+		return new JedisClusterCacheConnection(JedisFactory.getInstance().getJedisCluster());
+	}
+
+	@Override
+	public void close() {
+		JedisFactory.getInstance().getJedisCluster().close();
+	}
+	
+}
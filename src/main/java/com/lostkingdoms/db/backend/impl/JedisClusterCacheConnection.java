@@ -0,0 +1,304 @@
+package com.lostkingdoms.db.backend.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.sync.HashSlotCalculator;
+
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Tuple;
+
+/**
+ * A {@link CacheConnection} to a redis cluster. The {@link JedisCluster} is shared and routes
+ * every command to the node of its key, so closing this connection does nothing.
+ * Multi key commands are split into one command per hashslot, because redis cluster rejects
+ * commands whose keys are in different hashslots. Keys of one entity share a hashtag and
+ * stay in one command.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class JedisClusterCacheConnection implements CacheConnection {
+
+	/**
+	 * Lua script which merges all fields of a hash into one field atomically
+	 */
+	private static final String MERGE_SCRIPT = 
+			"local vals = redis.call('HVALS', KEYS[1]) "
+			+ "local sum = 0 "
+			+ "for i, v in ipairs(vals) do sum = sum + tonumber(v) end "
+			+ "redis.call('DEL', KEYS[1]) "
+			+ "redis.call('HSET', KEYS[1], ARGV[1], string.format('%d', sum)) "
+			+ "return sum";
+	
+	/**
+	 * Lua script which increments a hash field and sets the seed field first if it is missing.
+	 * Returns nil if the seed field is missing and there is no seed
+	 */
+	private static final String SEEDED_HINCR_SCRIPT = 
+			"if redis.call('HEXISTS', KEYS[1], ARGV[3]) == 0 then "
+			+ "if ARGV[4] == nil then return false end "
+			+ "redis.call('HSET', KEYS[1], ARGV[3], ARGV[4]) "
+			+ "end "
+			+ "return redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])";
+	
+	/**
+	 * Lua script which increments a key and sets it to a seed first if it is missing.
+	 * Returns nil if the key is missing and there is no seed
+	 */
+	private static final String SEEDED_INCR_SCRIPT = 
+			"if redis.call('EXISTS', KEYS[1]) == 0 then "
+			+ "if ARGV[3] == nil then return false end "
+			+ "redis.call('SET', KEYS[1], ARGV[3]) "
+			+ "end "
+			+ "return redis.call(ARGV[1], KEYS[1], ARGV[2])";
+	
+	/** The jedis cluster */
+	private final JedisCluster cluster;
+	
+	public JedisClusterCacheConnection(JedisCluster cluster) {
+		this.cluster = cluster;
+	}
+	
+	/**
+	 * Get the underlying {@link JedisCluster}
+	 * 
+	 * @return the {@link JedisCluster}
+	 */
+	public JedisCluster getJedisCluster() {
+		return cluster;
+	}
+
+	@Override
+	public String get(String key) {
+		return cluster.get(key);
+	}
+
+	@Override
+	public List<String> mget(String... keys) {
+		Map<Integer, List<Integer>> slots = groupBySlot(keys, 1);
+		if(slots.size() == 1) return cluster.mget(keys);
+		
+		String[] values = new String[keys.length];
+		for(List<Integer> indices : slots.values()) {
+			String[] slotKeys = new String[indices.size()];
+			for(int i = 0; i < slotKeys.length; i++) {
+				slotKeys[i] = keys[indices.get(i)];
+			}
+			
+			List<String> slotValues = cluster.mget(slotKeys);
+			for(int i = 0; i < slotKeys.length; i++) {
+				values[indices.get(i)] = slotValues.get(i);
+			}
+		}
+		return Arrays.asList(values);
+	}
+
+	@Override
+	public void set(String key, String value) {
+		cluster.set(key, value);
+	}
+
+	@Override
+	public void mset(String... keysAndValues) {
+		Map<Integer, List<Integer>> slots = groupBySlot(keysAndValues, 2);
+		if(slots.size() == 1) {
+			cluster.mset(keysAndValues);
+			return;
+		}
+		
+		for(List<Integer> indices : slots.values()) {
+			String[] slotKeysAndValues = new String[indices.size() * 2];
+			for(int i = 0; i < indices.size(); i++) {
+				slotKeysAndValues[i * 2] = keysAndValues[indices.get(i)];
+				slotKeysAndValues[i * 2 + 1] = keysAndValues[indices.get(i) + 1];
+			}
+			cluster.mset(slotKeysAndValues);
+		}
+	}
+
+	@Override
+	public long setnx(String key, String value) {
+		return cluster.setnx(key, value);
+	}
+
+	@Override
+	public long del(String... keys) {
+		Map<Integer, List<Integer>> slots = groupBySlot(keys, 1);
+		if(slots.size() == 1) return cluster.del(keys);
+		
+		long deleted = 0;
+		for(List<Integer> indices : slots.values()) {
+			String[] slotKeys = new String[indices.size()];
+			for(int i = 0; i < slotKeys.length; i++) {
+				slotKeys[i] = keys[indices.get(i)];
+			}
+			deleted += cluster.del(slotKeys);
+		}
+		return deleted;
+	}
+
+	@Override
+	public boolean exists(String key) {
+		return cluster.exists(key);
+	}
+
+	@Override
+	public long incrBy(String key, long delta) {
+		return cluster.incrBy(key, delta);
+	}
+
+	@Override
+	public double incrByFloat(String key, double delta) {
+		return cluster.incrByFloat(key, delta);
+	}
+
+	@Override
+	public Long incrBySeeded(String key, long delta, String seed) {
+		if(seed == null) return (Long) cluster.eval(SEEDED_INCR_SCRIPT, 1, key, "INCRBY", String.valueOf(delta));
+		return (Long) cluster.eval(SEEDED_INCR_SCRIPT, 1, key, "INCRBY", String.valueOf(delta), seed);
+	}
+
+	@Override
+	public Double incrByFloatSeeded(String key, double delta, String seed) {
+		Object value = seed == null ? cluster.eval(SEEDED_INCR_SCRIPT, 1, key, "INCRBYFLOAT", String.valueOf(delta))
+				: cluster.eval(SEEDED_INCR_SCRIPT, 1, key, "INCRBYFLOAT", String.valueOf(delta), seed);
+		return value == null ? null : Double.valueOf((String) value);
+	}
+
+	@Override
+	public long hincrBy(String key, String field, long delta) {
+		return cluster.hincrBy(key, field, delta);
+	}
+
+	@Override
+	public Long hincrBySeeded(String key, String field, long delta, String seedField, String seed) {
+		if(seed == null) return (Long) cluster.eval(SEEDED_HINCR_SCRIPT, 1, key, field, String.valueOf(delta), seedField);
+		return (Long) cluster.eval(SEEDED_HINCR_SCRIPT, 1, key, field, String.valueOf(delta), seedField, seed);
+	}
+
+	@Override
+	public long hsetnx(String key, String field, String value) {
+		return cluster.hsetnx(key, field, value);
+	}
+
+	@Override
+	public List<String> hvals(String key) {
+		return cluster.hvals(key);
+	}
+
+	@Override
+	public long hmerge(String key, String field) {
+		return (Long) cluster.eval(MERGE_SCRIPT, 1, key, field);
+	}
+
+	@Override
+	public long sadd(String key, String... members) {
+		return cluster.sadd(key, members);
+	}
+
+	@Override
+	public long srem(String key, String... members) {
+		return cluster.srem(key, members);
+	}
+
+	@Override
+	public Set<String> smembers(String key) {
+		return cluster.smembers(key);
+	}
+
+	@Override
+	public boolean sismember(String key, String member) {
+		return cluster.sismember(key, member);
+	}
+
+	@Override
+	public long scard(String key) {
+		return cluster.scard(key);
+	}
+
+	@Override
+	public long zadd(String key, double score, String member) {
+		return cluster.zadd(key, score, member);
+	}
+
+	@Override
+	public long zadd(String key, Map<String, Double> scores) {
+		return cluster.zadd(key, scores);
+	}
+
+	@Override
+	public double zincrby(String key, double delta, String member) {
+		return cluster.zincrby(key, delta, member);
+	}
+
+	@Override
+	public long zrem(String key, String... members) {
+		return cluster.zrem(key, members);
+	}
+
+	@Override
+	public Double zscore(String key, String member) {
+		return cluster.zscore(key, member);
+	}
+
+	@Override
+	public Long zrevrank(String key, String member) {
+		return cluster.zrevrank(key, member);
+	}
+
+	@Override
+	public long zcard(String key) {
+		return cluster.zcard(key);
+	}
+
+	@Override
+	public Map<String, Double> zrevrangeWithScores(String key, long start, long end) {
+		return toMap(cluster.zrevrangeWithScores(key, start, end));
+	}
+
+	@Override
+	public Map<String, Double> zrevrangeByScoreWithScores(String key, double max, double min) {
+		return toMap(cluster.zrevrangeByScoreWithScores(key, max, min));
+	}
+
+	@Override
+	public void close() {
+		//The cluster is shared and closed by the backend
+	}
+	
+	/**
+	 * Groups the keys of a multi key command by their hashslot
+	 * 
+	 * @param args the arguments of the command
+	 * @param step the number of arguments per key
+	 * @return the hashslots mapped to the indices of their keys in the arguments
+	 */
+	private static Map<Integer, List<Integer>> groupBySlot(String[] args, int step) {
+		Map<Integer, List<Integer>> slots = new LinkedHashMap<>();
+		for(int i = 0; i < args.length; i += step) {
+			slots.computeIfAbsent(HashSlotCalculator.calculateHashSlot(args[i]), slot -> new ArrayList<>()).add(i);
+		}
+		return slots;
+	}
+	
+	/**
+	 * Converts the result of a redis range query
+	 * 
+	 * @param tuples the result
+	 * @return the members mapped to their scores in rank order
+	 */
+	private static Map<String, Double> toMap(Set<Tuple> tuples) {
+		Map<String, Double> map = new LinkedHashMap<>();
+		for(Tuple tuple : tuples) {
+			map.put(tuple.getElement(), tuple.getScore());
+		}
+		return map;
+	}
+	
+}
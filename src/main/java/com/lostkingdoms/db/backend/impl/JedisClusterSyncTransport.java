@@ -0,0 +1,60 @@
+package com.lostkingdoms.db.backend.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.lostkingdoms.db.backend.SyncListener;
+import com.lostkingdoms.db.backend.SyncTransport;
+import com.lostkingdoms.db.factories.JedisFactory;
+import com.lostkingdoms.db.logger.LKLogger;
+import com.lostkingdoms.db.logger.LogType;
+
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * The redis cluster pub/sub {@link SyncTransport}. Redis cluster forwards published messages
+ * to all nodes, so subscribing at any node is enough. Every subscription gets its own listener thread
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class JedisClusterSyncTransport implements SyncTransport {
+
+	/** All active subscriptions */
+	private final List<JedisPubSub> subscriptions = new ArrayList<>();
+	
+	@Override
+	public void publish(String channel, String message) {
+		JedisFactory.getInstance().getJedisCluster().publish(channel, message);
+	}
+
+	@Override
+	public void subscribe(String channel, SyncListener listener) {
+		JedisPubSub pubSub = new JedisPubSub() {
+			@Override
+			public void onMessage(String channel, String message) {
+				listener.onMessage(channel, message);
+			}
+		};
+		synchronized (subscriptions) {
+			subscriptions.add(pubSub);
+		}
+		
+		new Thread(() -> {
+			LKLogger.getInstance().debug("Sync Listener subscribed", LogType.STARTUP);
+			JedisFactory.getInstance().getJedisCluster().subscribe(pubSub, channel);
+			LKLogger.getInstance().warn("Sync Listener closed!", LogType.STARTUP);
+		}, "sync_Listener").start();
+	}
+
+	@Override
+	public void close() {
+		synchronized (subscriptions) {
+			for(JedisPubSub pubSub : subscriptions) {
+				if(pubSub.isSubscribed()) pubSub.unsubscribe();
+			}
+			subscriptions.clear();
+		}
+	}
+	
+}
@@ -0,0 +1,68 @@
+package com.lostkingdoms.db.backend.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.lostkingdoms.db.backend.SyncListener;
+import com.lostkingdoms.db.backend.SyncTransport;
+import com.lostkingdoms.db.factories.JedisFactory;
+import com.lostkingdoms.db.logger.LKLogger;
+import com.lostkingdoms.db.logger.LogType;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * The redis pub/sub {@link SyncTransport}. Every subscription gets its own listener thread
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class JedisSyncTransport implements SyncTransport {
+
+	/** All active subscriptions */
+	private final List<JedisPubSub> subscriptions = new ArrayList<>();
+	
+	@Override
+	public void publish(String channel, String message) {
+		try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+			jedis.publish(channel, message);
+		}
+	}
+
+	@Override
+	public void subscribe(String channel, SyncListener listener) {
+		JedisPubSub pubSub = new JedisPubSub() {
+			@Override
+			public void onMessage(String channel, String message) {
+				listener.onMessage(channel, message);
+			}
+		};
+		synchronized (subscriptions) {
+			subscriptions.add(pubSub);
+		}
+		
+		new Thread(() -> {
+			LKLogger.getInstance().info("Jedis starting up", LogType.STARTUP);
+			Jedis jedis = JedisFactory.getInstance().getJedis();
+			LKLogger.getInstance().info("Jedis succesfully started", LogType.STARTUP);
+
+			LKLogger.getInstance().debug("Sync Listener subscribed", LogType.STARTUP);
+			jedis.subscribe(pubSub, channel);
+
+			LKLogger.getInstance().warn("Sync Listener closed!", LogType.STARTUP);
+			jedis.quit();
+		}, "sync_Listener").start();
+	}
+
+	@Override
+	public void close() {
+		synchronized (subscriptions) {
+			for(JedisPubSub pubSub : subscriptions) {
+				if(pubSub.isSubscribed()) pubSub.unsubscribe();
+			}
+			subscriptions.clear();
+		}
+	}
+	
+}
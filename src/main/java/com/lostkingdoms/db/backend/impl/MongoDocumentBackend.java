@@ -0,0 +1,176 @@
+package com.lostkingdoms.db.backend.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.lostkingdoms.db.backend.DocumentBackend;
+import com.lostkingdoms.db.factories.MongoDBFactory;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+/**
+ * The MongoDB {@link DocumentBackend}. Documents are saved with the identifier in the fields 
+ * "identifier" and "_id"
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class MongoDocumentBackend implements DocumentBackend {
+
+	/** The String used in MongoDB for the identifier*/
+	private static final String MONGO_IDENTIFIER = "_id";
+	private static final String IDENTIFIER = "identifier";
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public Map<String, Object> find(String collection, String identifier) {
+		DBObject object = getCollection(collection).findOne(createQuery(identifier));
+		if(object == null) return null;
+		return object.toMap();
+	}
+
+	@Override
+	public boolean exists(String collection, String identifier) {
+		return getCollection(collection).count(createQuery(identifier)) != 0;
+	}
+
+	@Override
+	public List<String> findIdentifiers(String collection) {
+		List<String> identifiers = new ArrayList<>();
+		for(DBObject object : getCollection(collection).find(new BasicDBObject(), new BasicDBObject(IDENTIFIER, 1))) {
+			identifiers.add((String) object.get(IDENTIFIER));
+		}
+		return identifiers;
+	}
+
+	@Override
+	public Map<String, Object> findField(String collection, String field) {
+		BasicDBObject query = new BasicDBObject(field, new BasicDBObject("$exists", true));
+		BasicDBObject fields = new BasicDBObject(IDENTIFIER, 1).append(field, 1);
+		
+		Map<String, Object> values = new HashMap<>();
+		for(DBObject object : getCollection(collection).find(query, fields)) {
+			values.put((String) object.get(IDENTIFIER), getPath(object, field));
+		}
+		return values;
+	}
+
+	@Override
+	public void set(String collection, String identifier, Map<String, Object> fields) {
+		if(fields.isEmpty()) return;
+		upsert(collection, identifier, "$set", new BasicDBObject(fields));
+	}
+
+	@Override
+	public boolean replace(String collection, String identifier, String field, Object expected, Object value) {
+		BasicDBObject query = createQuery(identifier);
+		query.put(field, expected);
+		return getCollection(collection).update(query, new BasicDBObject("$set", new BasicDBObject(field, value))).getN() != 0;
+	}
+
+	@Override
+	public void unset(String collection, String identifier, String field) {
+		getCollection(collection).update(createQuery(identifier), new BasicDBObject("$unset", new BasicDBObject(field, "")));
+	}
+
+	@Override
+	public void increment(String collection, String identifier, String field, Number delta) {
+		upsert(collection, identifier, "$inc", new BasicDBObject(field, delta));
+	}
+
+	@Override
+	public Number incrementAndGet(String collection, String identifier, String field, Number delta) {
+		BasicDBObject update = new BasicDBObject("$inc", new BasicDBObject(field, delta));
+		DBObject object = getCollection(collection).findAndModify(createUpsertQuery(identifier), null, null, false, update, true, true);
+		return (Number) getPath(object, field);
+	}
+
+	@Override
+	public void addToSet(String collection, String identifier, String field, Object value) {
+		upsert(collection, identifier, "$addToSet", new BasicDBObject(field, value));
+	}
+
+	@Override
+	public void pull(String collection, String identifier, String field, Object value) {
+		getCollection(collection).update(createQuery(identifier), new BasicDBObject("$pull", new BasicDBObject(field, value)));
+	}
+
+	@Override
+	public boolean contains(String collection, String identifier, String field, Object value) {
+		BasicDBObject query = createQuery(identifier);
+		query.put(field, value);
+		return getCollection(collection).count(query) != 0;
+	}
+
+	@Override
+	public void remove(String collection, String identifier) {
+		getCollection(collection).remove(createQuery(identifier));
+	}
+
+	@Override
+	public void close() {
+		MongoDBFactory.getInstance().getMongoClient().close();
+	}
+	
+	/**
+	 * Applies an update operator to a document and creates it if it does not exist
+	 * 
+	 * @param collection the collection
+	 * @param identifier the identifier
+	 * @param operator the update operator
+	 * @param fields the operator arguments
+	 */
+	private void upsert(String collection, String identifier, String operator, BasicDBObject fields) {
+		getCollection(collection).update(createUpsertQuery(identifier), new BasicDBObject(operator, fields), true, false);
+	}
+	
+	/**
+	 * Get a MongoDB collection
+	 * 
+	 * @param collection the name of the collection
+	 * @return the {@link DBCollection}
+	 */
+	private DBCollection getCollection(String collection) {
+		return MongoDBFactory.getInstance().getMongoDatabase().getCollection(collection);
+	}
+	
+	/**
+	 * Creates the query for a document
+	 * 
+	 * @param identifier the identifier
+	 * @return the query
+	 */
+	private BasicDBObject createQuery(String identifier) {
+		return new BasicDBObject(IDENTIFIER, identifier);
+	}
+	
+	/**
+	 * Creates the query for an upsert which also sets the identifiers if the document is created
+	 * 
+	 * @param identifier the identifier
+	 * @return the query
+	 */
+	private BasicDBObject createUpsertQuery(String identifier) {
+		return new BasicDBObject(MONGO_IDENTIFIER, identifier).append(IDENTIFIER, identifier);
+	}
+	
+	/**
+	 * Get the value of a dotted field path
+	 * 
+	 * @param object the document
+	 * @param path the field path
+	 * @return the value or null
+	 */
+	private static Object getPath(DBObject object, String path) {
+		Object value = object;
+		for(String field : path.split("\\.")) {
+			if(!(value instanceof DBObject)) return null;
+			value = ((DBObject) value).get(field);
+		}
+		return value;
+	}
+	
+}
@@ -0,0 +1,342 @@
+package com.lostkingdoms.db.backend.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.factories.JedisFactory;
+import com.lostkingdoms.db.metrics.DataMetrics;
+import com.lostkingdoms.db.logger.LKLogger;
+import com.lostkingdoms.db.logger.LogType;
+
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Routes the read commands of {@link JedisCacheConnection}s to redis read replicas.
+ * A replica is selected round robin or by the least active connections of its pool.
+ * Replicas whose replication link is down, whose lag exceeds {@link DataOrganizationManager#redisReplicaMaxLag}
+ * or which failed a command are skipped until the next check, and reads go to the master.
+ * <p>
+ * The lag is measured in time: the master replication offset is sampled at every check and
+ * the lag of a replica is the age of the oldest sample its offset has not reached yet.
+ *
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class RedisReplicaRouter {
+
+	/**
+	 * The interval of the health checks in milliseconds
+	 */
+	private static final long CHECK_INTERVAL = 250;
+	
+	/**
+	 * The number of remembered master offset samples
+	 */
+	private static final int OFFSET_SAMPLES = 64;
+	
+	/**
+	 * The time in milliseconds a replica is skipped after a failed command
+	 */
+	private static final long FAILURE_BACKOFF = 5000;
+	
+	/**
+	 * The replicas
+	 */
+	private final List<Replica> replicas = new ArrayList<>();
+	
+	/**
+	 * True if replicas are selected by the least active connections, false for round robin
+	 */
+	private final boolean leastLoaded;
+	
+	/**
+	 * The maximal replication lag in milliseconds
+	 */
+	private final long maxLag;
+	
+	/**
+	 * The next replica for round robin
+	 */
+	private final AtomicInteger next = new AtomicInteger();
+	
+	/**
+	 * The master replication offsets, oldest first
+	 */
+	private final long[] masterOffsets = new long[OFFSET_SAMPLES];
+	
+	/**
+	 * The times of the master replication offsets
+	 */
+	private final long[] masterOffsetTimes = new long[OFFSET_SAMPLES];
+	
+	/**
+	 * The number of master offset samples
+	 */
+	private int masterOffsetCount;
+	
+	/**
+	 * The scheduler of the health checks
+	 */
+	private final ScheduledExecutorService checker;
+	
+	/** Reads served by a replica */
+	private final LongAdder replicaReads = new LongAdder();
+	
+	/** Reads which had to fall back to the master */
+	private final LongAdder fallbacks = new LongAdder();
+	
+	
+	
+	/**
+	 * Constructor of the {@link RedisReplicaRouter}. Starts the health checks
+	 * 
+	 * @param replicaNodes comma separated host:port list of the replicas
+	 * @param routing round_robin or least_loaded
+	 * @param maxLag the maximal replication lag in milliseconds
+	 */
+	public RedisReplicaRouter(String replicaNodes, String routing, long maxLag) {
+		this.leastLoaded = "least_loaded".equalsIgnoreCase(routing);
+		this.maxLag = maxLag;
+		
+		for(String node : replicaNodes.split(",")) {
+			if(node.trim().isEmpty()) continue;
+			HostAndPort address = HostAndPort.parseString(node.trim());
+			JedisPool pool = JedisFactory.createPool(address.getHost(), address.getPort());
+			DataMetrics.getInstance().registerPool("redis-replica-" + address, pool);
+			replicas.add(new Replica(address, pool));
+		}
+		
+		checker = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "redis_Replica_Check");
+			thread.setDaemon(true);
+			return thread;
+		});
+		checker.scheduleWithFixedDelay(this::check, 0, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Selects a healthy replica
+	 * 
+	 * @return the replica or null if reads have to go to the master
+	 */
+	Replica select() {
+		int size = replicas.size();
+		if(size == 0) return null;
+		
+		long now = System.currentTimeMillis();
+		if(leastLoaded) {
+			Replica best = null;
+			int bestActive = Integer.MAX_VALUE;
+			for(Replica replica : replicas) {
+				if(!replica.isHealthy(now, maxLag)) continue;
+				int active = replica.pool.getNumActive();
+				if(active < bestActive) {
+					best = replica;
+					bestActive = active;
+				}
+			}
+			return best;
+		}
+		
+		int start = next.getAndIncrement() & Integer.MAX_VALUE;
+		for(int i = 0; i < size; i++) {
+			Replica replica = replicas.get((start + i) % size);
+			if(replica.isHealthy(now, maxLag)) return replica;
+		}
+		return null;
+	}
+	
+	/**
+	 * Records a read which was served by a replica
+	 */
+	void replicaRead() {
+		replicaReads.increment();
+	}
+	
+	/**
+	 * Skips a replica after a failed command until the backoff has passed
+	 * 
+	 * @param replica the replica
+	 * @param e the cause
+	 */
+	void failed(Replica replica, Exception e) {
+		fallbacks.increment();
+		replica.failedUntil = System.currentTimeMillis() + FAILURE_BACKOFF;
+		LKLogger.getInstance().warn("Redis replica " + replica.address + " failed, reading from master: ", e, LogType.SYNC);
+	}
+	
+	/**
+	 * Updates the link status and lag of all replicas
+	 */
+	private void check() {
+		long now = System.currentTimeMillis();
+		try (Jedis master = JedisFactory.getInstance().getJedis()) {
+			addMasterOffset(now, parseLong(master.info("replication"), "master_repl_offset"));
+		} catch (Exception e) {
+			//The replicas can not be compared with the master. Their lag is unknown
+			for(Replica replica : replicas) replica.lag = Long.MAX_VALUE;
+			return;
+		}
+		
+		for(Replica replica : replicas) {
+			try (Jedis jedis = replica.pool.getResource()) {
+				String info = jedis.info("replication");
+				if(!info.contains("master_link_status:up")) {
+					replica.lag = Long.MAX_VALUE;
+					continue;
+				}
+				replica.lag = lag(now, parseLong(info, "slave_repl_offset"));
+			} catch (Exception e) {
+				replica.lag = Long.MAX_VALUE;
+			}
+		}
+	}
+	
+	/**
+	 * Remembers a master replication offset
+	 * 
+	 * @param time the time of the sample
+	 * @param offset the offset
+	 */
+	private void addMasterOffset(long time, long offset) {
+		if(masterOffsetCount == OFFSET_SAMPLES) {
+			System.arraycopy(masterOffsets, 1, masterOffsets, 0, OFFSET_SAMPLES - 1);
+			System.arraycopy(masterOffsetTimes, 1, masterOffsetTimes, 0, OFFSET_SAMPLES - 1);
+			masterOffsetCount--;
+		}
+		masterOffsets[masterOffsetCount] = offset;
+		masterOffsetTimes[masterOffsetCount] = time;
+		masterOffsetCount++;
+	}
+	
+	/**
+	 * Calculates the lag of a replica from its replication offset
+	 * 
+	 * @param now the current time
+	 * @param offset the offset of the replica
+	 * @return the lag in milliseconds
+	 */
+	private long lag(long now, long offset) {
+		for(int i = 0; i < masterOffsetCount; i++) {
+			if(masterOffsets[i] > offset) {
+				//The oldest write the replica has not applied. Older than all samples if it is the first one
+				return i == 0 ? Long.MAX_VALUE : now - masterOffsetTimes[i];
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * Parses a numeric field of a redis INFO reply
+	 * 
+	 * @param info the reply
+	 * @param field the field
+	 * @return the value
+	 */
+	private static long parseLong(String info, String field) {
+		for(String line : info.split("\r?\n")) {
+			if(line.startsWith(field + ":")) return Long.parseLong(line.substring(field.length() + 1).trim());
+		}
+		throw new IllegalStateException("No " + field + " in redis info");
+	}
+	
+	/**
+	 * Get the number of reads served by replicas
+	 * 
+	 * @return the replica reads
+	 */
+	public long getReplicaReads() {
+		return replicaReads.sum();
+	}
+	
+	/**
+	 * Get the number of reads which fell back to the master after a replica failed
+	 * 
+	 * @return the fallbacks
+	 */
+	public long getFallbacks() {
+		return fallbacks.sum();
+	}
+	
+	/**
+	 * Get the last measured lag of all replicas
+	 * 
+	 * @return the lag in milliseconds by replica. Long.MAX_VALUE if the replica is unavailable
+	 */
+	public List<String> getLags() {
+		List<String> lags = new ArrayList<>();
+		for(Replica replica : replicas) {
+			lags.add(replica.address + "=" + (replica.lag == Long.MAX_VALUE ? "down" : replica.lag + "ms"));
+		}
+		return Collections.unmodifiableList(lags);
+	}
+	
+	/**
+	 * Stops the health checks and closes the pools of all replicas
+	 */
+	public void close() {
+		checker.shutdownNow();
+		for(Replica replica : replicas) {
+			replica.pool.close();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "replicaReads=" + getReplicaReads() + " fallbacks=" + getFallbacks() + " lags=" + getLags();
+	}
+	
+	/**
+	 * A redis read replica and its connection pool
+	 */
+	static final class Replica {
+		
+		/** The address of the replica */
+		private final HostAndPort address;
+		
+		/** The pool of the replica */
+		private final JedisPool pool;
+		
+		/** The last measured lag in milliseconds. Unknown until the first check */
+		private volatile long lag = Long.MAX_VALUE;
+		
+		/** The replica is skipped until this time after a failed command */
+		private volatile long failedUntil;
+		
+		private Replica(HostAndPort address, JedisPool pool) {
+			this.address = address;
+			this.pool = pool;
+		}
+		
+		/**
+		 * Get a connection to the replica
+		 * 
+		 * @return the connection
+		 */
+		Jedis getResource() {
+			return pool.getResource();
+		}
+		
+		/**
+		 * Checks if the replica may serve reads
+		 * 
+		 * @param now the current time
+		 * @param maxLag the maximal replication lag in milliseconds
+		 * @return true if the replica is healthy
+		 */
+		private boolean isHealthy(long now, long maxLag) {
+			return failedUntil < now && lag <= maxLag;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,45 @@
+package com.lostkingdoms.db.backend.resp;
+
+import com.lostkingdoms.db.backend.CacheBackend;
+import com.lostkingdoms.db.backend.CacheConnection;
+
+/**
+ * The redis {@link CacheBackend} on top of the multiplexed {@link RespClient}.
+ * All connections share the sockets of the client, so there is no pool to exhaust
+ *
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class RespCacheBackend implements CacheBackend {
+
+	/** The client */
+	private final RespClient client;
+	
+	/** The reply timeout in milliseconds */
+	private final long timeout;
+	
+	public RespCacheBackend(RespClient client, long timeout) {
+		this.client = client;
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * Get the underlying {@link RespClient}
+	 * 
+	 * @return the {@link RespClient}
+	 */
+	public RespClient getClient() {
+		return client;
+	}
+	
+	@Override
+	public CacheConnection getConnection() {
+		return new RespCacheConnection(client, timeout);
+	}
+
+	@Override
+	public void close() {
+		client.close();
+	}
+	
+}
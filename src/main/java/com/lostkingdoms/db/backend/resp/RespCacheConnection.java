@@ -0,0 +1,352 @@
+package com.lostkingdoms.db.backend.resp;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.exceptions.RespException;
+
+/**
+ * A {@link CacheConnection} on top of the multiplexed {@link RespClient}.
+ * Each command waits for its reply, but the socket is shared with all other threads,
+ * so opening and closing this connection costs nothing.
+ *
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class RespCacheConnection implements CacheConnection {
+
+	/**
+	 * Lua script which merges all fields of a hash into one field atomically
+	 */
+	private static final String MERGE_SCRIPT = 
+			"local vals = redis.call('HVALS', KEYS[1]) "
+			+ "local sum = 0 "
+			+ "for i, v in ipairs(vals) do sum = sum + tonumber(v) end "
+			+ "redis.call('DEL', KEYS[1]) "
+			+ "redis.call('HSET', KEYS[1], ARGV[1], string.format('%d', sum)) "
+			+ "return sum";
+	
+	/**
+	 * Lua script which increments a hash field and sets the seed field first if it is missing.
+	 * Returns nil if the seed field is missing and there is no seed
+	 */
+	private static final String SEEDED_HINCR_SCRIPT = 
+			"if redis.call('HEXISTS', KEYS[1], ARGV[3]) == 0 then "
+			+ "if ARGV[4] == nil then return false end "
+			+ "redis.call('HSET', KEYS[1], ARGV[3], ARGV[4]) "
+			+ "end "
+			+ "return redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])";
+	
+	/**
+	 * Lua script which increments a key and sets it to a seed first if it is missing.
+	 * Returns nil if the key is missing and there is no seed
+	 */
+	private static final String SEEDED_INCR_SCRIPT = 
+			"if redis.call('EXISTS', KEYS[1]) == 0 then "
+			+ "if ARGV[3] == nil then return false end "
+			+ "redis.call('SET', KEYS[1], ARGV[3]) "
+			+ "end "
+			+ "return redis.call(ARGV[1], KEYS[1], ARGV[2])";
+	
+	/** The client */
+	private final RespClient client;
+	
+	/** The reply timeout in milliseconds */
+	private final long timeout;
+	
+	public RespCacheConnection(RespClient client, long timeout) {
+		this.client = client;
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * Get the underlying {@link RespClient}
+	 * 
+	 * @return the {@link RespClient}
+	 */
+	public RespClient getClient() {
+		return client;
+	}
+
+	@Override
+	public String get(String key) {
+		return (String) call("GET", key);
+	}
+
+	@Override
+	public List<String> mget(String... keys) {
+		return toStringList(call(prepend("MGET", keys)));
+	}
+
+	@Override
+	public void set(String key, String value) {
+		call("SET", key, value);
+	}
+
+	@Override
+	public void mset(String... keysAndValues) {
+		call(prepend("MSET", keysAndValues));
+	}
+
+	@Override
+	public long setnx(String key, String value) {
+		return (Long) call("SETNX", key, value);
+	}
+
+	@Override
+	public long del(String... keys) {
+		return (Long) call(prepend("DEL", keys));
+	}
+
+	@Override
+	public boolean exists(String key) {
+		return (Long) call("EXISTS", key) > 0;
+	}
+
+	@Override
+	public long incrBy(String key, long delta) {
+		return (Long) call("INCRBY", key, String.valueOf(delta));
+	}
+
+	@Override
+	public double incrByFloat(String key, double delta) {
+		return Double.parseDouble((String) call("INCRBYFLOAT", key, toString(delta)));
+	}
+
+	@Override
+	public Long incrBySeeded(String key, long delta, String seed) {
+		if(seed == null) return (Long) call("EVAL", SEEDED_INCR_SCRIPT, "1", key, "INCRBY", String.valueOf(delta));
+		return (Long) call("EVAL", SEEDED_INCR_SCRIPT, "1", key, "INCRBY", String.valueOf(delta), seed);
+	}
+
+	@Override
+	public Double incrByFloatSeeded(String key, double delta, String seed) {
+		Object value = seed == null ? call("EVAL", SEEDED_INCR_SCRIPT, "1", key, "INCRBYFLOAT", toString(delta))
+				: call("EVAL", SEEDED_INCR_SCRIPT, "1", key, "INCRBYFLOAT", toString(delta), seed);
+		return value == null ? null : Double.valueOf((String) value);
+	}
+
+	@Override
+	public long hincrBy(String key, String field, long delta) {
+		return (Long) call("HINCRBY", key, field, String.valueOf(delta));
+	}
+
+	@Override
+	public Long hincrBySeeded(String key, String field, long delta, String seedField, String seed) {
+		if(seed == null) return (Long) call("EVAL", SEEDED_HINCR_SCRIPT, "1", key, field, String.valueOf(delta), seedField);
+		return (Long) call("EVAL", SEEDED_HINCR_SCRIPT, "1", key, field, String.valueOf(delta), seedField, seed);
+	}
+
+	@Override
+	public long hsetnx(String key, String field, String value) {
+		return (Long) call("HSETNX", key, field, value);
+	}
+
+	@Override
+	public List<String> hvals(String key) {
+		return toStringList(call("HVALS", key));
+	}
+
+	@Override
+	public long hmerge(String key, String field) {
+		return (Long) call("EVAL", MERGE_SCRIPT, "1", key, field);
+	}
+
+	@Override
+	public long sadd(String key, String... members) {
+		return (Long) call(prepend("SADD", key, members));
+	}
+
+	@Override
+	public long srem(String key, String... members) {
+		return (Long) call(prepend("SREM", key, members));
+	}
+
+	@Override
+	public Set<String> smembers(String key) {
+		return new HashSet<>(toStringList(call("SMEMBERS", key)));
+	}
+
+	@Override
+	public boolean sismember(String key, String member) {
+		return (Long) call("SISMEMBER", key, member) == 1;
+	}
+
+	@Override
+	public long scard(String key) {
+		return (Long) call("SCARD", key);
+	}
+
+	@Override
+	public long zadd(String key, double score, String member) {
+		return (Long) call("ZADD", key, toString(score), member);
+	}
+
+	@Override
+	public long zadd(String key, Map<String, Double> scores) {
+		String[] args = new String[2 + scores.size() * 2];
+		args[0] = "ZADD";
+		args[1] = key;
+		int i = 2;
+		for(Map.Entry<String, Double> entry : scores.entrySet()) {
+			args[i++] = toString(entry.getValue());
+			args[i++] = entry.getKey();
+		}
+		return (Long) call(args);
+	}
+
+	@Override
+	public double zincrby(String key, double delta, String member) {
+		return Double.parseDouble((String) call("ZINCRBY", key, toString(delta), member));
+	}
+
+	@Override
+	public long zrem(String key, String... members) {
+		return (Long) call(prepend("ZREM", key, members));
+	}
+
+	@Override
+	public Double zscore(String key, String member) {
+		String score = (String) call("ZSCORE", key, member);
+		return score == null ? null : parseScore(score);
+	}
+
+	@Override
+	public Long zrevrank(String key, String member) {
+		return (Long) call("ZREVRANK", key, member);
+	}
+
+	@Override
+	public long zcard(String key) {
+		return (Long) call("ZCARD", key);
+	}
+
+	@Override
+	public Map<String, Double> zrevrangeWithScores(String key, long start, long end) {
+		return toScoreMap(call("ZREVRANGE", key, String.valueOf(start), String.valueOf(end), "WITHSCORES"));
+	}
+
+	@Override
+	public Map<String, Double> zrevrangeByScoreWithScores(String key, double max, double min) {
+		return toScoreMap(call("ZREVRANGEBYSCORE", key, toString(max), toString(min), "WITHSCORES"));
+	}
+
+	@Override
+	public void close() {
+		//The client is shared and closed by the backend
+	}
+	
+	/**
+	 * Sends a command and waits for its reply
+	 * 
+	 * @param args the command and its arguments
+	 * @return the reply
+	 */
+	private Object call(String... args) {
+		try {
+			return client.send(args).get(timeout, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RespException) throw (RespException) e.getCause();
+			throw new RespException("Redis command " + args[0] + " failed", e.getCause());
+		} catch (TimeoutException e) {
+			throw new RespException("Redis command " + args[0] + " timed out after " + timeout + "ms", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RespException("Redis command " + args[0] + " was interrupted", e);
+		}
+	}
+	
+	/**
+	 * Puts a command name in front of its arguments
+	 * 
+	 * @param command the command name
+	 * @param args the arguments
+	 * @return the command and its arguments
+	 */
+	private static String[] prepend(String command, String... args) {
+		String[] result = new String[args.length + 1];
+		result[0] = command;
+		System.arraycopy(args, 0, result, 1, args.length);
+		return result;
+	}
+	
+	/**
+	 * Puts a command name and key in front of its arguments
+	 * 
+	 * @param command the command name
+	 * @param key the key
+	 * @param args the arguments
+	 * @return the command and its arguments
+	 */
+	private static String[] prepend(String command, String key, String... args) {
+		String[] result = new String[args.length + 2];
+		result[0] = command;
+		result[1] = key;
+		System.arraycopy(args, 0, result, 2, args.length);
+		return result;
+	}
+	
+	/**
+	 * Converts an array reply of strings
+	 * 
+	 * @param reply the reply
+	 * @return the strings
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<String> toStringList(Object reply) {
+		List<String> list = new ArrayList<>();
+		for(Object element : (List<Object>) reply) {
+			list.add((String) element);
+		}
+		return list;
+	}
+	
+	/**
+	 * Converts the reply of a range query with scores
+	 * 
+	 * @param reply the reply of alternating members and scores
+	 * @return the members mapped to their scores in rank order
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, Double> toScoreMap(Object reply) {
+		List<Object> list = (List<Object>) reply;
+		Map<String, Double> map = new LinkedHashMap<>();
+		for(int i = 0; i + 1 < list.size(); i += 2) {
+			map.put((String) list.get(i), parseScore((String) list.get(i + 1)));
+		}
+		return map;
+	}
+	
+	/**
+	 * Formats a score or increment for redis
+	 * 
+	 * @param value the value
+	 * @return the redis representation
+	 */
+	private static String toString(double value) {
+		if(value == Double.POSITIVE_INFINITY) return "+inf";
+		if(value == Double.NEGATIVE_INFINITY) return "-inf";
+		return String.valueOf(value);
+	}
+	
+	/**
+	 * Parses a score from redis
+	 * 
+	 * @param score the redis representation
+	 * @return the score
+	 */
+	private static double parseScore(String score) {
+		if(score.equals("inf") || score.equals("+inf")) return Double.POSITIVE_INFINITY;
+		if(score.equals("-inf")) return Double.NEGATIVE_INFINITY;
+		return Double.parseDouble(score);
+	}
+	
+}
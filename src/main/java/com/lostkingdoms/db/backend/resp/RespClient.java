@@ -0,0 +1,269 @@
+package com.lostkingdoms.db.backend.resp;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.lostkingdoms.db.exceptions.RespException;
+import com.lostkingdoms.db.logger.LKLogger;
+import com.lostkingdoms.db.logger.LogType;
+
+/**
+ * A multiplexed non-blocking redis client. A few connections are shared by all callers and
+ * served by one IO thread, so the throughput is not bounded by a pool size. Commands which are
+ * sent concurrently are pipelined. Commands are routed to a connection by their first key,
+ * so commands on the same key keep their order.
+ * <p>
+ * The futures are completed on the IO thread. Dependent stages should not block or should use
+ * the async variants of {@link CompletableFuture}.
+ *
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class RespClient implements AutoCloseable {
+
+	/**
+	 * The host of redis
+	 */
+	private final String host;
+	
+	/**
+	 * The port of redis
+	 */
+	private final int port;
+	
+	/**
+	 * The connect timeout in milliseconds
+	 */
+	private final int timeout;
+	
+	/**
+	 * The password or null
+	 */
+	private final String password;
+	
+	/**
+	 * The database
+	 */
+	private final int database;
+	
+	/**
+	 * The connections. Broken connections are replaced on the next command
+	 */
+	private final RespConnection[] connections;
+	
+	/**
+	 * The selector of the IO thread
+	 */
+	private final Selector selector;
+	
+	/**
+	 * The tasks which have to run on the IO thread
+	 */
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * The connection for commands without key
+	 */
+	private final AtomicInteger next = new AtomicInteger();
+	
+	/** Written commands */
+	private final LongAdder commands = new LongAdder();
+	
+	/** Socket writes of commands */
+	private final LongAdder writes = new LongAdder();
+	
+	/**
+	 * True if the client is closed
+	 */
+	private volatile boolean closed;
+	
+	
+	
+	/**
+	 * Constructor of the {@link RespClient}. Opens the connections and starts the IO thread
+	 * 
+	 * @param host the host of redis
+	 * @param port the port of redis
+	 * @param connections the number of connections
+	 * @param timeout the connect timeout in milliseconds
+	 * @param password the password or null
+	 * @param database the database which is selected on every new connection
+	 * @throws IOException if the selector could not be opened
+	 */
+	public RespClient(String host, int port, int connections, int timeout, String password, int database) throws IOException {
+		this.host = host;
+		this.port = port;
+		this.timeout = timeout;
+		this.password = password == null || password.isEmpty() ? null : password;
+		this.database = database;
+		this.connections = new RespConnection[Math.max(1, connections)];
+		this.selector = Selector.open();
+		
+		Thread thread = new Thread(this::run, "redis_Resp_IO");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Sends a command. The connection is chosen by the first argument after the command name
+	 * 
+	 * @param args the command and its arguments
+	 * @return the future of the reply. Completes exceptionally with a {@link RespException} on error replies
+	 */
+	public CompletableFuture<Object> send(String... args) {
+		int index = args.length > 1 ? (args[1].hashCode() & Integer.MAX_VALUE) % connections.length 
+				: (next.getAndIncrement() & Integer.MAX_VALUE) % connections.length;
+		
+		try {
+			return getConnection(index).send(args);
+		} catch (IOException e) {
+			CompletableFuture<Object> future = new CompletableFuture<>();
+			future.completeExceptionally(new RespException("Redis connection could not be opened", e));
+			return future;
+		}
+	}
+	
+	/**
+	 * Get an intact connection. Opens a new one if there is none
+	 * 
+	 * @param index the index of the connection
+	 * @return the connection
+	 * @throws IOException if the connection could not be opened
+	 */
+	private RespConnection getConnection(int index) throws IOException {
+		RespConnection connection = connections[index];
+		if(connection != null && !connection.isBroken()) return connection;
+		
+		synchronized (connections) {
+			connection = connections[index];
+			if(connection != null && !connection.isBroken()) return connection;
+			if(closed) throw new IOException("Client is closed");
+			
+			connection = new RespConnection(this, host, port, timeout);
+			RespConnection registered = connection;
+			execute(() -> registered.register(selector));
+			if(password != null) connection.send("AUTH", password).whenComplete((reply, error) -> setupFailed(registered, error));
+			if(database != 0) connection.send("SELECT", String.valueOf(database)).whenComplete((reply, error) -> setupFailed(registered, error));
+			connections[index] = connection;
+			return connection;
+		}
+	}
+	
+	/**
+	 * Runs a task on the IO thread
+	 * 
+	 * @param task the task
+	 */
+	void execute(Runnable task) {
+		tasks.add(task);
+		selector.wakeup();
+	}
+	
+	/**
+	 * Records a socket write
+	 * 
+	 * @param count the number of commands in the write
+	 */
+	void written(int count) {
+		commands.add(count);
+		writes.increment();
+	}
+	
+	/**
+	 * The loop of the IO thread
+	 */
+	private void run() {
+		while(true) {
+			try {
+				selector.select();
+				
+				Runnable task;
+				while((task = tasks.poll()) != null) {
+					task.run();
+				}
+				if(!selector.isOpen()) return;
+				
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					RespConnection connection = (RespConnection) key.attachment();
+					if(!key.isValid()) continue;
+					if(key.isWritable()) connection.write();
+					if(key.isValid() && key.isReadable()) connection.read();
+				}
+			} catch (ClosedSelectorException e) {
+				return;
+			} catch (Exception e) {
+				LKLogger.getInstance().error("Redis IO thread failed: ", e, LogType.SYNC);
+			}
+		}
+	}
+	
+	/**
+	 * Get the number of written commands
+	 * 
+	 * @return the commands
+	 */
+	public long getCommands() {
+		return commands.sum();
+	}
+	
+	/**
+	 * Get the number of socket writes. Commands divided by writes is the mean pipeline depth
+	 * 
+	 * @return the writes
+	 */
+	public long getWrites() {
+		return writes.sum();
+	}
+	
+	/**
+	 * Closes all connections and stops the IO thread
+	 */
+	@Override
+	public void close() {
+		synchronized (connections) {
+			closed = true;
+			for(RespConnection connection : connections) {
+				if(connection != null) execute(() -> connection.fail(new IOException("Client is closed")));
+			}
+		}
+		execute(() -> {
+			try {
+				selector.close();
+			} catch (IOException e) {
+				//Already closed
+			}
+		});
+	}
+	
+	@Override
+	public String toString() {
+		long written = getWrites();
+		return "commands=" + getCommands() + " writes=" + written 
+				+ " pipelineDepth=" + (written == 0 ? 0 : String.format("%.2f", getCommands() / (double) written));
+	}
+	
+	/**
+	 * Logs a failed AUTH or SELECT of a new connection and breaks the connection, so
+	 * commands are not sent unauthenticated or to the wrong database and the next send reconnects
+	 * 
+	 * @param connection the connection
+	 * @param error the error or null
+	 */
+	private void setupFailed(RespConnection connection, Throwable error) {
+		if(error == null) return;
+		LKLogger.getInstance().error("Redis connection setup failed: ", error, LogType.SYNC);
+		execute(() -> connection.fail(error));
+	}
+	
+}
@@ -0,0 +1,335 @@
+package com.lostkingdoms.db.backend.resp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.lostkingdoms.db.exceptions.RespException;
+
+/**
+ * A non-blocking connection to redis which is shared by many callers.
+ * Commands are queued by the callers and written by the IO thread of the {@link RespClient}.
+ * All commands which were queued since the last write go out in one write, so concurrent
+ * commands are pipelined automatically. Replies arrive in command order and complete the
+ * futures in the same order.
+ *
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+final class RespConnection {
+
+	/**
+	 * The size of the socket read buffer
+	 */
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	
+	/**
+	 * The client this connection belongs to
+	 */
+	private final RespClient client;
+	
+	/**
+	 * The socket
+	 */
+	private final SocketChannel channel;
+	
+	/**
+	 * The commands which are not written yet. Filled by the callers
+	 */
+	private final Queue<Command> queued = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * The futures of the written commands which wait for their reply. Only used by the IO thread
+	 */
+	private final Queue<CompletableFuture<Object>> awaiting = new ArrayDeque<>();
+	
+	/**
+	 * True if a flush is scheduled on the IO thread
+	 */
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+	
+	/**
+	 * The bytes which are not written yet. Only used by the IO thread
+	 */
+	private ByteBuffer out = ByteBuffer.allocate(16 * 1024);
+	
+	/**
+	 * The socket read buffer. Only used by the IO thread
+	 */
+	private final ByteBuffer in = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+	
+	/**
+	 * The parser of the replies. Only used by the IO thread
+	 */
+	private final RespParser parser = new RespParser();
+	
+	/**
+	 * The selection key of the socket
+	 */
+	private SelectionKey selectionKey;
+	
+	/**
+	 * The cause if this connection is broken
+	 */
+	private volatile Throwable failure;
+	
+	
+	
+	/**
+	 * Opens a connection. Connecting blocks until the timeout
+	 * 
+	 * @param client the client
+	 * @param host the host of redis
+	 * @param port the port of redis
+	 * @param timeout the connect timeout in milliseconds
+	 * @throws IOException if the connection could not be opened
+	 */
+	RespConnection(RespClient client, String host, int port, int timeout) throws IOException {
+		this.client = client;
+		this.channel = SocketChannel.open();
+		try {
+			channel.socket().setTcpNoDelay(true);
+			channel.socket().connect(new InetSocketAddress(host, port), timeout);
+			channel.configureBlocking(false);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Queues a command
+	 * 
+	 * @param args the command and its arguments
+	 * @return the future of the reply
+	 */
+	CompletableFuture<Object> send(String... args) {
+		CompletableFuture<Object> future = new CompletableFuture<>();
+		if(failure != null) {
+			future.completeExceptionally(new RespException("Redis connection is broken", failure));
+			return future;
+		}
+		
+		queued.add(new Command(encode(args), future));
+		if(flushScheduled.compareAndSet(false, true)) {
+			client.execute(this::flush);
+		}
+		
+		//The connection may have failed before the command was queued
+		if(failure != null) failQueued();
+		return future;
+	}
+	
+	/**
+	 * Check if the connection is broken
+	 * 
+	 * @return true if the connection is broken
+	 */
+	boolean isBroken() {
+		return failure != null;
+	}
+	
+	/**
+	 * Registers the socket at the selector of the IO thread. Is called on the IO thread
+	 * 
+	 * @param selector the selector
+	 */
+	void register(Selector selector) {
+		try {
+			selectionKey = channel.register(selector, SelectionKey.OP_READ, this);
+			if(!queued.isEmpty()) flush();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+	
+	/**
+	 * Writes all queued commands. Is called on the IO thread
+	 */
+	void flush() {
+		flushScheduled.set(false);
+		if(failure != null || selectionKey == null) return;
+		
+		int commands = 0;
+		Command command;
+		while((command = queued.poll()) != null) {
+			if(out.remaining() < command.bytes.length) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + command.bytes.length));
+				out.flip();
+				larger.put(out);
+				out = larger;
+			}
+			out.put(command.bytes);
+			awaiting.add(command.future);
+			commands++;
+		}
+		
+		write();
+		if(commands > 0) client.written(commands);
+	}
+	
+	/**
+	 * Writes the buffered bytes as far as the socket accepts them. Is called on the IO thread
+	 */
+	void write() {
+		if(failure != null) return;
+		try {
+			out.flip();
+			channel.write(out);
+			boolean remaining = out.hasRemaining();
+			out.compact();
+			selectionKey.interestOps(remaining ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+	
+	/**
+	 * Reads the available replies and completes their futures. Is called on the IO thread
+	 */
+	void read() {
+		try {
+			int read;
+			while((read = channel.read(in)) > 0) {
+				in.flip();
+				parser.feed(in);
+				in.clear();
+				
+				Object reply;
+				while((reply = parser.next()) != RespParser.INCOMPLETE) {
+					CompletableFuture<Object> future = awaiting.poll();
+					if(future == null) throw new IOException("Reply without command");
+					
+					if(reply instanceof RespException) future.completeExceptionally((RespException) reply);
+					else future.complete(reply);
+				}
+			}
+			if(read < 0) throw new IOException("Connection closed by redis");
+		} catch (IOException | RuntimeException e) {
+			fail(e);
+		}
+	}
+	
+	/**
+	 * Breaks this connection and fails all commands which did not get a reply
+	 * 
+	 * @param cause the cause
+	 */
+	void fail(Throwable cause) {
+		if(failure == null) failure = cause;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			//Already broken
+		}
+		
+		RespException exception = new RespException("Redis connection is broken", failure);
+		CompletableFuture<Object> future;
+		while((future = awaiting.poll()) != null) {
+			future.completeExceptionally(exception);
+		}
+		failQueued();
+	}
+	
+	/**
+	 * Fails all commands which are not written yet
+	 */
+	private void failQueued() {
+		RespException exception = new RespException("Redis connection is broken", failure);
+		Command command;
+		while((command = queued.poll()) != null) {
+			command.future.completeExceptionally(exception);
+		}
+	}
+	
+	/**
+	 * Encodes a command as RESP array of bulk strings
+	 * 
+	 * @param args the command and its arguments
+	 * @return the bytes
+	 */
+	private static byte[] encode(String... args) {
+		byte[][] encoded = new byte[args.length][];
+		int size = 1 + digits(args.length) + 2;
+		for(int i = 0; i < args.length; i++) {
+			encoded[i] = args[i].getBytes(StandardCharsets.UTF_8);
+			size += 1 + digits(encoded[i].length) + 2 + encoded[i].length + 2;
+		}
+		
+		byte[] bytes = new byte[size];
+		int position = header(bytes, 0, '*', args.length);
+		for(byte[] arg : encoded) {
+			position = header(bytes, position, '$', arg.length);
+			System.arraycopy(arg, 0, bytes, position, arg.length);
+			position += arg.length;
+			bytes[position++] = '\r';
+			bytes[position++] = '\n';
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Writes a type marker, a length and CRLF
+	 * 
+	 * @param bytes the target
+	 * @param position the position in the target
+	 * @param type the type marker
+	 * @param length the length
+	 * @return the position after the header
+	 */
+	private static int header(byte[] bytes, int position, char type, int length) {
+		bytes[position++] = (byte) type;
+		int digits = digits(length);
+		for(int i = digits - 1; i >= 0; i--) {
+			bytes[position + i] = (byte) ('0' + length % 10);
+			length /= 10;
+		}
+		position += digits;
+		bytes[position++] = '\r';
+		bytes[position++] = '\n';
+		return position;
+	}
+	
+	/**
+	 * Get the number of decimal digits of a length
+	 * 
+	 * @param length the length
+	 * @return the number of digits
+	 */
+	private static int digits(int length) {
+		int digits = 1;
+		while(length >= 10) {
+			length /= 10;
+			digits++;
+		}
+		return digits;
+	}
+	
+	/**
+	 * A queued command
+	 */
+	private static final class Command {
+		
+		/** The encoded command */
+		private final byte[] bytes;
+		
+		/** The future of the reply */
+		private final CompletableFuture<Object> future;
+		
+		private Command(byte[] bytes, CompletableFuture<Object> future) {
+			this.bytes = bytes;
+			this.future = future;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,211 @@
+package com.lostkingdoms.db.backend.resp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import com.lostkingdoms.db.exceptions.RespException;
+
+/**
+ * Incremental parser of RESP2 replies. Bytes are fed as they arrive from the socket and
+ * complete replies are taken with {@link #next()}.
+ * Simple and bulk strings are parsed to {@link String}, integers to {@link Long}, arrays to
+ * {@link List}, nil to null and errors to {@link RespException}.
+ *
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+final class RespParser {
+
+	/**
+	 * Returned by {@link #next()} if the buffered bytes do not contain a complete reply
+	 */
+	static final Object INCOMPLETE = new Object();
+	
+	/**
+	 * The buffered bytes
+	 */
+	private byte[] buffer = new byte[16 * 1024];
+	
+	/**
+	 * The position of the first unparsed byte
+	 */
+	private int start;
+	
+	/**
+	 * The position after the last buffered byte
+	 */
+	private int end;
+	
+	/**
+	 * The read position of the reply which is parsed at the moment
+	 */
+	private int position;
+	
+	/**
+	 * The arrays which are not complete yet, innermost last. Parsed elements are kept between
+	 * feeds, so a large reply arriving in many reads is not parsed again from its beginning
+	 */
+	private final Deque<PartialArray> partial = new ArrayDeque<>();
+	
+	
+	
+	/**
+	 * Appends received bytes
+	 * 
+	 * @param bytes the bytes. Are read until the limit
+	 */
+	void feed(ByteBuffer bytes) {
+		int length = bytes.remaining();
+		if(end + length > buffer.length) {
+			//Move the unparsed bytes to the front or grow the buffer
+			int unparsed = end - start;
+			byte[] target = unparsed + length > buffer.length ? new byte[Math.max(buffer.length * 2, unparsed + length)] : buffer;
+			System.arraycopy(buffer, start, target, 0, unparsed);
+			buffer = target;
+			start = 0;
+			end = unparsed;
+		}
+		bytes.get(buffer, end, length);
+		end += length;
+	}
+	
+	/**
+	 * Parses the next reply
+	 * 
+	 * @return the reply or {@link #INCOMPLETE}
+	 */
+	Object next() {
+		while(true) {
+			position = start;
+			Object element = parse();
+			if(element == INCOMPLETE) return INCOMPLETE;
+			consumed();
+			
+			if(element instanceof PartialArray) {
+				partial.addLast((PartialArray) element);
+				continue;
+			}
+			
+			//Add the element to its array and complete the arrays which are full
+			while(!partial.isEmpty()) {
+				PartialArray array = partial.peekLast();
+				array.elements.add(element);
+				if(array.elements.size() < array.size) break;
+				
+				partial.removeLast();
+				element = array.elements;
+			}
+			if(partial.isEmpty()) return element;
+		}
+	}
+	
+	/**
+	 * Marks the bytes until the read position as parsed
+	 */
+	private void consumed() {
+		start = position;
+		if(start == end) {
+			start = 0;
+			end = 0;
+		}
+	}
+	
+	/**
+	 * Parses a reply or the header of a non empty array at the read position
+	 * 
+	 * @return the reply, a {@link PartialArray} or {@link #INCOMPLETE}
+	 */
+	private Object parse() {
+		if(position >= end) return INCOMPLETE;
+		byte type = buffer[position++];
+		
+		int lineEnd = findLineEnd();
+		if(lineEnd < 0) return INCOMPLETE;
+		
+		switch(type) {
+		case '+':
+			return line(lineEnd);
+		case '-':
+			return new RespException(line(lineEnd));
+		case ':':
+			return number(lineEnd);
+		case '$':
+			int length = (int) number(lineEnd);
+			if(length < 0) return null;
+			if(position + length + 2 > end) return INCOMPLETE;
+			String bulk = new String(buffer, position, length, StandardCharsets.UTF_8);
+			position += length + 2;
+			return bulk;
+		case '*':
+			int size = (int) number(lineEnd);
+			if(size < 0) return null;
+			if(size == 0) return new ArrayList<>();
+			return new PartialArray(size);
+		default:
+			throw new RespException("Unknown RESP type " + (char) type);
+		}
+	}
+	
+	/**
+	 * Finds the CR of the line at the read position
+	 * 
+	 * @return the position of the CR or -1 if the line is incomplete
+	 */
+	private int findLineEnd() {
+		for(int i = position; i < end - 1; i++) {
+			if(buffer[i] == '\r' && buffer[i + 1] == '\n') return i;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Reads the line at the read position as string
+	 * 
+	 * @param lineEnd the position of the CR
+	 * @return the line
+	 */
+	private String line(int lineEnd) {
+		String line = new String(buffer, position, lineEnd - position, StandardCharsets.UTF_8);
+		position = lineEnd + 2;
+		return line;
+	}
+	
+	/**
+	 * Reads the line at the read position as number
+	 * 
+	 * @param lineEnd the position of the CR
+	 * @return the number
+	 */
+	private long number(int lineEnd) {
+		boolean negative = buffer[position] == '-';
+		long value = 0;
+		for(int i = negative ? position + 1 : position; i < lineEnd; i++) {
+			value = value * 10 + (buffer[i] - '0');
+		}
+		position = lineEnd + 2;
+		return negative ? -value : value;
+	}
+	
+	/**
+	 * An array whose elements are not all received yet
+	 */
+	private static final class PartialArray {
+		
+		/** The number of elements of the array */
+		private final int size;
+		
+		/** The elements parsed so far */
+		private final List<Object> elements;
+		
+		private PartialArray(int size) {
+			this.size = size;
+			this.elements = new ArrayList<>(Math.min(size, 1024));
+		}
+		
+	}
+	
+}
@@ -0,0 +1,59 @@
+package com.lostkingdoms.db.backend.resp;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.lostkingdoms.db.backend.SyncListener;
+import com.lostkingdoms.db.backend.SyncTransport;
+import com.lostkingdoms.db.exceptions.RespException;
+
+/**
+ * A {@link SyncTransport} which publishes over the multiplexed {@link RespClient}.
+ * A subscription blocks its connection, so subscribing is left to another transport
+ *
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class RespSyncTransport implements SyncTransport {
+
+	/** The client of the publishes */
+	private final RespClient client;
+	
+	/** The reply timeout in milliseconds */
+	private final long timeout;
+	
+	/** The transport of the subscriptions */
+	private final SyncTransport subscriptions;
+	
+	public RespSyncTransport(RespClient client, long timeout, SyncTransport subscriptions) {
+		this.client = client;
+		this.timeout = timeout;
+		this.subscriptions = subscriptions;
+	}
+	
+	@Override
+	public void publish(String channel, String message) {
+		try {
+			client.send("PUBLISH", channel, message).get(timeout, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			throw new RespException("Sync message could not be published", e.getCause());
+		} catch (TimeoutException e) {
+			throw new RespException("Sync message publish timed out after " + timeout + "ms", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RespException("Sync message publish was interrupted", e);
+		}
+	}
+
+	@Override
+	public void subscribe(String channel, SyncListener listener) {
+		subscriptions.subscribe(channel, listener);
+	}
+
+	@Override
+	public void close() {
+		subscriptions.close();
+	}
+	
+}
@@ -0,0 +1,34 @@
+package com.lostkingdoms.db.exceptions;
+
+public class BackendUnavailableException extends RuntimeException {
+
+	/**
+	 * Serial Version UID
+	 */
+	private static final long serialVersionUID = -2913776105213484627L;
+
+	/**
+	 * The name of the backend
+	 */
+	private final String backend;
+	
+	/**
+	 * The backend operation which was rejected
+	 */
+	private final String operation;
+	
+	public BackendUnavailableException(String backend, String operation) {
+		this.backend = backend;
+		this.operation = operation;
+	}
+	
+	public String getBackend() {
+		return backend;
+	}
+	
+	@Override
+	public String toString() {
+		return "BackendUnavailableException: " + backend + " is unavailable, rejected operation " + operation;
+	}
+	
+}
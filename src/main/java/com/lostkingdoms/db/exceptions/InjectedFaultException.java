@@ -0,0 +1,36 @@
+package com.lostkingdoms.db.exceptions;
+
+import com.lostkingdoms.db.backend.fault.FaultType;
+
+public class InjectedFaultException extends RuntimeException {
+
+	/**
+	 * Serial Version UID
+	 */
+	private static final long serialVersionUID = -4388270386641955012L;
+
+	/**
+	 * The injected fault
+	 */
+	private final FaultType type;
+	
+	/**
+	 * The backend operation which failed
+	 */
+	private final String operation;
+	
+	public InjectedFaultException(FaultType type, String operation) {
+		this.type = type;
+		this.operation = operation;
+	}
+	
+	public FaultType getType() {
+		return type;
+	}
+
+	@Override
+	public String toString() {
+		return "InjectedFaultException: Injected " + type + " in backend operation " + operation;
+	}
+	
+}
@@ -0,0 +1,18 @@
+package com.lostkingdoms.db.exceptions;
+
+public class RespException extends RuntimeException {
+
+	/**
+	 * Serial Version UID
+	 */
+	private static final long serialVersionUID = 6180542318390315736L;
+
+	public RespException(String message) {
+		super(message);
+	}
+	
+	public RespException(String message, Throwable cause) {
+		super(message, cause);
+	}
+	
+}
@@ -1,7 +1,14 @@
 package com.lostkingdoms.db.factories;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.impl.RedisReplicaRouter;
+import com.lostkingdoms.db.metrics.DataMetrics;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 
@@ -23,22 +30,67 @@ public final class JedisFactory {
 	 */
 	private static JedisPool jedisPool;
 	
+	/**
+	 * The thread safe {@link JedisCluster}. Is created on first use
+	 */
+	private static JedisCluster jedisCluster;
+	
+	/**
+	 * The router of reads to the redis replicas. Is created on first use
+	 */
+	private static RedisReplicaRouter replicaRouter;
+	
 	
 	
 	/**
 	 * Constructor.
 	 * Initiates the jedis connection and pool.
+	 * The database is selected once when a connection is created, not on every borrow.
 	 */
     private JedisFactory() {
-        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        jedisPool = createPool(DataOrganizationManager.redisHost, DataOrganizationManager.redisPort);
+        DataMetrics.getInstance().registerPool("redis", jedisPool);
+    }
 
-        jedisPool = new JedisPool(
-                poolConfig,
-                "127.0.0.1",
-                6379
+    /**
+     * Creates a pool to a redis server with the configured pool size, timeouts and database
+     *
+     * @param host the host of the server
+     * @param port the port of the server
+     * @return The {@link JedisPool}
+     */
+    public static JedisPool createPool(String host, int port) {
+        String password = DataOrganizationManager.redisPassword;
+        return new JedisPool(
+                createPoolConfig(),
+                host,
+                port,
+                DataOrganizationManager.redisTimeout,
+                password == null || password.isEmpty() ? null : password,
+                DataOrganizationManager.redisDBNumber
             );
     }
 
+    /**
+     * Creates the configuration of a redis pool.
+     * Idle connections are validated by the evictor thread instead of on borrow or return,
+     * so the validation PING is not on the hot path.
+     *
+     * @return The {@link JedisPoolConfig}
+     */
+    public static JedisPoolConfig createPoolConfig() {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(DataOrganizationManager.redisPoolMaxTotal);
+        poolConfig.setMaxIdle(DataOrganizationManager.redisPoolMaxIdle);
+        poolConfig.setMinIdle(DataOrganizationManager.redisPoolMinIdle);
+        poolConfig.setMaxWaitMillis(DataOrganizationManager.redisPoolMaxWait);
+        poolConfig.setTestOnBorrow(false);
+        poolConfig.setTestOnReturn(false);
+        poolConfig.setTestWhileIdle(true);
+        poolConfig.setTimeBetweenEvictionRunsMillis(30000);
+        return poolConfig;
+    }
+
     /**
      * Get the {@link Jedis Pool}
      * 
@@ -54,9 +106,40 @@ public final class JedisFactory {
      * @return A {@link Jedis} instance
      */
     public Jedis getJedis() {
-    	Jedis jedis =  jedisPool.getResource();
-        jedis.select(DataOrganizationManager.redisDBNumber);
-        return jedis;
+        return jedisPool.getResource();
+    }
+
+    /**
+     * Get the {@link JedisCluster} which connects to the nodes of
+     * {@link DataOrganizationManager#redisClusterNodes}. Creates it on first use
+     * 
+     * @return The {@link JedisCluster}
+     */
+    public synchronized JedisCluster getJedisCluster() {
+        if (jedisCluster == null) {
+            Set<HostAndPort> nodes = new HashSet<>();
+            for (String node : DataOrganizationManager.redisClusterNodes.split(",")) {
+                if (!node.trim().isEmpty()) nodes.add(HostAndPort.parseString(node.trim()));
+            }
+            String password = DataOrganizationManager.redisPassword;
+            jedisCluster = new JedisCluster(nodes, DataOrganizationManager.redisTimeout, DataOrganizationManager.redisTimeout, 5,
+                    password == null || password.isEmpty() ? null : password, createPoolConfig());
+        }
+        return jedisCluster;
+    }
+
+    /**
+     * Get the router of reads to the replicas of {@link DataOrganizationManager#redisReplicas}.
+     * Creates it on first use
+     * 
+     * @return The {@link RedisReplicaRouter} or null if no replicas are configured
+     */
+    public synchronized RedisReplicaRouter getReplicaRouter() {
+        if (replicaRouter == null && DataOrganizationManager.redisReplicas != null && !DataOrganizationManager.redisReplicas.trim().isEmpty()) {
+            replicaRouter = new RedisReplicaRouter(DataOrganizationManager.redisReplicas, 
+                    DataOrganizationManager.redisReplicaRouting, DataOrganizationManager.redisReplicaMaxLag);
+        }
+        return replicaRouter;
     }
 
     /**
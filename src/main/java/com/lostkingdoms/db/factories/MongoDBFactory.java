@@ -5,6 +5,8 @@ import java.net.UnknownHostException;
 import com.lostkingdoms.db.DataOrganizationManager;
 import com.mongodb.DB;
 import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ServerAddress;
 
 /**
  * Provider class for {@link MongoClient} and it's {@link DB} instances
@@ -23,11 +25,17 @@ public final class MongoDBFactory {
 	
 	/**
 	 * Constructor.
-	 * Initiates the mongoDB connection.
+	 * Initiates the mongoDB connection with the configured host, pool size and timeouts.
 	 */
 	private MongoDBFactory() {
 		try {
-			this.mongoClient = new MongoClient();
+			MongoClientOptions options = MongoClientOptions.builder()
+					.connectionsPerHost(DataOrganizationManager.mongoDBConnections)
+					.connectTimeout(DataOrganizationManager.mongoDBConnectTimeout)
+					.socketTimeout(DataOrganizationManager.mongoDBSocketTimeout)
+					.maxWaitTime(DataOrganizationManager.mongoDBMaxWait)
+					.build();
+			this.mongoClient = new MongoClient(new ServerAddress(DataOrganizationManager.mongoDBHost, DataOrganizationManager.mongoDBPort), options);
 		} catch (UnknownHostException e) {
 			e.printStackTrace();
 		}
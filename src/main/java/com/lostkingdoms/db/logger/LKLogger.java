@@ -4,6 +4,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
 
@@ -11,11 +15,24 @@ import com.google.common.io.Files;
 
 /**
  * Name: LKLogger Description: Logger class to handle outputs
+ * 
+ * Log calls only put the message into a lock-free ring buffer. A background thread formats
+ * the lines and writes them in batches to the console and the log file, so logging never
+ * blocks the caller on a syscall. The writer polls the buffer instead of being woken up.
  *
  * @author FPetersen
  */
 public class LKLogger {
 
+	/** The number of messages the ring buffer holds */
+	private static final int BUFFER_CAPACITY = 8192;
+	
+	/** The maximal number of lines the writer formats before it flushes them */
+	private static final int BATCH_SIZE = 256;
+	
+	/** The time in nanoseconds the writer sleeps if there are no messages */
+	private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(1);
+
 	private static LKLogger instance;
 
 	public static LKLogger getInstance() {
@@ -49,13 +66,34 @@ public class LKLogger {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		
+		Thread writer = new Thread(this::write, "lk_Logger");
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000), "lk_Logger_Shutdown"));
 	}
 
-	private LogLevel level = LogLevel.INFO;
-	private PrintWriter stream = null;
-	private boolean active = true;
+	private volatile LogLevel level = LogLevel.INFO;
+	private volatile PrintWriter stream = null;
+	private volatile boolean active = true;
 	private boolean consoleOutput = true;
-	private LogType logType = LogType.ALL;
+	private volatile LogType logType = LogType.ALL;
+	private volatile LogOverflowPolicy overflowPolicy = LogOverflowPolicy.DROP;
+	
+	/** The messages which were not written yet */
+	private final LogRingBuffer buffer = new LogRingBuffer(BUFFER_CAPACITY);
+	
+	/** Messages dropped because the buffer was full */
+	private final LongAdder dropped = new LongAdder();
+	
+	/** The dropped messages which were reported by the writer */
+	private long reportedDropped;
+	
+	/** The second of the cached timestamp. Only used by the writer */
+	private long cachedSecond = -1;
+	
+	/** The formatted timestamp of the cached second. Only used by the writer */
+	private String cachedTimestamp;
 
 	public void setLevel(LogLevel l) {
 		level = l;
@@ -93,6 +131,34 @@ public class LKLogger {
 		this.active = active;
 	}
 
+	/**
+	 * Set what happens if messages are logged faster than they are written
+	 *
+	 * @param overflowPolicy
+	 */
+	public void setOverflowPolicy(LogOverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Check if messages of a level are logged. Avoids building messages which are not logged
+	 *
+	 * @param l
+	 * @return true if the level is enabled
+	 */
+	public boolean isEnabled(LogLevel l) {
+		return active && l.compareTo(level) <= 0;
+	}
+
+	/**
+	 * Get the number of messages which were dropped because the buffer was full
+	 *
+	 * @return the number of dropped messages
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
 	public void error(Object m, LogType lt) {
 		if (LogLevel.ERROR.compareTo(level) <= 0) {
 			format("ERROR", m, lt);
@@ -101,11 +167,7 @@ public class LKLogger {
 
 	public void error(Object m, Throwable e, LogType lt) {
 		if (LogLevel.ERROR.compareTo(level) <= 0) {
-			StringBuilder sb = new StringBuilder(1024);
-			sb.append(m);
-			sb.append(ExceptionUtils.getStackTrace(e));
-
-			format("ERROR", sb.toString(), lt);
+			log("ERROR", m, e, lt);
 		}
 	}
 
@@ -117,11 +179,7 @@ public class LKLogger {
 
 	public void warn(Object m, Throwable e, LogType lt) {
 		if (LogLevel.WARNING.compareTo(level) <= 0) {
-			StringBuilder sb = new StringBuilder(1024);
-			sb.append(m);
-			sb.append(ExceptionUtils.getStackTrace(e));
-
-			format("WARNING", sb.toString(), lt);
+			log("WARNING", m, e, lt);
 		}
 	}
 
@@ -143,13 +201,144 @@ public class LKLogger {
 		}
 	}
 
+	/**
+	 * Log a debug message which is only built if debug messages are logged
+	 *
+	 * @param m
+	 * @param lt
+	 */
+	public void debug(Supplier<?> m, LogType lt) {
+		if (LogLevel.DEBUG.compareTo(level) <= 0) {
+			format("DEBUG", m.get(), lt);
+		}
+	}
+
+	/**
+	 * Log an info message which is only built if info messages are logged
+	 *
+	 * @param m
+	 * @param lt
+	 */
+	public void info(Supplier<?> m, LogType lt) {
+		if (LogLevel.INFO.compareTo(level) <= 0) {
+			format("INFO", m.get(), lt);
+		}
+	}
+
+	/**
+	 * Log a trace message which is only built if trace messages are logged
+	 *
+	 * @param m
+	 * @param lt
+	 */
+	public void trace(Supplier<?> m, LogType lt) {
+		if (LogLevel.TRACE.compareTo(level) <= 0) {
+			format("TRACE", m.get(), lt);
+		}
+	}
+
 	public void format(String type, Object m, LogType lt) {
+		log(type, m, null, lt);
+	}
+
+	/**
+	 * Put a message into the buffer of the writer
+	 *
+	 * @param type the name of the level
+	 * @param m the message
+	 * @param e the throwable whose stack trace is appended or null
+	 * @param lt the {@link LogType}
+	 */
+	private void log(String type, Object m, Throwable e, LogType lt) {
 		if (!active)
 			return;
 		if (!lt.equals(LogType.ALL) && lt.equals(logType))
 			return;
 
-		StringBuilder sb = new StringBuilder(1024);
+		// The message is converted now, the object may change until it is written
+		String message = String.valueOf(m);
+		long time = System.currentTimeMillis();
+		if (buffer.offer(type, lt, message, e, time))
+			return;
+
+		if (overflowPolicy == LogOverflowPolicy.DROP && !type.equals("ERROR")) {
+			dropped.increment();
+			return;
+		}
+
+		while (!buffer.offer(type, lt, message, e, time)) {
+			LockSupport.parkNanos(IDLE_WAIT);
+		}
+	}
+
+	/**
+	 * Wait until all messages logged before are written
+	 *
+	 * @param timeout the maximal time to wait in milliseconds
+	 * @return true if all messages were written
+	 */
+	public boolean flush(long timeout) {
+		long target = buffer.getWritten();
+		long deadline = System.currentTimeMillis() + timeout;
+		while (buffer.getRead() < target) {
+			if (System.currentTimeMillis() > deadline)
+				return false;
+			LockSupport.parkNanos(IDLE_WAIT);
+		}
+		return true;
+	}
+
+	/**
+	 * The loop of the writer thread. Formats the buffered messages and writes them in batches
+	 */
+	private void write() {
+		StringBuilder batch = new StringBuilder(16384);
+		while (true) {
+			try {
+				int lines = 0;
+				LogRingBuffer.Record record;
+				while (lines < BATCH_SIZE && (record = buffer.peek()) != null) {
+					append(batch, record);
+					buffer.release(record);
+					lines++;
+				}
+
+				long droppedNow = dropped.sum();
+				if (droppedNow != reportedDropped) {
+					append(batch, "WARNING", LogType.ALL, (droppedNow - reportedDropped) + " log messages dropped, the log buffer was full", null, System.currentTimeMillis());
+					reportedDropped = droppedNow;
+					lines++;
+				}
+
+				if (lines == 0) {
+					LockSupport.parkNanos(IDLE_WAIT);
+					continue;
+				}
+
+				String output = batch.toString();
+				batch.setLength(0);
+				if (consoleOutput) {
+					System.out.print(output);
+					System.out.flush();
+				}
+
+				PrintWriter current = stream;
+				if (current != null) {
+					current.print(output);
+					current.flush();
+				}
+			} catch (Throwable t) {
+				batch.setLength(0);
+				t.printStackTrace();
+			}
+		}
+	}
+
+	private void append(StringBuilder sb, LogRingBuffer.Record record) {
+		append(sb, record.level, record.type, record.message, record.throwable, record.time);
+	}
+
+	private void append(StringBuilder sb, String type, LogType lt, String m, Throwable e, long time) {
 		sb.append("[");
 		sb.append(type);
 		sb.append("] ");
@@ -157,19 +346,26 @@ public class LKLogger {
 		sb.append("[");
 		sb.append(lt.name());
 		sb.append("] ");
-		sb.append(new Date().toString());
+		sb.append(timestamp(time));
 		sb.append(" - ");
 		sb.append(m);
+		if (e != null)
+			sb.append(ExceptionUtils.getStackTrace(e));
+		sb.append(System.lineSeparator());
+	}
 
-		String line = sb.toString();
-		if (consoleOutput) {
-			System.out.println(line);
-		}
-
-		if (stream != null) {
-			stream.println(line);
-			stream.flush();
+	/**
+	 * Formats a time. The formatted second is cached, so only one line per second creates a {@link Date}
+	 *
+	 * @param time the time in milliseconds
+	 * @return the formatted time
+	 */
+	private String timestamp(long time) {
+		long second = time / 1000;
+		if (second != cachedSecond) {
+			cachedSecond = second;
+			cachedTimestamp = new Date(time).toString();
 		}
-
+		return cachedTimestamp;
 	}
 }
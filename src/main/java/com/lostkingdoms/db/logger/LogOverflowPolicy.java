@@ -0,0 +1,16 @@
+package com.lostkingdoms.db.logger;
+
+/**
+ * Defines what the {@link LKLogger} does if its ring buffer is full.
+ * DROP: The message is dropped and counted. The writer reports the number of dropped messages
+ * BLOCK: The calling thread waits until the writer made room
+ * Errors always wait, so they are never dropped.
+ *
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public enum LogOverflowPolicy {
+
+	DROP, BLOCK;
+	
+}
@@ -0,0 +1,147 @@
+package com.lostkingdoms.db.logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded lock-free ring buffer of log records with many producers and one consumer.
+ * The records are allocated once and reused, so logging does not allocate besides the message.
+ * Every slot has a sequence number which tells producers and the consumer whose turn it is.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+final class LogRingBuffer {
+
+	/** The reused records */
+	private final Record[] records;
+	
+	/** The sequence number of every slot */
+	private final AtomicLongArray sequences;
+	
+	/** capacity - 1, the capacity is a power of two */
+	private final int mask;
+	
+	/** The position of the next record a producer claims */
+	private final AtomicLong tail = new AtomicLong();
+	
+	/** The position of the next record the consumer reads. Only written by the consumer */
+	private volatile long head;
+	
+	
+	
+	/**
+	 * Constructor of {@link LogRingBuffer}
+	 * 
+	 * @param capacity the minimal number of records. Is rounded up to a power of two
+	 */
+	LogRingBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.records = new Record[size];
+		this.sequences = new AtomicLongArray(size);
+		this.mask = size - 1;
+		
+		for(int i = 0; i < size; i++) {
+			records[i] = new Record();
+			sequences.set(i, i);
+		}
+	}
+	
+	/**
+	 * Adds a record unless the buffer is full
+	 * 
+	 * @param level the name of the level
+	 * @param type the {@link LogType}
+	 * @param message the message
+	 * @param throwable the throwable whose stack trace is appended or null
+	 * @param time the time in milliseconds
+	 * @return false if the buffer is full
+	 */
+	boolean offer(String level, LogType type, String message, Throwable throwable, long time) {
+		long position;
+		int index;
+		while(true) {
+			position = tail.get();
+			index = (int) (position & mask);
+			long difference = sequences.get(index) - position;
+			if(difference == 0) {
+				if(tail.compareAndSet(position, position + 1)) break;
+			} else if(difference < 0) {
+				return false;
+			}
+		}
+		
+		Record record = records[index];
+		record.level = level;
+		record.type = type;
+		record.message = message;
+		record.throwable = throwable;
+		record.time = time;
+		// Publishes the record to the consumer
+		sequences.lazySet(index, position + 1);
+		return true;
+	}
+	
+	/**
+	 * Get the next record. Has to be released with {@link #release(Record)} before the next call.
+	 * Must only be called by the consumer
+	 * 
+	 * @return the record or null if the buffer is empty
+	 */
+	Record peek() {
+		long position = head;
+		int index = (int) (position & mask);
+		if(sequences.get(index) != position + 1) return null;
+		return records[index];
+	}
+	
+	/**
+	 * Releases the record returned by {@link #peek()}, so producers can reuse it
+	 * 
+	 * @param record the record
+	 */
+	void release(Record record) {
+		record.message = null;
+		record.throwable = null;
+		
+		long position = head;
+		sequences.lazySet((int) (position & mask), position + records.length);
+		head = position + 1;
+	}
+	
+	/**
+	 * Get the number of records which were added
+	 * 
+	 * @return the number of records
+	 */
+	long getWritten() {
+		return tail.get();
+	}
+	
+	/**
+	 * Get the number of records which were consumed
+	 * 
+	 * @return the number of records
+	 */
+	long getRead() {
+		return head;
+	}
+	
+	/**
+	 * A reused log record
+	 */
+	static final class Record {
+		
+		String level;
+		
+		LogType type;
+		
+		String message;
+		
+		Throwable throwable;
+		
+		long time;
+		
+	}
+	
+}
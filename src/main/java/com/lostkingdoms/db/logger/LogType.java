@@ -7,5 +7,5 @@ package com.lostkingdoms.db.logger;
  * @author FPetersen
  */
 public enum LogType {
-    ALL, STARTUP, OBJECT_CREATION, SYNC, FIELD_INITIALIZATION, GET, USER;
+    ALL, STARTUP, OBJECT_CREATION, SYNC, FIELD_INITIALIZATION, GET, USER, PERFORMANCE;
 }
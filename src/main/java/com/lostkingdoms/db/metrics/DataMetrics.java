@@ -0,0 +1,262 @@
+package com.lostkingdoms.db.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.logger.LKLogger;
+import com.lostkingdoms.db.logger.LogType;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+import com.lostkingdoms.db.trace.OperationTracer;
+
+import redis.clients.jedis.util.Pool;
+
+/**
+ * Collects the runtime metrics of all organized data objects.
+ * The metrics can be pulled with {@link #getEntityMetrics()} or read via JMX
+ * (domain com.lostkingdoms.db).
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class DataMetrics implements DataMetricsMXBean {
+
+	/** The JMX domain of all metrics */
+	public static final String JMX_DOMAIN = "com.lostkingdoms.db";
+	
+	/** The singletons instance */
+	private static DataMetrics instance;
+	
+	/** True if metrics are recorded */
+	private static volatile boolean enabled = true;
+	
+	/** The metrics of all entities mapped by their entity key */
+	private final Map<String, EntityMetrics> entityMetrics;
+	
+	/** The statistics of all connection pools mapped by their name */
+	private final Map<String, PoolMetrics> poolMetrics = new ConcurrentHashMap<>();
+	
+	/** Sync messages sent by this instance */
+	private final LongAdder syncMessagesSent = new LongAdder();
+	
+	/** Sync messages received from other instances */
+	private final LongAdder syncMessagesReceived = new LongAdder();
+	
+	/** Sync messages which were ignored because they were sent by this instance */
+	private final LongAdder syncMessagesIgnored = new LongAdder();
+	
+	/** The lag, losses and invalidations of received sync messages */
+	private final SyncMetrics syncMetrics = new SyncMetrics(DataOrganizationManager.HASH_SLOT_COUNT);
+	
+	private DataMetrics() {
+		entityMetrics = new ConcurrentHashMap<>();
+		register(this, "type=DataMetrics");
+		register(syncMetrics, "type=SyncMetrics");
+	}
+	
+	/**
+	 * Get the instance of the metrics
+	 * 
+	 * @return The instance
+	 */
+	public static synchronized DataMetrics getInstance() {
+		if(instance == null) instance = new DataMetrics();
+		return instance;
+	}
+	
+	/**
+	 * Check if metrics are recorded
+	 * 
+	 * @return true if metrics are recorded
+	 */
+	public static boolean isRecording() {
+		return enabled;
+	}
+	
+	/**
+	 * Get the start time for a latency measurement
+	 * 
+	 * @return the current nano time or 0 if neither metrics, the {@link SlowOperationLog} nor the {@link OperationTracer} are enabled
+	 */
+	public static long start() {
+		return enabled || SlowOperationLog.isEnabled() || OperationTracer.isEnabled() ? System.nanoTime() : 0;
+	}
+	
+	/**
+	 * Get the metrics of the entity a {@link DataKey} belongs to. Creates them on first use
+	 * 
+	 * @param dataKey the {@link DataKey}
+	 * @return the {@link EntityMetrics}
+	 */
+	public EntityMetrics getEntityMetrics(DataKey dataKey) {
+		return getEntityMetrics(dataKey.getMainKey());
+	}
+	
+	/**
+	 * Get the metrics of an entity. Creates them on first use
+	 * 
+	 * @param entityKey the key of the entity
+	 * @return the {@link EntityMetrics}
+	 */
+	public EntityMetrics getEntityMetrics(String entityKey) {
+		EntityMetrics metrics = entityMetrics.get(entityKey);
+		if(metrics != null) return metrics;
+		
+		return entityMetrics.computeIfAbsent(entityKey, key -> {
+			EntityMetrics newMetrics = new EntityMetrics(key);
+			register(newMetrics, "type=EntityMetrics,entity=" + ObjectName.quote(key));
+			return newMetrics;
+		});
+	}
+	
+	/**
+	 * Get the metrics of all entities
+	 * 
+	 * @return the metrics mapped by entity key
+	 */
+	public Map<String, EntityMetrics> getEntityMetrics() {
+		return Collections.unmodifiableMap(entityMetrics);
+	}
+	
+	/**
+	 * Registers the statistics of a connection pool. A pool with the same name is replaced
+	 * 
+	 * @param poolName the name of the pool
+	 * @param pool the pool
+	 * @return the {@link PoolMetrics}
+	 */
+	public PoolMetrics registerPool(String poolName, Pool<?> pool) {
+		PoolMetrics metrics = new PoolMetrics(poolName, pool);
+		if(poolMetrics.put(poolName, metrics) != null) unregister("type=PoolMetrics,pool=" + ObjectName.quote(poolName));
+		register(metrics, "type=PoolMetrics,pool=" + ObjectName.quote(poolName));
+		return metrics;
+	}
+	
+	/**
+	 * Get the statistics of all connection pools
+	 * 
+	 * @return the statistics mapped by pool name
+	 */
+	public Map<String, PoolMetrics> getPoolMetrics() {
+		return Collections.unmodifiableMap(poolMetrics);
+	}
+	
+	/**
+	 * Record a sent sync message
+	 */
+	public void syncMessageSent() {
+		if(enabled) syncMessagesSent.increment();
+	}
+	
+	/**
+	 * Record a received sync message
+	 * 
+	 * @param ignored true if the message was sent by this instance
+	 */
+	public void syncMessageReceived(boolean ignored) {
+		if(!enabled) return;
+		if(ignored) syncMessagesIgnored.increment();
+		else syncMessagesReceived.increment();
+	}
+	
+	/**
+	 * Get the metrics of the received sync messages
+	 * 
+	 * @return the {@link SyncMetrics}
+	 */
+	public SyncMetrics getSyncMetrics() {
+		return syncMetrics;
+	}
+	
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	@Override
+	public void setEnabled(boolean enabled) {
+		DataMetrics.enabled = enabled;
+	}
+	
+	@Override
+	public long getSyncMessagesSent() {
+		return syncMessagesSent.sum();
+	}
+	
+	@Override
+	public long getSyncMessagesReceived() {
+		return syncMessagesReceived.sum();
+	}
+	
+	@Override
+	public long getSyncMessagesIgnored() {
+		return syncMessagesIgnored.sum();
+	}
+	
+	@Override
+	public List<String> getEntityKeys() {
+		return new ArrayList<>(entityMetrics.keySet());
+	}
+	
+	@Override
+	public List<String> getPools() {
+		List<String> pools = new ArrayList<>();
+		for(PoolMetrics metrics : poolMetrics.values()) {
+			pools.add(metrics.toString());
+		}
+		return pools;
+	}
+	
+	@Override
+	public void reset() {
+		syncMessagesSent.reset();
+		syncMessagesReceived.reset();
+		syncMessagesIgnored.reset();
+		syncMetrics.reset();
+		for(EntityMetrics metrics : entityMetrics.values()) {
+			metrics.reset();
+		}
+	}
+	
+	/**
+	 * Registers a MBean on the platform MBean server
+	 * 
+	 * @param mBean the MBean
+	 * @param properties the key properties of the MBean name
+	 */
+	static void register(Object mBean, String properties) {
+		try {
+			ObjectName name = new ObjectName(JMX_DOMAIN + ":" + properties);
+			if(!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(mBean, name);
+			}
+		} catch (JMException e) {
+			LKLogger.getInstance().warn("MBean " + properties + " could not be registered: ", e, LogType.STARTUP);
+		}
+	}
+	
+	/**
+	 * Unregisters a MBean from the platform MBean server
+	 * 
+	 * @param properties the key properties of the MBean name
+	 */
+	static void unregister(String properties) {
+		try {
+			ObjectName name = new ObjectName(JMX_DOMAIN + ":" + properties);
+			if(ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			}
+		} catch (JMException e) {
+			LKLogger.getInstance().warn("MBean " + properties + " could not be unregistered: ", e, LogType.STARTUP);
+		}
+	}
+	
+}
@@ -0,0 +1,29 @@
+package com.lostkingdoms.db.metrics;
+
+import java.util.List;
+
+/**
+ * JMX view of the global {@link DataMetrics}
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public interface DataMetricsMXBean {
+
+	boolean isEnabled();
+	
+	void setEnabled(boolean enabled);
+	
+	long getSyncMessagesSent();
+	
+	long getSyncMessagesReceived();
+	
+	long getSyncMessagesIgnored();
+	
+	List<String> getEntityKeys();
+	
+	List<String> getPools();
+	
+	void reset();
+	
+}
@@ -0,0 +1,11 @@
+package com.lostkingdoms.db.metrics;
+
+/**
+ * The operations of organized data objects whose latency is measured
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public enum DataOperation {
+	GET, SET, ADD, REMOVE, PUT, CLEAR, INCREMENT, FLUSH;
+}
@@ -0,0 +1,378 @@
+package com.lostkingdoms.db.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.lostkingdoms.db.organization.annotations.OrganizedEntity;
+import com.lostkingdoms.db.trace.OperationTracer;
+
+/**
+ * The metrics of all organized data objects of one {@link OrganizedEntity}.
+ * Records from which tier reads were served, conversion times and write latencies.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class EntityMetrics implements EntityMetricsMXBean {
+
+	/** The key of the entity */
+	private final String entityKey;
+	
+	/** Reads served by the local copy */
+	private final LongAdder localHits = new LongAdder();
+	
+	/** Reads served by the local copy although it was stale */
+	private final LongAdder staleReads = new LongAdder();
+	
+	/** Reads which waited for the fetch of a concurrent read instead of fetching themselves */
+	private final LongAdder coalescedReads = new LongAdder();
+	
+	/** Stale reads whose local copy matched the content hash in redis */
+	private final LongAdder revalidations = new LongAdder();
+	
+	/** Reads served by the local copy because a backend was unavailable */
+	private final LongAdder degradedReads = new LongAdder();
+	
+	/** Writes which were buffered because a backend was unavailable */
+	private final LongAdder bufferedWrites = new LongAdder();
+	
+	/** Reads served by redis */
+	private final LongAdder redisHits = new LongAdder();
+	
+	/** Reads which did not find data in redis */
+	private final LongAdder redisMisses = new LongAdder();
+	
+	/** Reads served by MongoDB */
+	private final LongAdder mongoDBFallbacks = new LongAdder();
+	
+	/** Reads which did not find data in MongoDB */
+	private final LongAdder mongoDBMisses = new LongAdder();
+	
+	/** Sync messages sent for this entity */
+	private final LongAdder syncMessagesSent = new LongAdder();
+	
+	/** Invalidations caused by sync messages of other instances for this entity */
+	private final LongAdder invalidations = new LongAdder();
+	
+	/** Latency of reads which were not served locally */
+	private final LatencyHistogram readLatency = new LatencyHistogram();
+	
+	/** Latency of conversions from and to the database format */
+	private final LatencyHistogram conversionLatency = new LatencyHistogram();
+	
+	/** Latency of writes per operation */
+	private final Map<DataOperation, LatencyHistogram> writeLatency;
+	
+	/** Reads which were not served locally mapped by the field */
+	private final Map<String, LongAdder> fieldRefetches = new ConcurrentHashMap<>();
+	
+	EntityMetrics(String entityKey) {
+		this.entityKey = entityKey;
+		
+		writeLatency = new EnumMap<>(DataOperation.class);
+		for(DataOperation operation : DataOperation.values()) {
+			writeLatency.put(operation, new LatencyHistogram());
+		}
+	}
+	
+	/**
+	 * Record a read served by the local copy
+	 */
+	public void localHit() {
+		if(DataMetrics.isRecording()) localHits.increment();
+	}
+	
+	/**
+	 * Record a read served by the stale local copy while it is refreshed in the background.
+	 * Counts as local hit as well
+	 */
+	public void staleRead() {
+		if(!DataMetrics.isRecording()) return;
+		localHits.increment();
+		staleReads.increment();
+	}
+	
+	/**
+	 * Record a read which waited for the fetch of a concurrent read. Counts as local hit as well
+	 */
+	public void coalescedRead() {
+		if(!DataMetrics.isRecording()) return;
+		localHits.increment();
+		coalescedReads.increment();
+	}
+	
+	/**
+	 * Record a stale read whose local copy matched the content hash in redis, so the value was not transferred
+	 */
+	public void revalidated() {
+		if(DataMetrics.isRecording()) revalidations.increment();
+	}
+	
+	/**
+	 * Record a read served by the local copy because a backend was unavailable. Counts as local hit as well
+	 */
+	public void degradedRead() {
+		if(!DataMetrics.isRecording()) return;
+		localHits.increment();
+		degradedReads.increment();
+	}
+	
+	/**
+	 * Record a write which was buffered because a backend was unavailable
+	 */
+	public void bufferedWrite() {
+		if(DataMetrics.isRecording()) bufferedWrites.increment();
+	}
+	
+	/**
+	 * Record a read served by redis
+	 * 
+	 * @param field the field key
+	 */
+	public void redisHit(String field) {
+		if(!DataMetrics.isRecording()) return;
+		redisHits.increment();
+		fieldRefetches.computeIfAbsent(field, f -> new LongAdder()).increment();
+	}
+	
+	/**
+	 * Record a read which did not find data in redis
+	 * 
+	 * @param field the field key
+	 */
+	public void redisMiss(String field) {
+		if(!DataMetrics.isRecording()) return;
+		redisMisses.increment();
+		fieldRefetches.computeIfAbsent(field, f -> new LongAdder()).increment();
+	}
+	
+	/**
+	 * Record a read which had to query MongoDB
+	 * 
+	 * @param found true if MongoDB contained the data
+	 */
+	public void mongoDBFallback(boolean found) {
+		if(!DataMetrics.isRecording()) return;
+		if(found) mongoDBFallbacks.increment();
+		else mongoDBMisses.increment();
+	}
+	
+	/**
+	 * Record a sent sync message
+	 */
+	public void syncMessageSent() {
+		if(DataMetrics.isRecording()) syncMessagesSent.increment();
+	}
+	
+	/**
+	 * Record an invalidation caused by a sync message of another instance
+	 */
+	public void invalidated() {
+		if(DataMetrics.isRecording()) invalidations.increment();
+	}
+	
+	/**
+	 * Record the latency of a read which was not served locally
+	 * 
+	 * @param start the start time from {@link DataMetrics#start()}
+	 */
+	public void recordRead(long start) {
+		if(start != 0 && DataMetrics.isRecording()) readLatency.record(System.nanoTime() - start);
+	}
+	
+	/**
+	 * Record the latency of a conversion
+	 * 
+	 * @param start the start time from {@link DataMetrics#start()}
+	 */
+	public void recordConversion(long start) {
+		SlowOperationLog.phase(OperationPhase.CONVERSION, start);
+		OperationTracer.span(OperationPhase.CONVERSION, "convert", start);
+		if(start != 0 && DataMetrics.isRecording()) conversionLatency.record(System.nanoTime() - start);
+	}
+	
+	/**
+	 * Record the latency of a write
+	 * 
+	 * @param operation the write operation
+	 * @param start the start time from {@link DataMetrics#start()}
+	 */
+	public void recordWrite(DataOperation operation, long start) {
+		if(start != 0 && DataMetrics.isRecording()) writeLatency.get(operation).record(System.nanoTime() - start);
+	}
+	
+	/**
+	 * Get the read latency histogram (nanoseconds)
+	 * 
+	 * @return the histogram
+	 */
+	public LatencyHistogram getReadLatency() {
+		return readLatency;
+	}
+	
+	/**
+	 * Get the conversion latency histogram (nanoseconds)
+	 * 
+	 * @return the histogram
+	 */
+	public LatencyHistogram getConversionLatency() {
+		return conversionLatency;
+	}
+	
+	/**
+	 * Get the write latency histogram of an operation (nanoseconds)
+	 * 
+	 * @param operation the write operation
+	 * @return the histogram
+	 */
+	public LatencyHistogram getWriteLatency(DataOperation operation) {
+		return writeLatency.get(operation);
+	}
+	
+	@Override
+	public String getEntityKey() {
+		return entityKey;
+	}
+	
+	@Override
+	public long getLocalHits() {
+		return localHits.sum();
+	}
+	
+	@Override
+	public long getStaleReads() {
+		return staleReads.sum();
+	}
+	
+	@Override
+	public long getCoalescedReads() {
+		return coalescedReads.sum();
+	}
+	
+	@Override
+	public long getRevalidations() {
+		return revalidations.sum();
+	}
+	
+	@Override
+	public long getDegradedReads() {
+		return degradedReads.sum();
+	}
+	
+	@Override
+	public long getBufferedWrites() {
+		return bufferedWrites.sum();
+	}
+	
+	@Override
+	public long getRedisHits() {
+		return redisHits.sum();
+	}
+	
+	@Override
+	public long getRedisMisses() {
+		return redisMisses.sum();
+	}
+	
+	@Override
+	public long getMongoDBFallbacks() {
+		return mongoDBFallbacks.sum();
+	}
+	
+	@Override
+	public long getMongoDBMisses() {
+		return mongoDBMisses.sum();
+	}
+	
+	@Override
+	public double getLocalHitRatio() {
+		long local = getLocalHits();
+		long total = local + getRedisHits() + getRedisMisses();
+		return total == 0 ? 0 : (double) local / total;
+	}
+	
+	@Override
+	public long getSyncMessagesSent() {
+		return syncMessagesSent.sum();
+	}
+	
+	@Override
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+	
+	@Override
+	public double getReadLatencyP50() {
+		return readLatency.getPercentile(50) / 1000D;
+	}
+	
+	@Override
+	public double getReadLatencyP99() {
+		return readLatency.getPercentile(99) / 1000D;
+	}
+	
+	@Override
+	public double getConversionLatencyP50() {
+		return conversionLatency.getPercentile(50) / 1000D;
+	}
+	
+	@Override
+	public double getConversionLatencyP99() {
+		return conversionLatency.getPercentile(99) / 1000D;
+	}
+	
+	@Override
+	public Map<String, Long> getWriteCounts() {
+		Map<String, Long> counts = new HashMap<>();
+		for(Entry<DataOperation, LatencyHistogram> entry : writeLatency.entrySet()) {
+			if(entry.getValue().getCount() != 0) counts.put(entry.getKey().name(), entry.getValue().getCount());
+		}
+		return counts;
+	}
+	
+	@Override
+	public Map<String, Double> getWriteLatencyP99() {
+		Map<String, Double> latencies = new HashMap<>();
+		for(Entry<DataOperation, LatencyHistogram> entry : writeLatency.entrySet()) {
+			if(entry.getValue().getCount() != 0) latencies.put(entry.getKey().name(), entry.getValue().getPercentile(99) / 1000D);
+		}
+		return latencies;
+	}
+	
+	@Override
+	public Map<String, Long> getFieldRefetches() {
+		Map<String, Long> refetches = new HashMap<>();
+		for(Entry<String, LongAdder> entry : fieldRefetches.entrySet()) {
+			refetches.put(entry.getKey(), entry.getValue().sum());
+		}
+		return Collections.unmodifiableMap(refetches);
+	}
+	
+	@Override
+	public void reset() {
+		localHits.reset();
+		staleReads.reset();
+		coalescedReads.reset();
+		revalidations.reset();
+		degradedReads.reset();
+		bufferedWrites.reset();
+		redisHits.reset();
+		redisMisses.reset();
+		mongoDBFallbacks.reset();
+		mongoDBMisses.reset();
+		syncMessagesSent.reset();
+		invalidations.reset();
+		readLatency.reset();
+		conversionLatency.reset();
+		for(LatencyHistogram histogram : writeLatency.values()) {
+			histogram.reset();
+		}
+		fieldRefetches.clear();
+	}
+	
+}
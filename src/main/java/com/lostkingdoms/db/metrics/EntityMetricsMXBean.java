@@ -0,0 +1,57 @@
+package com.lostkingdoms.db.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link EntityMetrics} of one entity. All latencies are in microseconds
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public interface EntityMetricsMXBean {
+
+	String getEntityKey();
+	
+	long getLocalHits();
+	
+	long getStaleReads();
+	
+	long getCoalescedReads();
+	
+	long getRevalidations();
+	
+	long getDegradedReads();
+	
+	long getBufferedWrites();
+	
+	long getRedisHits();
+	
+	long getRedisMisses();
+	
+	long getMongoDBFallbacks();
+	
+	long getMongoDBMisses();
+	
+	double getLocalHitRatio();
+	
+	long getSyncMessagesSent();
+	
+	long getInvalidations();
+	
+	double getReadLatencyP50();
+	
+	double getReadLatencyP99();
+	
+	double getConversionLatencyP50();
+	
+	double getConversionLatencyP99();
+	
+	Map<String, Long> getWriteCounts();
+	
+	Map<String, Double> getWriteLatencyP99();
+	
+	Map<String, Long> getFieldRefetches();
+	
+	void reset();
+	
+}
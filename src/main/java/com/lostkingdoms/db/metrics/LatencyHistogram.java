@@ -0,0 +1,157 @@
+package com.lostkingdoms.db.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free latency histogram with logarithmic buckets (HDR style).
+ * Every power of two is split into {@link #SUB_BUCKETS} linear buckets, so recorded
+ * values have a relative error of at most 12.5% while the histogram has a fixed size.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class LatencyHistogram {
+
+	/** Number of bits used for the linear sub buckets */
+	private static final int SUB_BUCKET_BITS = 3;
+	
+	/** Number of linear buckets per power of two */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	
+	/** Number of buckets to cover all positive long values */
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+	
+	/** The counts of all buckets */
+	private final AtomicLongArray counts;
+	
+	/** The number of recorded values */
+	private final LongAdder count;
+	
+	/** The sum of all recorded values */
+	private final LongAdder sum;
+	
+	/** The highest recorded value */
+	private final AtomicLong max;
+	
+	public LatencyHistogram() {
+		counts = new AtomicLongArray(BUCKET_COUNT);
+		count = new LongAdder();
+		sum = new LongAdder();
+		max = new AtomicLong();
+	}
+	
+	/**
+	 * Record a value
+	 * 
+	 * @param value the value (e.g. latency in nanoseconds)
+	 */
+	public void record(long value) {
+		if(value < 0) value = 0;
+		
+		counts.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+		
+		long currentMax = max.get();
+		while(value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+	
+	/**
+	 * Get the number of recorded values
+	 * 
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+	
+	/**
+	 * Get the mean of all recorded values
+	 * 
+	 * @return the mean or 0 if nothing was recorded
+	 */
+	public double getMean() {
+		long c = count.sum();
+		return c == 0 ? 0 : (double) sum.sum() / c;
+	}
+	
+	/**
+	 * Get the highest recorded value
+	 * 
+	 * @return the highest value
+	 */
+	public long getMax() {
+		return max.get();
+	}
+	
+	/**
+	 * Get the value below which the given percentage of all recorded values are
+	 * 
+	 * @param percentile the percentile between 0 and 100
+	 * @return the upper bound of the bucket which contains the percentile
+	 */
+	public long getPercentile(double percentile) {
+		long[] snapshot = new long[BUCKET_COUNT];
+		long total = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if(total == 0) return 0;
+		
+		long target = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+		long cumulative = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			cumulative += snapshot[i];
+			if(cumulative >= target) return Math.min(upperBound(i), getMax());
+		}
+		
+		return getMax();
+	}
+	
+	/**
+	 * Removes all recorded values
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+	
+	/**
+	 * Get the bucket of a value
+	 * 
+	 * @param value the value
+	 * @return the index of the bucket
+	 */
+	static int indexOf(long value) {
+		if(value < SUB_BUCKETS) return (int) value;
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	/**
+	 * Get the highest value of a bucket
+	 * 
+	 * @param index the index of the bucket
+	 * @return the highest value which is counted in this bucket
+	 */
+	static long upperBound(int index) {
+		if(index < SUB_BUCKETS) return index;
+		
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = index % SUB_BUCKETS;
+		long lowerBound = (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+		return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+	
+}
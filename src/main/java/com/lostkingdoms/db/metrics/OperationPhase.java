@@ -0,0 +1,11 @@
+package com.lostkingdoms.db.metrics;
+
+/**
+ * The phases of an operation whose time is broken down by the {@link SlowOperationLog}
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public enum OperationPhase {
+	CONNECTION, REDIS, MONGODB, CONVERSION, SYNC, REFLECTION;
+}
@@ -0,0 +1,61 @@
+package com.lostkingdoms.db.metrics;
+
+import redis.clients.jedis.util.Pool;
+
+/**
+ * The statistics of a redis connection pool. Are read from the pool on every call,
+ * so nothing is recorded on the hot path
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class PoolMetrics implements PoolMetricsMXBean {
+
+	/** The name of the pool */
+	private final String poolName;
+	
+	/** The pool */
+	private final Pool<?> pool;
+	
+	PoolMetrics(String poolName, Pool<?> pool) {
+		this.poolName = poolName;
+		this.pool = pool;
+	}
+	
+	@Override
+	public String getPoolName() {
+		return poolName;
+	}
+	
+	@Override
+	public int getActive() {
+		return pool.getNumActive();
+	}
+	
+	@Override
+	public int getIdle() {
+		return pool.getNumIdle();
+	}
+	
+	@Override
+	public int getWaiters() {
+		return pool.getNumWaiters();
+	}
+	
+	@Override
+	public long getMeanBorrowWait() {
+		return pool.getMeanBorrowWaitTimeMillis();
+	}
+	
+	@Override
+	public long getMaxBorrowWait() {
+		return pool.getMaxBorrowWaitTimeMillis();
+	}
+	
+	@Override
+	public String toString() {
+		return poolName + " active=" + getActive() + " idle=" + getIdle() + " waiters=" + getWaiters() 
+				+ " meanBorrowWait=" + getMeanBorrowWait() + "ms maxBorrowWait=" + getMaxBorrowWait() + "ms";
+	}
+	
+}
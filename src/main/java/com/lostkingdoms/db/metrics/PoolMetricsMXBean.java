@@ -0,0 +1,23 @@
+package com.lostkingdoms.db.metrics;
+
+/**
+ * JMX view of the {@link PoolMetrics} of one connection pool. All wait times are in milliseconds
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public interface PoolMetricsMXBean {
+
+	String getPoolName();
+	
+	int getActive();
+	
+	int getIdle();
+	
+	int getWaiters();
+	
+	long getMeanBorrowWait();
+	
+	long getMaxBorrowWait();
+	
+}
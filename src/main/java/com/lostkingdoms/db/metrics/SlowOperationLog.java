@@ -0,0 +1,222 @@
+package com.lostkingdoms.db.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.lostkingdoms.db.logger.LKLogger;
+import com.lostkingdoms.db.logger.LogType;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+
+/**
+ * Logs the data object and DataAccessManager operations which took longer than a threshold,
+ * with the time spent in each {@link OperationPhase}.
+ * The phases are recorded into a small per thread ring, so nothing has to be opened at the start
+ * of an operation. When an operation ends, all phases which started after it are its breakdown.
+ * The backend calls are timed by the {@link TimedBackends}, which are only applied
+ * if the log is enabled, so it costs nothing otherwise.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class SlowOperationLog {
+
+	/** The number of phases each thread remembers */
+	private static final int RING_SIZE = 64;
+	
+	/** The threshold in nanoseconds or 0 if the log is disabled */
+	private static volatile long threshold;
+	
+	/** The maximal number of logged operations per second */
+	private static volatile int maxPerSecond;
+	
+	/** The second the logged operations are counted for */
+	private static final AtomicLong currentSecond = new AtomicLong();
+	
+	/** The number of operations logged in the current second */
+	private static final AtomicInteger loggedThisSecond = new AtomicInteger();
+	
+	/** The number of slow operations which were not logged because of the rate limit */
+	private static final AtomicLong suppressed = new AtomicLong();
+	
+	/** The phases of each thread */
+	private static final ThreadLocal<PhaseRing> rings = ThreadLocal.withInitial(PhaseRing::new);
+	
+	private SlowOperationLog() {}
+	
+	/**
+	 * Enables or disables the log
+	 * 
+	 * @param thresholdMillis the time in milliseconds after which an operation is logged or 0 to disable the log
+	 * @param maxPerSecond the maximal number of logged operations per second
+	 */
+	public static void configure(long thresholdMillis, int maxPerSecond) {
+		SlowOperationLog.maxPerSecond = Math.max(1, maxPerSecond);
+		threshold = Math.max(0, thresholdMillis) * 1000000;
+	}
+	
+	/**
+	 * Check if slow operations are logged
+	 * 
+	 * @return true if the log is enabled
+	 */
+	public static boolean isEnabled() {
+		return threshold != 0;
+	}
+	
+	/**
+	 * Get the number of slow operations which were not logged because of the rate limit
+	 * 
+	 * @return the number of suppressed operations
+	 */
+	public static long getSuppressed() {
+		return suppressed.get();
+	}
+	
+	/**
+	 * Records a phase of the running operation of this thread
+	 * 
+	 * @param phase the phase
+	 * @param start the start time of the phase in nanoseconds or 0
+	 */
+	public static void phase(OperationPhase phase, long start) {
+		if(threshold == 0 || start == 0) return;
+		rings.get().add(phase, start, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Ends an operation of a data object and logs it if it was slow
+	 * 
+	 * @param operation the name of the operation
+	 * @param dataKey the {@link DataKey} of the data object
+	 * @param start the start time from {@link DataMetrics#start()} or 0
+	 */
+	public static void end(Object operation, DataKey dataKey, long start) {
+		long duration = elapsed(start);
+		if(duration == 0) return;
+		
+		log(operation + " of " + dataKey.getRedisKey() + " (entity " + dataKey.getMainKey() + ")", start, duration);
+	}
+	
+	/**
+	 * Ends an operation of the DataAccessManager and logs it if it was slow
+	 * 
+	 * @param operation the name of the operation
+	 * @param entityClass the class of the entity
+	 * @param identifier the identifier of the entity
+	 * @param start the start time from {@link DataMetrics#start()} or 0
+	 */
+	public static void end(String operation, Class<?> entityClass, Object identifier, long start) {
+		long duration = elapsed(start);
+		if(duration == 0) return;
+		
+		log(operation + " of " + entityClass.getName() + " " + identifier, start, duration);
+	}
+	
+	/**
+	 * Get the duration of an operation if it exceeded the threshold
+	 * 
+	 * @param start the start time of the operation or 0
+	 * @return the duration in nanoseconds or 0 if the operation was not slow
+	 */
+	private static long elapsed(long start) {
+		long limit = threshold;
+		if(limit == 0 || start == 0) return 0;
+		
+		long duration = System.nanoTime() - start;
+		return duration >= limit ? duration : 0;
+	}
+	
+	/**
+	 * Logs a slow operation with its breakdown if the rate limit allows it
+	 * 
+	 * @param description the description of the operation
+	 * @param start the start time of the operation
+	 * @param duration the duration of the operation
+	 */
+	private static void log(String description, long start, long duration) {
+		long second = System.currentTimeMillis() / 1000;
+		long current = currentSecond.get();
+		if(second != current && currentSecond.compareAndSet(current, second)) loggedThisSecond.set(0);
+		if(loggedThisSecond.incrementAndGet() > maxPerSecond) {
+			suppressed.incrementAndGet();
+			return;
+		}
+		
+		long[] phases = rings.get().sumSince(start);
+		StringBuilder builder = new StringBuilder("Slow operation ").append(description)
+				.append(" took ").append(toMillis(duration)).append("ms:");
+		long other = duration;
+		for(OperationPhase phase : OperationPhase.values()) {
+			long time = phases[phase.ordinal()];
+			if(time == 0) continue;
+			builder.append(' ').append(phase.name().toLowerCase()).append('=').append(toMillis(time)).append("ms");
+			other -= time;
+		}
+		builder.append(" other=").append(toMillis(Math.max(0, other))).append("ms");
+		
+		long skipped = suppressed.getAndSet(0);
+		if(skipped > 0) builder.append(" (").append(skipped).append(" slow operations were not logged)");
+		
+		LKLogger.getInstance().warn(builder.toString(), LogType.PERFORMANCE);
+	}
+	
+	/**
+	 * Formats nanoseconds as milliseconds with two decimals
+	 * 
+	 * @param nanos the time in nanoseconds
+	 * @return the formatted milliseconds
+	 */
+	private static String toMillis(long nanos) {
+		return String.format("%.2f", nanos / 1000000.0);
+	}
+	
+	/**
+	 * The last phases of one thread. Old phases are overwritten
+	 */
+	private static final class PhaseRing {
+		
+		/** The start times of the phases */
+		private final long[] starts = new long[RING_SIZE];
+		
+		/** The durations of the phases */
+		private final long[] durations = new long[RING_SIZE];
+		
+		/** The phases */
+		private final OperationPhase[] phases = new OperationPhase[RING_SIZE];
+		
+		/** The number of recorded phases */
+		private long count;
+		
+		/**
+		 * Records a phase
+		 * 
+		 * @param phase the phase
+		 * @param start the start time in nanoseconds
+		 * @param duration the duration in nanoseconds
+		 */
+		void add(OperationPhase phase, long start, long duration) {
+			int index = (int) (count++ % RING_SIZE);
+			phases[index] = phase;
+			starts[index] = start;
+			durations[index] = duration;
+		}
+		
+		/**
+		 * Sums the durations of the phases which started at or after the given time
+		 * 
+		 * @param start the start time of the operation
+		 * @return the durations indexed by the ordinal of the phase
+		 */
+		long[] sumSince(long start) {
+			long[] sums = new long[OperationPhase.values().length];
+			for(long i = count - 1; i >= 0 && i >= count - RING_SIZE; i--) {
+				int index = (int) (i % RING_SIZE);
+				if(starts[index] - start < 0) continue;
+				sums[phases[index].ordinal()] += durations[index];
+			}
+			return sums;
+		}
+		
+	}
+	
+}
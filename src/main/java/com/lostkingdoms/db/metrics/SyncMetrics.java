@@ -0,0 +1,195 @@
+package com.lostkingdoms.db.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of the sync messages received from other instances.
+ * Records the time from sending a message until the hashslot was invalidated here (sync lag),
+ * messages which were lost or arrived out of order and which hashslots and entities are
+ * invalidated most. The lag includes the clock difference between the servers.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class SyncMetrics implements SyncMetricsMXBean {
+
+	/** The number of entries of the top lists */
+	private static final int TOP_COUNT = 10;
+	
+	/** Time from sending a message until the hashslot was invalidated */
+	private final LatencyHistogram lag = new LatencyHistogram();
+	
+	/** Messages which never arrived, detected by gaps in the sequence numbers of a sender */
+	private final LongAdder lostMessages = new LongAdder();
+	
+	/** Messages which arrived after a message the sender sent later */
+	private final LongAdder reorderedMessages = new LongAdder();
+	
+	/** Invalidations of each hashslot */
+	private final AtomicLongArray slotInvalidations;
+	
+	/** All invalidations */
+	private final LongAdder invalidations = new LongAdder();
+	
+	/** The time the metrics were started or reset in milliseconds */
+	private volatile long since = System.currentTimeMillis();
+	
+	SyncMetrics(int hashSlotCount) {
+		this.slotInvalidations = new AtomicLongArray(hashSlotCount);
+	}
+	
+	/**
+	 * Record the lag of a received message
+	 * 
+	 * @param micros the time from sending until the invalidation in microseconds
+	 */
+	public void recordLag(long micros) {
+		if(DataMetrics.isRecording()) lag.record(micros * 1000);
+	}
+	
+	/**
+	 * Record the invalidation of a hashslot by another instance
+	 * 
+	 * @param hashSlot the hashslot
+	 */
+	public void invalidated(int hashSlot) {
+		if(!DataMetrics.isRecording()) return;
+		invalidations.increment();
+		slotInvalidations.incrementAndGet(hashSlot);
+	}
+	
+	/**
+	 * Record messages of a sender which did not arrive within the reorder window
+	 * 
+	 * @param missing the number of messages which are lost
+	 */
+	public void messagesLost(long missing) {
+		if(DataMetrics.isRecording()) lostMessages.add(missing);
+	}
+	
+	/**
+	 * Record a message which arrived after a later one of the same sender, but within the reorder window.
+	 * It is not counted as lost
+	 */
+	public void messageReordered() {
+		if(DataMetrics.isRecording()) reorderedMessages.increment();
+	}
+	
+	/**
+	 * Get the lag histogram (nanoseconds)
+	 * 
+	 * @return the histogram
+	 */
+	public LatencyHistogram getLag() {
+		return lag;
+	}
+	
+	@Override
+	public long getLagCount() {
+		return lag.getCount();
+	}
+	
+	@Override
+	public double getLagMean() {
+		return lag.getMean() / 1000D;
+	}
+	
+	@Override
+	public double getLagP50() {
+		return lag.getPercentile(50) / 1000D;
+	}
+	
+	@Override
+	public double getLagP99() {
+		return lag.getPercentile(99) / 1000D;
+	}
+	
+	@Override
+	public double getLagMax() {
+		return lag.getMax() / 1000D;
+	}
+	
+	@Override
+	public long getLostMessages() {
+		return lostMessages.sum();
+	}
+	
+	@Override
+	public long getReorderedMessages() {
+		return reorderedMessages.sum();
+	}
+	
+	@Override
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+	
+	@Override
+	public double getInvalidationRate() {
+		return rate(invalidations.sum());
+	}
+	
+	@Override
+	public List<String> getTopInvalidatedSlots() {
+		List<Integer> slots = new ArrayList<>();
+		for(int slot = 0; slot < slotInvalidations.length(); slot++) {
+			if(slotInvalidations.get(slot) != 0) slots.add(slot);
+		}
+		slots.sort((a, b) -> Long.compare(slotInvalidations.get(b), slotInvalidations.get(a)));
+		
+		List<String> top = new ArrayList<>();
+		for(int slot : slots.subList(0, Math.min(TOP_COUNT, slots.size()))) {
+			top.add(slot + ": " + slotInvalidations.get(slot) + " (" + String.format("%.2f", rate(slotInvalidations.get(slot))) + "/s)");
+		}
+		return top;
+	}
+	
+	@Override
+	public List<String> getTopInvalidatedEntities() {
+		List<EntityMetrics> entities = new ArrayList<>();
+		for(EntityMetrics metrics : DataMetrics.getInstance().getEntityMetrics().values()) {
+			if(metrics.getInvalidations() != 0) entities.add(metrics);
+		}
+		entities.sort((a, b) -> Long.compare(b.getInvalidations(), a.getInvalidations()));
+		
+		List<String> top = new ArrayList<>();
+		for(EntityMetrics metrics : entities.subList(0, Math.min(TOP_COUNT, entities.size()))) {
+			top.add(metrics.getEntityKey() + ": " + metrics.getInvalidations() + " (" + String.format("%.2f", rate(metrics.getInvalidations())) + "/s)");
+		}
+		return top;
+	}
+	
+	/**
+	 * Get the rate of a count since the metrics were started or reset
+	 * 
+	 * @param count the count
+	 * @return the count per second
+	 */
+	private double rate(long count) {
+		long millis = Math.max(1, System.currentTimeMillis() - since);
+		return count * 1000D / millis;
+	}
+	
+	@Override
+	public void reset() {
+		lag.reset();
+		lostMessages.reset();
+		reorderedMessages.reset();
+		invalidations.reset();
+		for(int slot = 0; slot < slotInvalidations.length(); slot++) {
+			slotInvalidations.set(slot, 0);
+		}
+		since = System.currentTimeMillis();
+	}
+	
+	@Override
+	public String toString() {
+		return "lag p50=" + String.format("%.1f", getLagP50()) + "us p99=" + String.format("%.1f", getLagP99()) 
+				+ "us max=" + String.format("%.1f", getLagMax()) + "us lost=" + getLostMessages() + " reordered=" + getReorderedMessages() 
+				+ " invalidations=" + getInvalidations() + " (" + String.format("%.2f", getInvalidationRate()) + "/s)";
+	}
+	
+}
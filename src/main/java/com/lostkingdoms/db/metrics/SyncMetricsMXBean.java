@@ -0,0 +1,37 @@
+package com.lostkingdoms.db.metrics;
+
+import java.util.List;
+
+/**
+ * JMX view of the {@link SyncMetrics}. The lag is in microseconds, rates are per second
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public interface SyncMetricsMXBean {
+
+	long getLagCount();
+	
+	double getLagMean();
+	
+	double getLagP50();
+	
+	double getLagP99();
+	
+	double getLagMax();
+	
+	long getLostMessages();
+	
+	long getReorderedMessages();
+	
+	long getInvalidations();
+	
+	double getInvalidationRate();
+	
+	List<String> getTopInvalidatedSlots();
+	
+	List<String> getTopInvalidatedEntities();
+	
+	void reset();
+	
+}
@@ -0,0 +1,154 @@
+package com.lostkingdoms.db.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import com.lostkingdoms.db.backend.CacheBackend;
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.backend.DocumentBackend;
+import com.lostkingdoms.db.backend.SyncListener;
+import com.lostkingdoms.db.backend.SyncTransport;
+import com.lostkingdoms.db.trace.OperationTracer;
+
+/**
+ * Decorates the redis, MongoDB and sync backends like the CircuitBreaker does, so every call
+ * is recorded as {@link OperationPhase} in the {@link SlowOperationLog} and as span by the
+ * {@link OperationTracer}. Is only applied if one of them is enabled.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class TimedBackends {
+
+	private TimedBackends() {}
+	
+	/**
+	 * Decorates a cache backend, so borrowing and returning connections is recorded as
+	 * {@link OperationPhase#CONNECTION} and all commands as {@link OperationPhase#REDIS}
+	 * 
+	 * @param backend the backend
+	 * @return the decorated backend
+	 */
+	public static CacheBackend wrap(CacheBackend backend) {
+		return new CacheBackend() {
+			@Override
+			public CacheConnection getConnection() {
+				long start = System.nanoTime();
+				CacheConnection connection = backend.getConnection();
+				record(OperationPhase.CONNECTION, "getConnection", start);
+				return proxy(CacheConnection.class, connection, OperationPhase.REDIS);
+			}
+
+			@Override
+			public CacheConnection getReadConnection() {
+				long start = System.nanoTime();
+				CacheConnection connection = backend.getReadConnection();
+				record(OperationPhase.CONNECTION, "getReadConnection", start);
+				return proxy(CacheConnection.class, connection, OperationPhase.REDIS);
+			}
+
+			@Override
+			public void close() {
+				backend.close();
+			}
+		};
+	}
+	
+	/**
+	 * Decorates a database backend, so all calls are recorded as {@link OperationPhase#MONGODB}
+	 * 
+	 * @param backend the backend
+	 * @return the decorated backend
+	 */
+	public static DocumentBackend wrap(DocumentBackend backend) {
+		return proxy(DocumentBackend.class, backend, OperationPhase.MONGODB);
+	}
+	
+	/**
+	 * Decorates a sync transport, so publishing is recorded as {@link OperationPhase#SYNC}
+	 * 
+	 * @param transport the transport
+	 * @return the decorated transport
+	 */
+	public static SyncTransport wrap(SyncTransport transport) {
+		return new SyncTransport() {
+			@Override
+			public void publish(String channel, String message) {
+				long start = System.nanoTime();
+				try {
+					transport.publish(channel, message);
+				} finally {
+					record(OperationPhase.SYNC, "publish", start);
+				}
+			}
+
+			@Override
+			public void subscribe(String channel, SyncListener listener) {
+				transport.subscribe(channel, listener);
+			}
+
+			@Override
+			public void close() {
+				transport.close();
+			}
+		};
+	}
+	
+	/**
+	 * Records a backend call
+	 * 
+	 * @param phase the phase of the call
+	 * @param call the name of the call
+	 * @param start the start time of the call in nanoseconds
+	 */
+	private static void record(OperationPhase phase, String call, long start) {
+		SlowOperationLog.phase(phase, start);
+		OperationTracer.span(phase, call, start);
+	}
+	
+	/**
+	 * Creates a proxy which records every call as the given phase. Closing is recorded as
+	 * {@link OperationPhase#CONNECTION}, because it returns pooled connections
+	 * 
+	 * @param type the interface
+	 * @param delegate the object which does the work
+	 * @param phase the phase of the calls
+	 * @return the proxy
+	 */
+	private static <T> T proxy(Class<T> type, T delegate, OperationPhase phase) {
+		InvocationHandler handler = (proxy, method, args) -> {
+			if(method.getDeclaringClass() == Object.class) return invoke(method, delegate, args);
+			
+			long start = System.nanoTime();
+			try {
+				return invoke(method, delegate, args);
+			} finally {
+				record(method.getName().equals("close") ? OperationPhase.CONNECTION : phase, method.getName(), start);
+			}
+		};
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+	
+	/**
+	 * Invokes a method and unwraps the exceptions it throws
+	 * 
+	 * @param method the method
+	 * @param target the target
+	 * @param args the arguments
+	 * @return the result
+	 */
+	private static Object invoke(Method method, Object target, Object[] args) {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			if(e.getCause() instanceof Error) throw (Error) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+}
@@ -0,0 +1,32 @@
+package com.lostkingdoms.db.organization.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.lostkingdoms.db.DataAccessManager;
+import com.lostkingdoms.db.organization.objects.OrganizedDoubleDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedLongDataObject;
+
+/**
+ * Marks a {@link OrganizedLongDataObject} or {@link OrganizedDoubleDataObject} field of a
+ * {@link OrganizedEntity} as ranked index. The values of all entities are additionally kept
+ * in a redis sorted set, so entities can be queried by rank (e.g. leaderboards) with
+ * {@link DataAccessManager#getTopEntities(Class, String, int)} without loading all entities.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface OrganizedIndex {
+
+	/**
+	 * The key this index is identified with. Uses the lower case field name if not overridden
+	 * 
+	 * @return
+	 */
+	String indexKey() default "";
+	
+}
@@ -6,12 +6,19 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.objects.OrganizedCounterDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedDoubleDataObject;
 import com.lostkingdoms.db.organization.objects.OrganizedListDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedLongDataObject;
 import com.lostkingdoms.db.organization.objects.OrganizedMapDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedSetDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedSortedSetDataObject;
 import com.lostkingdoms.db.organization.objects.OrganizedSingleDataObject;
 
 /**
- * Marks a field as a {@link OrganizedObject}
+ * Marks a field as a {@link OrganizedObject}.
+ * {@link OrganizedLongDataObject} and {@link OrganizedDoubleDataObject} fields
+ * need no generic class definition.
  * 
  * @author Tim Kchler (https://github.com/TimK1998)
  *
@@ -50,6 +57,14 @@ public @interface OrganizedObject {
 	 */
 	Class<?> listClass() default Object.class;
 	
+	/**
+	 * If this {@link OrganizedObject} is a {@link OrganizedSetDataObject} or {@link OrganizedSortedSetDataObject}
+	 * you HAVE TO define the generic type of the set here
+	 * 
+	 * @return
+	 */
+	Class<?> setClass() default Object.class;
+	
 	/**
 	 * If this {@link OrganizedObject} is a {@link OrganizedMapDataObject} you HAVE TO
 	 * define the generic key type of the {@link OrganizedMapDataObject} here
@@ -66,6 +81,25 @@ public @interface OrganizedObject {
 	 */
 	Class<?> mapValClass() default Object.class;
 	
+	/**
+	 * If this {@link OrganizedObject} is a {@link OrganizedCounterDataObject} this defines
+	 * the interval in milliseconds in which local increments are flushed and the
+	 * total is refetched. Default is 1000
+	 * 
+	 * @return
+	 */
+	long flushInterval() default 1000;
+	
+	/**
+	 * The maximal time in milliseconds a read may return the local value after the field
+	 * was changed by another server. Within this bound reads do not block but return the
+	 * local value and refresh it in the background. Use it for fields which can tolerate
+	 * being stale for a tick (e.g. cosmetic or display fields). Default is 0 (reads always block)
+	 * 
+	 * @return
+	 */
+	long maxStaleness() default 0;
+	
 	/**
 	 * If this {@link OrganizedObject} is not part of a {@link OrganizedEntity}
 	 * you have to define a superkey here (the superkey then is used to replace
@@ -0,0 +1,274 @@
+package com.lostkingdoms.db.organization.buffer;
+
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.backend.DocumentBackend;
+import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.enums.WriteOperation;
+import com.lostkingdoms.db.organization.miscellaneous.ContentHash;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+
+/**
+ * A write of a data object which could not reach redis or MongoDB and is replayed by the {@link WriteBuffer}.
+ * Remembers which tiers already applied it, so a replayed increment is not applied twice by a tier.
+ * Is recorded in the {@link WriteJournal}, so it survives a crash
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class BufferedWrite {
+
+	/** Tier flag of redis */
+	private static final byte CACHE = 1;
+	
+	/** Tier flag of MongoDB */
+	private static final byte DOCUMENT = 2;
+	
+	/** Tier flag of the sync message */
+	private static final byte SYNC = 4;
+	
+	/** The key of the written data */
+	private final DataKey dataKey;
+	
+	/** The operation */
+	private final WriteOperation operation;
+	
+	/** The encoded value or delta of the operation or null for DELETE */
+	private final String value;
+	
+	/** The content hash of the value for SET_VERSIONED or null */
+	private final String version;
+	
+	/** The tiers which still have to apply the write */
+	private volatile byte pendingTiers;
+	
+	/** The position of the write in the order of all buffered writes. Assigned by the {@link WriteBuffer} */
+	private long sequence;
+	
+	/** The number of failed replays */
+	private int attempts;
+	
+	
+	
+	/**
+	 * Constructor of {@link BufferedWrite}
+	 * 
+	 * @param dataKey the key of the written data
+	 * @param organizationType the {@link OrganizationType} of the written data
+	 * @param operation the operation
+	 * @param value the encoded value or delta or null for DELETE
+	 */
+	public BufferedWrite(DataKey dataKey, OrganizationType organizationType, WriteOperation operation, String value) {
+		this.dataKey = dataKey;
+		this.operation = operation;
+		this.value = value;
+		this.version = operation == WriteOperation.SET_VERSIONED && !value.isEmpty() ? ContentHash.of(value) : null;
+		
+		byte tiers = 0;
+		if(organizationType == OrganizationType.SYNC || organizationType == OrganizationType.BOTH) tiers |= CACHE | SYNC;
+		if(organizationType == OrganizationType.SAVE_TO_DB || organizationType == OrganizationType.BOTH) tiers |= DOCUMENT;
+		this.pendingTiers = tiers;
+	}
+	
+	/**
+	 * Constructor of a {@link BufferedWrite} recovered from the {@link WriteJournal}
+	 * 
+	 * @param sequence the position of the write in the order of all buffered writes
+	 * @param dataKey the key of the written data
+	 * @param operation the operation
+	 * @param value the encoded value or delta or null for DELETE
+	 * @param version the content hash of the value or null
+	 * @param pendingTiers the tiers which still have to apply the write
+	 */
+	BufferedWrite(long sequence, DataKey dataKey, WriteOperation operation, String value, String version, byte pendingTiers) {
+		this.sequence = sequence;
+		this.dataKey = dataKey;
+		this.operation = operation;
+		this.value = value;
+		this.version = version;
+		this.pendingTiers = pendingTiers;
+	}
+	
+	/**
+	 * Marks the write as applied by redis, because it failed only after redis applied it
+	 */
+	public void cacheApplied() {
+		pendingTiers &= ~CACHE;
+	}
+	
+	/**
+	 * Marks the write as applied by MongoDB, because it failed only after MongoDB applied it
+	 */
+	public void documentApplied() {
+		pendingTiers &= ~DOCUMENT;
+	}
+	
+	/**
+	 * Applies the write to all tiers which did not apply it yet and sends the sync message.
+	 * Throws if a tier fails. The tiers which succeeded are not applied again by the next call
+	 * 
+	 * @param manager the manager whose backends are written
+	 */
+	void apply(DataOrganizationManager manager) {
+		if((pendingTiers & CACHE) != 0) {
+			try (CacheConnection cache = manager.getCacheBackend().getConnection()) {
+				applyToCache(cache);
+			}
+			pendingTiers &= ~CACHE;
+		}
+		
+		if((pendingTiers & DOCUMENT) != 0) {
+			applyToDocuments(manager.getDocumentBackend());
+			pendingTiers &= ~DOCUMENT;
+		}
+		
+		if((pendingTiers & SYNC) != 0) {
+			manager.getSyncTransport().publish(DataOrganizationManager.syncMessageChannel,
+					manager.createSyncMessage(dataKey));
+			pendingTiers &= ~SYNC;
+		}
+	}
+	
+	/**
+	 * Applies the write to redis
+	 * 
+	 * @param cache the connection
+	 */
+	private void applyToCache(CacheConnection cache) {
+		String key = dataKey.getRedisKey();
+		switch (operation) {
+		case SET:
+			if(value.isEmpty()) cache.del(key);
+			else cache.set(key, value);
+			break;
+		case SET_VERSIONED:
+			if(value.isEmpty()) cache.del(key, dataKey.getRedisVersionKey());
+			else cache.mset(key, value, dataKey.getRedisVersionKey(), version == null ? ContentHash.of(value) : version);
+			break;
+		case DELETE:
+			cache.del(key, dataKey.getRedisVersionKey());
+			break;
+		case SET_LONG:
+		case SET_DOUBLE:
+			cache.set(key, value);
+			break;
+		case INCREMENT_LONG:
+			cache.incrBy(key, Long.parseLong(value));
+			break;
+		case INCREMENT_DOUBLE:
+			cache.incrByFloat(key, Double.parseDouble(value));
+			break;
+		case ADD_TO_SET:
+			cache.sadd(key, value);
+			break;
+		case REMOVE_FROM_SET:
+			cache.srem(key, value);
+			break;
+		}
+	}
+	
+	/**
+	 * Applies the write to MongoDB
+	 * 
+	 * @param documents the database
+	 */
+	private void applyToDocuments(DocumentBackend documents) {
+		String collection = dataKey.getMongoDBCollection();
+		String identifier = dataKey.getMongoDBIdentifier();
+		String field = dataKey.getMongoDBValue();
+		switch (operation) {
+		case SET:
+			if(value.isEmpty()) documents.unset(collection, identifier, field);
+			else documents.set(collection, identifier, field, value);
+			break;
+		case SET_VERSIONED:
+			documents.set(collection, identifier, field, value);
+			break;
+		case DELETE:
+			documents.unset(collection, identifier, field);
+			break;
+		case SET_LONG:
+			documents.set(collection, identifier, field, Long.parseLong(value));
+			break;
+		case SET_DOUBLE:
+			documents.set(collection, identifier, field, Double.parseDouble(value));
+			break;
+		case INCREMENT_LONG:
+			documents.increment(collection, identifier, field, Long.parseLong(value));
+			break;
+		case INCREMENT_DOUBLE:
+			documents.increment(collection, identifier, field, Double.parseDouble(value));
+			break;
+		case ADD_TO_SET:
+			documents.addToSet(collection, identifier, field, value);
+			break;
+		case REMOVE_FROM_SET:
+			documents.pull(collection, identifier, field, value);
+			break;
+		}
+	}
+	
+	/**
+	 * Records a failed replay
+	 * 
+	 * @return the number of failed replays
+	 */
+	int failed() {
+		return ++attempts;
+	}
+	
+	/**
+	 * Forgets the failed replays
+	 */
+	void resetAttempts() {
+		attempts = 0;
+	}
+	
+	public DataKey getDataKey() {
+		return dataKey;
+	}
+	
+	public WriteOperation getOperation() {
+		return operation;
+	}
+	
+	public String getValue() {
+		return value;
+	}
+	
+	/**
+	 * Get the content hash of the value
+	 * 
+	 * @return the content hash for SET_VERSIONED or null
+	 */
+	public String getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Get the tiers which still have to apply the write as flags
+	 * 
+	 * @return the flags
+	 */
+	byte getPendingTiers() {
+		return pendingTiers;
+	}
+	
+	void setPendingTiers(byte pendingTiers) {
+		this.pendingTiers = pendingTiers;
+	}
+	
+	long getSequence() {
+		return sequence;
+	}
+	
+	void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+	
+	@Override
+	public String toString() {
+		return operation + " " + dataKey.getRedisKey();
+	}
+	
+}
@@ -0,0 +1,311 @@
+package com.lostkingdoms.db.organization.buffer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.BackendFailures;
+import com.lostkingdoms.db.backend.breaker.CircuitBreaker;
+import com.lostkingdoms.db.backend.breaker.CircuitState;
+import com.lostkingdoms.db.logger.LKLogger;
+import com.lostkingdoms.db.logger.LogType;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+
+/**
+ * Holds the writes of data objects which could not reach redis or MongoDB while a backend is down
+ * and replays them once it is available again. The writes are replayed in the order they were made. The local data of the objects already
+ * contains the writes, so the instance keeps serving its own changes in the meantime.
+ * A write which replaces the whole value makes the earlier buffered writes of its key obsolete,
+ * so the buffer only grows with the number of changed keys and increments.
+ * With a {@link WriteJournal} the buffered writes survive a crash or shutdown and are replayed after the next start.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class WriteBuffer {
+
+	/** The interval in milliseconds in which the buffer is replayed */
+	private static final long REPLAY_INTERVAL = 1000;
+	
+	/** The number of failed replays after which a write is dropped although the backends are available */
+	private static final int MAX_ATTEMPTS = 10;
+	
+	/** The time in milliseconds a full journal is not rewritten again */
+	private static final long JOURNAL_RETRY_INTERVAL = 1000;
+	
+	/** The manager whose writes are buffered */
+	private final DataOrganizationManager manager;
+	
+	/** The buffered writes mapped by the redis key, each list in the order the writes were made */
+	private final Map<String, List<BufferedWrite>> writes = new HashMap<>();
+	
+	/** All buffered writes mapped by their sequence number, so they are replayed in the order they were made */
+	private final NavigableMap<Long, BufferedWrite> ordered = new TreeMap<>();
+	
+	/** The number of buffered writes */
+	private int size;
+	
+	/** The sequence number of the next buffered write */
+	private long nextSequence;
+	
+	/** The journal of the buffered writes or null */
+	private final WriteJournal journal;
+	
+	/** True while the buffered writes do not fit into the journal */
+	private boolean journalFull;
+	
+	/** The time after which a full journal is rewritten again */
+	private long journalRetryAt;
+	
+	/** True if the local data has to be invalidated once the buffer is empty */
+	private volatile boolean invalidatePending;
+	
+	/** True while a replay is running */
+	private final AtomicBoolean replaying = new AtomicBoolean();
+	
+	/** The scheduler of the replay */
+	private final ScheduledExecutorService scheduler;
+	
+	
+	
+	/**
+	 * Constructor of {@link WriteBuffer}. Buffers the writes recovered from the journal
+	 * 
+	 * @param manager the manager whose writes are buffered
+	 * @param journal the journal of the buffered writes or null
+	 */
+	public WriteBuffer(DataOrganizationManager manager, WriteJournal journal) {
+		this.manager = manager;
+		this.journal = journal;
+		
+		if(journal != null) {
+			List<BufferedWrite> recovered = journal.recover();
+			for(BufferedWrite write : recovered) {
+				writes.computeIfAbsent(write.getDataKey().getRedisKey(), k -> new ArrayList<>()).add(write);
+				ordered.put(write.getSequence(), write);
+				nextSequence = Math.max(nextSequence, write.getSequence() + 1);
+				size++;
+			}
+			
+			// Drop the acknowledged records
+			rewriteJournal();
+			if(!recovered.isEmpty()) LKLogger.getInstance().info(recovered.size() + " buffered writes recovered from " + journal.getFile(), LogType.STARTUP);
+		}
+		
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "write_Buffer_Replay");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::replay, journal == null ? REPLAY_INTERVAL : 0, REPLAY_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Buffers a write
+	 * 
+	 * @param write the write
+	 */
+	public synchronized void add(BufferedWrite write) {
+		write.setSequence(nextSequence++);
+		
+		String key = write.getDataKey().getRedisKey();
+		List<BufferedWrite> list = writes.get(key);
+		if(list == null) {
+			list = new ArrayList<>();
+			writes.put(key, list);
+		} else if(write.getOperation().isAbsolute() && !list.isEmpty()) {
+			// The head may be replayed right now, so it is kept
+			for(int i = list.size() - 1; i > 0; i--) {
+				BufferedWrite obsolete = list.remove(i);
+				ordered.remove(obsolete.getSequence());
+				size--;
+				if(journal != null && !journalFull && !journal.acknowledge(obsolete)) rewriteJournal();
+			}
+		}
+		list.add(write);
+		ordered.put(write.getSequence(), write);
+		size++;
+		
+		if(journal == null) return;
+		if(journalFull) retryJournal();
+		else if(!journal.append(write)) rewriteJournal();
+	}
+	
+	/**
+	 * Check if there are buffered writes of a key. New writes of the key have to be buffered
+	 * behind them and reads must not fetch the value without them
+	 * 
+	 * @param dataKey the key
+	 * @return true if there are buffered writes of the key
+	 */
+	public synchronized boolean contains(DataKey dataKey) {
+		return size != 0 && writes.containsKey(dataKey.getRedisKey());
+	}
+	
+	/**
+	 * Get the number of buffered writes
+	 * 
+	 * @return the number of buffered writes
+	 */
+	public synchronized int size() {
+		return size;
+	}
+	
+	/**
+	 * Is called on every state change of a circuit breaker of the manager
+	 * 
+	 * @param state the new state
+	 */
+	public void onStateChange(CircuitState state) {
+		if(state == CircuitState.OPEN) {
+			LKLogger.getInstance().warn("Backend unavailable, serving local data and buffering writes", LogType.SYNC);
+		} else if(state == CircuitState.CLOSED) {
+			// Sync messages may have been missed while redis was down
+			invalidatePending = true;
+			scheduler.execute(this::replay);
+		}
+	}
+	
+	/**
+	 * Replays the buffered writes until a backend is unavailable
+	 */
+	public void replay() {
+		if(!replaying.compareAndSet(false, true)) return;
+		try {
+			int replayed = 0;
+			BufferedWrite write;
+			while((write = head()) != null) {
+				byte pendingTiers = write.getPendingTiers();
+				try {
+					write.apply(manager);
+				} catch (RuntimeException e) {
+					journalTiers(write, pendingTiers);
+					if(BackendFailures.isUnavailable(e)) return;
+					// The backend went down, so the earlier failures were not caused by the write
+					if(!isAvailable()) {
+						write.resetAttempts();
+						return;
+					}
+					if(write.failed() < MAX_ATTEMPTS) return;
+					LKLogger.getInstance().error("Buffered write " + write + " dropped after " + MAX_ATTEMPTS + " attempts: ", e, LogType.SYNC);
+				}
+				remove(write);
+				replayed++;
+			}
+			
+			if(replayed != 0) LKLogger.getInstance().info(replayed + " buffered writes replayed", LogType.SYNC);
+			
+			if(invalidatePending) {
+				invalidatePending = false;
+				manager.invalidateAll();
+			}
+		} finally {
+			replaying.set(false);
+		}
+	}
+	
+	/**
+	 * Check if the circuit breakers of the manager are closed
+	 * 
+	 * @return true if the backends are considered available
+	 */
+	private boolean isAvailable() {
+		CircuitBreaker cacheBreaker = manager.getCacheBreaker();
+		CircuitBreaker documentBreaker = manager.getDocumentBreaker();
+		return (cacheBreaker == null || cacheBreaker.getState() == CircuitState.CLOSED)
+				&& (documentBreaker == null || documentBreaker.getState() == CircuitState.CLOSED);
+	}
+	
+	/**
+	 * Records the tiers which applied a write before its replay failed, so they do not apply it again after a crash
+	 * 
+	 * @param write the write
+	 * @param pendingTiers the tiers which had to apply the write before the replay
+	 */
+	private synchronized void journalTiers(BufferedWrite write, byte pendingTiers) {
+		if(journal == null || journalFull || write.getPendingTiers() == pendingTiers) return;
+		if(!journal.updateTiers(write)) rewriteJournal();
+	}
+	
+	/**
+	 * Rewrites the journal with the buffered writes, e.g. when it is full
+	 */
+	private synchronized void rewriteJournal() {
+		boolean full = !journal.rewrite(ordered.values());
+		if(full && !journalFull) {
+			LKLogger.getInstance().error("Write journal " + journal.getFile() + " is full, buffered writes are lost on a crash", LogType.SYNC);
+		}
+		journalFull = full;
+		if(full) journalRetryAt = System.currentTimeMillis() + JOURNAL_RETRY_INTERVAL;
+	}
+	
+	/**
+	 * Rewrites a full journal once the retry interval passed, e.g. because replayed writes made room.
+	 * Writes are not appended to a full journal, so adds do not rewrite and force it every time
+	 */
+	private synchronized void retryJournal() {
+		if(System.currentTimeMillis() >= journalRetryAt) rewriteJournal();
+	}
+	
+	/**
+	 * Get the oldest buffered write
+	 * 
+	 * @return the write or null if the buffer is empty
+	 */
+	private synchronized BufferedWrite head() {
+		Map.Entry<Long, BufferedWrite> head = ordered.firstEntry();
+		return head == null ? null : head.getValue();
+	}
+	
+	/**
+	 * Removes a replayed write
+	 * 
+	 * @param write the write
+	 */
+	private synchronized void remove(BufferedWrite write) {
+		String key = write.getDataKey().getRedisKey();
+		List<BufferedWrite> list = writes.get(key);
+		if(list == null || !list.remove(write)) return;
+		ordered.remove(write.getSequence());
+		size--;
+		if(list.isEmpty()) writes.remove(key);
+		
+		if(journal == null) return;
+		if(size == 0) {
+			journal.truncate();
+			journalFull = false;
+		} else if(journalFull) {
+			retryJournal();
+		} else if(!journal.acknowledge(write)) {
+			rewriteJournal();
+		}
+	}
+	
+	/**
+	 * Stops the replay. Writes which are still buffered are kept in the journal or lost without one
+	 */
+	public void close() {
+		scheduler.shutdown();
+		
+		if(journal != null) {
+			try {
+				journal.close();
+			} catch (IOException e) {
+				LKLogger.getInstance().error("Write journal could not be closed: ", e, LogType.SYNC);
+			}
+			if(size() != 0) LKLogger.getInstance().info(size() + " buffered writes are kept in " + journal.getFile(), LogType.SYNC);
+		} else if(size() != 0) {
+			LKLogger.getInstance().error(size() + " buffered writes could not be replayed", LogType.SYNC);
+		}
+	}
+	
+}
@@ -0,0 +1,446 @@
+package com.lostkingdoms.db.organization.buffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import com.lostkingdoms.db.logger.LKLogger;
+import com.lostkingdoms.db.logger.LogType;
+import com.lostkingdoms.db.organization.enums.WriteOperation;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+
+/**
+ * An append-only, memory-mapped journal of the {@link BufferedWrite}s of a {@link WriteBuffer}, 
+ * so buffered writes survive a crash or shutdown and are replayed on the next start.
+ * 
+ * Format: the header (magic, version) followed by records. Every record starts with its length
+ * and the CRC32 of its payload. A length of 0 marks the end, so a torn record of a crash is ignored.
+ * The payload starts with a tag byte and the sequence number of the write. 
+ * WRITE records contain the key, operation, value, content hash and the tiers which still have to apply it.
+ * TIERS records update the tiers of a write which was replayed partially.
+ * ACK records mark a write as applied by all tiers.
+ * 
+ * Appends only copy the record into the mapped file, so they survive a crash of the process. 
+ * The file is forced to the disk by a background thread, so concurrent appends share one fsync.
+ * The journal is truncated when the buffer is empty and rewritten with the pending writes when it is full.
+ * A rewrite goes to a temporary file which replaces the journal by an atomic rename, so a crash during
+ * the rewrite leaves either the old or the new journal.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class WriteJournal implements Closeable {
+
+	/** The first bytes of every journal file ("LKWJ") */
+	private static final int MAGIC = 0x4C4B574A;
+	
+	/** The version of the format */
+	private static final byte VERSION = 1;
+	
+	/** The size of the header */
+	private static final int HEADER_SIZE = 5;
+	
+	/** The size of the length and checksum of a record */
+	private static final int RECORD_HEADER_SIZE = 8;
+	
+	/** Tag of a record which contains a write */
+	private static final byte TAG_WRITE = 0;
+	
+	/** Tag of a record which updates the pending tiers of a write */
+	private static final byte TAG_TIERS = 1;
+	
+	/** Tag of a record which acknowledges a write */
+	private static final byte TAG_ACK = 2;
+	
+	/** The journal file */
+	private final File file;
+	
+	/** The size of the file in bytes */
+	private final int size;
+	
+	/** The channel of the file. Is replaced by a rewrite */
+	private FileChannel channel;
+	
+	/** The mapped file. Its position is the end of the last record. Is replaced by a rewrite */
+	private volatile MappedByteBuffer buffer;
+	
+	/** True if records were appended since the last fsync */
+	private volatile boolean dirty;
+	
+	/** The scheduler of the group commit */
+	private final ScheduledExecutorService syncScheduler;
+	
+	
+	
+	/**
+	 * Opens or creates a journal file and maps it to memory
+	 * 
+	 * @param file the journal file
+	 * @param size the size of the file in bytes
+	 * @param syncInterval the interval in milliseconds in which appended records are forced to the disk
+	 * @throws IOException if the file could not be opened
+	 */
+	public WriteJournal(File file, int size, long syncInterval) throws IOException {
+		this.file = file;
+		
+		this.channel = new RandomAccessFile(file, "rw").getChannel();
+		this.size = Math.max(size, (int) Math.min(Integer.MAX_VALUE, channel.size()));
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.size);
+		
+		if(buffer.getInt(0) != MAGIC || buffer.get(4) != VERSION) {
+			writeHeader(buffer);
+			buffer.force();
+		}
+		buffer.position(HEADER_SIZE);
+		
+		this.syncScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "write_Journal_Sync");
+			thread.setDaemon(true);
+			return thread;
+		});
+		syncScheduler.scheduleWithFixedDelay(this::sync, syncInterval, Math.max(1, syncInterval), TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Reads the writes which were not acknowledged. Has to be called before anything is appended.
+	 * Appends continue after the last intact record, a torn record after it is overwritten
+	 * 
+	 * @return the pending writes in the order they were made
+	 */
+	public synchronized List<BufferedWrite> recover() {
+		Map<Long, BufferedWrite> writes = new LinkedHashMap<>();
+		CRC32 crc = new CRC32();
+		
+		int position = HEADER_SIZE;
+		while(position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+			int length = buffer.getInt(position);
+			if(length <= 0 || length > buffer.capacity() - position - RECORD_HEADER_SIZE) break;
+			
+			byte[] payload = new byte[length];
+			ByteBuffer view = buffer.duplicate();
+			view.position(position + RECORD_HEADER_SIZE);
+			view.get(payload);
+			crc.reset();
+			crc.update(payload, 0, length);
+			if((int) crc.getValue() != buffer.getInt(position + 4)) break;
+			
+			try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+				byte tag = in.readByte();
+				long sequence = in.readLong();
+				if(tag == TAG_WRITE) {
+					BufferedWrite write = readWrite(in, sequence);
+					writes.put(sequence, write);
+				} else if(tag == TAG_TIERS) {
+					BufferedWrite write = writes.get(sequence);
+					if(write != null) write.setPendingTiers(in.readByte());
+				} else if(tag == TAG_ACK) {
+					writes.remove(sequence);
+				}
+			} catch (IOException | RuntimeException e) {
+				LKLogger.getInstance().error("Corrupt write journal record at " + position + ": ", e, LogType.STARTUP);
+				break;
+			}
+			position += RECORD_HEADER_SIZE + length;
+		}
+		
+		if(position + 4 <= buffer.capacity()) buffer.putInt(position, 0);
+		buffer.position(position);
+		dirty = true;
+		return new ArrayList<>(writes.values());
+	}
+	
+	/**
+	 * Appends a write
+	 * 
+	 * @param write the write
+	 * @return false if the journal is full
+	 */
+	public boolean append(BufferedWrite write) {
+		return append(encode(write));
+	}
+	
+	/**
+	 * Records the tiers which still have to apply a partially replayed write
+	 * 
+	 * @param write the write
+	 * @return false if the journal is full
+	 */
+	public boolean updateTiers(BufferedWrite write) {
+		byte[] payload = ByteBuffer.allocate(10).put(TAG_TIERS).putLong(write.getSequence()).put(write.getPendingTiers()).array();
+		return append(payload);
+	}
+	
+	/**
+	 * Acknowledges a write which was applied by all tiers or is obsolete
+	 * 
+	 * @param write the write
+	 * @return false if the journal is full
+	 */
+	public boolean acknowledge(BufferedWrite write) {
+		byte[] payload = ByteBuffer.allocate(9).put(TAG_ACK).putLong(write.getSequence()).array();
+		return append(payload);
+	}
+	
+	/**
+	 * Appends a record
+	 * 
+	 * @param payload the payload of the record
+	 * @return false if the journal is full
+	 */
+	private synchronized boolean append(byte[] payload) {
+		if(!append(buffer, payload)) return false;
+		dirty = true;
+		return true;
+	}
+	
+	/**
+	 * Appends a record to a mapped journal file
+	 * 
+	 * @param target the mapped file. Its position is the end of the last record
+	 * @param payload the payload of the record
+	 * @return false if the file is full
+	 */
+	private static boolean append(MappedByteBuffer target, byte[] payload) {
+		int position = target.position();
+		// Keep room for the end marker
+		if(position + RECORD_HEADER_SIZE + payload.length + 4 > target.capacity()) return false;
+		
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+		
+		// The end marker is written first and the length last, so a crash never leaves a readable partial record
+		target.putInt(position + RECORD_HEADER_SIZE + payload.length, 0);
+		target.position(position + 4);
+		target.putInt((int) crc.getValue());
+		target.put(payload);
+		target.putInt(position, payload.length);
+		return true;
+	}
+	
+	/**
+	 * Replaces the content of the journal with the given writes, e.g. when it is full.
+	 * The writes are written to a temporary file which is forced to the disk and renamed to the journal,
+	 * so the journal is never only partially rewritten. If the writes do not fit, the oldest writes which fit are kept
+	 * 
+	 * @param writes the pending writes in the order they were made
+	 * @return false if the writes do not fit into the journal or it could not be replaced
+	 */
+	public synchronized boolean rewrite(Collection<BufferedWrite> writes) {
+		File temporary = new File(file.getPath() + ".tmp");
+		boolean complete = true;
+		int end;
+		
+		try {
+			try (FileChannel temporaryChannel = new RandomAccessFile(temporary, "rw").getChannel()) {
+				temporaryChannel.truncate(0);
+				MappedByteBuffer target = temporaryChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+				writeHeader(target);
+				target.position(HEADER_SIZE);
+				for(BufferedWrite write : writes) {
+					if(!append(target, encode(write))) {
+						complete = false;
+						break;
+					}
+				}
+				end = target.position();
+				target.force();
+			}
+			
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			syncDirectory();
+			
+			channel.close();
+			channel = new RandomAccessFile(file, "rw").getChannel();
+			MappedByteBuffer rewritten = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			rewritten.position(end);
+			buffer = rewritten;
+			dirty = false;
+		} catch (IOException e) {
+			LKLogger.getInstance().error("Write journal " + file + " could not be rewritten: ", e, LogType.SYNC);
+			temporary.delete();
+			return false;
+		}
+		
+		return complete;
+	}
+	
+	/**
+	 * Forces the directory of the journal to the disk, so the rename of a rewrite survives a crash.
+	 * Not every platform can open a directory, then the rename is forced by the file system later
+	 */
+	private void syncDirectory() {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if(directory == null) return;
+		
+		try (FileChannel directoryChannel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+			directoryChannel.force(true);
+		} catch (IOException e) {
+			//Directories can not be forced on this platform
+		}
+	}
+	
+	/**
+	 * Removes all records. Is called when all writes are acknowledged
+	 */
+	public synchronized void truncate() {
+		buffer.putInt(HEADER_SIZE, 0);
+		buffer.position(HEADER_SIZE);
+		dirty = true;
+	}
+	
+	/**
+	 * Writes the header and an empty end marker to a mapped journal file
+	 * 
+	 * @param target the mapped file
+	 */
+	private static void writeHeader(MappedByteBuffer target) {
+		target.putInt(0, MAGIC);
+		target.put(4, VERSION);
+		target.putInt(HEADER_SIZE, 0);
+	}
+	
+	/**
+	 * Forces the appended records to the disk
+	 */
+	public void sync() {
+		if(!dirty) return;
+		dirty = false;
+		buffer.force();
+	}
+	
+	/**
+	 * Get the number of bytes used by records
+	 * 
+	 * @return the number of bytes
+	 */
+	public synchronized int getUsedBytes() {
+		return buffer.position() - HEADER_SIZE;
+	}
+	
+	/**
+	 * Get the journal file
+	 * 
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		syncScheduler.shutdown();
+		synchronized (this) {
+			dirty = true;
+			sync();
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Encodes the payload of a write record
+	 * 
+	 * @param write the write
+	 * @return the payload
+	 */
+	private static byte[] encode(BufferedWrite write) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + (write.getValue() == null ? 0 : write.getValue().length()));
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(TAG_WRITE);
+			out.writeLong(write.getSequence());
+			writeWrite(out, write);
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Writes the content of a write record
+	 * 
+	 * @param out the output
+	 * @param write the write
+	 * @throws IOException if writing failed
+	 */
+	private static void writeWrite(DataOutputStream out, BufferedWrite write) throws IOException {
+		DataKey dataKey = write.getDataKey();
+		out.writeUTF(dataKey.getMainKey());
+		out.writeUTF(dataKey.getSubKey());
+		out.writeUTF(dataKey.getMongoDBIdentifier());
+		out.writeByte(write.getOperation().ordinal());
+		out.writeByte(write.getPendingTiers());
+		writeString(out, write.getValue());
+		writeString(out, write.getVersion());
+	}
+	
+	/**
+	 * Reads the content of a write record
+	 * 
+	 * @param in the input
+	 * @param sequence the sequence number of the write
+	 * @return the write
+	 * @throws IOException if reading failed
+	 */
+	private static BufferedWrite readWrite(DataInputStream in, long sequence) throws IOException {
+		DataKey dataKey = new DataKey(in.readUTF(), in.readUTF(), in.readUTF());
+		WriteOperation operation = WriteOperation.values()[in.readByte()];
+		byte tiers = in.readByte();
+		String value = readString(in);
+		String version = readString(in);
+		return new BufferedWrite(sequence, dataKey, operation, value, version, tiers);
+	}
+	
+	/**
+	 * Writes a string of any length or null
+	 * 
+	 * @param out the output
+	 * @param string the string
+	 * @throws IOException if writing failed
+	 */
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		if(string == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	/**
+	 * Reads a string written by {@link #writeString(DataOutputStream, String)}
+	 * 
+	 * @param in the input
+	 * @return the string
+	 * @throws IOException if reading failed
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if(length < 0) return null;
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+}
@@ -0,0 +1,30 @@
+package com.lostkingdoms.db.organization.enums;
+
+import com.lostkingdoms.db.organization.buffer.BufferedWrite;
+
+/**
+ * Defines the writes of organized data objects which can be buffered as {@link BufferedWrite}.
+ * SET: Set a converted value. An empty value deletes it
+ * SET_VERSIONED: Set a converted list or map value together with its content hash
+ * DELETE: Delete the value
+ * SET_LONG / SET_DOUBLE: Set a number
+ * INCREMENT_LONG / INCREMENT_DOUBLE: Add a delta to a number
+ * ADD_TO_SET / REMOVE_FROM_SET: Add or remove a member of a set
+ *
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public enum WriteOperation {
+
+	SET, SET_VERSIONED, DELETE, SET_LONG, SET_DOUBLE, INCREMENT_LONG, INCREMENT_DOUBLE, ADD_TO_SET, REMOVE_FROM_SET;
+	
+	/**
+	 * Check if this operation replaces the whole value, so earlier writes of the same key do not matter
+	 * 
+	 * @return true if the operation replaces the whole value
+	 */
+	public boolean isAbsolute() {
+		return this == SET || this == SET_VERSIONED || this == DELETE || this == SET_LONG || this == SET_DOUBLE;
+	}
+	
+}
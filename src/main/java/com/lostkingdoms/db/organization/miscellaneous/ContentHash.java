@@ -0,0 +1,36 @@
+package com.lostkingdoms.db.organization.miscellaneous;
+
+/**
+ * Calculates the content hash which is saved next to list and map values in redis,
+ * so a stale local copy can be revalidated without transferring the whole value
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class ContentHash {
+
+	/** The FNV-1a 64 bit offset basis */
+	private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+	
+	/** The FNV-1a 64 bit prime */
+	private static final long PRIME = 0x100000001b3L;
+	
+	private ContentHash() {}
+	
+	/**
+	 * Calculates the 64 bit FNV-1a hash of a value
+	 * 
+	 * @param value the value
+	 * @return the hash as hex string
+	 */
+	public static String of(String value) {
+		long hash = OFFSET_BASIS;
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			hash = (hash ^ (c & 0xff)) * PRIME;
+			hash = (hash ^ (c >>> 8)) * PRIME;
+		}
+		return Long.toHexString(hash);
+	}
+	
+}
@@ -2,6 +2,7 @@ package com.lostkingdoms.db.organization.miscellaneous;
 
 import java.util.UUID;
 
+import com.lostkingdoms.db.DataOrganizationManager;
 import com.lostkingdoms.db.organization.objects.OrganizedSingleDataObject;
 import com.lostkingdoms.db.sync.HashSlotCalculator;
 
@@ -53,14 +54,44 @@ public final class DataKey {
 	}
 	
 	/**
-	 * Get the redis representation of this key
+	 * Get the main key of the data structure
+	 * 
+	 * @return the main key
+	 */
+	public String getMainKey() {
+		return this.mainKey;
+	}
+	
+	/**
+	 * Get the sub key of the data structure
+	 * 
+	 * @return the sub key
+	 */
+	public String getSubKey() {
+		return this.subKey;
+	}
+	
+	/**
+	 * Get the redis representation of this key.
+	 * With {@link DataOrganizationManager#redisHashtags} the identifier is a hashtag
+	 * (e.g. user.level.{id}), so all keys of an entity are in the same hashslot
 	 * 
 	 * @return the redis key
 	 */
 	public String getRedisKey() {
+		if(DataOrganizationManager.redisHashtags) return (this.mainKey + "." + this.subKey + ".{" + identifierToString() + "}");
 		return (this.mainKey + "." + this.subKey + "." + identifierToString());
 	}
 	
+	/**
+	 * Get the redis key of the content hash of list and map values
+	 * 
+	 * @return the redis key of the content hash
+	 */
+	public String getRedisVersionKey() {
+		return getRedisKey() + ":version";
+	}
+	
 	/**
 	 * Get the mongoDB collection for this key
 	 * 
@@ -10,11 +10,17 @@ import org.apache.commons.lang3.tuple.Pair;
 import com.lostkingdoms.db.exceptions.NoOrganizedObjectException;
 import com.lostkingdoms.db.exceptions.WrongMethodUseException;
 import com.lostkingdoms.db.organization.annotations.OrganizedEntity;
+import com.lostkingdoms.db.organization.annotations.OrganizedIndex;
 import com.lostkingdoms.db.organization.annotations.OrganizedObject;
 import com.lostkingdoms.db.organization.annotations.OrganizedSuperentity;
 import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.objects.OrganizedCounterDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedDoubleDataObject;
 import com.lostkingdoms.db.organization.objects.OrganizedListDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedLongDataObject;
 import com.lostkingdoms.db.organization.objects.OrganizedMapDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedSetDataObject;
+import com.lostkingdoms.db.organization.objects.OrganizedSortedSetDataObject;
 import com.lostkingdoms.db.organization.objects.OrganizedSingleDataObject;
 
 /**
@@ -80,8 +86,10 @@ public final class OrganizedObjectInformation {
 	
 	/**
 	 * Gets the class of this {@link OrganizedObject}.
-	 * ({@link OrganizedSingleDataObject}, {@link OrganizedListDataObject}
-	 * or {@link OrganizedMapDataObject})
+	 * ({@link OrganizedSingleDataObject}, {@link OrganizedListDataObject},
+	 * {@link OrganizedMapDataObject}, {@link OrganizedSetDataObject}, {@link OrganizedSortedSetDataObject},
+	 * {@link OrganizedLongDataObject},
+	 * {@link OrganizedDoubleDataObject} or {@link OrganizedCounterDataObject})
 	 * 
 	 * @return
 	 */
@@ -109,13 +117,38 @@ public final class OrganizedObjectInformation {
 	 * @throws WrongMethodUseException
 	 */
 	public Class<?> getListClass() throws WrongMethodUseException {
-		if(getDataObjectClass() == OrganizedSingleDataObject.class 
-				|| getDataObjectClass() == OrganizedMapDataObject.class) 
+		if(getDataObjectClass() != OrganizedListDataObject.class) 
 			throw new WrongMethodUseException("getListClass()", getDataObjectClass());
 		
 		return objectField.getAnnotation(OrganizedObject.class).listClass();
 	}
 	
+	/**
+	 * Gets the element class for {@link OrganizedSetDataObject}
+	 * 
+	 * @return
+	 * @throws WrongMethodUseException
+	 */
+	public Class<?> getSetClass() throws WrongMethodUseException {
+		if(getDataObjectClass() != OrganizedSetDataObject.class) 
+			throw new WrongMethodUseException("getSetClass()", getDataObjectClass());
+		
+		return objectField.getAnnotation(OrganizedObject.class).setClass();
+	}
+	
+	/**
+	 * Gets the element class for {@link OrganizedSortedSetDataObject}
+	 * 
+	 * @return
+	 * @throws WrongMethodUseException
+	 */
+	public Class<?> getSortedSetClass() throws WrongMethodUseException {
+		if(getDataObjectClass() != OrganizedSortedSetDataObject.class) 
+			throw new WrongMethodUseException("getSortedSetClass()", getDataObjectClass());
+		
+		return objectField.getAnnotation(OrganizedObject.class).setClass();
+	}
+	
 	/**
 	 * Gets the key and value class for {@link OrganizedMapDataObject}
 	 * 
@@ -123,12 +156,46 @@ public final class OrganizedObjectInformation {
 	 * @throws WrongMethodUseException
 	 */
 	public Pair<Class<?>, Class<?>> getMapClass() throws WrongMethodUseException {
-		if(getDataObjectClass() == OrganizedSingleDataObject.class 
-				|| getDataObjectClass() == OrganizedListDataObject.class) 
-			throw new WrongMethodUseException("getListClass()", getDataObjectClass());
+		if(getDataObjectClass() != OrganizedMapDataObject.class) 
+			throw new WrongMethodUseException("getMapClass()", getDataObjectClass());
 		
 		OrganizedObject objAnn = objectField.getAnnotation(OrganizedObject.class);
 		return new ImmutablePair<Class<?>, Class<?>>(objAnn.mapKeyClass(), objAnn.mapValClass());
 	}
 	
-}
+	/**
+	 * Gets the flush interval for {@link OrganizedCounterDataObject}
+	 * 
+	 * @return the flush interval in milliseconds
+	 * @throws WrongMethodUseException
+	 */
+	public long getFlushInterval() throws WrongMethodUseException {
+		if(getDataObjectClass() != OrganizedCounterDataObject.class) 
+			throw new WrongMethodUseException("getFlushInterval()", getDataObjectClass());
+		
+		return objectField.getAnnotation(OrganizedObject.class).flushInterval();
+	}
+	
+	/**
+	 * Gets the maximal staleness of reads
+	 * 
+	 * @return the maximal staleness in milliseconds or 0 if reads always block
+	 */
+	public long getMaxStaleness() {
+		return objectField.getAnnotation(OrganizedObject.class).maxStaleness();
+	}
+	
+	/**
+	 * Gets the index key if this field is annotated with {@link OrganizedIndex}
+	 * 
+	 * @return key from annotation, lower case field name or null if this field is no index
+	 */
+	public String getIndexKey() {
+		OrganizedIndex indexAnn = objectField.getAnnotation(OrganizedIndex.class);
+		
+		if(indexAnn == null) return null;
+		if(!indexAnn.indexKey().equals("")) return indexAnn.indexKey();
+		return objectField.getName().toLowerCase();
+	}
+	
+}
\ No newline at end of file
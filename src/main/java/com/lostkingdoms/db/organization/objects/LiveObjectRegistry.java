@@ -0,0 +1,61 @@
+package com.lostkingdoms.db.organization.objects;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The data objects of one instance which are still referenced, grouped by their hashslot.
+ * Objects are held weakly, so registering them does not keep them alive.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class LiveObjectRegistry {
+
+	/** The live objects of every hashslot. Created on first use */
+	private final AtomicReferenceArray<Set<OrganizedDataObject<?>>> slots;
+	
+	/**
+	 * Constructor of the {@link LiveObjectRegistry}
+	 * 
+	 * @param slotCount the number of hashslots
+	 */
+	public LiveObjectRegistry(int slotCount) {
+		this.slots = new AtomicReferenceArray<>(slotCount);
+	}
+	
+	/**
+	 * Registers a data object
+	 * 
+	 * @param slot the hashslot of the object
+	 * @param object the object
+	 */
+	void register(int slot, OrganizedDataObject<?> object) {
+		Set<OrganizedDataObject<?>> objects = slots.get(slot);
+		if(objects == null) {
+			slots.compareAndSet(slot, null, Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>())));
+			objects = slots.get(slot);
+		}
+		objects.add(object);
+	}
+	
+	/**
+	 * Get the live objects of a hashslot
+	 * 
+	 * @param slot the hashslot
+	 * @return a copy of the objects
+	 */
+	List<OrganizedDataObject<?>> getObjects(int slot) {
+		Set<OrganizedDataObject<?>> objects = slots.get(slot);
+		if(objects == null) return Collections.emptyList();
+		
+		synchronized (objects) {
+			return new ArrayList<>(objects);
+		}
+	}
+	
+}
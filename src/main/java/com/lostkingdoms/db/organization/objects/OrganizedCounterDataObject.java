@@ -0,0 +1,363 @@
+package com.lostkingdoms.db.organization.objects;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.lostkingdoms.db.backend.BackendFailures;
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.exceptions.BackendUnavailableException;
+import com.lostkingdoms.db.logger.LKLogger;
+import com.lostkingdoms.db.logger.LogType;
+import com.lostkingdoms.db.metrics.DataOperation;
+import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+import com.lostkingdoms.db.trace.TraceTier;
+
+/**
+ * An {@link OrganizedDataObject} which represents a counter that is incremented by many servers
+ * at a high rate (e.g. kingdom treasury or global event progress).
+ * Increments are only added to a local striped {@link LongAdder} and flushed periodically.
+ * Each instance flushes into its own field of a redis hash (so there is no single hot field)
+ * and into MongoDB with $inc. The total is the sum of all hash fields.
+ * Reads may be stale for at most one flush interval.
+ *
+ * @author Tim Kchler (https://github.com/TimK1998)
+ */
+public final class OrganizedCounterDataObject extends OrganizedDataObject<Long> {
+
+    /**
+     * The redis hash field which holds the merged and seeded values
+     */
+    private static final String BASE_FIELD = "base";
+
+    /**
+     * The number of hash fields after which all fields get merged into the base field
+     */
+    private static final int MERGE_THRESHOLD = 64;
+
+    /**
+     * The scheduler which flushes all counters
+     */
+    private static ScheduledExecutorService flushScheduler;
+
+    /**
+     * All counters which are not closed yet. Holds them until {@link #close()}
+     * so the increments of a counter are never lost with the counter
+     */
+    private static final Set<OrganizedCounterDataObject> counters = Collections.synchronizedSet(new HashSet<>());
+
+    /**
+     * The increments of this instance which are not flushed yet
+     */
+    private final LongAdder pending = new LongAdder();
+
+    /**
+     * The total of all flushed increments when last fetched
+     */
+    private final AtomicLong flushedTotal = new AtomicLong();
+
+    /**
+     * The flushed increments which redis did not apply yet
+     */
+    private volatile long unflushedCache;
+
+    /**
+     * The flushed increments which MongoDB did not apply yet
+     */
+    private volatile long unflushedDocument;
+
+    /**
+     * The interval in milliseconds in which increments are flushed and the total is refetched
+     */
+    private final long flushInterval;
+
+    /**
+     * The scheduled flush task
+     */
+    private ScheduledFuture<?> flushTask;
+
+
+    /**
+     * Constructor for {@link OrganizedCounterDataObject}.
+     * This represent a counter that should be organized.
+     *
+     * @param dataKey          The objects {@link DataKey}
+     * @param organizationType The objects {@link OrganizationType}
+     * @param flushInterval    The flush interval in milliseconds
+     */
+    public OrganizedCounterDataObject(DataKey dataKey, OrganizationType organizationType, long flushInterval) {
+        setDataKey(dataKey);
+        setOrganizationType(organizationType);
+        this.flushInterval = Math.max(1, flushInterval);
+
+        if (organizationType != OrganizationType.NONE) {
+            counters.add(this);
+            flushTask = getFlushScheduler().scheduleWithFixedDelay(this::flush, this.flushInterval, this.flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Add a delta to the counter. Never blocks on redis or MongoDB.
+     *
+     * @param delta the value to add
+     */
+    public void add(long delta) {
+        pending.add(delta);
+    }
+
+    /**
+     * Increment the counter by one
+     */
+    public void increment() {
+        pending.increment();
+    }
+
+    /**
+     * Decrement the counter by one
+     */
+    public void decrement() {
+        pending.decrement();
+    }
+
+    /**
+     * Get the total of the counter over all servers.
+     * The flushed total is refetched if it is older than the flush interval.
+     *
+     * @return the total
+     */
+    public long get() {
+        if (getOrganizationType() != OrganizationType.NONE
+                && System.currentTimeMillis() - getTimestamp() >= flushInterval) {
+            long start = startOperation();
+            try {
+                fetch();
+            } catch (RuntimeException e) {
+                //Keep the last fetched total while a backend is unavailable
+                if (getManager().getWriteBuffer() == null || !BackendFailures.isUnavailable(e)) throw e;
+                getMetrics().degradedRead();
+            }
+            getMetrics().recordRead(start);
+            traceRead(start);
+        } else {
+            getMetrics().localHit();
+            traceRead(TraceTier.LOCAL, 0, 0);
+        }
+
+        //The increments which the tier the total is read from did not apply yet
+        long unflushed = getOrganizationType() == OrganizationType.SAVE_TO_DB ? unflushedDocument : unflushedCache;
+        return flushedTotal.get() + pending.sum() + unflushed;
+    }
+
+    /**
+     * Flushes the increments of this instance to redis and MongoDB.
+     * Each tier keeps the increments it did not apply yet, so a failed tier is retried
+     * on the next flush without applying the increments to the other tier twice
+     */
+    public synchronized void flush() {
+        if (getOrganizationType() == OrganizationType.NONE) return;
+
+        //Drain the increments. sumThenReset would lose increments added concurrently
+        long delta = pending.sum();
+        pending.add(-delta);
+
+        boolean toCache = getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH;
+        boolean toDocument = getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH;
+        if (toCache) unflushedCache += delta;
+        if (toDocument) unflushedDocument += delta;
+        if (unflushedCache == 0 && unflushedDocument == 0) return;
+
+        long start = startOperation();
+        try {
+            DataKey dataKey = getDataKey();
+
+            //Update to redis
+            if (unflushedCache != 0) {
+                long cacheDelta = unflushedCache;
+                try (CacheConnection cache = getCacheConnection()) {
+                    incrementCache(cache, dataKey, cacheDelta);
+                }
+                unflushedCache -= cacheDelta;
+                flushedTotal.addAndGet(cacheDelta);
+            }
+
+            //Update to MongoDB
+            if (unflushedDocument != 0) {
+                long documentDelta = unflushedDocument;
+                getDocumentBackend().increment(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), documentDelta);
+                unflushedDocument -= documentDelta;
+                if (!toCache) flushedTotal.addAndGet(documentDelta);
+            }
+
+            getMetrics().recordWrite(DataOperation.FLUSH, start);
+            traceWrite(DataOperation.FLUSH, start);
+        } catch (BackendUnavailableException e) {
+            //Keep the increments until the backend is available again
+            traceWrite(DataOperation.FLUSH, start);
+        } catch (Exception e) {
+            //Keep the increments for the next flush
+            traceWrite(DataOperation.FLUSH, start);
+            LKLogger.getInstance().warn("Counter " + getDataKey().getRedisKey() + " could not be flushed: ", e, LogType.SYNC);
+        }
+    }
+
+    /**
+     * Fetches the flushed total from redis or MongoDB
+     */
+    private void fetch() {
+        long newTimestamp = System.currentTimeMillis() - 1;
+
+        try (CacheConnection cache = getReadConnection()) {
+            DataKey dataKey = getDataKey();
+
+            if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
+                List<String> values = cache.hvals(dataKey.getRedisKey());
+                servedBy(TraceTier.REDIS, 0);
+
+                // Hash does not exist. Seed it with the total from MongoDB
+                if (values.isEmpty() && getOrganizationType() == OrganizationType.BOTH) {
+                    cache.hsetnx(dataKey.getRedisKey(), BASE_FIELD, String.valueOf(getSeed()));
+                    values = cache.hvals(dataKey.getRedisKey());
+                }
+
+                // Too many instances have flushed into this hash. Merge their fields
+                if (values.size() > MERGE_THRESHOLD) {
+                    flushedTotal.set(cache.hmerge(dataKey.getRedisKey(), BASE_FIELD));
+                } else {
+                    long total = 0;
+                    for (String value : values) {
+                        total += Long.parseLong(value);
+                    }
+                    flushedTotal.set(total);
+                }
+
+            } else {
+                flushedTotal.set(fetchFromMongoDB());
+            }
+
+            updateTimestamp(newTimestamp);
+        }
+    }
+
+    /**
+     * Increments the field of this instance in the redis hash. If redis lost the hash,
+     * its base field is seeded from MongoDB in the same atomic step
+     *
+     * @param cache   the connection
+     * @param dataKey the key of the counter
+     * @param delta   the value to add
+     */
+    private void incrementCache(CacheConnection cache, DataKey dataKey, long delta) {
+        String field = getManager().getInstanceID().toString();
+        if (getOrganizationType() != OrganizationType.BOTH) {
+            cache.hincrBy(dataKey.getRedisKey(), field, delta);
+            return;
+        }
+
+        if (cache.hincrBySeeded(dataKey.getRedisKey(), field, delta, BASE_FIELD, null) == null) {
+            cache.hincrBySeeded(dataKey.getRedisKey(), field, delta, BASE_FIELD, String.valueOf(getSeed()));
+        }
+    }
+
+    /**
+     * Get the value the base field of a lost redis hash is seeded with. This is the total from MongoDB
+     * with the increments of this instance which MongoDB did not apply yet and without those
+     * which redis did not apply yet, because they are added to the field of this instance
+     *
+     * @return the seed
+     */
+    private long getSeed() {
+        return fetchFromMongoDB() + unflushedDocument - unflushedCache;
+    }
+
+    /**
+     * Fetches the flushed total from MongoDB
+     *
+     * @return the total or 0 if there is none
+     */
+    private long fetchFromMongoDB() {
+        DataKey dataKey = getDataKey();
+        servedBy(TraceTier.MONGODB, 0);
+
+        Map<String, Object> object = getDocumentBackend().find(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier());
+        if (object != null && object.get(dataKey.getMongoDBValue()) instanceof Number) {
+            return ((Number) object.get(dataKey.getMongoDBValue())).longValue();
+        }
+
+        return 0;
+    }
+
+    /**
+     * Stops the periodic flush of this counter after flushing it one last time.
+     * Must be called when the counter is released
+     */
+    public void close() {
+        if (flushTask != null) flushTask.cancel(false);
+        counters.remove(this);
+        flush();
+    }
+
+    /**
+     * Flushes all counters of this instance. Is called on shutdown
+     */
+    public static void flushAll() {
+        OrganizedCounterDataObject[] all;
+        synchronized (counters) {
+            all = counters.toArray(new OrganizedCounterDataObject[0]);
+        }
+
+        for (OrganizedCounterDataObject counter : all) {
+            counter.flush();
+        }
+    }
+
+    /**
+     * Get the scheduler which flushes the counters. Creates it on first use
+     *
+     * @return the scheduler
+     */
+    private static synchronized ScheduledExecutorService getFlushScheduler() {
+        if (flushScheduler == null) {
+            flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "counter_Flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            Runtime.getRuntime().addShutdownHook(new Thread(OrganizedCounterDataObject::flushAll, "counter_Shutdown_Flusher"));
+        }
+        return flushScheduler;
+    }
+
+    @Override
+    public void load() {
+        get();
+    }
+
+    /**
+     * Asynchronous variant of {@link #get()}
+     *
+     * @return the future of the total
+     */
+    public CompletableFuture<Long> getAsync() {
+        return async(this::get);
+    }
+
+    /**
+     * Asynchronous variant of {@link #flush()}
+     *
+     * @return the future which completes when the increments are flushed
+     */
+    public CompletableFuture<Void> flushAsync() {
+        return asyncRun(this::flush);
+    }
+
+}
@@ -1,10 +1,31 @@
 package com.lostkingdoms.db.organization.objects;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
 import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.BackendFailures;
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.backend.DocumentBackend;
+import com.lostkingdoms.db.exceptions.BackendUnavailableException;
+import com.lostkingdoms.db.metrics.DataMetrics;
+import com.lostkingdoms.db.metrics.DataOperation;
+import com.lostkingdoms.db.metrics.EntityMetrics;
+import com.lostkingdoms.db.metrics.SlowOperationLog;
+import com.lostkingdoms.db.organization.buffer.BufferedWrite;
+import com.lostkingdoms.db.organization.buffer.WriteBuffer;
 import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.enums.WriteOperation;
+import com.lostkingdoms.db.organization.miscellaneous.ContentHash;
 import com.lostkingdoms.db.organization.miscellaneous.DataKey;
-import com.lostkingdoms.db.sync.DataSyncMessage;
-import redis.clients.jedis.Jedis;
+import com.lostkingdoms.db.trace.AccessTraceRecorder;
+import com.lostkingdoms.db.trace.OperationTracer;
+import com.lostkingdoms.db.trace.TraceTier;
 
 /**
  * Abstract class of all OrganizedDataObjects
@@ -21,8 +42,8 @@ public abstract class OrganizedDataObject<T> {
 
 	protected boolean doesExist = true;
 
-	/** The time when the list was last updated */
-	private long timestamp;
+	/** The time when the list was last updated. Written after the data, so readers see the data it belongs to */
+	private volatile long timestamp;
 	
 	/** Contains the keys for jedis and mongoDB and the jedis hashslot for this object */
 	private DataKey dataKey;
@@ -34,7 +55,40 @@ public abstract class OrganizedDataObject<T> {
 	private OrganizationType organizationType;
 	
 	/** THE data map object */
-	private T data;
+	private volatile T data;
+	
+	/** The metrics of the entity this object belongs to */
+	private EntityMetrics metrics;
+	
+	/** The tier and payload size of the read running on the current thread, for the access trace */
+	private static final ThreadLocal<ServedRead> servedRead = ThreadLocal.withInitial(ServedRead::new);
+	
+	/** The maximal time in milliseconds reads may return the local data after it became stale or 0 */
+	private long maxStaleness;
+	
+	/** The invalidation time of the hashslot when a read first found the local data stale */
+	private volatile long staleSince;
+	
+	/** The timestamp of the local data staleSince belongs to */
+	private volatile long staleTimestamp;
+	
+	/** True while a background refresh of a stale read is pending */
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+	
+	/** The thread which runs the background refresh. Its reads have to block */
+	private volatile Thread refreshThread;
+	
+	/** The content hash of the local data as saved in redis or null if unknown */
+	private volatile String localVersion;
+	
+	/** Held while the data is fetched, so concurrent stale reads cause only one fetch */
+	private final ReentrantLock fetchLock = new ReentrantLock();
+	
+	/** The time of the last read if refresh ahead is enabled, otherwise 0 */
+	private volatile long lastRead;
+	
+	/** The manager of the instance this object was created by */
+	private final DataOrganizationManager manager = DataOrganizationManager.getInstance();
 
 
 
@@ -62,7 +116,11 @@ public abstract class OrganizedDataObject<T> {
 	 * @param dataKey The {@link DataKey} to be set
 	 */
 	protected void setDataKey(DataKey dataKey) {
-		if(this.dataKey == null) this.dataKey = dataKey;
+		if(this.dataKey != null) return;
+		
+		this.dataKey = dataKey;
+		RefreshAhead refreshAhead = manager.getRefreshAhead();
+		if(refreshAhead != null) refreshAhead.register(dataKey.getHashslot(), this);
 	}
 	
 	/**
@@ -102,16 +160,510 @@ public abstract class OrganizedDataObject<T> {
 		return this.organizationType;
 	}
 
+	/**
+	 * Get the {@link EntityMetrics} of the entity this object belongs to
+	 * 
+	 * @return the {@link EntityMetrics}
+	 */
+	protected EntityMetrics getMetrics() {
+		if(this.metrics == null) this.metrics = DataMetrics.getInstance().getEntityMetrics(dataKey);
+		return this.metrics;
+	}
+
+	/**
+	 * Remember the deepest tier the running read accessed. Is recorded by {@link #traceRead(long)}
+	 * 
+	 * @param tier the tier
+	 * @param payloadSize the size of the read data in characters or 0 if unknown
+	 */
+	protected void servedBy(TraceTier tier, int payloadSize) {
+		ServedRead served = servedRead.get();
+		served.tier = tier;
+		served.payloadSize = payloadSize;
+	}
+	
+	/**
+	 * Get the start time of an operation which is ended by {@link #traceRead(long)} or
+	 * {@link #traceWrite(DataOperation, long)}. Opens its span if operations are traced
+	 * 
+	 * @return the start time or 0 if nothing measures the operation
+	 */
+	protected long startOperation() {
+		return OperationTracer.begin();
+	}
+	
+	/**
+	 * Records the running read in the access trace with the tier from {@link #servedBy(TraceTier, int)}
+	 * 
+	 * @param start the start time from {@link #startOperation()}
+	 */
+	protected void traceRead(long start) {
+		ServedRead served = servedRead.get();
+		TraceTier tier = served.tier;
+		int payloadSize = served.payloadSize;
+		served.tier = TraceTier.LOCAL;
+		served.payloadSize = 0;
+		traceRead(tier, payloadSize, start);
+	}
+	
+	/**
+	 * Records a read in the access trace, the slow operation log and the operation tracer and
+	 * remembers the time of the read for refresh ahead
+	 * 
+	 * @param tier the deepest tier the read accessed
+	 * @param payloadSize the size of the read data in characters or 0 if unknown
+	 * @param start the start time from {@link #startOperation()} or 0
+	 */
+	protected void traceRead(TraceTier tier, int payloadSize, long start) {
+		if(manager.getRefreshAhead() != null) lastRead = System.currentTimeMillis();
+		SlowOperationLog.end(DataOperation.GET, dataKey, start);
+		OperationTracer.end(DataOperation.GET, dataKey, start);
+		
+		AccessTraceRecorder recorder = AccessTraceRecorder.getActive();
+		if(recorder != null) recorder.record(dataKey, DataOperation.GET, tier, payloadSize, start == 0 ? 0 : System.nanoTime() - start);
+	}
+	
+	/**
+	 * Records a write in the access trace, the slow operation log and the operation tracer
+	 * 
+	 * @param operation the write operation
+	 * @param start the start time from {@link #startOperation()} or 0
+	 */
+	protected void traceWrite(DataOperation operation, long start) {
+		SlowOperationLog.end(operation, dataKey, start);
+		OperationTracer.end(operation, dataKey, start);
+		
+		AccessTraceRecorder recorder = AccessTraceRecorder.getActive();
+		if(recorder == null) return;
+		
+		TraceTier tier = TraceTier.LOCAL;
+		if(organizationType == OrganizationType.SYNC || organizationType == OrganizationType.BOTH) tier = TraceTier.REDIS;
+		else if(organizationType == OrganizationType.SAVE_TO_DB) tier = TraceTier.MONGODB;
+		recorder.record(dataKey, operation, tier, 0, start == 0 ? 0 : System.nanoTime() - start);
+	}
+
+	/**
+	 * Set the maximal time reads may return the local data after it became stale.
+	 * Is called by the DataAccessManager for fields with maxStaleness
+	 * 
+	 * @param maxStaleness the maximal staleness in milliseconds or 0 if reads always block
+	 */
+	public void setMaxStaleness(long maxStaleness) {
+		this.maxStaleness = maxStaleness;
+	}
+	
+	/**
+	 * Decides if a read of stale local data may return it without blocking. If so a
+	 * refresh is scheduled in the background, unless one is already pending.
+	 * Only allowed if the data was loaded before and became stale less than the
+	 * maximal staleness ago. Later invalidations do not extend the bound.
+	 * 
+	 * @return true if the local data should be returned
+	 */
+	protected boolean serveStale() {
+		if(maxStaleness <= 0 || timestamp == 0 || Thread.currentThread() == refreshThread) return false;
+		
+		long since = staleSince;
+		if(staleTimestamp != timestamp) {
+			since = manager.getLastUpdated(dataKey.getHashslot());
+			staleSince = since;
+			staleTimestamp = timestamp;
+		}
+		if(System.currentTimeMillis() - since > maxStaleness) return false;
+		
+		if(refreshing.compareAndSet(false, true)) {
+			async(() -> {
+				refreshThread = Thread.currentThread();
+				try {
+					load();
+				} finally {
+					refreshThread = null;
+				}
+				return null;
+			}).whenComplete((v, e) -> refreshing.set(false));
+		}
+		
+		getMetrics().staleRead();
+		traceRead(TraceTier.LOCAL, 0, 0);
+		return true;
+	}
+	
+	/**
+	 * Check if the local data can be used
+	 * 
+	 * @return true if the local data was loaded and not invalidated since
+	 */
+	protected boolean isUpToDate() {
+		return (manager.getLastUpdated(dataKey.getHashslot()) < timestamp && timestamp != 0)
+				|| organizationType == OrganizationType.NONE;
+	}
+	
+	/**
+	 * Fetches the data, unless another thread is already fetching it. Then waits for
+	 * that fetch and returns the local data it loaded, so concurrent stale reads
+	 * cause only one round trip.
+	 * If the local data has buffered writes or the fetch fails, the local data is returned 
+	 * if there is any (degraded mode)
+	 * 
+	 * @param local returns the local data
+	 * @param fetch fetches the data
+	 * @return the data
+	 */
+	protected <R> R fetchOnce(Supplier<R> local, Supplier<R> fetch) {
+		fetchLock.lock();
+		try {
+			// Another reader fetched the data while this one waited
+			if(isUpToDate()) {
+				getMetrics().coalescedRead();
+				traceRead(TraceTier.LOCAL, 0, 0);
+				return local.get();
+			}
+			
+			return readDegradable(local, fetch);
+		} finally {
+			fetchLock.unlock();
+		}
+	}
+	
+	/**
+	 * Reads from the backends, unless the local data has buffered writes or a backend is unavailable.
+	 * Then the local data is returned if there is any (degraded mode)
+	 * 
+	 * @param local returns the local data
+	 * @param read reads the data from the backends
+	 * @return the data
+	 */
+	protected <R> R readDegradable(Supplier<R> local, Supplier<R> read) {
+		// The global cache does not contain the local changes yet
+		if(timestamp != 0 && hasBufferedWrites()) {
+			getMetrics().degradedRead();
+			traceRead(TraceTier.LOCAL, 0, 0);
+			return local.get();
+		}
+		
+		try {
+			return read.get();
+		} catch (RuntimeException e) {
+			if(timestamp == 0 || manager.getWriteBuffer() == null || !BackendFailures.isUnavailable(e)) throw e;
+			getMetrics().degradedRead();
+			return local.get();
+		}
+	}
+	
+	/**
+	 * Check if this object has writes which wait for an unavailable backend
+	 * 
+	 * @return true if there are buffered writes
+	 */
+	protected boolean hasBufferedWrites() {
+		WriteBuffer writeBuffer = manager.getWriteBuffer();
+		return writeBuffer != null && writeBuffer.contains(dataKey);
+	}
+	
+	/**
+	 * Makes sure a write is not applied before the buffered writes of this object.
+	 * Is called before a write reaches the backends
+	 * 
+	 * @param operation the name of the write
+	 * @throws BackendUnavailableException if there are buffered writes, so the write is buffered behind them
+	 */
+	protected void checkWriteOrder(String operation) {
+		if(hasBufferedWrites()) throw new BackendUnavailableException("write buffer", operation);
+	}
+	
+	/**
+	 * Buffers a write which failed, so it is replayed when the backends are available again.
+	 * The local data already contains the write
+	 * 
+	 * @param cause the exception the write failed with
+	 * @param operation the operation
+	 * @param value the encoded value or delta or null for DELETE
+	 * @throws RuntimeException the cause if writes are not buffered or it is no connection or timeout failure
+	 */
+	protected void bufferWrite(RuntimeException cause, WriteOperation operation, String value) {
+		bufferWrite(cause, operation, value, false, false);
+	}
+	
+	/**
+	 * Buffers a write which failed after some tiers applied it (see {@link #bufferWrite(RuntimeException, WriteOperation, String)})
+	 * 
+	 * @param cause the exception the write failed with
+	 * @param operation the operation
+	 * @param value the encoded value or delta or null for DELETE
+	 * @param cacheApplied true if redis applied the write
+	 * @param documentApplied true if MongoDB applied the write
+	 * @throws RuntimeException the cause if writes are not buffered or it is no connection or timeout failure
+	 */
+	protected void bufferWrite(RuntimeException cause, WriteOperation operation, String value, boolean cacheApplied, boolean documentApplied) {
+		WriteBuffer writeBuffer = manager.getWriteBuffer();
+		if(writeBuffer == null || !BackendFailures.isUnavailable(cause)) throw cause;
+		
+		// The value can not be converted, so there is nothing to write
+		if(value == null && operation != WriteOperation.DELETE) return;
+		
+		BufferedWrite write = new BufferedWrite(dataKey, organizationType, operation, value);
+		if(cacheApplied) write.cacheApplied();
+		if(documentApplied) write.documentApplied();
+		writeBuffer.add(write);
+		getMetrics().bufferedWrite();
+		
+		// Keep the content hash of the local data, so it can be revalidated after the replay
+		if(operation == WriteOperation.SET_VERSIONED) localVersion = write.getVersion();
+		if(operation == WriteOperation.DELETE) localVersion = null;
+	}
+	
+	/**
+	 * Writes a value and its content hash to redis in one round trip
+	 * 
+	 * @param cache the connection
+	 * @param dataString the value
+	 */
+	protected void setVersioned(CacheConnection cache, String dataString) {
+		String version = ContentHash.of(dataString);
+		cache.mset(dataKey.getRedisKey(), dataString, dataKey.getRedisVersionKey(), version);
+		localVersion = version;
+	}
+	
+	/**
+	 * Deletes a value and its content hash from redis
+	 * 
+	 * @param cache the connection
+	 */
+	protected void deleteVersioned(CacheConnection cache) {
+		cache.del(dataKey.getRedisKey(), dataKey.getRedisVersionKey());
+		localVersion = null;
+	}
+	
+	/**
+	 * Fetches a value and its content hash from redis in one round trip and remembers the hash
+	 * for the next {@link #revalidate(CacheConnection, long)}
+	 * 
+	 * @param cache the connection
+	 * @return the value or null
+	 */
+	protected String getVersioned(CacheConnection cache) {
+		List<String> values = cache.mget(dataKey.getRedisKey(), dataKey.getRedisVersionKey());
+		localVersion = values.get(0) == null ? null : values.get(1);
+		return values.get(0);
+	}
+	
+	/**
+	 * Checks if the stale local data still matches redis by only fetching the content hash.
+	 * Avoids transferring and parsing the whole value if the invalidation was for another
+	 * key of the hashslot or the value did not change
+	 * 
+	 * @param cache the connection
+	 * @param newTimestamp the new timestamp of the local data if it matches
+	 * @return true if the local data matches and is up-to-date again
+	 */
+	protected boolean revalidate(CacheConnection cache, long newTimestamp) {
+		String version = localVersion;
+		if(version == null || !doesExist || timestamp == 0) return false;
+		if(!version.equals(cache.get(dataKey.getRedisVersionKey()))) return false;
+		
+		getMetrics().revalidated();
+		servedBy(TraceTier.REDIS, 0);
+		updateTimestamp(newTimestamp);
+		return true;
+	}
+	
+	/**
+	 * Migrates a number field in MongoDB which still holds a json string written by an
+	 * {@link OrganizedSingleDataObject} to a number, so $inc can be applied to it
+	 * 
+	 * @param parser parses the json string
+	 * @return true if the field held a json string and holds a number now
+	 * @throws IllegalStateException if the json string is no number
+	 */
+	protected boolean migrateLegacyNumber(Function<String, Number> parser) {
+		Map<String, Object> object = getDocumentBackend().find(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier());
+		Object legacy = object == null ? null : object.get(dataKey.getMongoDBValue());
+		if(!(legacy instanceof String)) return false;
+		
+		Number number;
+		try {
+			number = parser.apply((String) legacy);
+		} catch (NumberFormatException e) {
+			throw new IllegalStateException("MongoDB field " + dataKey.getMongoDBValue() + " of " 
+					+ dataKey.getMongoDBIdentifier() + " holds no number: " + legacy, e);
+		}
+		
+		//Only replaces the json string, so an increment of a server which migrated it first is kept
+		getDocumentBackend().replace(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), legacy, number);
+		return true;
+	}
+	
+	/**
+	 * Applies a value fetched by {@link RefreshAhead} unless a reader is fetching the data right now
+	 * or the data was changed since the value was fetched
+	 * 
+	 * @param value the value of {@link #getRefreshKey()} or null if it does not exist
+	 * @param expectedTimestamp the timestamp of the local data before the value was fetched
+	 * @param newTimestamp the time before the value was fetched
+	 * @return true if the value was applied
+	 */
+	final boolean tryRefresh(String value, long expectedTimestamp, long newTimestamp) {
+		if(!fetchLock.tryLock()) return false;
+		try {
+			if(timestamp != expectedTimestamp) return false;
+			refresh(value, newTimestamp);
+			return true;
+		} finally {
+			fetchLock.unlock();
+		}
+	}
+	
+	/**
+	 * Get the time of the last read. Only tracked if refresh ahead is enabled
+	 * 
+	 * @return the time in milliseconds or 0
+	 */
+	long getLastRead() {
+		return lastRead;
+	}
+	
+	/**
+	 * Check if the local data was loaded and invalidated since
+	 * 
+	 * @return true if the next read would refetch
+	 */
+	boolean isStale() {
+		return timestamp != 0 && organizationType != OrganizationType.NONE
+				&& manager.getLastUpdated(dataKey.getHashslot()) >= timestamp;
+	}
+	
+	/**
+	 * Get the redis key whose string value {@link #refresh(String, long)} accepts
+	 * 
+	 * @return the key or null if this object has to be refreshed with {@link #load()}
+	 */
+	String getRefreshKey() {
+		return null;
+	}
+	
+	/**
+	 * Replaces the local data with a value fetched by {@link RefreshAhead}
+	 * 
+	 * @param value the value of {@link #getRefreshKey()} or null if it does not exist
+	 * @param newTimestamp the time before the value was fetched
+	 */
+	void refresh(String value, long newTimestamp) {
+		load();
+	}
+	
+	/**
+	 * Fetches the data into the local cache if it is not up-to-date
+	 */
+	public abstract void load();
+	
+	/**
+	 * Asynchronous variant of {@link #load()}
+	 * 
+	 * @return the future which completes when the data is loaded
+	 */
+	public CompletableFuture<Void> loadAsync() {
+		return asyncRun(this::load);
+	}
+	
+	/**
+	 * Runs an operation of this object on the {@link com.lostkingdoms.db.async.OrderedExecutor} of its instance.
+	 * Asynchronous operations on the same key run in the order they were called.
+	 * The local data is changed by the executor thread, so an object should not be used by 
+	 * synchronous and asynchronous operations at the same time.
+	 * 
+	 * @param task the operation
+	 * @return the future of the result
+	 */
+	protected <R> CompletableFuture<R> async(Supplier<R> task) {
+		int traced = OperationTracer.capture();
+		return manager.getAsyncExecutor().submit(dataKey.getRedisKey(), () -> {
+			manager.bindToCurrentThread();
+			long start = OperationTracer.resume(traced);
+			try {
+				return task.get();
+			} finally {
+				OperationTracer.end("async", dataKey, start);
+				DataOrganizationManager.unbindCurrentThread();
+			}
+		});
+	}
+	
+	/**
+	 * Runs an operation without result of this object asynchronously (see {@link #async(Supplier)})
+	 * 
+	 * @param task the operation
+	 * @return the future which completes when the operation is done
+	 */
+	protected CompletableFuture<Void> asyncRun(Runnable task) {
+		return async(() -> {
+			task.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Get the {@link DataOrganizationManager} of the instance this object was created by
+	 * 
+	 * @return the {@link DataOrganizationManager}
+	 */
+	protected DataOrganizationManager getManager() {
+		return this.manager;
+	}
+
+	/**
+	 * Get a connection to the global cache. Has to be closed after use
+	 * 
+	 * @return the {@link CacheConnection}
+	 */
+	protected CacheConnection getCacheConnection() {
+		return manager.getCacheBackend().getConnection();
+	}
+	
+	/**
+	 * Get a connection to the global cache whose reads may be served by a replica.
+	 * If the hashslot was updated within the maximal replica lag, the master is used,
+	 * because a replica may not have applied the update yet
+	 * 
+	 * @return the {@link CacheConnection}
+	 */
+	protected CacheConnection getReadConnection() {
+		if(System.currentTimeMillis() - manager.getLastUpdated(dataKey.getHashslot()) <= DataOrganizationManager.redisReplicaMaxLag) {
+			return getCacheConnection();
+		}
+		return manager.getCacheBackend().getReadConnection();
+	}
+	
+	/**
+	 * Get the database
+	 * 
+	 * @return the {@link DocumentBackend}
+	 */
+	protected DocumentBackend getDocumentBackend() {
+		return manager.getDocumentBackend();
+	}
+
 	/**
 	 * Sends the sync message if {@link OrganizationType} equals SYNC or ALL
-	 *
-	 * @param jedis the jedis instance to publish on
 	 */
-	protected void sendSyncMessage(Jedis jedis) {
+	protected void sendSyncMessage() {
 		if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
-			jedis.publish(DataOrganizationManager.syncMessageChannel,
-					new DataSyncMessage(DataOrganizationManager.getInstance().getInstanceID(), dataKey.getHashslot()).serialize());
+			manager.getSyncTransport().publish(DataOrganizationManager.syncMessageChannel,
+					manager.createSyncMessage(dataKey));
+			getMetrics().syncMessageSent();
+			DataMetrics.getInstance().syncMessageSent();
 		}
 	}
 
+	/**
+	 * The deepest tier and the payload size of the read running on a thread.
+	 * Kept per thread because concurrent reads of the same object would overwrite each other
+	 */
+	private static final class ServedRead {
+		
+		private TraceTier tier = TraceTier.LOCAL;
+		
+		private int payloadSize;
+		
+	}
+	
 }
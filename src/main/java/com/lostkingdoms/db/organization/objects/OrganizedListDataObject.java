@@ -3,16 +3,17 @@ package com.lostkingdoms.db.organization.objects;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
-import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.CacheConnection;
 import com.lostkingdoms.db.converters.impl.DefaultListDataConverter;
-import com.lostkingdoms.db.factories.JedisFactory;
-import com.lostkingdoms.db.factories.MongoDBFactory;
+import com.lostkingdoms.db.metrics.DataMetrics;
+import com.lostkingdoms.db.metrics.DataOperation;
 import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.enums.WriteOperation;
 import com.lostkingdoms.db.organization.miscellaneous.DataKey;
-import com.mongodb.*;
-
-import redis.clients.jedis.Jedis;
+import com.lostkingdoms.db.trace.TraceTier;
 
 /**
  * An {@link OrganizedDataObject} which represents an {@link ArrayList} of type T.
@@ -56,22 +57,45 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
 
         // If data is up-to-date
         int hashslot = getDataKey().getHashslot();
-        if ((DataOrganizationManager.getInstance().getLastUpdated(hashslot) < getTimestamp() && getTimestamp() != 0)
+        if ((getManager().getLastUpdated(hashslot) < getTimestamp() && getTimestamp() != 0)
                 || getOrganizationType() == OrganizationType.NONE) {
+            getMetrics().localHit();
+            traceRead(TraceTier.LOCAL, 0, 0);
             return Collections.unmodifiableList(getData());
         }
 
-        try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+        // Data is stale, but may be returned while it is refreshed in the background
+        if (serveStale()) return Collections.unmodifiableList(getData());
+
+        return fetchOnce(() -> Collections.unmodifiableList(getData()), this::fetch);
+    }
+
+    /**
+     * Fetches the data from redis or MongoDB
+     *
+     * @return the fetched data
+     */
+    private List<T> fetch() {
+        long start = startOperation();
+        try (CacheConnection cache = getReadConnection()) {
             long newTimestamp = System.currentTimeMillis() - 1;
 
+            // The local data may still match redis. Then only the content hash is transferred
+            if (revalidate(cache, newTimestamp)) return Collections.unmodifiableList(getData());
+
             // Data is not up-to-date or null
             // Try to get data from redis global cache
-            String dataString = jedis.get(getDataKey().getRedisKey());
+            String dataString = getVersioned(cache);
 
             // Check if data is null
             if (dataString != null) {
+                getMetrics().redisHit(getDataKey().getSubKey());
+                servedBy(TraceTier.REDIS, dataString.length());
+
                 //Convert the data
+                long conversionStart = DataMetrics.start();
                 ArrayList<T> newData = (ArrayList<T>) converter.convertFromDatabase(dataString);
+                getMetrics().recordConversion(conversionStart);
 
                 //Conversion failed
                 if (newData == null) {
@@ -88,25 +112,27 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
                 return Collections.unmodifiableList(getData());
             }
 
+            getMetrics().redisMiss(getDataKey().getSubKey());
+
+            servedBy(TraceTier.REDIS, 0);
+
             // Data in global cache is null
             // Try to get data from MongoDB
             if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
                 DataKey dataKey = getDataKey();
-                DB mongodb = MongoDBFactory.getInstance().getMongoDatabase();
-
-                DBCollection collection = mongodb.getCollection(dataKey.getMongoDBCollection());
-                BasicDBObject query = new BasicDBObject();
-                query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                DBObject object = collection.findOne(query);
+                Map<String, Object> object = getDocumentBackend().find(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier());
+                getMetrics().mongoDBFallback(object != null && object.get(dataKey.getMongoDBValue()) != null);
                 if (object != null) {
                     dataString = (String) object.get(dataKey.getMongoDBValue());
                 }
+                servedBy(TraceTier.MONGODB, dataString == null ? 0 : dataString.length());
 
                 //Check if data is null
                 if (dataString != null) {
                     //Convert the data
+                    long conversionStart = DataMetrics.start();
                     ArrayList<T> newData = (ArrayList<T>) converter.convertFromDatabase(dataString);
+                    getMetrics().recordConversion(conversionStart);
 
                     //Conversion failed
                     if (newData == null) {
@@ -121,7 +147,7 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
                     updateTimestamp(newTimestamp);
 
                     //Push data to Redis
-                    jedis.set(dataKey.getRedisKey(), dataString);
+                    setVersioned(cache, dataString);
 
                     return Collections.unmodifiableList(getData());
                 }
@@ -130,6 +156,9 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
             //Data does not exist yet
             doesExist = false;
             return new ArrayList<>();
+        } finally {
+            getMetrics().recordRead(start);
+            traceRead(start);
         }
     }
 
@@ -151,14 +180,19 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
         //Update the timestamp for last change
         updateTimestamp(newTimestamp);
 
+        long start = startOperation();
         //new Thread(() -> {
-            try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+            try (CacheConnection cache = getCacheConnection()) {
+
+                checkWriteOrder("setList");
 
                 //Get the data key
                 DataKey dataKey = getDataKey();
 
                 //Conversion to redis and mongoDB
+                long conversionStart = DataMetrics.start();
                 String dataString = converter.convertToDatabase(list);
+                getMetrics().recordConversion(conversionStart);
                 if (dataString == null) {
                     return;
                 }
@@ -166,52 +200,25 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
                 //Update to redis
                 if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
                     if (dataString.equals("")) {
-                        jedis.del(dataKey.getRedisKey());
+                        deleteVersioned(cache);
                     } else {
-                        jedis.set(dataKey.getRedisKey(), dataString);
+                        setVersioned(cache, dataString);
                     }
                 }
 
                 //Update to MongoDB
                 if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
-                    DB mongoDB = MongoDBFactory.getInstance().getMongoDatabase();
-                    DBCollection collection = mongoDB.getCollection(dataKey.getMongoDBCollection());
-
-                    while (true) {
-                        try {
-                            //Test if object already exists
-                            BasicDBObject query = new BasicDBObject();
-                            query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                            DBObject object = collection.findOne(query);
-                            if (object != null) {
-                                query = new BasicDBObject();
-                                query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                                BasicDBObject newDoc = new BasicDBObject();
-                                newDoc.put(dataKey.getMongoDBValue(), dataString);
-
-                                BasicDBObject update = new BasicDBObject();
-                                update.put("$set", newDoc);
-
-                                collection.update(query, update);
-                            } else {
-                                BasicDBObject create = new BasicDBObject();
-                                create.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                create.put(MONGO_IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                create.put(dataKey.getMongoDBValue(), dataString);
-
-                                collection.insert(create);
-                            }
-
-                            break;
-                        } catch (DuplicateKeyException ignored) {
-                        }
-                    }
+                    getDocumentBackend().set(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), dataString);
                 }
 
                 //Publish to other servers via redis
-                sendSyncMessage(jedis);
+                sendSyncMessage();
+            } catch (RuntimeException e) {
+                //Replay the write when the backends are available again
+                bufferWrite(e, WriteOperation.SET_VERSIONED, converter.convertToDatabase(list));
+            } finally {
+                getMetrics().recordWrite(DataOperation.SET, start);
+                traceWrite(DataOperation.SET, start);
             }
         //}).start();
 
@@ -227,7 +234,7 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
     public void add(T element) {
         int hashslot = getDataKey().getHashslot();
 
-        if (DataOrganizationManager.getInstance().getLastUpdated(hashslot) < getTimestamp() || getTimestamp() == 0) {
+        if (getManager().getLastUpdated(hashslot) < getTimestamp() || getTimestamp() == 0) {
             setData(new ArrayList<>(getList()));
         }
         doesExist = true;
@@ -242,13 +249,18 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
         //Update the timestamp for last change
         updateTimestamp(newTimestamp);
 
+        long start = startOperation();
         //new Thread(() -> {
-            try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+            try (CacheConnection cache = getCacheConnection()) {
+                checkWriteOrder("add");
+
                 //Get the data key
                 DataKey dataKey = getDataKey();
 
                 //Conversion to redis and mongoDB
+                long conversionStart = DataMetrics.start();
                 String dataString = converter.convertToDatabase(temp);
+                getMetrics().recordConversion(conversionStart);
                 if (dataString == null) {
                     return;
                 }
@@ -256,52 +268,25 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
                 //Update to redis
                 if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
                     if (dataString.equals("")) {
-                        jedis.del(dataKey.getRedisKey());
+                        deleteVersioned(cache);
                     } else {
-                        jedis.set(dataKey.getRedisKey(), dataString);
+                        setVersioned(cache, dataString);
                     }
                 }
 
                 //Update to MongoDB
                 if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
-                    DB mongoDB = MongoDBFactory.getInstance().getMongoDatabase();
-                    DBCollection collection = mongoDB.getCollection(dataKey.getMongoDBCollection());
-
-                    while (true) {
-                        try {
-                            //Test if object already exists
-                            BasicDBObject query = new BasicDBObject();
-                            query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                            DBObject object = collection.findOne(query);
-                            if (object != null) {
-                                query = new BasicDBObject();
-                                query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                                BasicDBObject newDoc = new BasicDBObject();
-                                newDoc.put(dataKey.getMongoDBValue(), dataString);
-
-                                BasicDBObject update = new BasicDBObject();
-                                update.put("$set", newDoc);
-
-                                collection.update(query, update);
-                            } else {
-                                BasicDBObject create = new BasicDBObject();
-                                create.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                create.put(MONGO_IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                create.put(dataKey.getMongoDBValue(), dataString);
-
-                                collection.insert(create);
-                            }
-
-                            break;
-                        } catch (DuplicateKeyException ignored) {
-                        }
-                    }
+                    getDocumentBackend().set(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), dataString);
                 }
 
                 //Publish to other servers via redis
-                sendSyncMessage(jedis);
+                sendSyncMessage();
+            } catch (RuntimeException e) {
+                //Replay the write when the backends are available again
+                bufferWrite(e, WriteOperation.SET_VERSIONED, converter.convertToDatabase(temp));
+            } finally {
+                getMetrics().recordWrite(DataOperation.ADD, start);
+                traceWrite(DataOperation.ADD, start);
             }
         //}).start();
 
@@ -317,7 +302,7 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
     public void remove(T element) {
         int hashslot = getDataKey().getHashslot();
 
-        if (DataOrganizationManager.getInstance().getLastUpdated(hashslot) < getTimestamp() || getTimestamp() == 0) {
+        if (getManager().getLastUpdated(hashslot) < getTimestamp() || getTimestamp() == 0) {
             setData(new ArrayList<>(getList()));
         }
         doesExist = true;
@@ -338,13 +323,18 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
             //Update the timestamp for last change
             updateTimestamp(newTimestamp);
 
+            long start = startOperation();
             //new Thread(() -> {
-                try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+                try (CacheConnection cache = getCacheConnection()) {
+                    checkWriteOrder("remove");
+
                     //Get the data key
                     DataKey dataKey = getDataKey();
 
                     //Conversion to redis and mongoDB
+                    long conversionStart = DataMetrics.start();
                     String dataString = converter.convertToDatabase(temp);
+                    getMetrics().recordConversion(conversionStart);
                     if (dataString == null) {
                         return;
                     }
@@ -352,52 +342,25 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
                     //Update to redis
                     if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
                         if (dataString.equals("")) {
-                            jedis.del(dataKey.getRedisKey());
+                            deleteVersioned(cache);
                         } else {
-                            jedis.set(dataKey.getRedisKey(), dataString);
+                            setVersioned(cache, dataString);
                         }
                     }
 
                     //Update to MongoDB
                     if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
-                        DB mongoDB = MongoDBFactory.getInstance().getMongoDatabase();
-                        DBCollection collection = mongoDB.getCollection(dataKey.getMongoDBCollection());
-
-                        while (true) {
-                            try {
-                                //Test if object already exists
-                                BasicDBObject query = new BasicDBObject();
-                                query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                                DBObject object = collection.findOne(query);
-                                if (object != null) {
-                                    query = new BasicDBObject();
-                                    query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                                    BasicDBObject newDoc = new BasicDBObject();
-                                    newDoc.put(dataKey.getMongoDBValue(), dataString);
-
-                                    BasicDBObject update = new BasicDBObject();
-                                    update.put("$set", newDoc);
-
-                                    collection.update(query, update);
-                                } else {
-                                    BasicDBObject create = new BasicDBObject();
-                                    create.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                    create.put(MONGO_IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                    create.put(dataKey.getMongoDBValue(), dataString);
-
-                                    collection.insert(create);
-                                }
-
-                                break;
-                            } catch (DuplicateKeyException ignored) {
-                            }
-                        }
+                        getDocumentBackend().set(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), dataString);
                     }
 
                     //Publish to other servers via redis
-                    sendSyncMessage(jedis);
+                    sendSyncMessage();
+                } catch (RuntimeException e) {
+                    //Replay the write when the backends are available again
+                    bufferWrite(e, WriteOperation.SET_VERSIONED, converter.convertToDatabase(temp));
+                } finally {
+                    getMetrics().recordWrite(DataOperation.REMOVE, start);
+                    traceWrite(DataOperation.REMOVE, start);
                 }
             //}).start();
 
@@ -416,40 +379,30 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
         //Update the timestamp for last change
         updateTimestamp(newTimestamp);
 
+        long start = startOperation();
         //new Thread(() -> {
-            try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+            try (CacheConnection cache = getCacheConnection()) {
+                checkWriteOrder("clear");
+
                 //Get the data key
                 DataKey dataKey = getDataKey();
 
                 //Delete from Redis
-                jedis.del(dataKey.getRedisKey());
+                deleteVersioned(cache);
 
                 //Delete from MongoDB
                 if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
-                    DB mongoDB = MongoDBFactory.getInstance().getMongoDatabase();
-                    DBCollection collection = mongoDB.getCollection(dataKey.getMongoDBCollection());
-
-                    while (true) {
-                        try {
-                            BasicDBObject query = new BasicDBObject();
-                            query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                            BasicDBObject newDoc = new BasicDBObject();
-                            newDoc.put(dataKey.getMongoDBValue(), "");
-
-                            BasicDBObject update = new BasicDBObject();
-                            update.put("$set", newDoc);
-
-                            collection.update(query, update);
-
-                            break;
-                        } catch (DuplicateKeyException ignored) {
-                        }
-                    }
+                    getDocumentBackend().unset(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue());
                 }
 
                 //Publish to other servers via redis
-                sendSyncMessage(jedis);
+                sendSyncMessage();
+            } catch (RuntimeException e) {
+                //Replay the write when the backends are available again
+                bufferWrite(e, WriteOperation.DELETE, null);
+            } finally {
+                getMetrics().recordWrite(DataOperation.CLEAR, start);
+                traceWrite(DataOperation.CLEAR, start);
             }
         //}).start();
 
@@ -487,7 +440,7 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
     public void set(int i, T element) {
         int hashslot = getDataKey().getHashslot();
 
-        if (DataOrganizationManager.getInstance().getLastUpdated(hashslot) < getTimestamp() || getTimestamp() == 0) {
+        if (getManager().getLastUpdated(hashslot) < getTimestamp() || getTimestamp() == 0) {
             setData(new ArrayList<>(getList()));
         }
         doesExist = true;
@@ -502,18 +455,23 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
             return;
         }
 
+        long start = startOperation();
         //new Thread(() -> {
-            try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+            try (CacheConnection cache = getCacheConnection()) {
                 long newTimestamp = System.currentTimeMillis() - 1;
 
                 //Update the timestamp for last change
                 updateTimestamp(newTimestamp);
 
+                checkWriteOrder("set");
+
                 //Get the data key
                 DataKey dataKey = getDataKey();
 
                 //Conversion to redis and mongoDB
+                long conversionStart = DataMetrics.start();
                 String dataString = converter.convertToDatabase(temp);
+                getMetrics().recordConversion(conversionStart);
                 if (dataString == null) {
                     return;
                 }
@@ -521,52 +479,25 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
                 //Update to redis
                 if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
                     if (dataString.equals("")) {
-                        jedis.del(dataKey.getRedisKey());
+                        deleteVersioned(cache);
                     } else {
-                        jedis.set(dataKey.getRedisKey(), dataString);
+                        setVersioned(cache, dataString);
                     }
                 }
 
                 //Update to MongoDB
                 if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
-                    DB mongoDB = MongoDBFactory.getInstance().getMongoDatabase();
-                    DBCollection collection = mongoDB.getCollection(dataKey.getMongoDBCollection());
-
-                    while (true) {
-                        try {
-                            //Test if object already exists
-                            BasicDBObject query = new BasicDBObject();
-                            query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                            DBObject object = collection.findOne(query);
-                            if (object != null) {
-                                query = new BasicDBObject();
-                                query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                                BasicDBObject newDoc = new BasicDBObject();
-                                newDoc.put(dataKey.getMongoDBValue(), dataString);
-
-                                BasicDBObject update = new BasicDBObject();
-                                update.put("$set", newDoc);
-
-                                collection.update(query, update);
-                            } else {
-                                BasicDBObject create = new BasicDBObject();
-                                create.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                create.put(MONGO_IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                create.put(dataKey.getMongoDBValue(), dataString);
-
-                                collection.insert(create);
-                            }
-
-                            break;
-                        } catch (DuplicateKeyException ignored) {
-                        }
-                    }
+                    getDocumentBackend().set(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), dataString);
                 }
 
                 //Publish to other servers via redis
-                sendSyncMessage(jedis);
+                sendSyncMessage();
+            } catch (RuntimeException e) {
+                //Replay the write when the backends are available again
+                bufferWrite(e, WriteOperation.SET_VERSIONED, converter.convertToDatabase(temp));
+            } finally {
+                getMetrics().recordWrite(DataOperation.SET, start);
+                traceWrite(DataOperation.SET, start);
             }
         //}).start();
 
@@ -574,4 +505,68 @@ public final class OrganizedListDataObject<T> extends OrganizedDataObject<ArrayL
         setData(temp);
     }
 
+    @Override
+    public void load() {
+        getList();
+    }
+
+    /**
+     * Asynchronous variant of {@link #getList()}
+     *
+     * @return the future of the {@link List}
+     */
+    public CompletableFuture<List<T>> getListAsync() {
+        return async(this::getList);
+    }
+
+    /**
+     * Asynchronous variant of {@link #setList(ArrayList)}
+     *
+     * @param list the new {@link List}
+     * @return the future which completes when the {@link List} is written
+     */
+    public CompletableFuture<Void> setListAsync(ArrayList<T> list) {
+        return asyncRun(() -> setList(list));
+    }
+
+    /**
+     * Asynchronous variant of {@link #add(Object)}
+     *
+     * @param element The element that will be added to the {@link List}
+     * @return the future which completes when the element is added
+     */
+    public CompletableFuture<Void> addAsync(T element) {
+        return asyncRun(() -> add(element));
+    }
+
+    /**
+     * Asynchronous variant of {@link #remove(Object)}
+     *
+     * @param element The element that will be removed from the {@link List}
+     * @return the future which completes when the element is removed
+     */
+    public CompletableFuture<Void> removeAsync(T element) {
+        return asyncRun(() -> remove(element));
+    }
+
+    /**
+     * Asynchronous variant of {@link #set(int, Object)}
+     *
+     * @param i       the index
+     * @param element the new element
+     * @return the future which completes when the element is replaced
+     */
+    public CompletableFuture<Void> setAsync(int i, T element) {
+        return asyncRun(() -> set(i, element));
+    }
+
+    /**
+     * Asynchronous variant of {@link #clear()}
+     *
+     * @return the future which completes when the {@link List} is cleared
+     */
+    public CompletableFuture<Void> clearAsync() {
+        return asyncRun(this::clear);
+    }
+
 }
@@ -0,0 +1,376 @@
+package com.lostkingdoms.db.organization.objects;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.lostkingdoms.db.backend.BackendFailures;
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.metrics.DataOperation;
+import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.enums.WriteOperation;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+import com.lostkingdoms.db.trace.TraceTier;
+
+/**
+ * An {@link OrganizedDataObject} which represents a long value (e.g. gold, xp or kill counts).
+ * The value is held as primitive locally, as plain integer string in redis and as number
+ * in MongoDB, so increments are done atomically with INCRBY and $inc instead of get and set.
+ *
+ * @author Tim Kchler (https://github.com/TimK1998)
+ */
+public final class OrganizedLongDataObject extends OrganizedDataObject<Long> {
+
+    /**
+     * The local value. Written before the timestamp, so readers see the value it belongs to
+     */
+    private volatile long value;
+
+    /**
+     * The ranked index this value is additionally saved in or null
+     */
+    private OrganizedSortedSetDataObject<String> index;
+
+    /**
+     * The member which represents this value in the index
+     */
+    private String indexMember;
+
+
+    /**
+     * Constructor for {@link OrganizedLongDataObject}.
+     * This represent a long value that should be organized.
+     *
+     * @param dataKey          The objects {@link DataKey}
+     * @param organizationType The objects {@link OrganizationType}
+     */
+    public OrganizedLongDataObject(DataKey dataKey, OrganizationType organizationType) {
+        setDataKey(dataKey);
+        setOrganizationType(organizationType);
+    }
+
+    /**
+     * The public getter method for the value.
+     * Checks consistency of data with global cache and DB.
+     *
+     * @return the value or 0 if there is no value yet
+     */
+    public long get() {
+        // If data is up-to-date
+        int hashslot = getDataKey().getHashslot();
+        if ((getManager().getLastUpdated(hashslot) < getTimestamp() && getTimestamp() != 0)
+                || getOrganizationType() == OrganizationType.NONE) {
+            getMetrics().localHit();
+            traceRead(TraceTier.LOCAL, 0, 0);
+            return value;
+        }
+
+        // Data is stale, but may be returned while it is refreshed in the background
+        if (serveStale()) return value;
+
+        return fetchOnce(() -> value, this::fetch);
+    }
+
+    /**
+     * Fetches the data from redis or MongoDB
+     *
+     * @return the fetched data
+     */
+    private long fetch() {
+        long start = startOperation();
+        try (CacheConnection cache = getReadConnection()) {
+            long newTimestamp = System.currentTimeMillis() - 1;
+            DataKey dataKey = getDataKey();
+
+            // Data is not up-to-date
+            // Try to get data from redis global cache
+            if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
+                String dataString = cache.get(dataKey.getRedisKey());
+
+                if (dataString != null) {
+                    getMetrics().redisHit(dataKey.getSubKey());
+                    servedBy(TraceTier.REDIS, dataString.length());
+                    value = Long.parseLong(dataString);
+                    updateTimestamp(newTimestamp);
+                    return value;
+                }
+            }
+
+            // Data in global cache is null
+            // Try to get data from MongoDB
+            if (getOrganizationType() == OrganizationType.BOTH) getMetrics().redisMiss(dataKey.getSubKey());
+            servedBy(TraceTier.REDIS, 0);
+            long newValue = 0;
+            if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
+                Map<String, Object> object = getDocumentBackend().find(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier());
+                getMetrics().mongoDBFallback(object != null && object.get(dataKey.getMongoDBValue()) != null);
+                servedBy(TraceTier.MONGODB, 0);
+                if (object != null) {
+                    newValue = toLong(object.get(dataKey.getMongoDBValue()));
+                }
+            }
+
+            //Push data to Redis. Another server may have seeded it in the meantime
+            if (getOrganizationType() == OrganizationType.BOTH) {
+                if (cache.setnx(dataKey.getRedisKey(), String.valueOf(newValue)) == 0) {
+                    String dataString = cache.get(dataKey.getRedisKey());
+                    if (dataString != null) newValue = Long.parseLong(dataString);
+                }
+            }
+
+            value = newValue;
+            updateTimestamp(newTimestamp);
+            return value;
+        } finally {
+            getMetrics().recordRead(start);
+            traceRead(start);
+        }
+    }
+
+    /**
+     * The public setter for the value. Processes the value according to
+     * {@link OrganizationType}.
+     *
+     * @param newValue the value to set
+     */
+    public void set(long newValue) {
+        long newTimestamp = System.currentTimeMillis() - 1;
+
+        //Update the timestamp for last change
+        updateTimestamp(newTimestamp);
+        value = newValue;
+
+        if (getOrganizationType() == OrganizationType.NONE) return;
+
+        long start = startOperation();
+        try (CacheConnection cache = getCacheConnection()) {
+            checkWriteOrder("set");
+
+            DataKey dataKey = getDataKey();
+
+            //Update to redis
+            if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
+                cache.set(dataKey.getRedisKey(), String.valueOf(newValue));
+            }
+
+            //Update to MongoDB
+            if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
+                getDocumentBackend().set(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), newValue);
+            }
+
+            //Update the ranked index
+            if (index != null) index.add(indexMember, newValue);
+
+            //Publish to other servers via redis
+            sendSyncMessage();
+        } catch (RuntimeException e) {
+            //Replay the write when the backends are available again
+            bufferWrite(e, WriteOperation.SET_LONG, String.valueOf(newValue));
+        }
+
+        getMetrics().recordWrite(DataOperation.SET, start);
+
+        traceWrite(DataOperation.SET, start);
+    }
+
+    /**
+     * Atomically adds the given delta to the value across all servers.
+     * Uses INCRBY in redis and $inc in MongoDB, so only one round trip per tier is needed.
+     *
+     * @param delta the value to add
+     * @return the updated value
+     */
+    public long addAndGet(long delta) {
+        if (getOrganizationType() == OrganizationType.NONE) {
+            updateTimestamp(System.currentTimeMillis() - 1);
+            value += delta;
+            return value;
+        }
+
+        long start = startOperation();
+        boolean cached = false;
+        boolean saved = false;
+        boolean applied = false;
+        try (CacheConnection cache = getCacheConnection()) {
+            checkWriteOrder("addAndGet");
+
+            long newTimestamp = System.currentTimeMillis() - 1;
+            DataKey dataKey = getDataKey();
+            long newValue = value + delta;
+
+            //Update to redis
+            if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
+                newValue = incrementCache(cache, dataKey, delta);
+                cached = true;
+            }
+
+            //Update to MongoDB. If it is the only tier, it has to return the new value
+            if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
+                Number documentValue = incrementDocument(dataKey, delta, getOrganizationType() == OrganizationType.SAVE_TO_DB);
+                if (documentValue != null) newValue = documentValue.longValue();
+                saved = true;
+            }
+
+            value = newValue;
+            updateTimestamp(newTimestamp);
+            applied = true;
+
+            //Update the ranked index. Increment instead of set, so concurrent updates can not be reordered
+            if (index != null) index.incrementScore(indexMember, delta);
+
+            //Publish to other servers via redis
+            sendSyncMessage();
+
+            return newValue;
+        } catch (RuntimeException e) {
+            //Replay the write when the backends are available again. The tiers which applied it are skipped
+            bufferWrite(e, WriteOperation.INCREMENT_LONG, String.valueOf(delta), cached, saved);
+
+            //The index or the sync message failed after the local value was already updated
+            if (!applied) {
+                value += delta;
+                updateTimestamp(System.currentTimeMillis() - 1);
+            }
+            return value;
+        } finally {
+            getMetrics().recordWrite(DataOperation.INCREMENT, start);
+            traceWrite(DataOperation.INCREMENT, start);
+        }
+    }
+
+    /**
+     * Atomically increments the value by one
+     *
+     * @return the updated value
+     */
+    public long incrementAndGet() {
+        return addAndGet(1);
+    }
+
+    /**
+     * Atomically decrements the value by one
+     *
+     * @return the updated value
+     */
+    public long decrementAndGet() {
+        return addAndGet(-1);
+    }
+
+    /**
+     * Increments the value in redis. If redis lost the value, it is seeded with the value
+     * from MongoDB in the same atomic step, so the increment does not start counting at 0
+     *
+     * @param cache   the connection
+     * @param dataKey the key of the value
+     * @param delta   the value to add
+     * @return the new value
+     */
+    private long incrementCache(CacheConnection cache, DataKey dataKey, long delta) {
+        if (getOrganizationType() != OrganizationType.BOTH) return cache.incrBy(dataKey.getRedisKey(), delta);
+
+        Long newValue = cache.incrBySeeded(dataKey.getRedisKey(), delta, null);
+        if (newValue != null) return newValue;
+
+        Map<String, Object> object = getDocumentBackend().find(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier());
+        long seed = object == null ? 0 : toLong(object.get(dataKey.getMongoDBValue()));
+        return cache.incrBySeeded(dataKey.getRedisKey(), delta, String.valueOf(seed));
+    }
+
+    /**
+     * Increments the value in MongoDB. A json string written by an {@link OrganizedSingleDataObject},
+     * which $inc can not increment, is migrated to a number first
+     *
+     * @param dataKey the key of the value
+     * @param delta   the value to add
+     * @param andGet  true if the new value is needed
+     * @return the new value or null if it is not needed
+     */
+    private Number incrementDocument(DataKey dataKey, long delta, boolean andGet) {
+        try {
+            if (andGet) return getDocumentBackend().incrementAndGet(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), delta);
+            getDocumentBackend().increment(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), delta);
+            return null;
+        } catch (RuntimeException e) {
+            if (BackendFailures.isUnavailable(e) || !migrateLegacyNumber(OrganizedLongDataObject::toLong)) throw e;
+            return incrementDocument(dataKey, delta, andGet);
+        }
+    }
+
+    /**
+     * Set the ranked index this value is additionally saved in.
+     * Is called by the DataAccessManager for fields with OrganizedIndex annotation
+     *
+     * @param index       the index
+     * @param indexMember the member which represents this value in the index
+     */
+    public void setIndex(OrganizedSortedSetDataObject<String> index, String indexMember) {
+        this.index = index;
+        this.indexMember = indexMember;
+    }
+
+    /**
+     * Converts a MongoDB value to long. Values saved by an {@link OrganizedSingleDataObject}
+     * are json strings and get parsed.
+     *
+     * @param obj the MongoDB value
+     * @return the long value or 0
+     * @throws NumberFormatException if the json string is no number
+     */
+    private static long toLong(Object obj) {
+        if (obj instanceof Number) return ((Number) obj).longValue();
+        if (obj instanceof String && !((String) obj).isEmpty()) return Long.parseLong(((String) obj).replace("\"", ""));
+        return 0;
+    }
+
+    @Override
+    public void load() {
+        get();
+    }
+
+    @Override
+    String getRefreshKey() {
+        if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) return getDataKey().getRedisKey();
+        return null;
+    }
+
+    @Override
+    void refresh(String dataString, long newTimestamp) {
+        //Not in redis, MongoDB has to be asked
+        if (dataString == null) {
+            load();
+            return;
+        }
+
+        value = Long.parseLong(dataString);
+        updateTimestamp(newTimestamp);
+    }
+
+    /**
+     * Asynchronous variant of {@link #get()}
+     *
+     * @return the future of the value
+     */
+    public CompletableFuture<Long> getAsync() {
+        return async(this::get);
+    }
+
+    /**
+     * Asynchronous variant of {@link #set(long)}
+     *
+     * @param newValue the value to set
+     * @return the future which completes when the value is written
+     */
+    public CompletableFuture<Void> setAsync(long newValue) {
+        return asyncRun(() -> set(newValue));
+    }
+
+    /**
+     * Asynchronous variant of {@link #addAndGet(long)}
+     *
+     * @param delta the value to add
+     * @return the future of the updated value
+     */
+    public CompletableFuture<Long> addAndGetAsync(long delta) {
+        return async(() -> addAndGet(delta));
+    }
+
+}
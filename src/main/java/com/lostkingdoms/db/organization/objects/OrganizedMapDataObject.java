@@ -3,17 +3,17 @@ package com.lostkingdoms.db.organization.objects;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
-import com.mongodb.*;
 
-import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.CacheConnection;
 import com.lostkingdoms.db.converters.impl.DefaultMapDataConverter;
-import com.lostkingdoms.db.factories.JedisFactory;
-import com.lostkingdoms.db.factories.MongoDBFactory;
+import com.lostkingdoms.db.metrics.DataMetrics;
+import com.lostkingdoms.db.metrics.DataOperation;
 import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.enums.WriteOperation;
 import com.lostkingdoms.db.organization.miscellaneous.DataKey;
-
-import redis.clients.jedis.Jedis;
+import com.lostkingdoms.db.trace.TraceTier;
 
 /**
  * The base class for data which should be saved or synced as a map.
@@ -58,22 +58,45 @@ public final class OrganizedMapDataObject<K, V> extends OrganizedDataObject<Hash
 
         // If data is up-to-date
         int hashslot = getDataKey().getHashslot();
-        if ((DataOrganizationManager.getInstance().getLastUpdated(hashslot) < getTimestamp() && getTimestamp() != 0)
+        if ((getManager().getLastUpdated(hashslot) < getTimestamp() && getTimestamp() != 0)
                 || getOrganizationType() == OrganizationType.NONE) {
+            getMetrics().localHit();
+            traceRead(TraceTier.LOCAL, 0, 0);
             return Collections.unmodifiableMap(getData());
         }
 
-        try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+        // Data is stale, but may be returned while it is refreshed in the background
+        if (serveStale()) return Collections.unmodifiableMap(getData());
+
+        return fetchOnce(() -> Collections.unmodifiableMap(getData()), this::fetch);
+    }
+
+    /**
+     * Fetches the data from redis or MongoDB
+     *
+     * @return the fetched data
+     */
+    private Map<K, V> fetch() {
+        long start = startOperation();
+        try (CacheConnection cache = getReadConnection()) {
             long newTimestamp = System.currentTimeMillis() - 1;
 
+            // The local data may still match redis. Then only the content hash is transferred
+            if (revalidate(cache, newTimestamp)) return Collections.unmodifiableMap(getData());
+
             // Data is not up-to-date or null
             // Try to get data from redis global cache
-            String dataString = jedis.get(getDataKey().getRedisKey());
+            String dataString = getVersioned(cache);
 
             // Check if data is null
             if (dataString != null) {
+                getMetrics().redisHit(getDataKey().getSubKey());
+                servedBy(TraceTier.REDIS, dataString.length());
+
                 //Convert the data
+                long conversionStart = DataMetrics.start();
                 HashMap<K, V> newData = converter.convertFromDatabase(dataString);
+                getMetrics().recordConversion(conversionStart);
 
                 //Conversion failed
                 if (newData == null) {
@@ -90,25 +113,27 @@ public final class OrganizedMapDataObject<K, V> extends OrganizedDataObject<Hash
                 return Collections.unmodifiableMap(getData());
             }
 
+            getMetrics().redisMiss(getDataKey().getSubKey());
+
+            servedBy(TraceTier.REDIS, 0);
+
             // Data in global cache is null
             // Try to get data from MongoDB
             if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
                 DataKey dataKey = getDataKey();
-                DB mongodb = MongoDBFactory.getInstance().getMongoDatabase();
-
-                DBCollection collection = mongodb.getCollection(dataKey.getMongoDBCollection());
-                BasicDBObject query = new BasicDBObject();
-                query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                DBObject object = collection.findOne(query);
+                Map<String, Object> object = getDocumentBackend().find(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier());
+                getMetrics().mongoDBFallback(object != null && object.get(dataKey.getMongoDBValue()) != null);
                 if (object != null) {
                     dataString = (String) object.get(dataKey.getMongoDBValue());
                 }
+                servedBy(TraceTier.MONGODB, dataString == null ? 0 : dataString.length());
 
                 //Check if data is null
                 if (dataString != null) {
                     //Convert the data
+                    long conversionStart = DataMetrics.start();
                     HashMap<K, V> newData = converter.convertFromDatabase(dataString);
+                    getMetrics().recordConversion(conversionStart);
 
                     //Conversion failed
                     if (newData == null) {
@@ -123,7 +148,7 @@ public final class OrganizedMapDataObject<K, V> extends OrganizedDataObject<Hash
                     updateTimestamp(newTimestamp);
 
                     //Push data to Redis
-                    jedis.set(dataKey.getRedisKey(), dataString);
+                    setVersioned(cache, dataString);
 
                     return Collections.unmodifiableMap(getData());
                 }
@@ -132,6 +157,9 @@ public final class OrganizedMapDataObject<K, V> extends OrganizedDataObject<Hash
             //Data does not exist yet
             doesExist = false;
             return getData();
+        } finally {
+            getMetrics().recordRead(start);
+            traceRead(start);
         }
     }
 
@@ -147,13 +175,18 @@ public final class OrganizedMapDataObject<K, V> extends OrganizedDataObject<Hash
         //Update the timestamp for last change
         updateTimestamp(newTimestamp);
 
+        long start = startOperation();
         //new Thread(() -> {
-            try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+            try (CacheConnection cache = getCacheConnection()) {
+                checkWriteOrder("setMap");
+
                 //Get the data key
                 DataKey dataKey = getDataKey();
 
                 //Conversion to redis and mongoDB
+                long conversionStart = DataMetrics.start();
                 String dataString = converter.convertToDatabase(map);
+                getMetrics().recordConversion(conversionStart);
                 if (dataString == null) {
                     return;
                 }
@@ -161,53 +194,26 @@ public final class OrganizedMapDataObject<K, V> extends OrganizedDataObject<Hash
                 //Update to redis
                 if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
                     if (dataString.equals("")) {
-                        jedis.del(dataKey.getRedisKey());
+                        deleteVersioned(cache);
                     } else {
-                        jedis.set(dataKey.getRedisKey(), dataString);
+                        setVersioned(cache, dataString);
                     }
                 }
 
                 //Update to MongoDB
                 if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
-                    DB mongoDB = MongoDBFactory.getInstance().getMongoDatabase();
-                    DBCollection collection = mongoDB.getCollection(dataKey.getMongoDBCollection());
-
-                    while (true) {
-                        try {
-                            //Test if object already exists
-                            BasicDBObject query = new BasicDBObject();
-                            query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                            DBObject object = collection.findOne(query);
-                            if (object != null) {
-                                query = new BasicDBObject();
-                                query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                                BasicDBObject newDoc = new BasicDBObject();
-                                newDoc.put(dataKey.getMongoDBValue(), dataString);
-
-                                BasicDBObject update = new BasicDBObject();
-                                update.put("$set", newDoc);
-
-                                collection.update(query, update);
-                            } else {
-                                BasicDBObject create = new BasicDBObject();
-                                create.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                create.put(MONGO_IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                create.put(dataKey.getMongoDBValue(), dataString);
-
-                                collection.insert(create);
-                            }
-
-                            break;
-                        } catch (DuplicateKeyException ignored) {
-                        }
-                    }
+                    getDocumentBackend().set(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), dataString);
 
                 }
 
                 //Publish to other servers via redis
-                sendSyncMessage(jedis);
+                sendSyncMessage();
+            } catch (RuntimeException e) {
+                //Replay the write when the backends are available again
+                bufferWrite(e, WriteOperation.SET_VERSIONED, converter.convertToDatabase(map));
+            } finally {
+                getMetrics().recordWrite(DataOperation.SET, start);
+                traceWrite(DataOperation.SET, start);
             }
         //}).start();
 
@@ -224,7 +230,7 @@ public final class OrganizedMapDataObject<K, V> extends OrganizedDataObject<Hash
     public void put(K key, V value) {
         int hashslot = getDataKey().getHashslot();
 
-        if (DataOrganizationManager.getInstance().getLastUpdated(hashslot) < getTimestamp() || getTimestamp() == 0) {
+        if (getManager().getLastUpdated(hashslot) < getTimestamp() || getTimestamp() == 0) {
             setData(new HashMap<K, V>(getMap()));
         }
         doesExist = true;
@@ -240,13 +246,18 @@ public final class OrganizedMapDataObject<K, V> extends OrganizedDataObject<Hash
         //Update the timestamp for last change
         updateTimestamp(newTimestamp);
 
+        long start = startOperation();
         //new Thread(() -> {
-            try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+            try (CacheConnection cache = getCacheConnection()) {
+                checkWriteOrder("put");
+
                 //Get the data key
                 DataKey dataKey = getDataKey();
 
                 //Conversion to redis and mongoDB
+                long conversionStart = DataMetrics.start();
                 String dataString = converter.convertToDatabase(temp);
+                getMetrics().recordConversion(conversionStart);
                 if (dataString == null) {
                     return;
                 }
@@ -254,52 +265,25 @@ public final class OrganizedMapDataObject<K, V> extends OrganizedDataObject<Hash
                 //Update to redis
                 if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
                     if (dataString.equals("")) {
-                        jedis.del(dataKey.getRedisKey());
+                        deleteVersioned(cache);
                     } else {
-                        jedis.set(dataKey.getRedisKey(), dataString);
+                        setVersioned(cache, dataString);
                     }
                 }
 
                 //Update to MongoDB
                 if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
-                    DB mongoDB = MongoDBFactory.getInstance().getMongoDatabase();
-                    DBCollection collection = mongoDB.getCollection(dataKey.getMongoDBCollection());
-
-                    while (true) {
-                        try {
-                            //Test if object already exists
-                            BasicDBObject query = new BasicDBObject();
-                            query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                            DBObject object = collection.findOne(query);
-                            if (object != null) {
-                                query = new BasicDBObject();
-                                query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                                BasicDBObject newDoc = new BasicDBObject();
-                                newDoc.put(dataKey.getMongoDBValue(), dataString);
-
-                                BasicDBObject update = new BasicDBObject();
-                                update.put("$set", newDoc);
-
-                                collection.update(query, update);
-                            } else {
-                                BasicDBObject create = new BasicDBObject();
-                                create.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                create.put(MONGO_IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                create.put(dataKey.getMongoDBValue(), dataString);
-
-                                collection.insert(create);
-                            }
-
-                            break;
-                        } catch (DuplicateKeyException ignored) {
-                        }
-                    }
+                    getDocumentBackend().set(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), dataString);
                 }
 
                 //Publish to other servers via redis
-                sendSyncMessage(jedis);
+                sendSyncMessage();
+            } catch (RuntimeException e) {
+                //Replay the write when the backends are available again
+                bufferWrite(e, WriteOperation.SET_VERSIONED, converter.convertToDatabase(temp));
+            } finally {
+                getMetrics().recordWrite(DataOperation.PUT, start);
+                traceWrite(DataOperation.PUT, start);
             }
         //}).start();
 
@@ -315,7 +299,7 @@ public final class OrganizedMapDataObject<K, V> extends OrganizedDataObject<Hash
     public void remove(K key) {
         int hashslot = getDataKey().getHashslot();
 
-        if (DataOrganizationManager.getInstance().getLastUpdated(hashslot) < getTimestamp() || getTimestamp() == 0) {
+        if (getManager().getLastUpdated(hashslot) < getTimestamp() || getTimestamp() == 0) {
             setData(new HashMap<>(getMap()));
         }
         doesExist = true;
@@ -336,13 +320,18 @@ public final class OrganizedMapDataObject<K, V> extends OrganizedDataObject<Hash
             //Update the timestamp for last change
             updateTimestamp(newTimestamp);
 
+            long start = startOperation();
             //new Thread(() -> {
-                try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+                try (CacheConnection cache = getCacheConnection()) {
+                    checkWriteOrder("remove");
+
                     //Get the data key
                     DataKey dataKey = getDataKey();
 
                     //Conversion to redis and mongoDB
+                    long conversionStart = DataMetrics.start();
                     String dataString = converter.convertToDatabase(temp);
+                    getMetrics().recordConversion(conversionStart);
                     if (dataString == null) {
                         return;
                     }
@@ -350,52 +339,25 @@ public final class OrganizedMapDataObject<K, V> extends OrganizedDataObject<Hash
                     //Update to redis
                     if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
                         if (dataString.equals("")) {
-                            jedis.del(dataKey.getRedisKey());
+                            deleteVersioned(cache);
                         } else {
-                            jedis.set(dataKey.getRedisKey(), dataString);
+                            setVersioned(cache, dataString);
                         }
                     }
 
                     //Update to MongoDB
                     if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
-                        DB mongoDB = MongoDBFactory.getInstance().getMongoDatabase();
-                        DBCollection collection = mongoDB.getCollection(dataKey.getMongoDBCollection());
-
-                        while (true) {
-                            try {
-                                //Test if object already exists
-                                BasicDBObject query = new BasicDBObject();
-                                query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                                DBObject object = collection.findOne(query);
-                                if (object != null) {
-                                    query = new BasicDBObject();
-                                    query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                                    BasicDBObject newDoc = new BasicDBObject();
-                                    newDoc.put(dataKey.getMongoDBValue(), dataString);
-
-                                    BasicDBObject update = new BasicDBObject();
-                                    update.put("$set", newDoc);
-
-                                    collection.update(query, update);
-                                } else {
-                                    BasicDBObject create = new BasicDBObject();
-                                    create.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                    create.put(MONGO_IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                    create.put(dataKey.getMongoDBValue(), dataString);
-
-                                    collection.insert(create);
-                                }
-
-                                break;
-                            } catch (DuplicateKeyException ignored) {
-                            }
-                        }
+                        getDocumentBackend().set(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), dataString);
                     }
 
                     //Publish to other servers via redis
-                    sendSyncMessage(jedis);
+                    sendSyncMessage();
+                } catch (RuntimeException e) {
+                    //Replay the write when the backends are available again
+                    bufferWrite(e, WriteOperation.SET_VERSIONED, converter.convertToDatabase(temp));
+                } finally {
+                    getMetrics().recordWrite(DataOperation.REMOVE, start);
+                    traceWrite(DataOperation.REMOVE, start);
                 }
             //}).start();
 
@@ -414,40 +376,30 @@ public final class OrganizedMapDataObject<K, V> extends OrganizedDataObject<Hash
         //Update the timestamp for last change
         updateTimestamp(newTimestamp);
 
+        long start = startOperation();
         //new Thread(() -> {
-            try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+            try (CacheConnection cache = getCacheConnection()) {
+                checkWriteOrder("clear");
+
                 //Get the data key
                 DataKey dataKey = getDataKey();
 
                 //Delete from Redis
-                jedis.del(dataKey.getRedisKey());
+                deleteVersioned(cache);
 
                 //Delete from MongoDB
                 if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
-                    DB mongoDB = MongoDBFactory.getInstance().getMongoDatabase();
-                    DBCollection collection = mongoDB.getCollection(dataKey.getMongoDBCollection());
-
-                    while (true) {
-                        try {
-                            BasicDBObject query = new BasicDBObject();
-                            query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                            BasicDBObject newDoc = new BasicDBObject();
-                            newDoc.put(dataKey.getMongoDBValue(), "");
-
-                            BasicDBObject update = new BasicDBObject();
-                            update.put("$set", newDoc);
-
-                            collection.update(query, update);
-
-                            break;
-                        } catch (DuplicateKeyException ignored) {
-                        }
-                    }
+                    getDocumentBackend().unset(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue());
                 }
 
                 //Publish to other servers via redis
-                sendSyncMessage(jedis);
+                sendSyncMessage();
+            } catch (RuntimeException e) {
+                //Replay the write when the backends are available again
+                bufferWrite(e, WriteOperation.DELETE, null);
+            } finally {
+                getMetrics().recordWrite(DataOperation.CLEAR, start);
+                traceWrite(DataOperation.CLEAR, start);
             }
         //}).start();
 
@@ -498,4 +450,68 @@ public final class OrganizedMapDataObject<K, V> extends OrganizedDataObject<Hash
         return map.size();
     }
 
+    @Override
+    public void load() {
+        getMap();
+    }
+
+    /**
+     * Asynchronous variant of {@link #getMap()}
+     *
+     * @return the future of the {@link Map}
+     */
+    public CompletableFuture<Map<K, V>> getMapAsync() {
+        return async(this::getMap);
+    }
+
+    /**
+     * Asynchronous variant of {@link #setMap(HashMap)}
+     *
+     * @param map the new {@link Map}
+     * @return the future which completes when the {@link Map} is written
+     */
+    public CompletableFuture<Void> setMapAsync(HashMap<K, V> map) {
+        return asyncRun(() -> setMap(map));
+    }
+
+    /**
+     * Asynchronous variant of {@link #put(Object, Object)}
+     *
+     * @param key   the key
+     * @param value the value
+     * @return the future which completes when the entry is written
+     */
+    public CompletableFuture<Void> putAsync(K key, V value) {
+        return asyncRun(() -> put(key, value));
+    }
+
+    /**
+     * Asynchronous variant of {@link #remove(Object)}
+     *
+     * @param key the key
+     * @return the future which completes when the entry is removed
+     */
+    public CompletableFuture<Void> removeAsync(K key) {
+        return asyncRun(() -> remove(key));
+    }
+
+    /**
+     * Asynchronous variant of {@link #get(Object)}
+     *
+     * @param key the key
+     * @return the future of the value
+     */
+    public CompletableFuture<V> getAsync(K key) {
+        return async(() -> get(key));
+    }
+
+    /**
+     * Asynchronous variant of {@link #clear()}
+     *
+     * @return the future which completes when the {@link Map} is cleared
+     */
+    public CompletableFuture<Void> clearAsync() {
+        return asyncRun(this::clear);
+    }
+
 }
@@ -0,0 +1,411 @@
+package com.lostkingdoms.db.organization.objects;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.converters.impl.DefaultDataConverter;
+import com.lostkingdoms.db.metrics.DataOperation;
+import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.enums.WriteOperation;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+import com.lostkingdoms.db.trace.TraceTier;
+
+/**
+ * An {@link OrganizedDataObject} which represents a {@link HashSet} of type T.
+ * Saved as redis SET and as MongoDB array, so elements can be added and removed
+ * without transferring the whole set and membership can be checked with SISMEMBER.
+ *
+ * @param <T> the element class
+ * @author Tim Kchler (https://github.com/TimK1998)
+ */
+public final class OrganizedSetDataObject<T> extends OrganizedDataObject<HashSet<T>> {
+
+    /**
+     * The {@link DefaultDataConverter} that will be used for serialization and
+     * deserialization of the single elements.
+     */
+    private final DefaultDataConverter<T> converter;
+
+    /**
+     * True if this object knows that the redis set contains the elements from MongoDB
+     */
+    private boolean seeded;
+
+
+    /**
+     * Constructor for {@link OrganizedSetDataObject}.
+     * This represent a set of objects that should be organized.
+     *
+     * @param dataKey          The objects {@link DataKey}
+     * @param organizationType The objects {@link OrganizationType}
+     */
+    public OrganizedSetDataObject(DataKey dataKey, OrganizationType organizationType, DefaultDataConverter<T> converter) {
+        setDataKey(dataKey);
+        this.converter = converter;
+        setOrganizationType(organizationType);
+        setData(new HashSet<>());
+
+        //Redis is the only global tier, there is nothing to seed from
+        seeded = organizationType == OrganizationType.SYNC;
+    }
+
+    /**
+     * Get the {@link Set}
+     *
+     * @return An unmodifiable instance of the {@link Set}
+     */
+    public Set<T> getSet() {
+        if (isUpToDate()) {
+            getMetrics().localHit();
+            traceRead(TraceTier.LOCAL, 0, 0);
+            return Collections.unmodifiableSet(getData());
+        }
+
+        // Data is stale, but may be returned while it is refreshed in the background
+        if (serveStale()) return Collections.unmodifiableSet(getData());
+
+        return fetchOnce(() -> Collections.unmodifiableSet(getData()), this::fetch);
+    }
+
+    /**
+     * Fetches the data from redis or MongoDB
+     *
+     * @return the fetched data
+     */
+    private Set<T> fetch() {
+        long start = startOperation();
+        try (CacheConnection cache = getReadConnection()) {
+            long newTimestamp = System.currentTimeMillis() - 1;
+            DataKey dataKey = getDataKey();
+
+            // Data is not up-to-date
+            // Try to get data from redis global cache
+            if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
+                Set<String> members = cache.smembers(dataKey.getRedisKey());
+
+                if (!members.isEmpty() || getOrganizationType() == OrganizationType.SYNC) {
+                    getMetrics().redisHit(dataKey.getSubKey());
+                    servedBy(TraceTier.REDIS, 0);
+                    HashSet<T> newData = new HashSet<>();
+                    for (String member : members) {
+                        newData.add(converter.convertFromDatabase(member));
+                    }
+
+                    setData(newData);
+                    seeded = true;
+                    updateTimestamp(newTimestamp);
+                    return Collections.unmodifiableSet(getData());
+                }
+            }
+
+            // Data in global cache is empty
+            // Try to get data from MongoDB
+            if (getOrganizationType() == OrganizationType.BOTH) getMetrics().redisMiss(dataKey.getSubKey());
+            servedBy(TraceTier.REDIS, 0);
+
+            HashSet<T> newData = new HashSet<>();
+            Map<String, Object> object = getDocumentBackend().find(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier());
+            getMetrics().mongoDBFallback(object != null && object.get(dataKey.getMongoDBValue()) != null);
+            servedBy(TraceTier.MONGODB, 0);
+            if (object != null && object.get(dataKey.getMongoDBValue()) instanceof List) {
+                List<?> members = (List<?>) object.get(dataKey.getMongoDBValue());
+
+                for (Object member : members) {
+                    newData.add(converter.convertFromDatabase((String) member));
+                }
+
+                //Push data to Redis
+                if (getOrganizationType() == OrganizationType.BOTH && !members.isEmpty()) {
+                    cache.sadd(dataKey.getRedisKey(), members.toArray(new String[0]));
+                }
+            }
+            seeded = true;
+
+            setData(newData);
+            updateTimestamp(newTimestamp);
+            return Collections.unmodifiableSet(getData());
+        } finally {
+            getMetrics().recordRead(start);
+            traceRead(start);
+        }
+    }
+
+    /**
+     * Add an element to the {@link Set}
+     *
+     * @param element The element that will be added to the {@link Set}
+     * @return true if the set did not already contain the element
+     */
+    public boolean add(T element) {
+        boolean upToDate = isUpToDate();
+        if (getOrganizationType() == OrganizationType.NONE) {
+            return getData().add(element);
+        }
+
+        //Make sure the redis set contains the elements from MongoDB before changing it
+        if (getOrganizationType() == OrganizationType.BOTH && !seeded) {
+            getSet();
+            upToDate = isUpToDate();
+        }
+
+        long start = startOperation();
+        try (CacheConnection cache = getCacheConnection()) {
+            checkWriteOrder("add");
+
+            long newTimestamp = System.currentTimeMillis() - 1;
+            DataKey dataKey = getDataKey();
+            String dataString = converter.convertToDatabase(element);
+            boolean change = !upToDate || !getData().contains(element);
+
+            //Update to redis
+            if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
+                change = cache.sadd(dataKey.getRedisKey(), dataString) == 1;
+            }
+
+            //Update to MongoDB
+            if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
+                getDocumentBackend().addToSet(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), dataString);
+            }
+
+            //Publish to other servers via redis
+            if (change) sendSyncMessage();
+
+            //Only keep the local data up-to-date if it was before
+            if (upToDate) {
+                getData().add(element);
+                updateTimestamp(newTimestamp);
+            }
+
+            return change;
+        } catch (RuntimeException e) {
+            //Replay the write when the backends are available again
+            bufferWrite(e, WriteOperation.ADD_TO_SET, converter.convertToDatabase(element));
+
+            //Only the local data knows if the set changed
+            if (upToDate) return getData().add(element);
+            return true;
+        } finally {
+            getMetrics().recordWrite(DataOperation.ADD, start);
+            traceWrite(DataOperation.ADD, start);
+        }
+    }
+
+    /**
+     * Remove an element from the {@link Set}
+     *
+     * @param element The element that will be removed from the {@link Set}
+     * @return true if the set contained the element
+     */
+    public boolean remove(T element) {
+        boolean upToDate = isUpToDate();
+        if (getOrganizationType() == OrganizationType.NONE) {
+            return getData().remove(element);
+        }
+
+        //Make sure the redis set contains the elements from MongoDB before changing it
+        if (getOrganizationType() == OrganizationType.BOTH && !seeded) {
+            getSet();
+            upToDate = isUpToDate();
+        }
+
+        long start = startOperation();
+        try (CacheConnection cache = getCacheConnection()) {
+            checkWriteOrder("remove");
+
+            long newTimestamp = System.currentTimeMillis() - 1;
+            DataKey dataKey = getDataKey();
+            String dataString = converter.convertToDatabase(element);
+            boolean change = !upToDate || getData().contains(element);
+
+            //Update to redis
+            if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
+                change = cache.srem(dataKey.getRedisKey(), dataString) == 1;
+            }
+
+            //Update to MongoDB
+            if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
+                getDocumentBackend().pull(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), dataString);
+            }
+
+            //Publish to other servers via redis
+            if (change) sendSyncMessage();
+
+            //Only keep the local data up-to-date if it was before
+            if (upToDate) {
+                getData().remove(element);
+                updateTimestamp(newTimestamp);
+            }
+
+            return change;
+        } catch (RuntimeException e) {
+            //Replay the write when the backends are available again
+            bufferWrite(e, WriteOperation.REMOVE_FROM_SET, converter.convertToDatabase(element));
+
+            //Only the local data knows if the set changed
+            if (upToDate) return getData().remove(element);
+            return true;
+        } finally {
+            getMetrics().recordWrite(DataOperation.REMOVE, start);
+            traceWrite(DataOperation.REMOVE, start);
+        }
+    }
+
+    /**
+     * Check if the {@link Set} contains an element.
+     * Uses the local set if it is up-to-date, otherwise only asks the global
+     * cache or database for this element instead of fetching the whole set.
+     *
+     * @param element The element to be checked
+     * @return true if the {@link Set} contains the element
+     */
+    public boolean contains(T element) {
+        if (isUpToDate()) {
+            getMetrics().localHit();
+            traceRead(TraceTier.LOCAL, 0, 0);
+            return getData().contains(element);
+        }
+
+        if ((getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) && seeded) {
+            return readDegradable(() -> getData().contains(element), () -> {
+                try (CacheConnection cache = getCacheConnection()) {
+                    boolean contained = cache.sismember(getDataKey().getRedisKey(), converter.convertToDatabase(element));
+                    getMetrics().redisHit(getDataKey().getSubKey());
+                    traceRead(TraceTier.REDIS, 0, 0);
+                    return contained;
+                }
+            });
+        }
+
+        if (getOrganizationType() == OrganizationType.SAVE_TO_DB) {
+            return readDegradable(() -> getData().contains(element), () -> {
+                DataKey dataKey = getDataKey();
+                boolean contained = getDocumentBackend().contains(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(),
+                        dataKey.getMongoDBValue(), converter.convertToDatabase(element));
+                getMetrics().mongoDBFallback(true);
+                traceRead(TraceTier.MONGODB, 0, 0);
+                return contained;
+            });
+        }
+
+        return getSet().contains(element);
+    }
+
+    /**
+     * Get the size of the {@link Set}
+     *
+     * @return The size of the {@link Set}
+     */
+    public int size() {
+        if (isUpToDate()) {
+            getMetrics().localHit();
+            traceRead(TraceTier.LOCAL, 0, 0);
+            return getData().size();
+        }
+
+        if ((getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) && seeded) {
+            return readDegradable(() -> getData().size(), () -> {
+                try (CacheConnection cache = getCacheConnection()) {
+                    int size = (int) cache.scard(getDataKey().getRedisKey());
+                    getMetrics().redisHit(getDataKey().getSubKey());
+                    traceRead(TraceTier.REDIS, 0, 0);
+                    return size;
+                }
+            });
+        }
+
+        return getSet().size();
+    }
+
+    /**
+     * Clear the {@link Set}
+     */
+    public void clear() {
+        long newTimestamp = System.currentTimeMillis() - 1;
+
+        if (getOrganizationType() != OrganizationType.NONE) {
+            try (CacheConnection cache = getCacheConnection()) {
+                checkWriteOrder("clear");
+
+                DataKey dataKey = getDataKey();
+
+                //Delete from Redis
+                cache.del(dataKey.getRedisKey());
+
+                //Delete from MongoDB
+                if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
+                    getDocumentBackend().unset(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue());
+                }
+
+                //Publish to other servers via redis
+                sendSyncMessage();
+            } catch (RuntimeException e) {
+                //Replay the write when the backends are available again
+                bufferWrite(e, WriteOperation.DELETE, null);
+            }
+        }
+
+        //Set the local data
+        seeded = true;
+        setData(new HashSet<>());
+        updateTimestamp(newTimestamp);
+    }
+
+    @Override
+    public void load() {
+        getSet();
+    }
+
+    /**
+     * Asynchronous variant of {@link #getSet()}
+     *
+     * @return the future of an unmodifiable instance of the {@link Set}
+     */
+    public CompletableFuture<Set<T>> getSetAsync() {
+        return async(this::getSet);
+    }
+
+    /**
+     * Asynchronous variant of {@link #add(Object)}
+     *
+     * @param element The element that will be added to the {@link Set}
+     * @return the future of true if the set did not already contain the element
+     */
+    public CompletableFuture<Boolean> addAsync(T element) {
+        return async(() -> add(element));
+    }
+
+    /**
+     * Asynchronous variant of {@link #remove(Object)}
+     *
+     * @param element The element that will be removed from the {@link Set}
+     * @return the future of true if the set contained the element
+     */
+    public CompletableFuture<Boolean> removeAsync(T element) {
+        return async(() -> remove(element));
+    }
+
+    /**
+     * Asynchronous variant of {@link #contains(Object)}
+     *
+     * @param element The element to be checked
+     * @return the future of true if the {@link Set} contains the element
+     */
+    public CompletableFuture<Boolean> containsAsync(T element) {
+        return async(() -> contains(element));
+    }
+
+    /**
+     * Asynchronous variant of {@link #clear()}
+     *
+     * @return the future which completes when the {@link Set} is cleared
+     */
+    public CompletableFuture<Void> clearAsync() {
+        return asyncRun(this::clear);
+    }
+
+}
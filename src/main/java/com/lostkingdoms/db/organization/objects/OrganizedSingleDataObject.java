@@ -1,14 +1,16 @@
 package com.lostkingdoms.db.organization.objects;
 
-import com.lostkingdoms.db.DataOrganizationManager;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.lostkingdoms.db.backend.CacheConnection;
 import com.lostkingdoms.db.converters.impl.DefaultDataConverter;
-import com.lostkingdoms.db.factories.JedisFactory;
-import com.lostkingdoms.db.factories.MongoDBFactory;
+import com.lostkingdoms.db.metrics.DataMetrics;
+import com.lostkingdoms.db.metrics.DataOperation;
 import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.enums.WriteOperation;
 import com.lostkingdoms.db.organization.miscellaneous.DataKey;
-import com.mongodb.*;
-
-import redis.clients.jedis.Jedis;
+import com.lostkingdoms.db.trace.TraceTier;
 
 import javax.annotation.Nullable;
 
@@ -55,22 +57,42 @@ public final class OrganizedSingleDataObject<T> extends OrganizedDataObject<T> {
 
         // If data is up-to-date
         int hashslot = getDataKey().getHashslot();
-        if ((DataOrganizationManager.getInstance().getLastUpdated(hashslot) < getTimestamp() && getTimestamp() != 0)
+        if ((getManager().getLastUpdated(hashslot) < getTimestamp() && getTimestamp() != 0)
                 || getOrganizationType() == OrganizationType.NONE) {
+            getMetrics().localHit();
+            traceRead(TraceTier.LOCAL, 0, 0);
             return getData();
         }
 
-        try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+        // Data is stale, but may be returned while it is refreshed in the background
+        if (serveStale()) return getData();
+
+        return fetchOnce(() -> doesExist ? getData() : null, this::fetch);
+    }
+
+    /**
+     * Fetches the data from redis or MongoDB
+     *
+     * @return the fetched data
+     */
+    private T fetch() {
+        long start = startOperation();
+        try (CacheConnection cache = getReadConnection()) {
             long newTimestamp = System.currentTimeMillis() - 1;
 
             // Data is not up-to-date or null
             // Try to get data from redis global cache
-            String dataString = jedis.get(getDataKey().getRedisKey());
+            String dataString = cache.get(getDataKey().getRedisKey());
 
             // Check if data is null
             if (dataString != null) {
+                getMetrics().redisHit(getDataKey().getSubKey());
+                servedBy(TraceTier.REDIS, dataString.length());
+
                 //Convert the data
+                long conversionStart = DataMetrics.start();
                 T newData = converter.convertFromDatabase(dataString);
+                getMetrics().recordConversion(conversionStart);
 
                 //Conversion failed
                 if (newData == null) {
@@ -87,26 +109,28 @@ public final class OrganizedSingleDataObject<T> extends OrganizedDataObject<T> {
                 return getData();
             }
 
+            getMetrics().redisMiss(getDataKey().getSubKey());
+
+            servedBy(TraceTier.REDIS, 0);
+
             // Data in global cache is null
             // Try to get data from MongoDB
             if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
                 DataKey dataKey = getDataKey();
-                DB mongodb = MongoDBFactory.getInstance().getMongoDatabase();
-
-                DBCollection collection = mongodb.getCollection(dataKey.getMongoDBCollection());
-                BasicDBObject query = new BasicDBObject();
-                query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                DBObject object = collection.findOne(query);
+                Map<String, Object> object = getDocumentBackend().find(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier());
+                getMetrics().mongoDBFallback(object != null && object.get(dataKey.getMongoDBValue()) != null);
 
                 if (object != null) {
                     dataString = (String) object.get(dataKey.getMongoDBValue());
                 }
+                servedBy(TraceTier.MONGODB, dataString == null ? 0 : dataString.length());
 
                 //Check if data is null
                 if (dataString != null) {
                     //Convert the data
+                    long conversionStart = DataMetrics.start();
                     T newData = converter.convertFromDatabase(dataString);
+                    getMetrics().recordConversion(conversionStart);
 
                     //Conversion failed
                     if (newData == null) {
@@ -121,7 +145,7 @@ public final class OrganizedSingleDataObject<T> extends OrganizedDataObject<T> {
                     updateTimestamp(newTimestamp);
 
                     //Push data to Redis
-                    jedis.set(dataKey.getRedisKey(), dataString);
+                    cache.set(dataKey.getRedisKey(), dataString);
 
                     return getData();
                 }
@@ -129,6 +153,9 @@ public final class OrganizedSingleDataObject<T> extends OrganizedDataObject<T> {
 
             doesExist = false;
             return null;
+        } finally {
+            getMetrics().recordRead(start);
+            traceRead(start);
         }
     }
 
@@ -146,14 +173,19 @@ public final class OrganizedSingleDataObject<T> extends OrganizedDataObject<T> {
         updateTimestamp(newTimestamp);
 
         // Send to Cache and DB
+        long start = startOperation();
         //new Thread(() -> {
-            try (Jedis jedis = JedisFactory.getInstance().getJedis()) {
+            try (CacheConnection cache = getCacheConnection()) {
+
+                checkWriteOrder("set");
 
                 //Get the data key
                 DataKey dataKey = getDataKey();
 
                 //Conversion to redis and mongoDB
+                long conversionStart = DataMetrics.start();
                 String dataString = converter.convertToDatabase(data);
+                getMetrics().recordConversion(conversionStart);
                 if (dataString == null) {
                     return;
                 }
@@ -161,64 +193,29 @@ public final class OrganizedSingleDataObject<T> extends OrganizedDataObject<T> {
                 //Update to redis
                 if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
                     if (dataString.equals("")) {
-                        jedis.del(dataKey.getRedisKey());
+                        cache.del(dataKey.getRedisKey());
                     } else {
-                        jedis.set(dataKey.getRedisKey(), dataString);
+                        cache.set(dataKey.getRedisKey(), dataString);
                     }
                 }
 
                 //Update to MongoDB
                 if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
-                    DB mongoDB = MongoDBFactory.getInstance().getMongoDatabase();
-                    DBCollection collection = mongoDB.getCollection(dataKey.getMongoDBCollection());
-
-                    while (true) {
-                        try {
-                            //Test if object already exists
-                            BasicDBObject query = new BasicDBObject();
-                            query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                            DBObject object = collection.findOne(query);
-
-                            if (object != null) {
-                                query = new BasicDBObject();
-                                query.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-
-                                BasicDBObject update;
-                                if (dataString.equals("")) {
-                                    BasicDBObject newDoc = new BasicDBObject();
-                                    newDoc.put(dataKey.getMongoDBValue(), "");
-
-                                    update = new BasicDBObject();
-                                    update.put("$unset", newDoc);
-                                } else {
-                                    BasicDBObject newDoc = new BasicDBObject();
-                                    newDoc.put(dataKey.getMongoDBValue(), dataString);
-
-                                    update = new BasicDBObject();
-                                    update.put("$set", newDoc);
-                                }
-
-                                collection.update(query, update);
-                            } else {
-                                if (!dataString.equals("")) {
-                                    BasicDBObject create = new BasicDBObject();
-                                    create.put(IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                    create.put(MONGO_IDENTIFIER, dataKey.getMongoDBIdentifier());
-                                    create.put(dataKey.getMongoDBValue(), dataString);
-
-                                    collection.insert(create);
-                                }
-                            }
-
-                            break;
-                        } catch (DuplicateKeyException ignored) {
-                        }
+                    if (dataString.equals("")) {
+                        getDocumentBackend().unset(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue());
+                    } else {
+                        getDocumentBackend().set(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), dataString);
                     }
                 }
 
                 //Publish to other servers via redis
-                sendSyncMessage(jedis);
+                sendSyncMessage();
+            } catch (RuntimeException e) {
+                //Replay the write when the backends are available again
+                bufferWrite(e, WriteOperation.SET, converter.convertToDatabase(data));
+            } finally {
+                getMetrics().recordWrite(DataOperation.SET, start);
+                traceWrite(DataOperation.SET, start);
             }
         //}).start();
 
@@ -230,4 +227,50 @@ public final class OrganizedSingleDataObject<T> extends OrganizedDataObject<T> {
         setData(data);
     }
 
+    @Override
+    public void load() {
+        get();
+    }
+
+    @Override
+    String getRefreshKey() {
+        if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) return getDataKey().getRedisKey();
+        return null;
+    }
+
+    @Override
+    void refresh(String value, long newTimestamp) {
+        //Not in redis, MongoDB has to be asked
+        if (value == null) {
+            load();
+            return;
+        }
+
+        T newData = converter.convertFromDatabase(value);
+        if (newData == null) return;
+
+        doesExist = true;
+        setData(newData);
+        updateTimestamp(newTimestamp);
+    }
+
+    /**
+     * Asynchronous variant of {@link #get()}
+     *
+     * @return the future of the data
+     */
+    public CompletableFuture<T> getAsync() {
+        return async(this::get);
+    }
+
+    /**
+     * Asynchronous variant of {@link #set(Object)}
+     *
+     * @param data the data to set
+     * @return the future which completes when the data is written
+     */
+    public CompletableFuture<Void> setAsync(T data) {
+        return asyncRun(() -> set(data));
+    }
+
 }
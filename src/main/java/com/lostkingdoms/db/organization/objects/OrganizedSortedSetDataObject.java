@@ -0,0 +1,584 @@
+package com.lostkingdoms.db.organization.objects;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.converters.impl.DefaultDataConverter;
+import com.lostkingdoms.db.metrics.DataOperation;
+import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+import com.lostkingdoms.db.trace.TraceTier;
+
+
+/**
+ * An {@link OrganizedDataObject} which represents a set of elements of type T ordered by a score
+ * (e.g. leaderboards). Saved as redis ZSET, so top-n, rank and score range queries are answered
+ * by redis in one round trip instead of loading and sorting all elements.
+ * In MongoDB the scores are saved as embedded document (element -> score).
+ * Ranks are zero based with the highest score on rank 0.
+ *
+ * @param <T> the element class
+ * @author Tim Kchler (https://github.com/TimK1998)
+ */
+public final class OrganizedSortedSetDataObject<T> extends OrganizedDataObject<HashMap<T, Double>> {
+
+    /**
+     * The {@link DefaultDataConverter} that will be used for serialization and
+     * deserialization of the single elements.
+     */
+    private final DefaultDataConverter<T> converter;
+
+    /**
+     * True if this object knows that the redis zset contains the elements from MongoDB
+     */
+    private boolean seeded;
+
+
+    /**
+     * Constructor for {@link OrganizedSortedSetDataObject}.
+     * This represent a sorted set of objects that should be organized.
+     *
+     * @param dataKey          The objects {@link DataKey}
+     * @param organizationType The objects {@link OrganizationType}
+     */
+    public OrganizedSortedSetDataObject(DataKey dataKey, OrganizationType organizationType, DefaultDataConverter<T> converter) {
+        setDataKey(dataKey);
+        this.converter = converter;
+        setOrganizationType(organizationType);
+        setData(new HashMap<>());
+
+        //Redis is the only global tier, there is nothing to seed from
+        seeded = organizationType == OrganizationType.SYNC;
+    }
+
+    /**
+     * Set the score of an element. Adds the element if it is not in the set
+     *
+     * @param element the element
+     * @param score   the score
+     */
+    public void add(T element, double score) {
+        String member = converter.convertToDatabase(element);
+
+        if (!usesRedis()) {
+            loadLocal();
+            getData().put(element, score);
+        }
+
+        if (getOrganizationType() == OrganizationType.NONE) return;
+
+        long start = startOperation();
+        try (CacheConnection cache = getCacheConnection()) {
+            if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
+                seed(cache);
+                cache.zadd(getDataKey().getRedisKey(), score, member);
+            }
+
+            if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
+                getDocumentBackend().set(getDataKey().getMongoDBCollection(), getDataKey().getMongoDBIdentifier(), getField(member), score);
+            }
+
+            //Publish to other servers via redis. Only SAVE_TO_DB sets have local copies to invalidate,
+            //the others are queried from redis directly (e.g. the ranked indexes updated on every increment)
+            if (!usesRedis()) sendSyncMessage();
+        }
+
+        getMetrics().recordWrite(DataOperation.ADD, start);
+
+        traceWrite(DataOperation.ADD, start);
+    }
+
+    /**
+     * Set the scores of multiple elements
+     *
+     * @param scores the elements mapped to their scores
+     */
+    public void addAll(Map<T, Double> scores) {
+        if (scores.isEmpty()) return;
+
+        if (!usesRedis()) {
+            loadLocal();
+            getData().putAll(scores);
+        }
+
+        if (getOrganizationType() == OrganizationType.NONE) return;
+
+        Map<String, Double> members = new HashMap<>();
+        for (Entry<T, Double> entry : scores.entrySet()) {
+            members.put(converter.convertToDatabase(entry.getKey()), entry.getValue());
+        }
+
+        long start = startOperation();
+        try (CacheConnection cache = getCacheConnection()) {
+            if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
+                seed(cache);
+                cache.zadd(getDataKey().getRedisKey(), members);
+            }
+
+            if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
+                Map<String, Object> fields = new HashMap<>();
+                for (Entry<String, Double> entry : members.entrySet()) {
+                    fields.put(getField(entry.getKey()), entry.getValue());
+                }
+
+                getDocumentBackend().set(getDataKey().getMongoDBCollection(), getDataKey().getMongoDBIdentifier(), fields);
+            }
+
+            //Publish to other servers via redis. Only SAVE_TO_DB sets have local copies to invalidate,
+            //the others are queried from redis directly (e.g. the ranked indexes updated on every increment)
+            if (!usesRedis()) sendSyncMessage();
+        }
+
+        getMetrics().recordWrite(DataOperation.ADD, start);
+
+        traceWrite(DataOperation.ADD, start);
+    }
+
+    /**
+     * Atomically adds a delta to the score of an element.
+     * Adds the element with the delta as score if it is not in the set
+     *
+     * @param element the element
+     * @param delta   the value to add to the score
+     * @return the new score
+     */
+    public double incrementScore(T element, double delta) {
+        String member = converter.convertToDatabase(element);
+
+        if (!usesRedis()) {
+            loadLocal();
+            getData().merge(element, delta, Double::sum);
+        }
+
+        double newScore = getData().getOrDefault(element, delta);
+        if (getOrganizationType() == OrganizationType.NONE) return newScore;
+
+        long start = startOperation();
+        try (CacheConnection cache = getCacheConnection()) {
+            if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
+                seed(cache);
+                newScore = cache.zincrby(getDataKey().getRedisKey(), delta, member);
+            }
+
+            if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
+                getDocumentBackend().increment(getDataKey().getMongoDBCollection(), getDataKey().getMongoDBIdentifier(), getField(member), delta);
+            }
+
+            //Publish to other servers via redis. Only SAVE_TO_DB sets have local copies to invalidate,
+            //the others are queried from redis directly (e.g. the ranked indexes updated on every increment)
+            if (!usesRedis()) sendSyncMessage();
+        }
+
+        getMetrics().recordWrite(DataOperation.INCREMENT, start);
+
+        traceWrite(DataOperation.INCREMENT, start);
+
+        return newScore;
+    }
+
+    /**
+     * Remove an element
+     *
+     * @param element the element to remove
+     */
+    public void remove(T element) {
+        String member = converter.convertToDatabase(element);
+
+        if (!usesRedis()) {
+            loadLocal();
+            getData().remove(element);
+        }
+
+        if (getOrganizationType() == OrganizationType.NONE) return;
+
+        long start = startOperation();
+        try (CacheConnection cache = getCacheConnection()) {
+            if (getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH) {
+                seed(cache);
+                cache.zrem(getDataKey().getRedisKey(), member);
+            }
+
+            if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
+                getDocumentBackend().unset(getDataKey().getMongoDBCollection(), getDataKey().getMongoDBIdentifier(), getField(member));
+            }
+
+            //Publish to other servers via redis. Only SAVE_TO_DB sets have local copies to invalidate,
+            //the others are queried from redis directly (e.g. the ranked indexes updated on every increment)
+            if (!usesRedis()) sendSyncMessage();
+        }
+
+        getMetrics().recordWrite(DataOperation.REMOVE, start);
+
+        traceWrite(DataOperation.REMOVE, start);
+    }
+
+    /**
+     * Get the score of an element
+     *
+     * @param element the element
+     * @return the score or null if the element is not in the set
+     */
+    public Double getScore(T element) {
+        if (!usesRedis()) {
+            loadLocal();
+            return getData().get(element);
+        }
+
+        try (CacheConnection cache = getReadConnection()) {
+            seed(cache);
+            getMetrics().redisHit(getDataKey().getSubKey());
+            traceRead(TraceTier.REDIS, 0, 0);
+            return cache.zscore(getDataKey().getRedisKey(), converter.convertToDatabase(element));
+        }
+    }
+
+    /**
+     * Get the rank of an element
+     *
+     * @param element the element
+     * @return the zero based rank (highest score first) or null if the element is not in the set
+     */
+    public Long getRank(T element) {
+        if (!usesRedis()) {
+            loadLocal();
+            if (!getData().containsKey(element)) return null;
+            return (long) sortLocal().indexOf(element);
+        }
+
+        try (CacheConnection cache = getReadConnection()) {
+            seed(cache);
+            getMetrics().redisHit(getDataKey().getSubKey());
+            traceRead(TraceTier.REDIS, 0, 0);
+            return cache.zrevrank(getDataKey().getRedisKey(), converter.convertToDatabase(element));
+        }
+    }
+
+    /**
+     * Get the elements with the highest scores
+     *
+     * @param count the maximum number of elements
+     * @return the elements mapped to their scores, ordered by score (highest first)
+     */
+    public Map<T, Double> getTop(int count) {
+        return getRange(0, count - 1L);
+    }
+
+    /**
+     * Get the elements from rank start to rank end (both inclusive)
+     *
+     * @param start the first rank
+     * @param end   the last rank
+     * @return the elements mapped to their scores, ordered by score (highest first)
+     */
+    public Map<T, Double> getRange(long start, long end) {
+        if (!usesRedis()) {
+            loadLocal();
+            List<T> sorted = sortLocal();
+
+            Map<T, Double> range = new LinkedHashMap<>();
+            for (long i = Math.max(0, start); i <= end && i < sorted.size(); i++) {
+                T element = sorted.get((int) i);
+                range.put(element, getData().get(element));
+            }
+            return Collections.unmodifiableMap(range);
+        }
+
+        try (CacheConnection cache = getReadConnection()) {
+            seed(cache);
+            getMetrics().redisHit(getDataKey().getSubKey());
+            traceRead(TraceTier.REDIS, 0, 0);
+            return toMap(cache.zrevrangeWithScores(getDataKey().getRedisKey(), start, end));
+        }
+    }
+
+    /**
+     * Get all elements with a score between min and max (both inclusive)
+     *
+     * @param min the minimum score
+     * @param max the maximum score
+     * @return the elements mapped to their scores, ordered by score (highest first)
+     */
+    public Map<T, Double> getRangeByScore(double min, double max) {
+        if (!usesRedis()) {
+            loadLocal();
+
+            Map<T, Double> range = new LinkedHashMap<>();
+            for (T element : sortLocal()) {
+                double score = getData().get(element);
+                if (score >= min && score <= max) range.put(element, score);
+            }
+            return Collections.unmodifiableMap(range);
+        }
+
+        try (CacheConnection cache = getReadConnection()) {
+            seed(cache);
+            getMetrics().redisHit(getDataKey().getSubKey());
+            traceRead(TraceTier.REDIS, 0, 0);
+            return toMap(cache.zrevrangeByScoreWithScores(getDataKey().getRedisKey(), max, min));
+        }
+    }
+
+    /**
+     * Get the number of elements
+     *
+     * @return the number of elements
+     */
+    public long size() {
+        if (!usesRedis()) {
+            loadLocal();
+            return getData().size();
+        }
+
+        try (CacheConnection cache = getReadConnection()) {
+            seed(cache);
+            getMetrics().redisHit(getDataKey().getSubKey());
+            traceRead(TraceTier.REDIS, 0, 0);
+            return cache.zcard(getDataKey().getRedisKey());
+        }
+    }
+
+    /**
+     * Remove all elements
+     */
+    public void clear() {
+        long newTimestamp = System.currentTimeMillis() - 1;
+
+        if (getOrganizationType() != OrganizationType.NONE) {
+            try (CacheConnection cache = getCacheConnection()) {
+                DataKey dataKey = getDataKey();
+
+                //Delete from Redis
+                cache.del(dataKey.getRedisKey());
+
+                //Delete from MongoDB
+                if (getOrganizationType() == OrganizationType.SAVE_TO_DB || getOrganizationType() == OrganizationType.BOTH) {
+                    getDocumentBackend().unset(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue());
+                }
+
+                //Publish to other servers via redis
+                sendSyncMessage();
+            }
+        }
+
+        seeded = true;
+        setData(new HashMap<>());
+        updateTimestamp(newTimestamp);
+    }
+
+    /**
+     * Check if queries are answered by redis
+     *
+     * @return true if {@link OrganizationType} is SYNC or BOTH
+     */
+    private boolean usesRedis() {
+        return getOrganizationType() == OrganizationType.SYNC || getOrganizationType() == OrganizationType.BOTH;
+    }
+
+    /**
+     * Copies the scores from MongoDB to redis if the redis zset does not exist
+     *
+     * @param jedis the jedis instance to use
+     */
+    private void seed(CacheConnection cache) {
+        if (seeded) return;
+
+        if (!cache.exists(getDataKey().getRedisKey())) {
+            Map<String, Double> members = new HashMap<>();
+            for (Entry<String, Object> entry : fetchFromMongoDB().entrySet()) {
+                if (entry.getValue() instanceof Number) {
+                    members.put(unescape(entry.getKey()), ((Number) entry.getValue()).doubleValue());
+                }
+            }
+
+            if (!members.isEmpty()) cache.zadd(getDataKey().getRedisKey(), members);
+        }
+
+        seeded = true;
+    }
+
+    /**
+     * Loads the local scores from MongoDB if {@link OrganizationType} is SAVE_TO_DB
+     * and they are not up-to-date
+     */
+    private void loadLocal() {
+        int hashslot = getDataKey().getHashslot();
+        if ((getManager().getLastUpdated(hashslot) < getTimestamp() && getTimestamp() != 0)
+                || getOrganizationType() != OrganizationType.SAVE_TO_DB) {
+            return;
+        }
+
+        long newTimestamp = System.currentTimeMillis() - 1;
+
+        HashMap<T, Double> newData = new HashMap<>();
+        for (Entry<String, Object> entry : fetchFromMongoDB().entrySet()) {
+            if (entry.getValue() instanceof Number) {
+                newData.put(converter.convertFromDatabase(unescape(entry.getKey())), ((Number) entry.getValue()).doubleValue());
+            }
+        }
+
+        setData(newData);
+        updateTimestamp(newTimestamp);
+    }
+
+    /**
+     * Sorts the local elements by score
+     *
+     * @return the elements ordered by score (highest first)
+     */
+    private List<T> sortLocal() {
+        List<T> sorted = new ArrayList<>(getData().keySet());
+        sorted.sort((e1, e2) -> Double.compare(getData().get(e2), getData().get(e1)));
+        return sorted;
+    }
+
+    /**
+     * Converts the result of a redis range query
+     *
+     * @param members the redis result
+     * @return the elements mapped to their scores in the order of the result
+     */
+    private Map<T, Double> toMap(Map<String, Double> members) {
+        Map<T, Double> map = new LinkedHashMap<>();
+        for (Entry<String, Double> entry : members.entrySet()) {
+            map.put(converter.convertFromDatabase(entry.getKey()), entry.getValue());
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Get the embedded score document from MongoDB
+     *
+     * @return the escaped elements mapped to their scores
+     */
+    private Map<String, Object> fetchFromMongoDB() {
+        Map<String, Object> scores = new HashMap<>();
+        if (getOrganizationType() != OrganizationType.SAVE_TO_DB && getOrganizationType() != OrganizationType.BOTH) {
+            return scores;
+        }
+
+        Map<String, Object> object = getDocumentBackend().find(getDataKey().getMongoDBCollection(), getDataKey().getMongoDBIdentifier());
+        if (object != null && object.get(getDataKey().getMongoDBValue()) instanceof Map) {
+            Map<?, ?> scoreObject = (Map<?, ?>) object.get(getDataKey().getMongoDBValue());
+            for (Entry<?, ?> entry : scoreObject.entrySet()) {
+                scores.put((String) entry.getKey(), entry.getValue());
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Get the MongoDB field which holds the score of an element
+     *
+     * @param member the converted element
+     * @return the dotted field name
+     */
+    private String getField(String member) {
+        return getDataKey().getMongoDBValue() + "." + escape(member);
+    }
+
+    /**
+     * Escapes an element so it can be used as MongoDB field name
+     *
+     * @param member the converted element
+     * @return the escaped element
+     */
+    private static String escape(String member) {
+        return member.replace("%", "%25").replace(".", "%2E").replace("$", "%24");
+    }
+
+    /**
+     * Reverts {@link #escape(String)}
+     *
+     * @param key the MongoDB field name
+     * @return the converted element
+     */
+    private static String unescape(String key) {
+        return key.replace("%24", "$").replace("%2E", ".").replace("%25", "%");
+    }
+
+    /**
+     * Sorted sets are not cached locally, so there is nothing to load
+     */
+    @Override
+    public void load() {
+    }
+
+    /**
+     * Asynchronous variant of {@link #add(Object, double)}
+     *
+     * @param element the element
+     * @param score   the score
+     * @return the future which completes when the element is added
+     */
+    public CompletableFuture<Void> addAsync(T element, double score) {
+        return asyncRun(() -> add(element, score));
+    }
+
+    /**
+     * Asynchronous variant of {@link #incrementScore(Object, double)}
+     *
+     * @param element the element
+     * @param delta   the value to add to the score
+     * @return the future of the new score
+     */
+    public CompletableFuture<Double> incrementScoreAsync(T element, double delta) {
+        return async(() -> incrementScore(element, delta));
+    }
+
+    /**
+     * Asynchronous variant of {@link #remove(Object)}
+     *
+     * @param element the element
+     * @return the future which completes when the element is removed
+     */
+    public CompletableFuture<Void> removeAsync(T element) {
+        return asyncRun(() -> remove(element));
+    }
+
+    /**
+     * Asynchronous variant of {@link #getScore(Object)}
+     *
+     * @param element the element
+     * @return the future of the score or null
+     */
+    public CompletableFuture<Double> getScoreAsync(T element) {
+        return async(() -> getScore(element));
+    }
+
+    /**
+     * Asynchronous variant of {@link #getRank(Object)}
+     *
+     * @param element the element
+     * @return the future of the rank or null
+     */
+    public CompletableFuture<Long> getRankAsync(T element) {
+        return async(() -> getRank(element));
+    }
+
+    /**
+     * Asynchronous variant of {@link #getTop(int)}
+     *
+     * @param count the number of elements
+     * @return the future of the elements with the highest scores
+     */
+    public CompletableFuture<Map<T, Double>> getTopAsync(int count) {
+        return async(() -> getTop(count));
+    }
+
+    /**
+     * Asynchronous variant of {@link #clear()}
+     *
+     * @return the future which completes when the sorted set is cleared
+     */
+    public CompletableFuture<Void> clearAsync() {
+        return asyncRun(this::clear);
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.lostkingdoms.db.organization.objects;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.logger.LKLogger;
+import com.lostkingdoms.db.logger.LogType;
+
+/**
+ * Refreshes the data objects of invalidated hashslots in the background, so the next read
+ * is served locally instead of refetching on the reading thread. Only objects which were read
+ * within the refresh window are refreshed. Invalidations are collected for a short delay and
+ * the string values (single, long and double objects) of the batch are fetched with one MGET
+ * per {@link #MAX_BATCH_SIZE} keys. All other objects are loaded on the ordered executor.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class RefreshAhead {
+
+	/** 
+	 * The delay in milliseconds in which invalidations are collected into one batch.
+	 * At least 2, so the refreshed timestamp is newer than the invalidation
+	 */
+	private static final long BATCH_DELAY = 2;
+	
+	/** The maximal number of keys per MGET */
+	private static final int MAX_BATCH_SIZE = 256;
+	
+	/** The manager whose objects are refreshed */
+	private final DataOrganizationManager manager;
+	
+	/** The live objects of the manager */
+	private final LiveObjectRegistry registry;
+	
+	/** Objects which were not read within this window in milliseconds are not refreshed */
+	private final long window;
+	
+	/** The invalidated hashslots which were not refreshed yet */
+	private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+	
+	/** True while a batch is scheduled */
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	
+	/** The thread which runs the batches */
+	private final ScheduledExecutorService scheduler;
+	
+	/** Number of refreshed objects */
+	private final LongAdder refreshed = new LongAdder();
+	
+	/** Number of MGET round trips */
+	private final LongAdder batches = new LongAdder();
+	
+	/**
+	 * Constructor of {@link RefreshAhead}
+	 * 
+	 * @param manager the manager whose objects are refreshed
+	 * @param slotCount the number of hashslots
+	 * @param window objects which were not read within this window in milliseconds are not refreshed
+	 */
+	public RefreshAhead(DataOrganizationManager manager, int slotCount, long window) {
+		this.manager = manager;
+		this.registry = new LiveObjectRegistry(slotCount);
+		this.window = window;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "refresh_Ahead");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	/**
+	 * Registers a data object. Is called when its {@link com.lostkingdoms.db.organization.miscellaneous.DataKey} is set
+	 * 
+	 * @param slot the hashslot of the object
+	 * @param object the object
+	 */
+	void register(int slot, OrganizedDataObject<?> object) {
+		registry.register(slot, object);
+	}
+	
+	/**
+	 * Schedules the refresh of a hashslot which was invalidated by another server
+	 * 
+	 * @param slot the hashslot
+	 */
+	public void invalidated(int slot) {
+		pending.add(slot);
+		if(scheduled.compareAndSet(false, true)) {
+			scheduler.schedule(this::refreshPending, BATCH_DELAY, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	/**
+	 * Refreshes the recently read objects of all pending hashslots
+	 */
+	private void refreshPending() {
+		scheduled.set(false);
+		
+		List<OrganizedDataObject<?>> keyed = new ArrayList<>();
+		long now = System.currentTimeMillis();
+		for(Iterator<Integer> it = pending.iterator(); it.hasNext();) {
+			int slot = it.next();
+			it.remove();
+			
+			for(OrganizedDataObject<?> object : registry.getObjects(slot)) {
+				if(!object.isStale() || now - object.getLastRead() > window) continue;
+				
+				if(object.getRefreshKey() != null) {
+					keyed.add(object);
+				} else {
+					object.loadAsync();
+					refreshed.increment();
+				}
+			}
+		}
+		
+		manager.bindToCurrentThread();
+		try {
+			for(int from = 0; from < keyed.size(); from += MAX_BATCH_SIZE) {
+				refresh(keyed.subList(from, Math.min(keyed.size(), from + MAX_BATCH_SIZE)));
+			}
+		} catch (Exception e) {
+			LKLogger.getInstance().warn("Refresh ahead failed: ", e, LogType.SYNC);
+		} finally {
+			DataOrganizationManager.unbindCurrentThread();
+		}
+	}
+	
+	/**
+	 * Fetches the values of objects with one MGET and applies them. An object which was 
+	 * changed locally while its value was fetched is not overwritten
+	 * 
+	 * @param objects the objects
+	 */
+	private void refresh(List<OrganizedDataObject<?>> objects) {
+		String[] keys = new String[objects.size()];
+		long[] timestamps = new long[objects.size()];
+		for(int i = 0; i < keys.length; i++) {
+			keys[i] = objects.get(i).getRefreshKey();
+			timestamps[i] = objects.get(i).getTimestamp();
+		}
+		
+		long newTimestamp = System.currentTimeMillis() - 1;
+		List<String> values;
+		try (CacheConnection cache = manager.getCacheBackend().getConnection()) {
+			values = cache.mget(keys);
+		}
+		batches.increment();
+		
+		for(int i = 0; i < keys.length; i++) {
+			OrganizedDataObject<?> object = objects.get(i);
+			if(object.getTimestamp() != timestamps[i]) continue;
+			
+			if(object.tryRefresh(values.get(i), timestamps[i], newTimestamp)) refreshed.increment();
+		}
+	}
+	
+	/**
+	 * Get the number of objects which were refreshed ahead
+	 * 
+	 * @return the number of objects
+	 */
+	public long getRefreshed() {
+		return refreshed.sum();
+	}
+	
+	/**
+	 * Get the number of MGET round trips
+	 * 
+	 * @return the number of round trips
+	 */
+	public long getBatches() {
+		return batches.sum();
+	}
+	
+	/**
+	 * Stops the background refresh
+	 */
+	public void shutdown() {
+		scheduler.shutdown();
+	}
+	
+}
@@ -1,8 +1,13 @@
 package com.lostkingdoms.db.sync;
 
-import com.lostkingdoms.db.DataOrganizationManager;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
-import redis.clients.jedis.JedisPubSub;
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.SyncListener;
+import com.lostkingdoms.db.metrics.DataMetrics;
+import com.lostkingdoms.db.metrics.SyncMetrics;
 
 /**
  * The listener which listens for synchronize messages
@@ -10,7 +15,32 @@ import redis.clients.jedis.JedisPubSub;
  * @author Tim Kchler (https://github.com/TimK1998)
  *
  */
-public final class DataSyncListener extends JedisPubSub {
+public final class DataSyncListener implements SyncListener {
+
+	/**
+	 * The manager whose hashslots are invalidated
+	 */
+	private final DataOrganizationManager manager;
+	
+	/**
+	 * The number of sequence numbers below the highest one in which a message counts as reordered.
+	 * A message which did not arrive within it is counted as lost
+	 */
+	private static final int REORDER_WINDOW = 64;
+	
+	/**
+	 * The received sequence numbers of each other instance
+	 */
+	private final Map<UUID, SequenceWindow> sequences = new ConcurrentHashMap<>();
+	
+	/**
+	 * Constructor of the {@link DataSyncListener}
+	 * 
+	 * @param manager the manager whose hashslots are invalidated
+	 */
+	public DataSyncListener(DataOrganizationManager manager) {
+		this.manager = manager;
+	}
 
 	@Override
 	public void onMessage(String channel, String message) {
@@ -19,11 +49,91 @@ public final class DataSyncListener extends JedisPubSub {
 			DataSyncMessage syncMessage = DataSyncMessage.deserialize(message);
 
 			//If message is not self sent
-			if(!syncMessage.getSenderInstanceID().equals(DataOrganizationManager.getInstance().getInstanceID())) {
+			boolean selfSent = syncMessage.getSenderInstanceID().equals(manager.getInstanceID());
+			DataMetrics.getInstance().syncMessageReceived(selfSent);
+			if(!selfSent) {
 				//Invalidate hashslot
-				DataOrganizationManager.getInstance().invalidateHashSlot(syncMessage.getHashSlot());
+				manager.invalidateHashSlot(syncMessage.getHashSlot());
+				
+				//Refresh recently read objects of the hashslot before they are read again
+				if(manager.getRefreshAhead() != null) manager.getRefreshAhead().invalidated(syncMessage.getHashSlot());
+				
+				if(DataMetrics.isRecording()) record(syncMessage);
+			}
+		}
+	}
+	
+	/**
+	 * Records the lag, lost messages and the invalidation of a message of another instance
+	 * 
+	 * @param syncMessage the message
+	 */
+	private void record(DataSyncMessage syncMessage) {
+		SyncMetrics metrics = DataMetrics.getInstance().getSyncMetrics();
+		if(syncMessage.getSendTime() != 0) metrics.recordLag(DataSyncMessage.currentTimeMicros() - syncMessage.getSendTime());
+		
+		metrics.invalidated(syncMessage.getHashSlot());
+		if(syncMessage.getEntityKey() != null) DataMetrics.getInstance().getEntityMetrics(syncMessage.getEntityKey()).invalidated();
+		
+		//Messages of older versions have no sequence number
+		if(syncMessage.getSequence() == 0) return;
+		
+		sequences.computeIfAbsent(syncMessage.getSenderInstanceID(), sender -> new SequenceWindow()).received(syncMessage.getSequence(), metrics);
+	}
+	
+	/**
+	 * The highest sequence number received from a sender and which of the {@link #REORDER_WINDOW} 
+	 * numbers below it were received. A missing number is counted as lost when it leaves the window,
+	 * so a message is either counted as reordered or as lost, never as both
+	 */
+	private static final class SequenceWindow {
+		
+		/** The highest received sequence number or 0 */
+		private long highest;
+		
+		/** Bit i is set if the message highest - i was received */
+		private long received;
+		
+		/**
+		 * Records a received message
+		 * 
+		 * @param sequence the sequence number of the message
+		 * @param metrics the metrics the lost and reordered messages are recorded in
+		 */
+		synchronized void received(long sequence, SyncMetrics metrics) {
+			//The first message of the sender. The messages before it are unknown
+			if(highest == 0) {
+				highest = sequence;
+				received = -1L;
+				return;
+			}
+			
+			if(sequence > highest) {
+				long shift = sequence - highest;
+				if(shift >= REORDER_WINDOW) {
+					//The whole window and the skipped numbers below the new one leave it
+					metrics.messagesLost(shift - Long.bitCount(received));
+					received = 1L;
+				} else {
+					metrics.messagesLost(shift - Long.bitCount(received >>> (REORDER_WINDOW - shift)));
+					received = (received << shift) | 1L;
+				}
+				highest = sequence;
+				return;
 			}
+			
+			//Already counted as lost
+			long offset = highest - sequence;
+			if(offset >= REORDER_WINDOW) return;
+			
+			//Duplicates are ignored
+			long bit = 1L << offset;
+			if((received & bit) != 0) return;
+			
+			received |= bit;
+			metrics.messageReordered();
 		}
+		
 	}
 	
 }
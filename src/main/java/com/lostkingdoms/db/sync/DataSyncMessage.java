@@ -3,31 +3,75 @@ package com.lostkingdoms.db.sync;
 import java.util.UUID;
 
 /**
- * The representation of a message to update a hashslot
+ * The representation of a message to update a hashslot.
+ * Carries the time it was sent and a sequence number per sender, so receivers can measure
+ * the sync lag and detect lost messages
  *
  * @author Tim Kchler (https://github.com/TimK1998)
  *
  */
 public final class DataSyncMessage {
 
+	/** The wall clock time in microseconds when the clock of this JVM was started */
+	private static final long CLOCK_BASE_MICROS = System.currentTimeMillis() * 1000;
+	
+	/** The nano time when the clock of this JVM was started */
+	private static final long CLOCK_BASE_NANOS = System.nanoTime();
+	
 	/** Unique ID to identify the cache instance that initiated the data sync */
 	private final UUID senderInstanceID;
 	
 	/** Represents the hashslot of the key that is to be updated */
 	private final int keyHashSlot;
+	
+	/** The key of the entity whose data was updated or null if unknown */
+	private final String entityKey;
+	
+	/** The number of this message of the sender or 0 if unknown */
+	private final long sequence;
+	
+	/** The time the message was sent in microseconds since the epoch or 0 if unknown */
+	private final long sendTime;
 
 
 
 	/**
 	 * Constructor.
-	 * Creates a new {@link DataSyncMessage}
+	 * Creates a new {@link DataSyncMessage} without entity key, sequence number and send time
 	 * 
 	 * @param senderInstanceID the id of the cache instance
 	 * @param keyHashSlot the hashslot of the key that will be updated
 	 */
 	public DataSyncMessage(UUID senderInstanceID, int keyHashSlot) {
+		this(senderInstanceID, keyHashSlot, null, 0, 0);
+	}
+	
+	/**
+	 * Constructor.
+	 * Creates a new {@link DataSyncMessage}
+	 * 
+	 * @param senderInstanceID the id of the cache instance
+	 * @param keyHashSlot the hashslot of the key that will be updated
+	 * @param entityKey the key of the entity whose data was updated
+	 * @param sequence the number of this message of the sender, starting with 1
+	 * @param sendTime the time the message was sent from {@link #currentTimeMicros()}
+	 */
+	public DataSyncMessage(UUID senderInstanceID, int keyHashSlot, String entityKey, long sequence, long sendTime) {
 		this.senderInstanceID = senderInstanceID;
 		this.keyHashSlot = keyHashSlot;
+		this.entityKey = entityKey;
+		this.sequence = sequence;
+		this.sendTime = sendTime;
+	}
+	
+	/**
+	 * Get the wall clock time with microsecond resolution. The accuracy between servers
+	 * depends on their clock synchronization
+	 * 
+	 * @return the time in microseconds since the epoch
+	 */
+	public static long currentTimeMicros() {
+		return CLOCK_BASE_MICROS + (System.nanoTime() - CLOCK_BASE_NANOS) / 1000;
 	}
 	
 	/**
@@ -47,6 +91,33 @@ public final class DataSyncMessage {
 	public int getHashSlot() {
 		return this.keyHashSlot;
 	}
+	
+	/**
+	 * Get the key of the entity whose data was updated
+	 * 
+	 * @return the entity key or null if the sender did not send it
+	 */
+	public String getEntityKey() {
+		return this.entityKey;
+	}
+	
+	/**
+	 * Get the number of this message of the sender
+	 * 
+	 * @return the sequence number or 0 if the sender did not send it
+	 */
+	public long getSequence() {
+		return this.sequence;
+	}
+	
+	/**
+	 * Get the time the message was sent
+	 * 
+	 * @return the time in microseconds since the epoch or 0 if the sender did not send it
+	 */
+	public long getSendTime() {
+		return this.sendTime;
+	}
 
 	/**
 	 * Serializes this {@link DataSyncMessage} to an sendable string
@@ -60,25 +131,33 @@ public final class DataSyncMessage {
 		//Serialize hashslot
 		String keyHashSlot = String.valueOf(this.keyHashSlot);
 
-		return senderInstanceID + ":" + keyHashSlot;
+		//The entity key is last, so it may contain the separator
+		return senderInstanceID + ":" + keyHashSlot + ":" + sequence + ":" + sendTime + ":" + (entityKey == null ? "" : entityKey);
 	}
 
 	/**
-	 * Deserializes an string to {@link DataSyncMessage}
+	 * Deserializes an string to {@link DataSyncMessage}.
+	 * Messages of older versions only contain the sender and the hashslot
 	 *
 	 * @param message the message to deserialize
 	 * @return the created {@link DataSyncMessage}
 	 */
 	public static DataSyncMessage deserialize(String message) {
-		String[] split = message.split(":");
+		String[] split = message.split(":", 5);
 
 		// Construct uuid of sender
 		UUID senderInstanceID = UUID.fromString(split[0]);
 
 		// Construct updated hashslot
 		int keyHashSlot = Integer.parseInt(split[1]);
+		
+		if(split.length < 5) return new DataSyncMessage(senderInstanceID, keyHashSlot, null, 0, 0);
+
+		long sequence = Long.parseLong(split[2]);
+		long sendTime = Long.parseLong(split[3]);
+		String entityKey = split[4].isEmpty() ? null : split[4];
 
-		return new DataSyncMessage(senderInstanceID, keyHashSlot);
+		return new DataSyncMessage(senderInstanceID, keyHashSlot, entityKey, sequence, sendTime);
 	}
 
 }
@@ -0,0 +1,208 @@
+package com.lostkingdoms.db.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.lostkingdoms.db.logger.LKLogger;
+import com.lostkingdoms.db.logger.LogType;
+import com.lostkingdoms.db.metrics.DataOperation;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+
+/**
+ * Opt-in recorder of all operations of organized data objects.
+ * The data objects only put events into a bounded queue, a background thread writes them
+ * to the trace file with a {@link TraceWriter}. If the queue is full events are dropped
+ * instead of blocking the caller.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class AccessTraceRecorder {
+
+	/** Number of events which can wait to be written */
+	private static final int QUEUE_CAPACITY = 1 << 16;
+	
+	/** Number of events which are written at once */
+	private static final int BATCH_SIZE = 1024;
+	
+	/** The running recorder or null */
+	private static volatile AccessTraceRecorder active;
+	
+	/** True if the shutdown hook which stops the recorder is registered */
+	private static boolean shutdownHookRegistered;
+	
+	/** The trace file */
+	private final File file;
+	
+	/** The events which are not written yet */
+	private final BlockingQueue<TraceEvent> queue;
+	
+	/** The writer of the trace file */
+	private final TraceWriter writer;
+	
+	/** The start of the trace in nano time */
+	private final long startNanos;
+	
+	/** Number of written events */
+	private final LongAdder recorded = new LongAdder();
+	
+	/** Number of events which were dropped because the queue was full */
+	private final LongAdder dropped = new LongAdder();
+	
+	/** The thread which writes the events */
+	private final Thread writerThread;
+	
+	/** False if the recorder was stopped */
+	private volatile boolean running = true;
+	
+	private AccessTraceRecorder(File file) throws IOException {
+		this.file = file;
+		this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		this.writer = new TraceWriter(file);
+		this.startNanos = System.nanoTime();
+		
+		this.writerThread = new Thread(this::writeEvents, "trace_Writer");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+	
+	/**
+	 * Starts recording to a file. Stops the running recorder first.
+	 * The recorder is stopped on shutdown, so all queued events are written
+	 * 
+	 * @param file the trace file
+	 * @return the recorder
+	 * @throws IOException if the file could not be created
+	 */
+	public static synchronized AccessTraceRecorder start(File file) throws IOException {
+		stop();
+		if(!shutdownHookRegistered) {
+			Runtime.getRuntime().addShutdownHook(new Thread(AccessTraceRecorder::stop, "trace_Shutdown_Writer"));
+			shutdownHookRegistered = true;
+		}
+		
+		active = new AccessTraceRecorder(file);
+		LKLogger.getInstance().info("Access trace started: " + file, LogType.STARTUP);
+		return active;
+	}
+	
+	/**
+	 * Stops the running recorder and writes all queued events
+	 */
+	public static synchronized void stop() {
+		AccessTraceRecorder recorder = active;
+		if(recorder == null) return;
+		
+		active = null;
+		recorder.close();
+		LKLogger.getInstance().info("Access trace stopped: " + recorder.file + " (" + recorder.getRecorded() + " events, "
+				+ recorder.getDropped() + " dropped)", LogType.STARTUP);
+	}
+	
+	/**
+	 * Get the running recorder
+	 * 
+	 * @return the recorder or null if no trace is recorded
+	 */
+	public static AccessTraceRecorder getActive() {
+		return active;
+	}
+	
+	/**
+	 * Records an operation
+	 * 
+	 * @param dataKey the {@link DataKey} of the data object
+	 * @param operation the operation
+	 * @param tier the deepest tier the operation accessed
+	 * @param payloadSize the size of the payload in characters or 0 if unknown
+	 * @param latency the latency in nanoseconds or 0 if not measured
+	 */
+	public void record(DataKey dataKey, DataOperation operation, TraceTier tier, int payloadSize, long latency) {
+		if(!running) return;
+		
+		TraceEvent event = new TraceEvent(System.nanoTime() - startNanos, dataKey.getMainKey(), dataKey.getSubKey(),
+				dataKey.getMongoDBIdentifier().hashCode(), operation, tier, payloadSize, latency);
+		if(!queue.offer(event)) dropped.increment();
+	}
+	
+	/**
+	 * Get the trace file
+	 * 
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * Get the number of written events
+	 * 
+	 * @return the number of events
+	 */
+	public long getRecorded() {
+		return recorded.sum();
+	}
+	
+	/**
+	 * Get the number of events which were dropped because the writer could not keep up
+	 * 
+	 * @return the number of events
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+	
+	/**
+	 * Writes the queued events until the recorder is stopped
+	 */
+	private void writeEvents() {
+		List<TraceEvent> batch = new ArrayList<>(BATCH_SIZE);
+		try {
+			while(running || !queue.isEmpty()) {
+				TraceEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if(first == null) {
+					writer.flush();
+					continue;
+				}
+				
+				batch.add(first);
+				queue.drainTo(batch, BATCH_SIZE - 1);
+				for(TraceEvent event : batch) {
+					writer.write(event);
+				}
+				recorded.add(batch.size());
+				batch.clear();
+			}
+		} catch (IOException e) {
+			LKLogger.getInstance().error("Access trace could not be written: ", e, LogType.STARTUP);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			running = false;
+			try {
+				writer.close();
+			} catch (IOException e) {
+				LKLogger.getInstance().error("Access trace could not be closed: ", e, LogType.STARTUP);
+			}
+		}
+	}
+	
+	/**
+	 * Stops accepting events and waits until all queued events are written
+	 */
+	private void close() {
+		running = false;
+		try {
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+}
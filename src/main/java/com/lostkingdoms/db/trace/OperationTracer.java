@@ -0,0 +1,368 @@
+package com.lostkingdoms.db.trace;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.stream.JsonWriter;
+import com.lostkingdoms.db.metrics.DataMetrics;
+import com.lostkingdoms.db.metrics.OperationPhase;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+
+/**
+ * Opt-in tracing of operations as hierarchical spans (e.g. getEntity, the initialization of its
+ * fields, the loads of the fields and their redis, MongoDB and conversion calls).
+ * An operation which is started while no other operation runs on the thread is a root and is
+ * sampled with the sample rate. All operations and calls within a sampled root are recorded
+ * into a ring buffer of the thread, so recording never blocks on other threads.
+ * The buffers can be exported as Chrome trace event file on demand, which can be opened
+ * with chrome://tracing or Perfetto. Spans nest by their time on the same thread.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class OperationTracer {
+
+	/** The maximal number of nested operations of a thread */
+	private static final int MAX_DEPTH = 16;
+	
+	/** Operations which are open longer are considered as never ended (e.g. after an exception) */
+	private static final long MAX_OPEN_TIME = TimeUnit.SECONDS.toNanos(10);
+	
+	/** The time all timestamps of the export are relative to */
+	private static final long ORIGIN = System.nanoTime();
+	
+	/** The share of root operations which are traced or 0 if tracing is disabled */
+	private static volatile double sampleRate;
+	
+	/** The number of spans each thread keeps */
+	private static volatile int bufferSize = 16384;
+	
+	/** The buffers of all threads which recorded spans */
+	private static final List<SpanBuffer> buffers = new CopyOnWriteArrayList<>();
+	
+	/** The buffer of each thread. Is only registered in {@link #buffers} when it records its first span */
+	private static final ThreadLocal<SpanBuffer> threadBuffer = ThreadLocal.withInitial(() -> new SpanBuffer(Thread.currentThread()));
+	
+	private OperationTracer() {}
+	
+	/**
+	 * Enables or disables tracing
+	 * 
+	 * @param sampleRate the share of root operations which are traced (0 to 1). 0 disables tracing
+	 * @param bufferSize the number of spans each thread keeps. Older spans are overwritten
+	 */
+	public static void configure(double sampleRate, int bufferSize) {
+		OperationTracer.bufferSize = Math.max(16, bufferSize);
+		OperationTracer.sampleRate = Math.max(0, Math.min(1, sampleRate));
+	}
+	
+	/**
+	 * Check if operations are traced
+	 * 
+	 * @return true if tracing is enabled
+	 */
+	public static boolean isEnabled() {
+		return sampleRate != 0;
+	}
+	
+	/**
+	 * Check if the running operation of this thread is traced
+	 * 
+	 * @return true if the running operation is sampled
+	 */
+	public static boolean isSampled() {
+		if(sampleRate == 0) return false;
+		SpanBuffer buffer = threadBuffer.get();
+		return buffer.depth > 0 && buffer.sampled;
+	}
+	
+	/**
+	 * Starts an operation. Has to be ended with one of the end methods
+	 * 
+	 * @return the start time of the operation or the time from {@link DataMetrics#start()} if tracing is disabled
+	 */
+	public static long begin() {
+		if(sampleRate == 0) return DataMetrics.start();
+		return open(threadBuffer.get(), System.nanoTime(), -1);
+	}
+	
+	/**
+	 * Captures if the running operation of this thread is traced, so work it hands to
+	 * another thread can be traced with it (see {@link #resume(int)})
+	 * 
+	 * @return 1 if it is sampled, 0 if it is not and -1 if no operation runs
+	 */
+	public static int capture() {
+		if(sampleRate == 0) return -1;
+		SpanBuffer buffer = threadBuffer.get();
+		if(buffer.depth == 0) return -1;
+		return buffer.sampled ? 1 : 0;
+	}
+	
+	/**
+	 * Starts an operation on another thread with the sampling of the operation it was handed over by
+	 * 
+	 * @param captured the result of {@link #capture()}
+	 * @return the start time of the operation or 0 if it was not handed over by an operation
+	 */
+	public static long resume(int captured) {
+		if(sampleRate == 0 || captured < 0) return 0;
+		return open(threadBuffer.get(), System.nanoTime(), captured);
+	}
+	
+	/**
+	 * Opens an operation on a thread
+	 * 
+	 * @param buffer the buffer of the thread
+	 * @param start the start time
+	 * @param sample 1 to sample a root, 0 to not sample it and -1 to decide with the sample rate
+	 * @return the start time
+	 */
+	private static long open(SpanBuffer buffer, long start, int sample) {
+		// Operations which were never ended
+		if(buffer.depth > 0 && (buffer.depth == MAX_DEPTH || start - buffer.open[0] > MAX_OPEN_TIME)) buffer.depth = 0;
+		
+		if(buffer.depth == 0) {
+			buffer.sampled = sample < 0 ? ThreadLocalRandom.current().nextDouble() < sampleRate : sample == 1;
+		}
+		buffer.open[buffer.depth++] = start;
+		return start;
+	}
+	
+	/**
+	 * Ends an operation and closes all operations which were started within it and not ended
+	 * 
+	 * @param start the start time from {@link #begin()}
+	 * @return the buffer of the thread if the operation is recorded, otherwise null
+	 */
+	private static SpanBuffer close(long start) {
+		if(start == 0 || sampleRate == 0) return null;
+		
+		SpanBuffer buffer = threadBuffer.get();
+		int index = buffer.depth - 1;
+		while(index >= 0 && buffer.open[index] != start) index--;
+		if(index < 0) return null;
+		
+		buffer.depth = index;
+		return buffer.sampled ? buffer : null;
+	}
+	
+	/**
+	 * Ends an operation of a data object
+	 * 
+	 * @param operation the name of the operation
+	 * @param dataKey the {@link DataKey} of the data object
+	 * @param start the start time from {@link #begin()}
+	 */
+	public static void end(Object operation, DataKey dataKey, long start) {
+		SpanBuffer buffer = close(start);
+		if(buffer == null) return;
+		
+		buffer.add("operation", operation + " " + dataKey.getSubKey(), dataKey.getRedisKey(), start, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Ends an operation of the DataAccessManager
+	 * 
+	 * @param operation the name of the operation
+	 * @param entityClass the class of the entity
+	 * @param identifier the identifier of the entity
+	 * @param start the start time from {@link #begin()}
+	 */
+	public static void end(String operation, Class<?> entityClass, Object identifier, long start) {
+		SpanBuffer buffer = close(start);
+		if(buffer == null) return;
+		
+		buffer.add("operation", operation + " " + entityClass.getSimpleName(), String.valueOf(identifier), start, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Records a call within the running operation if it is traced
+	 * 
+	 * @param phase the phase of the call
+	 * @param call the name of the call
+	 * @param start the start time of the call in nanoseconds or 0
+	 */
+	public static void span(OperationPhase phase, String call, long start) {
+		if(sampleRate == 0 || start == 0) return;
+		
+		SpanBuffer buffer = threadBuffer.get();
+		if(buffer.depth == 0 || !buffer.sampled) return;
+		
+		buffer.add(phase.name().toLowerCase(), call, null, start, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Writes the spans of all threads to a Chrome trace event file
+	 * 
+	 * @param file the file
+	 * @return the number of written spans
+	 * @throws IOException if the file could not be written
+	 */
+	public static int export(File file) throws IOException {
+		int written = 0;
+		try (JsonWriter json = new JsonWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			json.beginObject();
+			json.name("displayTimeUnit").value("ms");
+			json.name("traceEvents").beginArray();
+			for(SpanBuffer buffer : buffers) {
+				written += buffer.write(json);
+			}
+			json.endArray();
+			json.endObject();
+		}
+		return written;
+	}
+	
+	/**
+	 * Registers the buffer of a thread which records its first span. Removes the buffers of 
+	 * terminated threads, so short-lived threads do not pile up
+	 * 
+	 * @param buffer the buffer
+	 */
+	private static void register(SpanBuffer buffer) {
+		buffers.removeIf(registered -> !registered.thread.isAlive());
+		buffers.add(buffer);
+	}
+	
+	/**
+	 * Removes all recorded spans and the buffers of terminated threads
+	 */
+	public static void clear() {
+		for(SpanBuffer buffer : buffers) {
+			if(!buffer.thread.isAlive()) buffers.remove(buffer);
+			buffer.clear();
+		}
+	}
+	
+	/**
+	 * The spans and open operations of one thread. Is written by its thread only,
+	 * the lock is only contended by exports
+	 */
+	private static final class SpanBuffer {
+		
+		/** The thread */
+		private final Thread thread;
+		
+		/** The start times of the open operations */
+		private final long[] open = new long[MAX_DEPTH];
+		
+		/** The number of open operations */
+		private int depth;
+		
+		/** True if the open root operation is traced */
+		private boolean sampled;
+		
+		/** The categories of the spans */
+		private String[] categories;
+		
+		/** The names of the spans */
+		private String[] names;
+		
+		/** The keys the spans belong to or null */
+		private String[] keys;
+		
+		/** The start times of the spans */
+		private long[] starts;
+		
+		/** The durations of the spans */
+		private long[] durations;
+		
+		/** The number of recorded spans */
+		private long count;
+		
+		/** True if the buffer is in {@link OperationTracer#buffers} */
+		private boolean registered;
+		
+		SpanBuffer(Thread thread) {
+			this.thread = thread;
+		}
+		
+		/**
+		 * Records a span. Overwrites the oldest span if the buffer is full
+		 * 
+		 * @param category the category
+		 * @param name the name
+		 * @param key the key the span belongs to or null
+		 * @param start the start time in nanoseconds
+		 * @param duration the duration in nanoseconds
+		 */
+		synchronized void add(String category, String name, String key, long start, long duration) {
+			if(!registered) {
+				registered = true;
+				register(this);
+			}
+			if(names == null) {
+				int size = bufferSize;
+				categories = new String[size];
+				names = new String[size];
+				keys = new String[size];
+				starts = new long[size];
+				durations = new long[size];
+			}
+			
+			int index = (int) (count++ % names.length);
+			categories[index] = category;
+			names[index] = name;
+			keys[index] = key;
+			starts[index] = start;
+			durations[index] = duration;
+		}
+		
+		/**
+		 * Writes the thread name and all spans as trace events
+		 * 
+		 * @param json the writer
+		 * @return the number of written spans
+		 * @throws IOException if they could not be written
+		 */
+		synchronized int write(JsonWriter json) throws IOException {
+			if(count == 0) return 0;
+			
+			json.beginObject();
+			json.name("name").value("thread_name");
+			json.name("ph").value("M");
+			json.name("pid").value(1);
+			json.name("tid").value(thread.getId());
+			json.name("args").beginObject().name("name").value(thread.getName()).endObject();
+			json.endObject();
+			
+			long first = Math.max(0, count - names.length);
+			for(long i = first; i < count; i++) {
+				int index = (int) (i % names.length);
+				json.beginObject();
+				json.name("name").value(names[index]);
+				json.name("cat").value(categories[index]);
+				json.name("ph").value("X");
+				json.name("ts").value((starts[index] - ORIGIN) / 1000.0);
+				json.name("dur").value(durations[index] / 1000.0);
+				json.name("pid").value(1);
+				json.name("tid").value(thread.getId());
+				if(keys[index] != null) json.name("args").beginObject().name("key").value(keys[index]).endObject();
+				json.endObject();
+			}
+			return (int) (count - first);
+		}
+		
+		/**
+		 * Removes all spans
+		 */
+		synchronized void clear() {
+			count = 0;
+			names = null;
+			categories = null;
+			keys = null;
+			starts = null;
+			durations = null;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,90 @@
+package com.lostkingdoms.db.trace;
+
+import com.lostkingdoms.db.metrics.DataOperation;
+
+/**
+ * One traced operation of an organized data object
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class TraceEvent {
+
+	/** Nanoseconds since the start of the trace */
+	private final long time;
+	
+	/** The entity key */
+	private final String entityKey;
+	
+	/** The field key */
+	private final String fieldKey;
+	
+	/** Hash of the identifier. Identifiers are not saved in the trace */
+	private final int identifierHash;
+	
+	/** The operation */
+	private final DataOperation operation;
+	
+	/** The deepest tier the operation accessed */
+	private final TraceTier tier;
+	
+	/** Size of the payload in characters or 0 if unknown */
+	private final int payloadSize;
+	
+	/** Latency in nanoseconds or 0 if not measured */
+	private final long latency;
+	
+	public TraceEvent(long time, String entityKey, String fieldKey, int identifierHash, DataOperation operation,
+			TraceTier tier, int payloadSize, long latency) {
+		this.time = time;
+		this.entityKey = entityKey;
+		this.fieldKey = fieldKey;
+		this.identifierHash = identifierHash;
+		this.operation = operation;
+		this.tier = tier;
+		this.payloadSize = payloadSize;
+		this.latency = latency;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public String getEntityKey() {
+		return entityKey;
+	}
+
+	public String getFieldKey() {
+		return fieldKey;
+	}
+
+	public int getIdentifierHash() {
+		return identifierHash;
+	}
+
+	public DataOperation getOperation() {
+		return operation;
+	}
+
+	public TraceTier getTier() {
+		return tier;
+	}
+
+	public int getPayloadSize() {
+		return payloadSize;
+	}
+
+	public long getLatency() {
+		return latency;
+	}
+	
+	/**
+	 * Check if the operation only reads
+	 * 
+	 * @return true if the operation is a {@link DataOperation#GET}
+	 */
+	public boolean isRead() {
+		return operation == DataOperation.GET;
+	}
+	
+}
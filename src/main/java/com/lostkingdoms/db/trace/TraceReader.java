@@ -0,0 +1,126 @@
+package com.lostkingdoms.db.trace;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.lostkingdoms.db.metrics.DataOperation;
+
+/**
+ * Reads the {@link TraceEvent}s of a trace file written by {@link TraceWriter}
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class TraceReader implements Closeable {
+
+	/** The input */
+	private final DataInputStream in;
+	
+	/** All strings defined so far by their number */
+	private final List<String> strings;
+	
+	/** The time in milliseconds when the trace was started */
+	private final long startTime;
+	
+	/** The time of the last read event */
+	private long lastTime;
+	
+	/**
+	 * Opens a trace file and reads the header
+	 * 
+	 * @param file the trace file
+	 * @throws IOException if the file could not be read or is no trace file
+	 */
+	public TraceReader(File file) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		this.strings = new ArrayList<>();
+		
+		if(in.readInt() != TraceWriter.MAGIC) {
+			in.close();
+			throw new IOException(file + " is no trace file");
+		}
+		byte version = in.readByte();
+		if(version != TraceWriter.VERSION) {
+			in.close();
+			throw new IOException("Unsupported trace version " + version);
+		}
+		this.startTime = in.readLong();
+	}
+	
+	/**
+	 * Get the time when the trace was started
+	 * 
+	 * @return the time in milliseconds
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+	
+	/**
+	 * Reads the next event
+	 * 
+	 * @return the event or null at the end of the trace
+	 * @throws IOException if the trace could not be read
+	 */
+	public TraceEvent next() throws IOException {
+		while(true) {
+			int tag = in.read();
+			if(tag == -1) return null;
+			
+			try {
+				if(tag == TraceWriter.TAG_STRING) {
+					int number = (int) readVarLong();
+					String string = in.readUTF();
+					while(strings.size() <= number) strings.add(null);
+					strings.set(number, string);
+					continue;
+				}
+				if(tag != TraceWriter.TAG_EVENT) throw new IOException("Unknown record tag " + tag);
+				
+				lastTime += readVarLong();
+				String entity = strings.get((int) readVarLong());
+				String field = strings.get((int) readVarLong());
+				int identifierHash = in.readInt();
+				DataOperation operation = DataOperation.values()[in.readByte()];
+				TraceTier tier = TraceTier.values()[in.readByte()];
+				int payloadSize = (int) readVarLong();
+				long latency = readVarLong();
+				
+				return new TraceEvent(lastTime, entity, field, identifierHash, operation, tier, payloadSize, latency);
+			} catch(EOFException e) {
+				//The last record was not written completely (e.g. the server crashed)
+				return null;
+			}
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+	
+	/**
+	 * Reads a number written with 7 bits per byte
+	 * 
+	 * @return the number
+	 * @throws IOException if the trace could not be read
+	 */
+	private long readVarLong() throws IOException {
+		long value = 0;
+		int shift = 0;
+		while(true) {
+			byte b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if((b & 0x80) == 0) return value;
+			shift += 7;
+		}
+	}
+	
+}
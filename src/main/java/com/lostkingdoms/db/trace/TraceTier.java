@@ -0,0 +1,14 @@
+package com.lostkingdoms.db.trace;
+
+/**
+ * The deepest tier a traced operation had to access.
+ * LOCAL: the local copy
+ * REDIS: redis global cache
+ * MONGODB: mongoDB database
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public enum TraceTier {
+	LOCAL, REDIS, MONGODB;
+}
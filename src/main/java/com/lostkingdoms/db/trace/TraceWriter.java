@@ -0,0 +1,132 @@
+package com.lostkingdoms.db.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes {@link TraceEvent}s to a compact binary trace file.
+ * 
+ * Format: the header (magic, version, start time in milliseconds) followed by records.
+ * Every record starts with a tag byte. Entity and field keys are written once as
+ * string records and referenced by their number afterwards. Events save the time
+ * as delta to the previous event and all numbers as variable length integers, so
+ * a typical event needs about 10 bytes.
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public final class TraceWriter implements Closeable {
+
+	/** The first bytes of every trace file ("LKTR") */
+	static final int MAGIC = 0x4C4B5452;
+	
+	/** The version of the format */
+	static final byte VERSION = 1;
+	
+	/** Tag of a record which defines a string */
+	static final byte TAG_STRING = 0;
+	
+	/** Tag of a record which contains an event */
+	static final byte TAG_EVENT = 1;
+	
+	/** The output */
+	private final DataOutputStream out;
+	
+	/** The numbers of all written strings */
+	private final Map<String, Integer> strings;
+	
+	/** The time of the last written event */
+	private long lastTime;
+	
+	/**
+	 * Creates the trace file and writes the header
+	 * 
+	 * @param file the trace file
+	 * @throws IOException if the file could not be created
+	 */
+	public TraceWriter(File file) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		this.strings = new HashMap<>();
+		
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeLong(System.currentTimeMillis());
+	}
+	
+	/**
+	 * Writes an event
+	 * 
+	 * @param event the event
+	 * @throws IOException if writing failed
+	 */
+	public void write(TraceEvent event) throws IOException {
+		int entity = string(event.getEntityKey());
+		int field = string(event.getFieldKey());
+		
+		out.writeByte(TAG_EVENT);
+		writeVarLong(Math.max(0, event.getTime() - lastTime));
+		writeVarLong(entity);
+		writeVarLong(field);
+		out.writeInt(event.getIdentifierHash());
+		out.writeByte(event.getOperation().ordinal());
+		out.writeByte(event.getTier().ordinal());
+		writeVarLong(event.getPayloadSize());
+		writeVarLong(event.getLatency());
+		
+		lastTime = Math.max(lastTime, event.getTime());
+	}
+	
+	/**
+	 * Flushes the buffered records to the file
+	 * 
+	 * @throws IOException if writing failed
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+	
+	/**
+	 * Get the number of a string. Writes a string record if the string is new
+	 * 
+	 * @param string the string
+	 * @return the number of the string
+	 * @throws IOException if writing failed
+	 */
+	private int string(String string) throws IOException {
+		Integer number = strings.get(string);
+		if(number != null) return number;
+		
+		number = strings.size();
+		strings.put(string, number);
+		out.writeByte(TAG_STRING);
+		writeVarLong(number);
+		out.writeUTF(string);
+		return number;
+	}
+	
+	/**
+	 * Writes a non negative number with 7 bits per byte
+	 * 
+	 * @param value the number
+	 * @throws IOException if writing failed
+	 */
+	private void writeVarLong(long value) throws IOException {
+		while((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+	
+}
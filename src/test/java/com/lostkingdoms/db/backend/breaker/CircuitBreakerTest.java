@@ -0,0 +1,169 @@
+package com.lostkingdoms.db.backend.breaker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lostkingdoms.db.exceptions.BackendUnavailableException;
+
+/**
+ * Tests the state transitions of the {@link CircuitBreaker}
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public class CircuitBreakerTest {
+
+	private static final int THRESHOLD = 3;
+	
+	private static final long OPEN_DURATION = 50;
+	
+	private CircuitBreaker breaker;
+	
+	/** The states the breaker changed to */
+	private final List<CircuitState> transitions = new ArrayList<>();
+	
+	/** The number of calls which reached the backend */
+	private final AtomicInteger calls = new AtomicInteger();
+	
+	@Before
+	public void create() {
+		breaker = new CircuitBreaker("test", THRESHOLD, OPEN_DURATION);
+		breaker.setListener(transitions::add);
+	}
+	
+	@Test
+	public void opensAfterConsecutiveFailures() {
+		for(int i = 0; i < THRESHOLD - 1; i++) {
+			failCall();
+		}
+		assertEquals(CircuitState.CLOSED, breaker.getState());
+		
+		failCall();
+		assertEquals(CircuitState.OPEN, breaker.getState());
+		assertEquals(1, breaker.getTrips());
+		
+		//Fails fast without reaching the backend
+		expectRejected();
+		assertEquals(THRESHOLD, calls.get());
+		assertEquals(1, breaker.getRejected());
+	}
+	
+	@Test
+	public void successResetsFailures() {
+		failCall();
+		failCall();
+		succeedCall();
+		failCall();
+		failCall();
+		
+		assertEquals(CircuitState.CLOSED, breaker.getState());
+	}
+	
+	@Test
+	public void ignoresFailuresOfAvailableBackend() {
+		for(int i = 0; i < THRESHOLD * 2; i++) {
+			try {
+				breaker.call("test", () -> {
+					calls.incrementAndGet();
+					throw new IllegalStateException("wrong type");
+				});
+				fail();
+			} catch (IllegalStateException e) {
+				//Expected
+			}
+		}
+		
+		assertEquals(CircuitState.CLOSED, breaker.getState());
+	}
+	
+	@Test
+	public void closesAfterSuccessfulProbe() throws InterruptedException {
+		open();
+		Thread.sleep(OPEN_DURATION + 10);
+		
+		succeedCall();
+		assertEquals(CircuitState.CLOSED, breaker.getState());
+		assertEquals(Arrays.asList(CircuitState.OPEN, CircuitState.HALF_OPEN, CircuitState.CLOSED), transitions);
+	}
+	
+	@Test
+	public void reopensAfterFailedProbe() throws InterruptedException {
+		open();
+		Thread.sleep(OPEN_DURATION + 10);
+		
+		failCall();
+		assertEquals(CircuitState.OPEN, breaker.getState());
+		assertEquals(Arrays.asList(CircuitState.OPEN, CircuitState.HALF_OPEN, CircuitState.OPEN), transitions);
+		
+		//The open duration starts again
+		expectRejected();
+	}
+	
+	@Test
+	public void letsOnlyOneProbeThrough() throws InterruptedException {
+		open();
+		Thread.sleep(OPEN_DURATION + 10);
+		
+		breaker.call("probe", () -> {
+			assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+			expectRejected();
+			return null;
+		});
+		assertEquals(CircuitState.CLOSED, breaker.getState());
+	}
+	
+	/**
+	 * Opens the breaker with consecutive failures
+	 */
+	private void open() {
+		for(int i = 0; i < THRESHOLD; i++) {
+			failCall();
+		}
+		assertEquals(CircuitState.OPEN, breaker.getState());
+	}
+	
+	/**
+	 * Runs a call which fails like an unreachable backend
+	 */
+	private void failCall() {
+		try {
+			breaker.call("test", () -> {
+				calls.incrementAndGet();
+				throw new UncheckedIOException(new IOException("Connection reset"));
+			});
+			fail();
+		} catch (UncheckedIOException e) {
+			//Expected
+		}
+	}
+	
+	/**
+	 * Runs a call which succeeds
+	 */
+	private void succeedCall() {
+		breaker.call("test", calls::incrementAndGet);
+	}
+	
+	/**
+	 * Runs a call which has to fail fast
+	 */
+	private void expectRejected() {
+		try {
+			breaker.call("test", calls::incrementAndGet);
+			fail();
+		} catch (BackendUnavailableException e) {
+			//Expected
+		}
+	}
+	
+}
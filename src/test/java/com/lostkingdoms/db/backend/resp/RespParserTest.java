@@ -0,0 +1,155 @@
+package com.lostkingdoms.db.backend.resp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.lostkingdoms.db.exceptions.RespException;
+
+/**
+ * Tests the {@link RespParser} with replies which arrive split over several reads
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public class RespParserTest {
+
+	@Test
+	public void parsesSimpleReplies() {
+		List<Object> replies = parse("+OK\r\n:42\r\n:-7\r\n$5\r\nhello\r\n$-1\r\n$0\r\n\r\n");
+		
+		assertEquals(Arrays.asList("OK", 42L, -7L, "hello", null, ""), replies);
+	}
+	
+	@Test
+	public void parsesErrorsAsExceptions() {
+		List<Object> replies = parse("-WRONGTYPE Operation against a key holding the wrong kind of value\r\n");
+		
+		assertEquals(1, replies.size());
+		assertTrue(replies.get(0) instanceof RespException);
+		assertEquals("WRONGTYPE Operation against a key holding the wrong kind of value", ((RespException) replies.get(0)).getMessage());
+	}
+	
+	@Test
+	public void parsesBulkStringsContainingLineBreaks() {
+		assertEquals(Arrays.asList("a\r\nb"), parse("$4\r\na\r\nb\r\n"));
+	}
+	
+	@Test
+	public void parsesNestedArrays() {
+		List<Object> replies = parse("*3\r\n$3\r\nfoo\r\n*2\r\n:1\r\n*1\r\n$-1\r\n*0\r\n*-1\r\n+OK\r\n");
+		
+		List<Object> inner = Arrays.asList(1L, Arrays.asList((Object) null));
+		assertEquals(Arrays.asList(Arrays.asList("foo", inner, Collections.emptyList()), null, "OK"), replies);
+	}
+	
+	@Test
+	public void parsesRepliesSplitAtEveryByte() {
+		String replies = "*2\r\n$5\r\nhello\r\n*2\r\n:1\r\n-ERR inner\r\n:5\r\n$3\r\nend\r\n";
+		byte[] bytes = replies.getBytes(StandardCharsets.UTF_8);
+		
+		for(int split = 1; split < bytes.length; split++) {
+			RespParser parser = new RespParser();
+			List<Object> parsed = new ArrayList<>();
+			parser.feed(ByteBuffer.wrap(bytes, 0, split));
+			drain(parser, parsed);
+			parser.feed(ByteBuffer.wrap(bytes, split, bytes.length - split));
+			drain(parser, parsed);
+			
+			assertEquals("split at " + split, 3, parsed.size());
+			List<?> array = (List<?>) parsed.get(0);
+			assertEquals("hello", array.get(0));
+			assertEquals(1L, ((List<?>) array.get(1)).get(0));
+			assertTrue(((List<?>) array.get(1)).get(1) instanceof RespException);
+			assertEquals(5L, parsed.get(1));
+			assertEquals("end", parsed.get(2));
+		}
+	}
+	
+	@Test
+	public void parsesLargeArrayFedByteByByte() {
+		StringBuilder reply = new StringBuilder("*1000\r\n");
+		for(int i = 0; i < 1000; i++) {
+			reply.append('$').append(String.valueOf(i).length()).append("\r\n").append(i).append("\r\n");
+		}
+		
+		List<Object> parsed = parse(reply.toString(), 1);
+		
+		assertEquals(1, parsed.size());
+		List<?> array = (List<?>) parsed.get(0);
+		assertEquals(1000, array.size());
+		assertEquals("999", array.get(999));
+	}
+	
+	@Test
+	public void returnsIncompleteUntilReplyArrived() {
+		RespParser parser = new RespParser();
+		parser.feed(ByteBuffer.wrap("*2\r\n:1\r\n".getBytes(StandardCharsets.UTF_8)));
+		assertSame(RespParser.INCOMPLETE, parser.next());
+		
+		parser.feed(ByteBuffer.wrap(":2\r\n".getBytes(StandardCharsets.UTF_8)));
+		assertEquals(Arrays.asList(1L, 2L), parser.next());
+		assertSame(RespParser.INCOMPLETE, parser.next());
+	}
+	
+	@Test
+	public void parsesNilReply() {
+		RespParser parser = new RespParser();
+		parser.feed(ByteBuffer.wrap("$-1\r\n".getBytes(StandardCharsets.UTF_8)));
+		
+		assertNull(parser.next());
+		assertSame(RespParser.INCOMPLETE, parser.next());
+	}
+	
+	/**
+	 * Parses replies fed at once
+	 * 
+	 * @param replies the replies
+	 * @return the parsed replies
+	 */
+	private static List<Object> parse(String replies) {
+		return parse(replies, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Parses replies fed in chunks
+	 * 
+	 * @param replies the replies
+	 * @param chunkSize the number of bytes of each feed
+	 * @return the parsed replies
+	 */
+	private static List<Object> parse(String replies, int chunkSize) {
+		byte[] bytes = replies.getBytes(StandardCharsets.UTF_8);
+		RespParser parser = new RespParser();
+		List<Object> parsed = new ArrayList<>();
+		for(int offset = 0; offset < bytes.length; offset += chunkSize) {
+			parser.feed(ByteBuffer.wrap(bytes, offset, Math.min(chunkSize, bytes.length - offset)));
+			drain(parser, parsed);
+		}
+		return parsed;
+	}
+	
+	/**
+	 * Takes all complete replies from a parser
+	 * 
+	 * @param parser the parser
+	 * @param parsed the list the replies are added to
+	 */
+	private static void drain(RespParser parser, List<Object> parsed) {
+		Object reply;
+		while((reply = parser.next()) != RespParser.INCOMPLETE) {
+			parsed.add(reply);
+		}
+	}
+	
+}
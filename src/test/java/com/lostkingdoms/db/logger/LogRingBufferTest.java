@@ -0,0 +1,140 @@
+package com.lostkingdoms.db.logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link LogRingBuffer} when it is full and when its positions wrap around
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public class LogRingBufferTest {
+
+	@Test
+	public void roundsCapacityUpToPowerOfTwo() {
+		LogRingBuffer buffer = new LogRingBuffer(5);
+		
+		int accepted = 0;
+		while(buffer.offer("INFO", LogType.SYNC, "message", null, 0)) accepted++;
+		
+		assertEquals(8, accepted);
+	}
+	
+	@Test
+	public void rejectsRecordsWhenFull() {
+		LogRingBuffer buffer = new LogRingBuffer(4);
+		for(int i = 0; i < 4; i++) {
+			assertTrue(buffer.offer("INFO", LogType.SYNC, "message " + i, null, i));
+		}
+		
+		assertFalse(buffer.offer("INFO", LogType.SYNC, "rejected", null, 4));
+		assertEquals(4, buffer.getWritten());
+		
+		// Releasing one record makes room for exactly one more
+		take(buffer);
+		assertTrue(buffer.offer("INFO", LogType.SYNC, "message 4", null, 4));
+		assertFalse(buffer.offer("INFO", LogType.SYNC, "rejected", null, 5));
+		
+		List<String> messages = new ArrayList<>();
+		String message;
+		while((message = take(buffer)) != null) messages.add(message);
+		
+		assertEquals(4, messages.size());
+		assertEquals("message 1", messages.get(0));
+		assertEquals("message 4", messages.get(3));
+	}
+	
+	@Test
+	public void keepsOrderWhenPositionsWrapAround() {
+		LogRingBuffer buffer = new LogRingBuffer(4);
+		
+		int next = 0;
+		int expected = 0;
+		for(int round = 0; round < 100; round++) {
+			// Three of four slots per round, so the slots are reused at a different offset every round
+			for(int i = 0; i < 3; i++) {
+				assertTrue(buffer.offer("INFO", LogType.SYNC, String.valueOf(next++), null, 0));
+			}
+			for(int i = 0; i < 3; i++) {
+				assertEquals(String.valueOf(expected++), take(buffer));
+			}
+		}
+		
+		assertNull(take(buffer));
+		assertEquals(300, buffer.getWritten());
+		assertEquals(buffer.getWritten(), buffer.getRead());
+	}
+	
+	@Test
+	public void releaseClearsReferences() {
+		LogRingBuffer buffer = new LogRingBuffer(2);
+		buffer.offer("ERROR", LogType.SYNC, "failed", new IllegalStateException(), 0);
+		
+		LogRingBuffer.Record record = buffer.peek();
+		assertEquals("ERROR", record.level);
+		buffer.release(record);
+		
+		assertNull(record.message);
+		assertNull(record.throwable);
+		assertNull(buffer.peek());
+	}
+	
+	@Test
+	public void concurrentProducersLoseNoRecords() throws InterruptedException {
+		LogRingBuffer buffer = new LogRingBuffer(64);
+		int producers = 4;
+		int perProducer = 10000;
+		CountDownLatch start = new CountDownLatch(1);
+		
+		List<Thread> threads = new ArrayList<>();
+		for(int p = 0; p < producers; p++) {
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for(int i = 0; i < perProducer; i++) {
+					while(!buffer.offer("INFO", LogType.SYNC, "message", null, i)) Thread.yield();
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		
+		start.countDown();
+		long consumed = 0;
+		while(consumed < producers * perProducer) {
+			if(take(buffer) != null) consumed++;
+			else Thread.yield();
+		}
+		for(Thread thread : threads) thread.join();
+		
+		assertEquals(producers * perProducer, buffer.getWritten());
+		assertNull(buffer.peek());
+	}
+	
+	/**
+	 * Takes the message of the next record
+	 * 
+	 * @param buffer the buffer
+	 * @return the message or null if the buffer is empty
+	 */
+	private static String take(LogRingBuffer buffer) {
+		LogRingBuffer.Record record = buffer.peek();
+		if(record == null) return null;
+		String message = record.message;
+		buffer.release(record);
+		return message;
+	}
+	
+}
@@ -0,0 +1,165 @@
+package com.lostkingdoms.db.organization.buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.backend.fault.FaultInjector;
+import com.lostkingdoms.db.backend.fault.FaultProfile;
+import com.lostkingdoms.db.backend.impl.InMemoryCacheBackend;
+import com.lostkingdoms.db.backend.impl.InMemoryDocumentBackend;
+import com.lostkingdoms.db.backend.impl.InMemorySyncTransport;
+import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.enums.WriteOperation;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+import com.lostkingdoms.db.sync.DataSyncMessage;
+
+/**
+ * Tests the replay of the {@link WriteBuffer} against the in-memory backends
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public class WriteBufferTest {
+
+	private InMemoryCacheBackend cache;
+	
+	private InMemoryDocumentBackend documents;
+	
+	/** Makes MongoDB unavailable */
+	private FaultInjector documentFaults;
+	
+	/** The entity keys of the published sync messages in the order they were published */
+	private final List<String> published = new CopyOnWriteArrayList<>();
+	
+	private WriteBuffer buffer;
+	
+	@Before
+	public void create() {
+		cache = new InMemoryCacheBackend();
+		documents = new InMemoryDocumentBackend();
+		documentFaults = new FaultInjector(FaultProfile.NONE);
+		InMemorySyncTransport sync = new InMemorySyncTransport();
+		
+		DataOrganizationManager manager = DataOrganizationManager.createInstance(cache, documentFaults.wrap(documents), sync);
+		sync.subscribe(DataOrganizationManager.syncMessageChannel, 
+				(channel, message) -> published.add(DataSyncMessage.deserialize(message).getEntityKey()));
+		buffer = new WriteBuffer(manager, null);
+	}
+	
+	@After
+	public void close() {
+		buffer.close();
+	}
+	
+	@Test
+	public void replaysInOrderOfWrites() {
+		buffer.add(write("a", WriteOperation.SET_LONG, "5"));
+		buffer.add(write("b", WriteOperation.INCREMENT_LONG, "1"));
+		buffer.add(write("a", WriteOperation.INCREMENT_LONG, "3"));
+		buffer.add(write("c", WriteOperation.SET_LONG, "7"));
+		
+		buffer.replay();
+		
+		assertEquals(0, buffer.size());
+		assertEquals(Arrays.asList("a", "b", "a", "c"), published);
+		assertEquals("8", cacheValue("a"));
+		assertEquals(8L, documentValue("a"));
+	}
+	
+	@Test
+	public void absoluteWriteCollapsesEarlierWrites() {
+		buffer.add(write("a", WriteOperation.INCREMENT_LONG, "1"));
+		buffer.add(write("a", WriteOperation.INCREMENT_LONG, "2"));
+		buffer.add(write("b", WriteOperation.INCREMENT_LONG, "4"));
+		buffer.add(write("a", WriteOperation.SET_LONG, "10"));
+		buffer.add(write("a", WriteOperation.INCREMENT_LONG, "5"));
+		
+		//The head of a key is kept, because it may be replayed right now
+		assertEquals(4, buffer.size());
+		
+		buffer.replay();
+		
+		assertEquals(Arrays.asList("a", "b", "a", "a"), published);
+		assertEquals("15", cacheValue("a"));
+		assertEquals(15L, documentValue("a"));
+	}
+	
+	@Test
+	public void keepsWritesUntilBackendIsAvailable() {
+		buffer.add(write("a", WriteOperation.INCREMENT_LONG, "5"));
+		buffer.add(write("b", WriteOperation.SET_LONG, "1"));
+		
+		documentFaults.setProfile(FaultProfile.NONE.withResets(1.0));
+		buffer.replay();
+		
+		//Redis applied the head before MongoDB failed and the later write waits behind it
+		assertEquals(2, buffer.size());
+		assertEquals("5", cacheValue("a"));
+		assertNull(cacheValue("b"));
+		
+		documentFaults.setProfile(FaultProfile.NONE);
+		buffer.replay();
+		
+		//Redis does not apply the increment a second time
+		assertEquals(0, buffer.size());
+		assertEquals("5", cacheValue("a"));
+		assertEquals(5L, documentValue("a"));
+		assertEquals("1", cacheValue("b"));
+	}
+	
+	/**
+	 * Creates a write of a value of an entity
+	 * 
+	 * @param entity the entity key
+	 * @param operation the operation
+	 * @param value the value or delta
+	 * @return the write
+	 */
+	private static BufferedWrite write(String entity, WriteOperation operation, String value) {
+		return new BufferedWrite(dataKey(entity), OrganizationType.BOTH, operation, value);
+	}
+	
+	/**
+	 * Get the key of the test value of an entity
+	 * 
+	 * @param entity the entity key
+	 * @return the key
+	 */
+	private static DataKey dataKey(String entity) {
+		return new DataKey(entity, "gold", "1");
+	}
+	
+	/**
+	 * Get the test value of an entity in redis
+	 * 
+	 * @param entity the entity key
+	 * @return the value or null
+	 */
+	private String cacheValue(String entity) {
+		try (CacheConnection connection = cache.getConnection()) {
+			return connection.get(dataKey(entity).getRedisKey());
+		}
+	}
+	
+	/**
+	 * Get the test value of an entity in MongoDB
+	 * 
+	 * @param entity the entity key
+	 * @return the value
+	 */
+	private Object documentValue(String entity) {
+		DataKey dataKey = dataKey(entity);
+		return documents.find(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier()).get(dataKey.getMongoDBValue());
+	}
+	
+}
@@ -0,0 +1,189 @@
+package com.lostkingdoms.db.organization.buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.lostkingdoms.db.organization.enums.WriteOperation;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+
+/**
+ * Tests the recovery of the {@link WriteJournal} after crashes
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public class WriteJournalTest {
+
+	/** The size of the magic and version at the start of the file */
+	private static final int HEADER_SIZE = 5;
+	
+	/** The size of the length and checksum of a record */
+	private static final int RECORD_HEADER_SIZE = 8;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private File file;
+	
+	private WriteJournal journal;
+	
+	@Before
+	public void open() throws IOException {
+		file = new File(folder.getRoot(), "write_journal.dat");
+		journal = new WriteJournal(file, 4096, 1);
+	}
+	
+	@After
+	public void close() throws IOException {
+		journal.close();
+	}
+	
+	@Test
+	public void recoversPendingWritesInOrder() throws IOException {
+		BufferedWrite first = write(1, "10");
+		BufferedWrite second = write(2, "20");
+		BufferedWrite third = write(3, "30");
+		journal.append(first);
+		journal.append(second);
+		journal.append(third);
+		journal.acknowledge(second);
+		third.setPendingTiers((byte) 2);
+		journal.updateTiers(third);
+		
+		List<BufferedWrite> recovered = reopen().recover();
+		
+		assertEquals(2, recovered.size());
+		assertEquals(1, recovered.get(0).getSequence());
+		assertEquals("10", recovered.get(0).getValue());
+		assertEquals(3, recovered.get(1).getSequence());
+		assertEquals(2, recovered.get(1).getPendingTiers());
+	}
+	
+	@Test
+	public void ignoresTornRecord() throws IOException {
+		journal.append(write(1, "10"));
+		int secondRecord = HEADER_SIZE + journal.getUsedBytes();
+		journal.append(write(2, "20"));
+		journal.close();
+		
+		// The crash happened after the length was written, but before the whole payload reached the disk
+		try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+			raw.seek(secondRecord + RECORD_HEADER_SIZE + 1);
+			raw.write(new byte[8]);
+		}
+		
+		List<BufferedWrite> recovered = reopen().recover();
+		
+		assertEquals(1, recovered.size());
+		assertEquals(1, recovered.get(0).getSequence());
+	}
+	
+	@Test
+	public void ignoresRecordLongerThanFile() throws IOException {
+		journal.append(write(1, "10"));
+		int secondRecord = HEADER_SIZE + journal.getUsedBytes();
+		journal.append(write(2, "20"));
+		journal.close();
+		
+		try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+			raw.seek(secondRecord);
+			raw.writeInt(Integer.MAX_VALUE - 16);
+		}
+		
+		List<BufferedWrite> recovered = reopen().recover();
+		
+		assertEquals(1, recovered.size());
+		assertEquals(1, recovered.get(0).getSequence());
+	}
+	
+	@Test
+	public void appendsAfterTornRecordAreRecovered() throws IOException {
+		journal.append(write(1, "10"));
+		int secondRecord = HEADER_SIZE + journal.getUsedBytes();
+		journal.close();
+		
+		// A record of which only the checksum and payload were written. Its length is still 0
+		try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+			raw.seek(secondRecord + 4);
+			raw.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+		}
+		
+		reopen();
+		List<BufferedWrite> recovered = journal.recover();
+		assertEquals(1, recovered.size());
+		
+		journal.append(write(2, "20"));
+		recovered = reopen().recover();
+		assertEquals(2, recovered.size());
+		assertEquals(2, recovered.get(1).getSequence());
+	}
+	
+	@Test
+	public void rewriteReplacesJournal() throws IOException {
+		BufferedWrite first = write(1, "10");
+		BufferedWrite second = write(2, "20");
+		journal.append(first);
+		journal.append(second);
+		journal.acknowledge(first);
+		
+		assertTrue(journal.rewrite(Arrays.asList(second)));
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+		
+		journal.append(write(3, "30"));
+		List<BufferedWrite> recovered = reopen().recover();
+		
+		assertEquals(2, recovered.size());
+		assertEquals(2, recovered.get(0).getSequence());
+		assertEquals(3, recovered.get(1).getSequence());
+	}
+	
+	@Test
+	public void rewriteKeepsOldestWritesWhichFit() throws IOException {
+		journal.close();
+		file = new File(folder.getRoot(), "small_journal.dat");
+		journal = new WriteJournal(file, 256, 1);
+		
+		BufferedWrite[] writes = new BufferedWrite[10];
+		for(int i = 0; i < writes.length; i++) {
+			writes[i] = write(i + 1, String.valueOf(i));
+		}
+		
+		assertFalse(journal.rewrite(Arrays.asList(writes)));
+		
+		List<BufferedWrite> recovered = reopen().recover();
+		assertTrue(recovered.size() > 0 && recovered.size() < writes.length);
+		for(int i = 0; i < recovered.size(); i++) {
+			assertEquals(i + 1, recovered.get(i).getSequence());
+		}
+	}
+	
+	/**
+	 * Closes the journal and opens the file again, like a restart after a crash
+	 * 
+	 * @return the reopened journal
+	 * @throws IOException if it could not be opened
+	 */
+	private WriteJournal reopen() throws IOException {
+		journal.close();
+		journal = new WriteJournal(file, 4096, 1);
+		return journal;
+	}
+	
+	private static BufferedWrite write(long sequence, String value) {
+		return new BufferedWrite(sequence, new DataKey("entity", "gold", "id" + sequence), WriteOperation.INCREMENT_LONG, value, null, (byte) 7);
+	}
+	
+}
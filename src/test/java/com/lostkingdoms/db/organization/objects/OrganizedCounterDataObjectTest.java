@@ -0,0 +1,121 @@
+package com.lostkingdoms.db.organization.objects;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.backend.impl.InMemoryCacheBackend;
+import com.lostkingdoms.db.backend.impl.InMemoryDocumentBackend;
+import com.lostkingdoms.db.backend.impl.InMemorySyncTransport;
+import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+
+/**
+ * Tests the flushes of {@link OrganizedCounterDataObject} against the in-memory backends
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public class OrganizedCounterDataObjectTest {
+
+	/** Long enough that the scheduled flush never runs during a test */
+	private static final long FLUSH_INTERVAL = 60000;
+	
+	private final DataKey dataKey = new DataKey("kingdom", "treasury", "1");
+	
+	private InMemoryCacheBackend cache;
+	
+	private InMemoryDocumentBackend documents;
+	
+	private OrganizedCounterDataObject counter;
+	
+	@Before
+	public void bind() {
+		cache = new InMemoryCacheBackend();
+		documents = new InMemoryDocumentBackend();
+		DataOrganizationManager.createInstance(cache, documents, new InMemorySyncTransport()).bindToCurrentThread();
+		counter = new OrganizedCounterDataObject(dataKey, OrganizationType.BOTH, FLUSH_INTERVAL);
+	}
+	
+	@After
+	public void unbind() {
+		counter.close();
+		DataOrganizationManager.unbindCurrentThread();
+	}
+	
+	@Test
+	public void flushesToBothTiers() {
+		counter.add(5);
+		counter.increment();
+		assertEquals(6, counter.get());
+		
+		counter.flush();
+		assertEquals(6, cacheTotal());
+		assertEquals(6L, documentValue());
+		assertEquals(6, counter.get());
+	}
+	
+	@Test
+	public void seedsHashFromMongoDB() {
+		documents.set(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), 100L);
+		
+		counter.add(5);
+		counter.flush();
+		assertEquals(105, cacheTotal());
+		assertEquals(105L, documentValue());
+	}
+	
+	@Test
+	public void reseedsLostHashFromMongoDB() {
+		counter.add(10);
+		counter.flush();
+		
+		//Redis loses the hash, e.g. by eviction or a restart without persistence
+		try (CacheConnection connection = cache.getConnection()) {
+			connection.del(dataKey.getRedisKey());
+		}
+		
+		counter.add(1);
+		counter.flush();
+		assertEquals(11, cacheTotal());
+		assertEquals(11L, documentValue());
+	}
+	
+	@Test
+	public void closeFlushesPendingIncrements() {
+		counter.add(3);
+		counter.close();
+		
+		assertEquals(3, cacheTotal());
+		assertEquals(3L, documentValue());
+	}
+	
+	/**
+	 * Get the sum of all fields of the redis hash of the test counter
+	 * 
+	 * @return the sum
+	 */
+	private long cacheTotal() {
+		long total = 0;
+		try (CacheConnection connection = cache.getConnection()) {
+			for (String value : connection.hvals(dataKey.getRedisKey())) {
+				total += Long.parseLong(value);
+			}
+		}
+		return total;
+	}
+	
+	/**
+	 * Get the value of the test counter in MongoDB
+	 * 
+	 * @return the value
+	 */
+	private Object documentValue() {
+		return documents.find(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier()).get(dataKey.getMongoDBValue());
+	}
+	
+}
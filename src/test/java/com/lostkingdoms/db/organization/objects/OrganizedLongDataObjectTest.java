@@ -0,0 +1,95 @@
+package com.lostkingdoms.db.organization.objects;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.CacheConnection;
+import com.lostkingdoms.db.backend.impl.InMemoryCacheBackend;
+import com.lostkingdoms.db.backend.impl.InMemoryDocumentBackend;
+import com.lostkingdoms.db.backend.impl.InMemorySyncTransport;
+import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+
+/**
+ * Tests the increments of {@link OrganizedLongDataObject} against the in-memory backends
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public class OrganizedLongDataObjectTest {
+
+	private final DataKey dataKey = new DataKey("player", "gold", "1");
+	
+	private InMemoryCacheBackend cache;
+	
+	private InMemoryDocumentBackend documents;
+	
+	@Before
+	public void bind() {
+		cache = new InMemoryCacheBackend();
+		documents = new InMemoryDocumentBackend();
+		DataOrganizationManager.createInstance(cache, documents, new InMemorySyncTransport()).bindToCurrentThread();
+	}
+	
+	@After
+	public void unbind() {
+		DataOrganizationManager.unbindCurrentThread();
+	}
+	
+	@Test
+	public void reseedsLostKeyFromMongoDB() {
+		OrganizedLongDataObject gold = new OrganizedLongDataObject(dataKey, OrganizationType.BOTH);
+		gold.addAndGet(5);
+		gold.addAndGet(5);
+		
+		//Redis loses the key, e.g. by eviction or a restart without persistence
+		try (CacheConnection connection = cache.getConnection()) {
+			connection.del(dataKey.getRedisKey());
+		}
+		
+		assertEquals(11, gold.addAndGet(1));
+		try (CacheConnection connection = cache.getConnection()) {
+			assertEquals("11", connection.get(dataKey.getRedisKey()));
+		}
+		assertEquals(11L, documentValue());
+	}
+	
+	@Test
+	public void seedsKeyWrittenOnlyToMongoDB() {
+		documents.set(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), 100L);
+		
+		OrganizedLongDataObject gold = new OrganizedLongDataObject(dataKey, OrganizationType.BOTH);
+		assertEquals(90, gold.addAndGet(-10));
+		assertEquals(90L, documentValue());
+	}
+	
+	@Test
+	public void migratesLegacyJsonString() {
+		documents.set(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), "\"7\"");
+		
+		OrganizedLongDataObject gold = new OrganizedLongDataObject(dataKey, OrganizationType.SAVE_TO_DB);
+		assertEquals(10, gold.addAndGet(3));
+		assertEquals(10L, documentValue());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void rejectsLegacyStringWhichIsNoNumber() {
+		documents.set(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier(), dataKey.getMongoDBValue(), "\"seven\"");
+		
+		new OrganizedLongDataObject(dataKey, OrganizationType.SAVE_TO_DB).addAndGet(3);
+	}
+	
+	/**
+	 * Get the value of the test key in MongoDB
+	 * 
+	 * @return the value
+	 */
+	private Object documentValue() {
+		return documents.find(dataKey.getMongoDBCollection(), dataKey.getMongoDBIdentifier()).get(dataKey.getMongoDBValue());
+	}
+	
+}
@@ -0,0 +1,106 @@
+package com.lostkingdoms.db.organization.objects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.impl.InMemoryCacheBackend;
+import com.lostkingdoms.db.backend.impl.InMemoryDocumentBackend;
+import com.lostkingdoms.db.backend.impl.InMemorySyncTransport;
+import com.lostkingdoms.db.converters.impl.DefaultDataConverter;
+import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+
+/**
+ * Tests {@link OrganizedSetDataObject} against the in-memory backends with two servers
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public class OrganizedSetDataObjectTest {
+
+	private InMemoryCacheBackend cache;
+	
+	private InMemoryDocumentBackend documents;
+	
+	private InMemorySyncTransport sync;
+	
+	private DataOrganizationManager first;
+	
+	private DataOrganizationManager second;
+	
+	@Before
+	public void create() {
+		cache = new InMemoryCacheBackend();
+		documents = new InMemoryDocumentBackend();
+		sync = new InMemorySyncTransport();
+		first = DataOrganizationManager.createInstance(cache, documents, sync);
+		second = DataOrganizationManager.createInstance(cache, documents, sync);
+	}
+	
+	@After
+	public void unbind() {
+		DataOrganizationManager.unbindCurrentThread();
+	}
+	
+	@Test
+	public void addsAndRemovesElements() {
+		OrganizedSetDataObject<String> members = set(first, OrganizationType.BOTH);
+		assertTrue(members.add("alice"));
+		assertTrue(members.add("bob"));
+		assertFalse(members.add("alice"));
+		
+		assertTrue(members.contains("alice"));
+		assertEquals(2, members.size());
+		
+		assertTrue(members.remove("alice"));
+		assertFalse(members.remove("alice"));
+		assertFalse(members.contains("alice"));
+		assertEquals(new HashSet<>(Arrays.asList("bob")), members.getSet());
+	}
+	
+	@Test
+	public void otherServerSeesChanges() {
+		OrganizedSetDataObject<String> firstMembers = set(first, OrganizationType.BOTH);
+		OrganizedSetDataObject<String> secondMembers = set(second, OrganizationType.BOTH);
+		firstMembers.add("alice");
+		assertEquals(new HashSet<>(Arrays.asList("alice")), secondMembers.getSet());
+		
+		secondMembers.add("bob");
+		firstMembers.remove("alice");
+		assertEquals(new HashSet<>(Arrays.asList("bob")), secondMembers.getSet());
+		assertEquals(new HashSet<>(Arrays.asList("bob")), firstMembers.getSet());
+	}
+	
+	@Test
+	public void seedsRedisFromMongoDB() {
+		set(first, OrganizationType.SAVE_TO_DB).add("alice");
+		
+		OrganizedSetDataObject<String> members = set(second, OrganizationType.BOTH);
+		members.add("bob");
+		
+		assertEquals(new HashSet<>(Arrays.asList("alice", "bob")), members.getSet());
+		assertEquals(2, set(first, OrganizationType.BOTH).size());
+	}
+	
+	/**
+	 * Creates a set of strings of a server
+	 * 
+	 * @param manager the manager of the server
+	 * @param organizationType the {@link OrganizationType}
+	 * @return the set
+	 */
+	private static OrganizedSetDataObject<String> set(DataOrganizationManager manager, OrganizationType organizationType) {
+		manager.bindToCurrentThread();
+		return new OrganizedSetDataObject<>(new DataKey("kingdom", "members", "1"), organizationType, new DefaultDataConverter<>(String.class));
+	}
+	
+}
@@ -0,0 +1,106 @@
+package com.lostkingdoms.db.organization.objects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lostkingdoms.db.DataOrganizationManager;
+import com.lostkingdoms.db.backend.impl.InMemoryCacheBackend;
+import com.lostkingdoms.db.backend.impl.InMemoryDocumentBackend;
+import com.lostkingdoms.db.backend.impl.InMemorySyncTransport;
+import com.lostkingdoms.db.converters.impl.DefaultDataConverter;
+import com.lostkingdoms.db.organization.enums.OrganizationType;
+import com.lostkingdoms.db.organization.miscellaneous.DataKey;
+
+/**
+ * Tests the rank queries of {@link OrganizedSortedSetDataObject} against the in-memory backends
+ * 
+ * @author Tim Kchler (https://github.com/TimK1998)
+ *
+ */
+public class OrganizedSortedSetDataObjectTest {
+
+	private InMemoryDocumentBackend documents;
+	
+	/** The number of published sync messages */
+	private final AtomicInteger syncMessages = new AtomicInteger();
+	
+	@Before
+	public void bind() {
+		documents = new InMemoryDocumentBackend();
+		InMemorySyncTransport sync = new InMemorySyncTransport();
+		DataOrganizationManager.createInstance(new InMemoryCacheBackend(), documents, sync).bindToCurrentThread();
+		sync.subscribe(DataOrganizationManager.syncMessageChannel, (channel, message) -> syncMessages.incrementAndGet());
+	}
+	
+	@After
+	public void unbind() {
+		DataOrganizationManager.unbindCurrentThread();
+	}
+	
+	@Test
+	public void ranksByDescendingScore() {
+		OrganizedSortedSetDataObject<String> leaderboard = sortedSet(OrganizationType.BOTH);
+		leaderboard.add("alice", 10);
+		leaderboard.add("bob", 30);
+		leaderboard.add("carol", 20);
+		
+		assertEquals(Long.valueOf(0), leaderboard.getRank("bob"));
+		assertEquals(Long.valueOf(2), leaderboard.getRank("alice"));
+		assertNull(leaderboard.getRank("dave"));
+		assertEquals(Arrays.asList("bob", "carol"), new ArrayList<>(leaderboard.getTop(2).keySet()));
+		
+		assertEquals(35, leaderboard.incrementScore("alice", 25), 0);
+		assertEquals(Long.valueOf(0), leaderboard.getRank("alice"));
+		
+		leaderboard.remove("bob");
+		assertEquals(2, leaderboard.size());
+		assertEquals(Long.valueOf(1), leaderboard.getRank("carol"));
+	}
+	
+	@Test
+	public void seedsRedisFromMongoDB() {
+		sortedSet(OrganizationType.BOTH).add("alice", 10);
+		
+		//A new server with an empty redis only has the scores in MongoDB
+		DataOrganizationManager.createInstance(new InMemoryCacheBackend(), documents, new InMemorySyncTransport()).bindToCurrentThread();
+		OrganizedSortedSetDataObject<String> leaderboard = sortedSet(OrganizationType.BOTH);
+		leaderboard.add("bob", 5);
+		
+		assertEquals(10, leaderboard.getScore("alice"), 0);
+		assertEquals(Long.valueOf(1), leaderboard.getRank("bob"));
+	}
+	
+	@Test
+	public void indexUpdateSendsNoSecondSyncMessage() {
+		OrganizedSortedSetDataObject<String> index = new OrganizedSortedSetDataObject<>(new DataKey("player_index", "gold", "player"), 
+				OrganizationType.SYNC, new DefaultDataConverter<>(String.class));
+		OrganizedLongDataObject gold = new OrganizedLongDataObject(new DataKey("player", "gold", "1"), OrganizationType.BOTH);
+		gold.setIndex(index, "1");
+		
+		gold.set(10);
+		gold.addAndGet(5);
+		
+		assertEquals(15, index.getScore("1"), 0);
+		assertEquals(Long.valueOf(0), index.getRank("1"));
+		assertEquals(2, syncMessages.get());
+	}
+	
+	/**
+	 * Creates a sorted set of strings
+	 * 
+	 * @param organizationType the {@link OrganizationType}
+	 * @return the sorted set
+	 */
+	private static OrganizedSortedSetDataObject<String> sortedSet(OrganizationType organizationType) {
+		return new OrganizedSortedSetDataObject<>(new DataKey("kingdom", "leaderboard", "1"), organizationType, new DefaultDataConverter<>(String.class));
+	}
+	
+}